@@ -0,0 +1,28 @@
+package dnc.cuong.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Main-Class của benchmarks.jar — giống org.openjdk.jmh.Main nhưng mặc định ghi kết quả JSON.
+ *
+ * WHY mặc định -rf json?
+ * → Text output của JMH chỉ để người đọc; JSON (jmh-result.json) diff/so sánh được giữa 2 release
+ *   (script, CI artifact, jmh.morethan.io).
+ * → Truyền -rf / -rff tường minh thì giữ nguyên lựa chọn của người chạy.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.addAll(0, List.of("-rf", "json"));
+        }
+        Main.main(options.toArray(String[]::new));
+    }
+}
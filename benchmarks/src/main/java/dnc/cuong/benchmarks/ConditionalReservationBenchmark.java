@@ -0,0 +1,167 @@
+package dnc.cuong.benchmarks;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.domain.ProductStockOperationsImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Order reserve / giây: read-modify-write kiểu entity mode vs 1 batch UPDATE có điều kiện (conditional mode)
+ * trên H2 in-memory, 8 thread, mỗi order 3 product ngẫu nhiên trong catalog 100 product.
+ *
+ * Chạy: java -jar benchmarks/target/benchmarks.jar ConditionalReservationBenchmark
+ *
+ * readModifyWrite = đúng những gì entity mode gửi xuống DB: SELECT products WHERE id IN (...),
+ * check trong Java, rồi flush UPDATE giá trị tuyệt đối (không lock → có thể mất update dưới tải song song).
+ * conditional = ProductStockOperationsImpl.reserveIfAvailable thật.
+ *
+ * WHY park roundTripMicros sau mỗi lần gọi DB?
+ * → H2 in-memory không có network; Postgres thật tốn ~0.1-0.5ms / round-trip. Lợi ích chính của
+ *   conditional mode (2 → 1 round-trip) chỉ thấy khi có độ trễ đó.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ConditionalReservationBenchmark {
+
+    private static final int PRODUCTS = 100;
+    private static final int ITEMS_PER_ORDER = 3;
+    private static final int INITIAL_STOCK = Integer.MAX_VALUE / 2;
+
+    @Param({"readModifyWrite", "conditional"})
+    String path;
+
+    @Param({"0", "200"})
+    long roundTripMicros;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ProductStockOperationsImpl stockOperations;
+    private List<UUID> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:conditional_" + path + "_" + roundTripMicros
+                + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(8);
+        dataSource = new HikariDataSource(config);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE products (
+                    id UUID PRIMARY KEY,
+                    name VARCHAR(255) NOT NULL,
+                    available_quantity INT NOT NULL,
+                    reserved_quantity INT NOT NULL,
+                    updated_at TIMESTAMP)
+                """);
+        productIds = IntStream.range(0, PRODUCTS).mapToObj(i -> UUID.randomUUID()).sorted().toList();
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO products (id, name, available_quantity, reserved_quantity) VALUES (?, ?, ?, 0)",
+                productIds.stream().map(id -> new Object[]{id, "Product " + id, INITIAL_STOCK}).toList());
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        stockOperations = new ProductStockOperationsImpl(jdbcTemplate);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE products");
+        dataSource.close();
+    }
+
+    @Benchmark
+    public boolean reserveOrder() {
+        List<OrderEvent.OrderItem> items = randomItems();
+        return Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                "conditional".equals(path) ? reserveConditional(items) : reserveReadModifyWrite(items)));
+    }
+
+    private boolean reserveConditional(List<OrderEvent.OrderItem> items) {
+        int[] counts = stockOperations.reserveIfAvailable(items);
+        roundTrip();
+        return Arrays.stream(counts).allMatch(count -> count > 0);
+    }
+
+    private boolean reserveReadModifyWrite(List<OrderEvent.OrderItem> items) {
+        Map<UUID, int[]> stock = new HashMap<>();
+        new NamedParameterJdbcTemplate(jdbcTemplate).query(
+                "SELECT id, available_quantity, reserved_quantity FROM products WHERE id IN (:ids)",
+                Map.of("ids", items.stream().map(OrderEvent.OrderItem::productId).toList()),
+                rs -> {
+                    stock.put(rs.getObject(1, UUID.class), new int[]{rs.getInt(2), rs.getInt(3)});
+                });
+        roundTrip();
+
+        for (OrderEvent.OrderItem item : items) {
+            int[] levels = stock.get(item.productId());
+            if (levels == null || levels[0] < item.quantity()) {
+                return false;
+            }
+            levels[0] -= item.quantity();
+            levels[1] += item.quantity();
+        }
+        // Hibernate flush: UPDATE giá trị tuyệt đối theo id, JDBC batch
+        jdbcTemplate.batchUpdate("UPDATE products SET available_quantity = ?, reserved_quantity = ? WHERE id = ?",
+                stock.entrySet().stream()
+                        .map(e -> new Object[]{e.getValue()[0], e.getValue()[1], e.getKey()})
+                        .toList());
+        roundTrip();
+        return true;
+    }
+
+    private List<OrderEvent.OrderItem> randomItems() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Distinct + sort theo productId — giống ConditionalStockReservation, tránh deadlock ở cả 2 path
+        List<UUID> picked = random.ints(0, PRODUCTS).distinct().limit(ITEMS_PER_ORDER).sorted()
+                .mapToObj(productIds::get).toList();
+        List<OrderEvent.OrderItem> items = new ArrayList<>(picked.size());
+        for (UUID productId : picked) {
+            items.add(new OrderEvent.OrderItem(productId, null, 1, BigDecimal.ONE));
+        }
+        return items;
+    }
+
+    private void roundTrip() {
+        if (roundTripMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+        }
+    }
+}
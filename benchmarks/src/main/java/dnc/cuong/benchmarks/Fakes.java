@@ -0,0 +1,96 @@
+package dnc.cuong.benchmarks;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.idempotency.IdempotencyGuard;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroDeserializer;
+import dnc.cuong.common.serde.OrderEventAvroSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Wiring thủ công cho benchmark service — thay Spring context bằng fake nhẹ nhất có thể.
+ */
+final class Fakes {
+
+    private static final Map<String, Object> MOCK_REGISTRY_CONFIG = Map.of(
+            AvroSerdeConfig.SCHEMA_REGISTRY_URL, "mock://benchmarks",
+            AvroSerdeConfig.PINNED_TOPICS, String.join(",", KafkaTopics.ORDER_PLACED, KafkaTopics.ORDER_COMPLETED,
+                    KafkaTopics.ORDER_VALIDATED, KafkaTopics.ORDER_FAILED));
+
+    private Fakes() {}
+
+    /**
+     * MockProducer auto-complete + OrderEventAvroSerializer thật với registry mock://.
+     *
+     * WHY vẫn encode value?
+     * → Serializer encode trên mọi send — bỏ qua thì benchmark đánh giá thấp hot path.
+     * → Schema id đã pin trong configure() → hot path giống production sau startup.
+     *
+     * close() là no-op: KafkaTemplate đóng producer sau mỗi send non-transactional,
+     * DefaultKafkaProducerFactory bọc CloseSafeProducer — ở đây tự giữ 1 instance sống.
+     */
+    static MockProducer<String, OrderEventAvro> mockProducer() {
+        return new MockProducer<>(true, new StringSerializer(), avroSerializer()) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+    }
+
+    static OrderEventAvroSerializer avroSerializer() {
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        serializer.configure(MOCK_REGISTRY_CONFIG, false);
+        return serializer;
+    }
+
+    static OrderEventAvroDeserializer avroDeserializer() {
+        OrderEventAvroDeserializer deserializer = new OrderEventAvroDeserializer();
+        deserializer.configure(MOCK_REGISTRY_CONFIG, false);
+        return deserializer;
+    }
+
+    static KafkaTemplate<String, OrderEventAvro> kafkaTemplate(MockProducer<String, OrderEventAvro> producer) {
+        KafkaTemplate<String, OrderEventAvro> template = new KafkaTemplate<>(new MockProducerFactory<>(() -> producer));
+        template.setMicrometerEnabled(false);
+        return template;
+    }
+
+    /**
+     * IdempotencyGuard cấu hình như production (LRU + claim). processed_events chỉ ghi: benchmark
+     * luôn gửi eventId mới → claim luôn thành công, không giữ ~1M eventId/iteration trong heap
+     * (benchmark sẽ đo GC old gen thay vì service); duplicate trúng LRU.
+     */
+    static IdempotencyGuard idempotencyGuard(String name, MeterRegistry meterRegistry) {
+        return new IdempotencyGuard(name, IdempotencyGuard.Settings.defaults(),
+                eventId -> false,
+                (eventId, topic) -> true,
+                (eventIds, topic) -> eventIds,
+                Runnable::run,
+                meterRegistry);
+    }
+
+    /** Gọi các method @PostConstruct (initMetrics là package-private trong service). */
+    static <T> T initialized(T bean) {
+        for (Method method : bean.getClass().getDeclaredMethods()) {
+            if (method.isAnnotationPresent(PostConstruct.class)) {
+                try {
+                    method.setAccessible(true);
+                    method.invoke(bean);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Cannot run @PostConstruct " + method, e);
+                }
+            }
+        }
+        return bean;
+    }
+}
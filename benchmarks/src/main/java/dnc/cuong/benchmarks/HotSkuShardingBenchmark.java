@@ -0,0 +1,113 @@
+package dnc.cuong.benchmarks;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.domain.Product;
+import dnc.cuong.inventory.shard.ShardedStockReservation;
+import dnc.cuong.inventory.shard.StockShardStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reservation / giây cho 1 hot SKU khi tăng số shard — ShardedStockReservation + StockShardStore thật
+ * trên H2 in-memory (row lock MVStore), 8 thread cùng reserve 1 product.
+ *
+ * Chạy: java -jar benchmarks/target/benchmarks.jar HotSkuShardingBenchmark
+ *
+ * shards=1 tương đương entity mode: mọi transaction xếp hàng trên 1 row.
+ *
+ * WHY park lockHoldMicros sau khi reserve?
+ * → Transaction thật còn INSERT processed_events, publish, COMMIT qua network — row lock giữ suốt
+ *   khoảng đó. H2 in-memory commit gần như tức thì → không park thì không thấy contention.
+ *   Trần lý thuyết: min(threads, shards) × 1s / lockHold.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class HotSkuShardingBenchmark {
+
+    private static final UUID HOT_PRODUCT = UUID.fromString("9b9e6679-7425-40de-944b-e07fc1f90ae9");
+    private static final int INITIAL_STOCK = Integer.MAX_VALUE / 2;
+
+    @Param({"1", "2", "4", "8", "16"})
+    int shards;
+
+    @Param({"500"})
+    long lockHoldMicros;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ShardedStockReservation reservation;
+    private List<OrderEvent> order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:hot_sku_" + shards + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(8);
+        dataSource = new HikariDataSource(config);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE product_stock_shards (
+                    product_id UUID NOT NULL,
+                    shard_no INT NOT NULL,
+                    available_quantity INT NOT NULL,
+                    reserved_quantity INT NOT NULL,
+                    PRIMARY KEY (product_id, shard_no))
+                """);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        StockShardStore store = new StockShardStore(jdbcTemplate);
+        reservation = new ShardedStockReservation(store, shards, false, new SimpleMeterRegistry());
+
+        Product product = Product.builder().id(HOT_PRODUCT).name("iPhone 15 Pro").availableQuantity(INITIAL_STOCK).build();
+        reservation.initialize(List.of(product));
+        order = List.of(new OrderEvent(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                List.of(new OrderEvent.OrderItem(HOT_PRODUCT, "iPhone 15 Pro", 1, new BigDecimal("999.00"))),
+                new BigDecimal("999.00"), null, null, null));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE product_stock_shards");
+        dataSource.close();
+    }
+
+    @Benchmark
+    public boolean reserveHotSku() {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            boolean reserved = reservation.reserve(order).get(0).isReserved();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(lockHoldMicros));
+            return reserved;
+        }));
+    }
+}
@@ -0,0 +1,129 @@
+package dnc.cuong.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Fake JpaRepository dựa trên HashMap — dùng cho benchmark service mà không cần DB.
+ *
+ * WHY dynamic proxy thay vì Mockito?
+ * → Mockito ghi lại mọi invocation + match stub → tự nó tốn vài trăm ns/call và tạo garbage,
+ *   benchmark sẽ đo Mockito chứ không đo service.
+ * → Proxy chỉ implement các method CRUD mà service thật gọi; method khác → UnsupportedOperationException
+ *   để biết ngay khi service đổi cách truy cập repository.
+ *
+ * Query method riêng (vd. findAllByIdIn) — hoặc save không giữ lại entity cho bảng chỉ ghi
+ * như orders/outbox_events — đăng ký qua {@link #on(String, Function)}.
+ */
+final class InMemoryRepository<T, ID> implements InvocationHandler {
+
+    private final Map<ID, T> store = new HashMap<>();
+    private final Map<String, Function<Object[], Object>> queries = new HashMap<>();
+    private final Function<T, ID> idOf;
+
+    InMemoryRepository(Function<T, ID> idOf) {
+        this.idOf = idOf;
+    }
+
+    InMemoryRepository<T, ID> on(String methodName, Function<Object[], Object> query) {
+        queries.put(methodName, query);
+        return this;
+    }
+
+    <R> R as(Class<R> repositoryType) {
+        return repositoryType.cast(Proxy.newProxyInstance(
+                repositoryType.getClassLoader(), new Class<?>[]{repositoryType}, this));
+    }
+
+    List<T> findAllById(Collection<ID> ids) {
+        List<T> found = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            T entity = store.get(id);
+            if (entity != null) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    boolean containsId(ID id) {
+        return store.containsKey(id);
+    }
+
+    Collection<T> values() {
+        return store.values();
+    }
+
+    void clear() {
+        store.clear();
+    }
+
+    int size() {
+        return store.size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        Function<Object[], Object> query = queries.get(method.getName());
+        if (query != null) {
+            return query.apply(args);
+        }
+        int arity = args == null ? 0 : args.length;
+        switch (method.getName()) {
+            case "save":
+                return save((T) args[0]);
+            case "saveAll": {
+                List<T> saved = new ArrayList<>();
+                for (T entity : (Iterable<T>) args[0]) {
+                    saved.add(save(entity));
+                }
+                return saved;
+            }
+            case "findById":
+                return Optional.ofNullable(store.get((ID) args[0]));
+            case "existsById":
+                return containsId((ID) args[0]);
+            case "findAllById": {
+                List<ID> ids = new ArrayList<>();
+                ((Iterable<ID>) args[0]).forEach(ids::add);
+                return findAllById(ids);
+            }
+            case "findAll":
+                if (arity == 0) {
+                    return new ArrayList<>(store.values());
+                }
+                break;
+            case "count":
+                return (long) store.size();
+            case "deleteAll":
+                if (arity == 0) {
+                    store.clear();
+                    return null;
+                }
+                break;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "InMemoryRepository[" + store.size() + "]";
+            default:
+                break;
+        }
+        throw new UnsupportedOperationException("Fake repository không hỗ trợ " + method);
+    }
+
+    private T save(T entity) {
+        store.put(idOf.apply(entity), entity);
+        return entity;
+    }
+}
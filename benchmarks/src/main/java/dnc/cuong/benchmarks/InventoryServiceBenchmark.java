@@ -0,0 +1,160 @@
+package dnc.cuong.benchmarks;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.outbox.OutboxEventRepository;
+import dnc.cuong.common.outbox.OutboxWriter;
+import dnc.cuong.inventory.availability.StockAvailabilitySnapshot;
+import dnc.cuong.inventory.domain.Product;
+import dnc.cuong.inventory.domain.ProductRepository;
+import dnc.cuong.inventory.kafka.InventoryKafkaProducer;
+import dnc.cuong.inventory.service.EntityStockReservation;
+import dnc.cuong.inventory.service.InventoryService;
+import dnc.cuong.inventory.service.StockHolds;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InventoryService.processOrderPlaced (record mode, EntityStockReservation) với repository fake in-memory.
+ *
+ * Chạy: java -jar benchmarks/target/benchmarks.jar InventoryServiceBenchmark -prof gc
+ *
+ * Đo trọn nhánh CPU của 1 event: IdempotencyGuard (LRU + claim như production) → load products
+ * → validate/reserve → build event kết quả → Avro encode + send.
+ * Không có DB/transaction — SELECT/UPDATE thật là round-trip Postgres, không thuộc phạm vi JMH.
+ *
+ * WHY eventId mới mỗi invocation?
+ * → Cùng eventId thì từ lần 2 trở đi guard trả duplicate → đo nhánh skip chứ không đo reserve.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InventoryServiceBenchmark {
+
+    /** Đủ lớn để không order nào hết stock trong 1 iteration. */
+    private static final int INITIAL_STOCK = Integer.MAX_VALUE / 2;
+
+    @Param({"1", "5"})
+    int itemCount;
+
+    @Param({"kafka", "outbox"})
+    String publishMode;
+
+    private InventoryService inventoryService;
+    private InMemoryRepository<Product, UUID> products;
+    private MockProducer<String, OrderEventAvro> producer;
+    private int sends;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private OrderEvent reservableTemplate;
+    private OrderEvent rejectedTemplate;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        reservableTemplate = SampleEvents.orderPlaced(itemCount);
+
+        // Thêm 1 product không tồn tại → validateStock fail, không reserve gì
+        List<OrderEvent.OrderItem> items = new ArrayList<>(reservableTemplate.items());
+        items.add(new OrderEvent.OrderItem(UUID.randomUUID(), "Missing product", 1, items.get(0).price()));
+        rejectedTemplate = new OrderEvent(null, reservableTemplate.orderId(), reservableTemplate.customerId(),
+                List.copyOf(items), reservableTemplate.totalAmount(), reservableTemplate.status(),
+                null, reservableTemplate.createdAt());
+
+        products = new InMemoryRepository<>(Product::getId);
+        products.on("findAllByIdIn", args -> {
+            @SuppressWarnings("unchecked")
+            List<UUID> ids = (List<UUID>) args[0];
+            return products.findAllById(ids);
+        });
+        for (OrderEvent.OrderItem item : reservableTemplate.items()) {
+            products.as(ProductRepository.class).save(Product.builder()
+                    .id(item.productId())
+                    .skuCode("SKU-" + item.productId())
+                    .name(item.productName())
+                    .availableQuantity(INITIAL_STOCK)
+                    .build());
+        }
+    }
+
+    /**
+     * Service mới mỗi iteration: LRU idempotency bắt đầu rỗng,
+     * stock về lại mức ban đầu → các iteration đo cùng một trạng thái.
+     */
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        for (Product product : products.values()) {
+            product.setAvailableQuantity(INITIAL_STOCK);
+            product.setReservedQuantity(0);
+        }
+        OutboxEventRepository outboxEventRepository = new InMemoryRepository<>(event -> 0L)
+                .on("save", args -> args[0])
+                .as(OutboxEventRepository.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        producer = Fakes.mockProducer();
+        OutboxWriter outboxWriter = new OutboxWriter(outboxEventRepository, "outbox".equals(publishMode));
+
+        ProductRepository productRepository = products.as(ProductRepository.class);
+        EntityStockReservation strategy = new EntityStockReservation(productRepository);
+        inventoryService = Fakes.initialized(new InventoryService(
+                strategy,
+                Fakes.idempotencyGuard("inventory-service", meterRegistry),
+                new InventoryKafkaProducer(Fakes.kafkaTemplate(producer), outboxWriter),
+                new StockHolds(null, false, 15, 1000, meterRegistry),
+                new StockAvailabilitySnapshot(strategy, productRepository, meterRegistry),
+                meterRegistry));
+    }
+
+    @Benchmark
+    public void processOrderPlacedReserved() {
+        inventoryService.processOrderPlaced(freshCopy(reservableTemplate));
+        drainProducer();
+    }
+
+    @Benchmark
+    public void processOrderPlacedRejected() {
+        inventoryService.processOrderPlaced(freshCopy(rejectedTemplate));
+        drainProducer();
+    }
+
+    /** Event trùng → guard trả duplicate từ LRU, service return ngay. */
+    @Benchmark
+    public void processOrderPlacedDuplicate() {
+        inventoryService.processOrderPlaced(reservableTemplate);
+    }
+
+    private OrderEvent freshCopy(OrderEvent template) {
+        // UUID.randomUUID() dùng SecureRandom — đắt hơn chính phần đang đo
+        UUID eventId = new UUID(random.nextLong(), random.nextLong());
+        return new OrderEvent(eventId, template.orderId(), template.customerId(), template.items(),
+                template.totalAmount(), template.status(), template.reason(), template.createdAt());
+    }
+
+    /** MockProducer giữ history mọi record đã send — xả định kỳ để heap không phình theo iteration. */
+    private void drainProducer() {
+        if ((++sends & 1023) == 0) {
+            producer.clear();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package dnc.cuong.benchmarks;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderItemAvro;
+import dnc.cuong.common.avro.OrderStatusAvro;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Baseline "before": bản OrderEventMapper dùng newBuilder() + stream + Instant.parse.
+ * Giữ nguyên để benchmark so sánh với mapper hiện tại.
+ */
+final class LegacyOrderEventMapper {
+
+    private LegacyOrderEventMapper() {}
+
+    static OrderEventAvro toAvro(OrderEvent event, String source) {
+        return OrderEventAvro.newBuilder()
+                .setEventId(event.eventId().toString())
+                .setOrderId(event.orderId().toString())
+                .setCustomerId(event.customerId().toString())
+                .setItems(event.items().stream()
+                        .map(item -> OrderItemAvro.newBuilder()
+                                .setProductId(item.productId().toString())
+                                .setProductName(item.productName())
+                                .setQuantity(item.quantity())
+                                .setPrice(item.price().toString())
+                                .build())
+                        .toList())
+                .setTotalAmount(event.totalAmount().toString())
+                .setStatus(OrderStatusAvro.valueOf(event.status().name()))
+                .setReason(event.reason())
+                .setCreatedAt(event.createdAt().toString())
+                .setSchemaVersion(1)
+                .setSource(source)
+                .build();
+    }
+
+    static OrderEvent fromAvro(OrderEventAvro avro) {
+        return new OrderEvent(
+                UUID.fromString(avro.getEventId()),
+                UUID.fromString(avro.getOrderId()),
+                UUID.fromString(avro.getCustomerId()),
+                avro.getItems().stream()
+                        .map(item -> new OrderEvent.OrderItem(
+                                UUID.fromString(item.getProductId()),
+                                item.getProductName(),
+                                item.getQuantity(),
+                                new BigDecimal(item.getPrice())))
+                        .toList(),
+                new BigDecimal(avro.getTotalAmount()),
+                OrderStatus.valueOf(avro.getStatus().name()),
+                avro.getReason(),
+                Instant.parse(avro.getCreatedAt())
+        );
+    }
+}
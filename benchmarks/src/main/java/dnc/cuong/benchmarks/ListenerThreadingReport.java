@@ -0,0 +1,219 @@
+package dnc.cuong.benchmarks;
+
+import dnc.cuong.common.concurrency.ListenerThreads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput + p50/p99 latency của listener: platform thread (hiện tại) vs virtual thread.
+ *
+ * Chạy: java -cp benchmarks/target/benchmarks.jar dnc.cuong.benchmarks.ListenerThreadingReport [records] [dbMillis]
+ *
+ * Mô hình: 3 partition (= kafka-init), mỗi partition 1 consumer, poll max.poll.records=100.
+ * Handler = 1 lần mượn connection từ pool 10 (Hikari maximum-pool-size) và block dbMillis.
+ * Latency 1 record = từ lúc poll trả về tới lúc record đó xong (thời gian nằm trong poll).
+ *
+ * | Model              | Consumer | Xử lý trong 1 poll                                   |
+ * |--------------------|----------|------------------------------------------------------|
+ * | platform           | platform | tuần tự (hành vi hiện tại)                           |
+ * | virtual            | virtual  | tuần tự — chỉ đổi loại thread                        |
+ * | virtual-per-key    | virtual  | mỗi key 1 virtual thread, DB permit = pool size      |
+ * | per-key-no-permit  | virtual  | mỗi key 1 virtual thread, tranh connection trong pool |
+ *
+ * WHY không đo trong JMH?
+ * → Thời gian bị chi phối bởi I/O giả lập (sleep), không phải CPU — JMH warmup/fork không
+ *   thêm độ chính xác, còn percentile latency cần đo theo từng record chứ không theo invocation.
+ *
+ * WHY có cột "pool waiters"?
+ * → Tổng thời gian của 2 model per-key gần như nhau (đều bị chặn ở 10 connection). Khác biệt
+ *   là NƠI thread xếp hàng: không permit → hàng trăm thread đợi trong getConnection()
+ *   (connection-timeout chạy, HTTP/outbox relay chung pool bị chen) — permit giữ hàng đợi bên ngoài.
+ */
+public final class ListenerThreadingReport {
+
+    private static final int PARTITIONS = 3;
+    private static final int MAX_POLL_RECORDS = 100;
+    private static final int POOL_SIZE = 10;
+    private static final int DISTINCT_KEYS = 2_000;
+    private static final long CONNECTION_TIMEOUT_MS = 30_000;
+
+    private ListenerThreadingReport() {}
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 6_000;
+        long dbMillis = args.length > 1 ? Long.parseLong(args[1]) : 2;
+
+        // Warm-up: class loading + JIT cho đường code của executor/semaphore
+        for (Model model : Model.values()) {
+            run(model, Math.min(records, 600), dbMillis);
+        }
+
+        System.out.printf("records=%d partitions=%d max.poll.records=%d pool=%d db=%dms%n%n",
+                records, PARTITIONS, MAX_POLL_RECORDS, POOL_SIZE, dbMillis);
+        System.out.printf("%-18s %12s %10s %10s %13s %9s%n",
+                "model", "records/s", "p50 ms", "p99 ms", "pool waiters", "timeouts");
+        for (Model model : Model.values()) {
+            Result result = run(model, records, dbMillis);
+            System.out.printf("%-18s %12.0f %10.1f %10.1f %13d %9d%n",
+                    model.label, result.throughput(), result.p50Ms(), result.p99Ms(),
+                    result.maxPoolWaiters(), result.timeouts());
+        }
+    }
+
+    private enum Model {
+        PLATFORM("platform", ListenerThreads.Mode.PLATFORM, false, true),
+        VIRTUAL("virtual", ListenerThreads.Mode.VIRTUAL, false, true),
+        VIRTUAL_PER_KEY("virtual-per-key", ListenerThreads.Mode.VIRTUAL, true, true),
+        PER_KEY_NO_PERMIT("per-key-no-permit", ListenerThreads.Mode.VIRTUAL, true, false);
+
+        final String label;
+        final ListenerThreads.Mode mode;
+        final boolean perKey;
+        final boolean dbPermits;
+
+        Model(String label, ListenerThreads.Mode mode, boolean perKey, boolean dbPermits) {
+            this.label = label;
+            this.mode = mode;
+            this.perKey = perKey;
+            this.dbPermits = dbPermits;
+        }
+    }
+
+    private record Result(double throughput, double p50Ms, double p99Ms, int maxPoolWaiters, int timeouts) {}
+
+    private static Result run(Model model, int records, long dbMillis) throws Exception {
+        ListenerThreads threads = new ListenerThreads("bench", model.mode,
+                model.dbPermits ? POOL_SIZE : 0, new SimpleMeterRegistry());
+        SimulatedPool pool = new SimulatedPool(POOL_SIZE, dbMillis);
+        List<List<String>> partitions = partitionedKeys(records);
+        long[] latencies = new long[records];
+        AtomicInteger completed = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService recordExecutor = threads.newRecordExecutor(1)) {
+            List<Thread> consumers = new ArrayList<>();
+            for (List<String> partition : partitions) {
+                Thread consumer = threads.threadFactory("bench-consumer-").newThread(() ->
+                        consume(partition, model, threads, recordExecutor, pool, latencies, completed));
+                consumer.start();
+                consumers.add(consumer);
+            }
+            for (Thread consumer : consumers) {
+                consumer.join();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new Result(
+                records / (elapsed / 1e9),
+                latencies[(int) (records * 0.50)] / 1e6,
+                latencies[Math.min(records - 1, (int) (records * 0.99))] / 1e6,
+                pool.maxWaiters.get(),
+                pool.timeouts.get());
+    }
+
+    private static void consume(List<String> partition, Model model, ListenerThreads threads,
+                                ExecutorService recordExecutor, SimulatedPool pool,
+                                long[] latencies, AtomicInteger completed) {
+        for (int from = 0; from < partition.size(); from += MAX_POLL_RECORDS) {
+            List<String> poll = partition.subList(from, Math.min(partition.size(), from + MAX_POLL_RECORDS));
+            long polledAt = System.nanoTime();
+
+            if (!model.perKey) {
+                for (String ignored : poll) {
+                    threads.runWithDbPermit(pool::query);
+                    latencies[completed.getAndIncrement()] = System.nanoTime() - polledAt;
+                }
+                continue;
+            }
+
+            // Thứ tự trong cùng key giữ nguyên: 1 task xử lý tuần tự các record của key đó
+            Map<String, Integer> perKey = new LinkedHashMap<>();
+            poll.forEach(key -> perKey.merge(key, 1, Integer::sum));
+            List<Future<?>> tasks = new ArrayList<>(perKey.size());
+            for (int count : perKey.values()) {
+                tasks.add(recordExecutor.submit(() -> {
+                    for (int i = 0; i < count; i++) {
+                        threads.runWithDbPermit(pool::query);
+                        latencies[completed.getAndIncrement()] = System.nanoTime() - polledAt;
+                    }
+                }));
+            }
+            // Commit offset sau khi cả poll xong — giống container chờ listener return
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    /** Key ngẫu nhiên (seed cố định) chia partition theo hash như DefaultPartitioner. */
+    private static List<List<String>> partitionedKeys(int records) {
+        List<List<String>> partitions = new ArrayList<>();
+        for (int p = 0; p < PARTITIONS; p++) {
+            partitions.add(new ArrayList<>());
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < records; i++) {
+            String key = "order-" + random.nextInt(DISTINCT_KEYS);
+            partitions.get(Math.floorMod(key.hashCode(), PARTITIONS)).add(key);
+        }
+        return partitions;
+    }
+
+    /** Hikari giả lập: pool connection fair + connection-timeout, đếm thread đang đợi. */
+    private static final class SimulatedPool {
+
+        private final Semaphore connections;
+        private final long queryMillis;
+        private final AtomicInteger waiters = new AtomicInteger();
+        private final AtomicInteger maxWaiters = new AtomicInteger();
+        private final AtomicInteger timeouts = new AtomicInteger();
+
+        SimulatedPool(int size, long queryMillis) {
+            this.connections = new Semaphore(size, true);
+            this.queryMillis = queryMillis;
+        }
+
+        void query() {
+            if (!connections.tryAcquire() && !awaitConnection()) {
+                timeouts.incrementAndGet();
+                return;
+            }
+            try {
+                Thread.sleep(queryMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                connections.release();
+            }
+        }
+
+        private boolean awaitConnection() {
+            maxWaiters.accumulateAndGet(waiters.incrementAndGet(), Math::max);
+            try {
+                return connections.tryAcquire(CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package dnc.cuong.benchmarks;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventAvroV3;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.avro.OrderEventV3Mapper;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroDeserializer;
+import dnc.cuong.common.serde.OrderEventAvroSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapper + encode/decode cost mỗi event: legacy (builder + String) vs v1 hiện tại vs v3 compact.
+ *
+ * Chạy (kèm allocation/op):
+ *   java -jar benchmarks/target/benchmarks.jar OrderEventMapperBenchmark -prof gc
+ * Bytes/event: java -cp benchmarks/target/benchmarks.jar dnc.cuong.benchmarks.PayloadSizeReport
+ *
+ * WHY encode/decode riêng với map?
+ * → Map đo phần code của mình (toString/parse); encode/decode đo phần Avro binary
+ *   mà serializer làm trên mọi message — v3 thắng chủ yếu ở đây (ít byte, không UTF-8).
+ *
+ * serialize* / deserialize*: đường thật khi bật schema.v3.topics — producer vẫn map v1 rồi serializer
+ * convert sang v3, consumer decode v3 rồi convert về v1. Đo cái giá CPU đổi lấy ít byte hơn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderEventMapperBenchmark {
+
+    private static final String SOURCE = "order-service";
+    private static final String TOPIC = KafkaTopics.ORDER_PLACED;
+
+    @Param({"1", "5"})
+    int itemCount;
+
+    private OrderEvent event;
+    private OrderEventAvro v1Avro;
+    private OrderEventAvroV3 v3Avro;
+    private ByteBuffer v1Bytes;
+    private ByteBuffer v3Bytes;
+    private OrderEventAvroSerializer v1Serializer;
+    private OrderEventAvroSerializer v3Serializer;
+    private OrderEventAvroDeserializer deserializer;
+    private byte[] v1Record;
+    private byte[] v3Record;
+
+    @Setup
+    public void setUp() throws IOException {
+        event = SampleEvents.orderPlaced(itemCount);
+        v1Avro = OrderEventMapper.toAvro(event, SOURCE);
+        v3Avro = OrderEventV3Mapper.toAvro(event, SOURCE);
+        v1Bytes = v1Avro.toByteBuffer();
+        v3Bytes = v3Avro.toByteBuffer();
+
+        Map<String, Object> configs = Map.of(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "mock://mapper-benchmark");
+        v1Serializer = new OrderEventAvroSerializer();
+        v1Serializer.configure(configs, false);
+        v3Serializer = new OrderEventAvroSerializer();
+        v3Serializer.configure(Map.of(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "mock://mapper-benchmark",
+                AvroSerdeConfig.V3_TOPICS, TOPIC), false);
+        deserializer = new OrderEventAvroDeserializer();
+        deserializer.configure(configs, false);
+        v1Record = v1Serializer.serialize(TOPIC, v1Avro);
+        v3Record = v3Serializer.serialize(TOPIC, v1Avro);
+    }
+
+    // --- Map: OrderEvent ↔ SpecificRecord ---
+
+    @Benchmark
+    public OrderEventAvro toAvroLegacy() {
+        return LegacyOrderEventMapper.toAvro(event, SOURCE);
+    }
+
+    @Benchmark
+    public OrderEventAvro toAvroV1() {
+        return OrderEventMapper.toAvro(event, SOURCE);
+    }
+
+    @Benchmark
+    public OrderEventAvroV3 toAvroV3() {
+        return OrderEventV3Mapper.toAvro(event, SOURCE);
+    }
+
+    @Benchmark
+    public OrderEvent fromAvroLegacy() {
+        return LegacyOrderEventMapper.fromAvro(v1Avro);
+    }
+
+    @Benchmark
+    public OrderEvent fromAvroV1() {
+        return OrderEventMapper.fromAvro(v1Avro);
+    }
+
+    @Benchmark
+    public OrderEvent fromAvroV3() {
+        return OrderEventV3Mapper.fromAvro(v3Avro);
+    }
+
+    // --- Full produce / consume path: map + Avro binary ---
+
+    @Benchmark
+    public ByteBuffer produceLegacy() throws IOException {
+        return LegacyOrderEventMapper.toAvro(event, SOURCE).toByteBuffer();
+    }
+
+    @Benchmark
+    public ByteBuffer produceV1() throws IOException {
+        return OrderEventMapper.toAvro(event, SOURCE).toByteBuffer();
+    }
+
+    @Benchmark
+    public ByteBuffer produceV3() throws IOException {
+        return OrderEventV3Mapper.toAvro(event, SOURCE).toByteBuffer();
+    }
+
+    @Benchmark
+    public OrderEvent consumeLegacy() throws IOException {
+        return LegacyOrderEventMapper.fromAvro(OrderEventAvro.fromByteBuffer(v1Bytes.duplicate()));
+    }
+
+    @Benchmark
+    public OrderEvent consumeV1() throws IOException {
+        return OrderEventMapper.fromAvro(OrderEventAvro.fromByteBuffer(v1Bytes.duplicate()));
+    }
+
+    @Benchmark
+    public OrderEvent consumeV3() throws IOException {
+        return OrderEventV3Mapper.fromAvro(OrderEventAvroV3.fromByteBuffer(v3Bytes.duplicate()));
+    }
+
+    // --- Đường producer / consumer thật: KafkaTemplate<String, OrderEventAvro> + serde, v3 bật theo topic ---
+
+    @Benchmark
+    public byte[] serializeV1() {
+        return v1Serializer.serialize(TOPIC, OrderEventMapper.toAvro(event, SOURCE));
+    }
+
+    @Benchmark
+    public byte[] serializeV3Topic() {
+        return v3Serializer.serialize(TOPIC, OrderEventMapper.toAvro(event, SOURCE));
+    }
+
+    @Benchmark
+    public OrderEvent deserializeV1() {
+        return OrderEventMapper.fromAvro(deserializer.deserialize(TOPIC, v1Record));
+    }
+
+    @Benchmark
+    public OrderEvent deserializeV3Topic() {
+        return OrderEventMapper.fromAvro(deserializer.deserialize(TOPIC, v3Record));
+    }
+}
@@ -0,0 +1,120 @@
+package dnc.cuong.benchmarks;
+
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.Order;
+import dnc.cuong.order.domain.OrderItem;
+import dnc.cuong.order.domain.TimeOrderedUuid;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * INSERT orders + order_items qua Hibernate thật vào H2 in-memory (MODE=PostgreSQL) — đơn vị: order/s.
+ *
+ * Chạy: java -jar benchmarks/target/benchmarks.jar OrderPersistenceBenchmark
+ *
+ * Trước: uuidVersion=4, batchSize=1 (GenerationType.UUID, không batching — INSERT từng row).
+ * Sau:   uuidVersion=7, batchSize=100 (@TimeOrderedUuid + jdbc.batch_size + order_inserts).
+ * 2 tham số tách riêng để thấy phần lợi của từng thay đổi.
+ *
+ * WHY H2 thay vì Postgres?
+ * → Chạy được không cần docker; đo phần Hibernate + JDBC + B-tree.
+ * → H2 in-memory không có network round-trip → lợi ích của batching trên Postgres thật (1 round-trip
+ *   / 100 row thay vì / 1 row) còn LỚN hơn số đo ở đây; con số dùng để so sánh tương đối.
+ *
+ * Bảng được xoá sạch mỗi iteration — heap không phình, B-tree vẫn lớn dần trong iteration
+ * (đủ để thấy insert random v4 vs tăng dần v7).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderPersistenceBenchmark {
+
+    private static final int ORDERS_PER_TRANSACTION = 100;
+
+    @Param({"4", "7"})
+    String uuidVersion;
+
+    @Param({"1", "100"})
+    String batchSize;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Order.class)
+                .addAnnotatedClass(OrderItem.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL,
+                        "jdbc:h2:mem:order_db_" + uuidVersion + "_" + batchSize + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1")
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, "sa")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize)
+                .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+                .setProperty(TimeOrderedUuid.UUID_VERSION_SETTING, uuidVersion)
+                .buildSessionFactory();
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        sessionFactory.inTransaction(session -> {
+            session.createNativeMutationQuery("delete from order_items").executeUpdate();
+            session.createNativeMutationQuery("delete from orders").executeUpdate();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    /** 1 transaction = 100 order × 2 item — giống OrderService.createOrders (bulk / group-commit). */
+    @Benchmark
+    @OperationsPerInvocation(ORDERS_PER_TRANSACTION)
+    public void insertOrders() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (int i = 0; i < ORDERS_PER_TRANSACTION; i++) {
+                session.persist(newOrder(i));
+            }
+            session.getTransaction().commit();
+        }
+    }
+
+    private static Order newOrder(int i) {
+        Order order = Order.builder()
+                .customerId(UUID.randomUUID())
+                .status(OrderStatus.PLACED)
+                .totalAmount(new BigDecimal("2599.98"))
+                .build();
+        order.addItem(OrderItem.builder()
+                .productId(UUID.randomUUID()).productName("MacBook Pro")
+                .quantity(1).price(new BigDecimal("2499.99")).build());
+        order.addItem(OrderItem.builder()
+                .productId(UUID.randomUUID()).productName("Magic Mouse " + i)
+                .quantity(1).price(new BigDecimal("99.99")).build());
+        return order;
+    }
+}
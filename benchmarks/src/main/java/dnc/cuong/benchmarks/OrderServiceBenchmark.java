@@ -0,0 +1,145 @@
+package dnc.cuong.benchmarks;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.dto.OrderCreateRequest;
+import dnc.cuong.common.dto.OrderCreateRequest.OrderItemRequest;
+import dnc.cuong.common.outbox.OutboxEventRepository;
+import dnc.cuong.common.outbox.OutboxWriter;
+import dnc.cuong.order.domain.Order;
+import dnc.cuong.order.domain.OrderRepository;
+import dnc.cuong.order.kafka.OrderKafkaProducer;
+import dnc.cuong.order.service.OrderResponseCache;
+import dnc.cuong.order.service.OrderService;
+import dnc.cuong.order.service.OrderStatusWaiters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderService.createOrder — phần tính totalAmount (BigDecimal stream) và cả method với fake dependency.
+ *
+ * Chạy: java -jar benchmarks/target/benchmarks.jar OrderServiceBenchmark -prof gc
+ *
+ * WHY tách totalAmount ra benchmark riêng?
+ * → Stream + BigDecimal.valueOf + multiply tạo vài object/item; so với vòng for để biết
+ *   phần này đáng tối ưu hay không trước khi động vào code service.
+ *
+ * createOrder chạy KHÔNG có DB/transaction (@Transactional không có proxy):
+ * → Đo chi phí CPU của service (build entity, map event, Avro encode khi send/outbox)
+ *   — phần còn lại của request là round-trip Postgres/Kafka, đo bằng load test, không phải JMH.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderServiceBenchmark {
+
+    @Param({"1", "5", "20"})
+    int itemCount;
+
+    private OrderCreateRequest request;
+
+    @Setup
+    public void setUp() {
+        List<OrderItemRequest> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new OrderItemRequest(UUID.randomUUID(), "Product " + i, i + 1,
+                    new BigDecimal("1299.99").add(BigDecimal.valueOf(i))));
+        }
+        request = new OrderCreateRequest(UUID.randomUUID(), List.copyOf(items));
+    }
+
+    /** Bước 1 của OrderService.createOrder — giữ nguyên biểu thức. */
+    @Benchmark
+    public BigDecimal totalAmountStream() {
+        return request.items().stream()
+                .map(item -> item.price().multiply(BigDecimal.valueOf(item.quantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public BigDecimal totalAmountLoop() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderItemRequest item : request.items()) {
+            total = total.add(item.price().multiply(BigDecimal.valueOf(item.quantity())));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Order createOrder(ServiceState state) {
+        Order order = state.orderService.createOrder(request);
+        state.drainProducer();
+        return order;
+    }
+
+    /**
+     * OrderService wiring bằng fake — publishMode chọn nhánh OrderKafkaProducer:
+     * kafka  → KafkaTemplate.send (MockProducer, value encode Avro)
+     * outbox → OutboxWriter.append (encode single-object, save vào fake outbox_events)
+     */
+    @State(Scope.Thread)
+    public static class ServiceState {
+
+        @Param({"kafka", "outbox"})
+        String publishMode;
+
+        OrderService orderService;
+        private MockProducer<String, OrderEventAvro> producer;
+        private int sends;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            // orders / outbox_events: save gán id rồi bỏ — không giữ hàng triệu entity trong heap
+            OrderRepository orderRepository = new InMemoryRepository<Order, UUID>(Order::getId)
+                    .on("save", args -> {
+                        Order order = (Order) args[0];
+                        order.setId(UUID.randomUUID());
+                        return order;
+                    })
+                    .as(OrderRepository.class);
+            OutboxEventRepository outboxEventRepository = new InMemoryRepository<>(event -> 0L)
+                    .on("save", args -> args[0])
+                    .as(OutboxEventRepository.class);
+
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            producer = Fakes.mockProducer();
+            OutboxWriter outboxWriter = new OutboxWriter(outboxEventRepository, "outbox".equals(publishMode));
+
+            orderService = Fakes.initialized(new OrderService(
+                    orderRepository,
+                    Fakes.idempotencyGuard("order-service", meterRegistry),
+                    new OrderKafkaProducer(Fakes.kafkaTemplate(producer), outboxWriter),
+                    meterRegistry,
+                    new OrderResponseCache(true, Duration.ofMinutes(5), 32L * 1024 * 1024, Runnable::run, meterRegistry),
+                    new OrderStatusWaiters(10_000, Runnable::run, meterRegistry)));
+        }
+
+        /** MockProducer giữ history mọi record đã send — xả định kỳ để heap không phình theo iteration. */
+        void drainProducer() {
+            if ((++sends & 1023) == 0) {
+                producer.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package dnc.cuong.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroSerializer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In bytes/event của JSON (OrderEvent) vs Avro v1 vs v3 — Avro đo đúng value Kafka nhận
+ * (OrderEventAvroSerializer, header Confluent 5 bytes như nhau), v3 = topic trong schema.v3.topics.
+ *
+ * WHY không đo trong JMH?
+ * → Kích thước là deterministic — 1 lần đo là đủ, không cần warmup/iteration.
+ */
+public final class PayloadSizeReport {
+
+    private static final String TOPIC = KafkaTopics.ORDER_PLACED;
+
+    private PayloadSizeReport() {}
+
+    public static void main(String[] args) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        OrderEventAvroSerializer v1Serializer = serializer(Map.of());
+        OrderEventAvroSerializer v3Serializer = serializer(Map.of(AvroSerdeConfig.V3_TOPICS, TOPIC));
+
+        System.out.printf("%-6s %10s %10s %10s %8s%n", "items", "json bytes", "v1 bytes", "v3 bytes", "saving");
+        for (int items : new int[]{1, 5, 20}) {
+            OrderEvent event = SampleEvents.orderPlaced(items);
+            OrderEventAvro avro = OrderEventMapper.toAvro(event, "order-service");
+            int json = objectMapper.writeValueAsBytes(event).length;
+            int v1 = v1Serializer.serialize(TOPIC, avro).length;
+            int v3 = v3Serializer.serialize(TOPIC, avro).length;
+            System.out.printf("%-6d %10d %10d %10d %7.1f%%%n", items, json, v1, v3, 100.0 * (v1 - v3) / v1);
+        }
+    }
+
+    private static OrderEventAvroSerializer serializer(Map<String, Object> extra) {
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        Map<String, Object> configs = new HashMap<>(extra);
+        configs.put(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "mock://payload-size-report");
+        serializer.configure(configs, false);
+        return serializer;
+    }
+}
@@ -0,0 +1,32 @@
+package dnc.cuong.benchmarks;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Event mẫu dùng chung cho các benchmark — kích thước giống order thật (vài line item).
+ */
+final class SampleEvents {
+
+    private SampleEvents() {}
+
+    static OrderEvent orderPlaced(int itemCount) {
+        List<OrderEvent.OrderItem> items = new ArrayList<>(itemCount);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < itemCount; i++) {
+            BigDecimal price = new BigDecimal("1299.99").add(BigDecimal.valueOf(i));
+            items.add(new OrderEvent.OrderItem(UUID.randomUUID(), "Product " + i, i + 1, price));
+            total = total.add(price.multiply(BigDecimal.valueOf(i + 1)));
+        }
+        return new OrderEvent(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                List.copyOf(items), total, OrderStatus.PLACED, null,
+                Instant.now().truncatedTo(ChronoUnit.MICROS));
+    }
+}
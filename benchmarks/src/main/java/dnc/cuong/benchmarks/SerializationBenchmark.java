@@ -0,0 +1,154 @@
+package dnc.cuong.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.serde.OrderEventAvroDeserializer;
+import dnc.cuong.common.serde.OrderEventAvroSerializer;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Avro binary (OrderEventAvro) vs JSON (Jackson annotations trên OrderEvent) — encode/decode 1 event.
+ *
+ * Chạy: java -jar benchmarks/target/benchmarks.jar SerializationBenchmark -prof gc
+ *
+ * WHY Avro raw (DatumWriter/Reader) bên cạnh OrderEventAvroSerializer?
+ * → Raw so sánh đúng format: cùng là "object → byte[]", không lẫn schema id lookup
+ *   hay 5-byte header. serde* đo serializer thật (schema pin, registry mock://) — chênh lệch
+ *   với raw là chi phí header + lookup id.
+ *
+ * WHY JSON phía OrderEvent chứ không phải OrderEventAvro?
+ * → Trước khi chuyển Avro, payload Kafka là JsonSerializer(OrderEvent) — đây là baseline thật.
+ *   Avro phía decode có thêm OrderEventMapper.fromAvro để hai bên cùng ra OrderEvent.
+ *
+ * Bytes/event mỗi format: PayloadSizeReport.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private static final String SOURCE = "order-service";
+
+    @Param({"1", "5"})
+    int itemCount;
+
+    private OrderEvent event;
+    private OrderEventAvro avroEvent;
+
+    private final SpecificDatumWriter<OrderEventAvro> avroWriter = new SpecificDatumWriter<>(OrderEventAvro.class);
+    private final SpecificDatumReader<OrderEventAvro> avroReader = new SpecificDatumReader<>(OrderEventAvro.class);
+    private final ByteArrayOutputStream avroOut = new ByteArrayOutputStream(1024);
+    private BinaryEncoder encoder;
+    private BinaryDecoder decoder;
+    private byte[] avroBytes;
+
+    private OrderEventAvroSerializer serdeSerializer;
+    private OrderEventAvroDeserializer serdeDeserializer;
+    private byte[] serdeBytes;
+
+    private ObjectWriter jsonWriter;
+    private ObjectReader jsonReader;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        event = SampleEvents.orderPlaced(itemCount);
+        avroEvent = OrderEventMapper.toAvro(event, SOURCE);
+        avroBytes = encodeAvro(avroEvent);
+
+        serdeSerializer = Fakes.avroSerializer();
+        serdeDeserializer = Fakes.avroDeserializer();
+        serdeBytes = serdeSerializer.serialize(KafkaTopics.ORDER_PLACED, avroEvent);
+
+        // Cấu hình giống Spring Boot auto-config: JavaTimeModule + ISO-8601 thay vì epoch number
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        jsonWriter = objectMapper.writerFor(OrderEvent.class);
+        jsonReader = objectMapper.readerFor(OrderEvent.class);
+        jsonBytes = jsonWriter.writeValueAsBytes(event);
+    }
+
+    // --- Encode ---
+
+    @Benchmark
+    public byte[] avroEncode() throws IOException {
+        return encodeAvro(avroEvent);
+    }
+
+    @Benchmark
+    public byte[] avroMapAndEncode() throws IOException {
+        return encodeAvro(OrderEventMapper.toAvro(event, SOURCE));
+    }
+
+    @Benchmark
+    public byte[] serdeSerialize() {
+        return serdeSerializer.serialize(KafkaTopics.ORDER_PLACED, avroEvent);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        return jsonWriter.writeValueAsBytes(event);
+    }
+
+    // --- Decode ---
+
+    @Benchmark
+    public OrderEventAvro avroDecode() throws IOException {
+        decoder = DecoderFactory.get().binaryDecoder(avroBytes, decoder);
+        return avroReader.read(null, decoder);
+    }
+
+    @Benchmark
+    public OrderEvent avroDecodeAndMap() throws IOException {
+        return OrderEventMapper.fromAvro(avroDecode());
+    }
+
+    @Benchmark
+    public OrderEventAvro serdeDeserialize() {
+        return serdeDeserializer.deserialize(KafkaTopics.ORDER_PLACED, serdeBytes);
+    }
+
+    @Benchmark
+    public OrderEvent jsonDecode() throws IOException {
+        return jsonReader.readValue(jsonBytes);
+    }
+
+    private byte[] encodeAvro(OrderEventAvro record) throws IOException {
+        avroOut.reset();
+        encoder = EncoderFactory.get().binaryEncoder(avroOut, encoder);
+        avroWriter.write(record, encoder);
+        encoder.flush();
+        return avroOut.toByteArray();
+    }
+}
@@ -4,7 +4,12 @@ import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.common.event.OrderStatus;
 
 import java.math.BigDecimal;
+import java.time.DateTimeException;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -15,9 +20,32 @@ import java.util.UUID;
  * → OrderEventAvro là Avro SpecificRecord — dùng cho Kafka serialization với Schema Registry.
  * → Mapper tách biệt Kafka serialization layer khỏi business logic.
  * → Service layer không cần biết về Avro — chỉ Kafka producer/consumer dùng mapper.
+ *
+ * WHY all-args constructor thay vì newBuilder()?
+ * → Builder validate từng field + deep copy default values khi build() → allocation thừa
+ *   trên mọi produce. Constructor chỉ gán field.
+ * → Mapper set đủ mọi field nên không cần default của builder.
+ *
+ * WHY parse createdAt bằng tay thay vì Instant.parse?
+ * → Instant.parse đi qua DateTimeFormatter (parse context, map field) — đắt nhất trong fromAvro.
+ * → Producer luôn ghi Instant.toString() (yyyy-MM-ddTHH:mm:ss[.fraction]Z) → fast path;
+ *   format khác → fallback Instant.parse.
+ *
+ * Wire format compact hơn (fixed UUID, decimal, timestamp-micros): xem OrderEventV3Mapper.
  */
 public final class OrderEventMapper {
 
+    private static final OrderStatusAvro[] TO_AVRO_STATUS = new OrderStatusAvro[OrderStatus.values().length];
+    private static final OrderStatus[] FROM_AVRO_STATUS = new OrderStatus[OrderStatusAvro.values().length];
+
+    static {
+        for (OrderStatus status : OrderStatus.values()) {
+            OrderStatusAvro avroStatus = OrderStatusAvro.valueOf(status.name());
+            TO_AVRO_STATUS[status.ordinal()] = avroStatus;
+            FROM_AVRO_STATUS[avroStatus.ordinal()] = status;
+        }
+    }
+
     private OrderEventMapper() {}
 
     /**
@@ -28,25 +56,27 @@ public final class OrderEventMapper {
      * @param source service name that produces this event (e.g., "order-service")
      */
     public static OrderEventAvro toAvro(OrderEvent event, String source) {
-        return OrderEventAvro.newBuilder()
-                .setEventId(event.eventId().toString())
-                .setOrderId(event.orderId().toString())
-                .setCustomerId(event.customerId().toString())
-                .setItems(event.items().stream()
-                        .map(item -> OrderItemAvro.newBuilder()
-                                .setProductId(item.productId().toString())
-                                .setProductName(item.productName())
-                                .setQuantity(item.quantity())
-                                .setPrice(item.price().toString())
-                                .build())
-                        .toList())
-                .setTotalAmount(event.totalAmount().toString())
-                .setStatus(OrderStatusAvro.valueOf(event.status().name()))
-                .setReason(event.reason())
-                .setCreatedAt(event.createdAt().toString())
-                .setSchemaVersion(1)
-                .setSource(source)
-                .build();
+        List<OrderEvent.OrderItem> items = event.items();
+        List<OrderItemAvro> avroItems = new ArrayList<>(items.size());
+        for (OrderEvent.OrderItem item : items) {
+            avroItems.add(new OrderItemAvro(
+                    item.productId().toString(),
+                    item.productName(),
+                    item.quantity(),
+                    item.price().toString()));
+        }
+
+        return new OrderEventAvro(
+                event.eventId().toString(),
+                event.orderId().toString(),
+                event.customerId().toString(),
+                avroItems,
+                event.totalAmount().toString(),
+                toAvroStatus(event.status()),
+                event.reason(),
+                event.createdAt().toString(),
+                1,
+                source);
     }
 
     /**
@@ -54,21 +84,85 @@ public final class OrderEventMapper {
      * Dùng trong Kafka Consumer sau khi deserialize message.
      */
     public static OrderEvent fromAvro(OrderEventAvro avro) {
+        List<OrderItemAvro> avroItems = avro.getItems();
+        List<OrderEvent.OrderItem> items = new ArrayList<>(avroItems.size());
+        for (OrderItemAvro item : avroItems) {
+            items.add(new OrderEvent.OrderItem(
+                    UUID.fromString(item.getProductId()),
+                    item.getProductName(),
+                    item.getQuantity(),
+                    new BigDecimal(item.getPrice())));
+        }
+
         return new OrderEvent(
                 UUID.fromString(avro.getEventId()),
                 UUID.fromString(avro.getOrderId()),
                 UUID.fromString(avro.getCustomerId()),
-                avro.getItems().stream()
-                        .map(item -> new OrderEvent.OrderItem(
-                                UUID.fromString(item.getProductId()),
-                                item.getProductName(),
-                                item.getQuantity(),
-                                new BigDecimal(item.getPrice())))
-                        .toList(),
+                Collections.unmodifiableList(items),
                 new BigDecimal(avro.getTotalAmount()),
-                OrderStatus.valueOf(avro.getStatus().name()),
+                fromAvroStatus(avro.getStatus()),
                 avro.getReason(),
-                Instant.parse(avro.getCreatedAt())
+                parseInstant(avro.getCreatedAt())
         );
     }
+
+    static OrderStatusAvro toAvroStatus(OrderStatus status) {
+        return TO_AVRO_STATUS[status.ordinal()];
+    }
+
+    static OrderStatus fromAvroStatus(OrderStatusAvro status) {
+        return FROM_AVRO_STATUS[status.ordinal()];
+    }
+
+    /**
+     * Parse ISO-8601 UTC dạng Instant.toString(): yyyy-MM-ddTHH:mm:ss[.f{1,9}]Z.
+     */
+    static Instant parseInstant(String text) {
+        int length = text.length();
+        if (length < 20 || length > 30
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':' || text.charAt(length - 1) != 'Z') {
+            return Instant.parse(text);
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        int hour = digits(text, 11, 13);
+        int minute = digits(text, 14, 16);
+        int second = digits(text, 17, 19);
+        int nanos = 0;
+        if (length > 20) {
+            int fractionDigits = length - 21;
+            if (text.charAt(19) != '.' || fractionDigits < 1) {
+                return Instant.parse(text);
+            }
+            nanos = digits(text, 20, length - 1);
+            for (int i = fractionDigits; i < 9 && nanos >= 0; i++) {
+                nanos *= 10;
+            }
+        }
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59 || nanos < 0) {
+            return Instant.parse(text);
+        }
+        try {
+            long epochDay = LocalDate.of(year, month, day).toEpochDay();
+            return Instant.ofEpochSecond(epochDay * 86_400 + hour * 3_600L + minute * 60L + second, nanos);
+        } catch (DateTimeException e) {
+            return Instant.parse(text);
+        }
+    }
+
+    /** @return giá trị số của text[from, to), hoặc -1 nếu có ký tự không phải digit */
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
 }
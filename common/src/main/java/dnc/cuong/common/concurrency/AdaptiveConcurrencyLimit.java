@@ -0,0 +1,189 @@
+package dnc.cuong.common.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Số consumer được phép poll (0..maxConcurrency) theo độ bão hoà của DB pool — AIMD:
+ * quá tải → giảm một nửa, khoẻ liên tục recoveryTicks lần → tăng 1.
+ *
+ * Mỗi tick (service gọi update với số đo Hikari + latency handler):
+ * - pending >= maxConnections (thread đợi nhiều hơn số connection) → 0: pause hết.
+ * - pending >= pendingThreshold hoặc latency > latencyThresholdMs → limit / 2 (tối thiểu 1).
+ * - pending == 0, latency ổn, còn connection rảnh → đếm tick khoẻ; đủ recoveryTicks → limit + 1.
+ * - còn lại (pool dùng hết nhưng chưa ai đợi) → giữ nguyên.
+ *
+ * WHY pause consumer thay vì để handler xếp hàng trong Hikari?
+ * → Handler đợi connection vẫn giữ record của poll → poll kế tiếp trễ → vượt max.poll.interval.ms
+ *   → rebalance → mọi partition đứng lại, record đang xử lý bị redeliver. Consumer bị pause vẫn
+ *   poll (heartbeat, giữ partition) nhưng không nhận record → DB có thời gian hồi.
+ *
+ * WHY giảm nhanh, tăng chậm?
+ * → Quá tải tự khuếch đại (đợi lâu → timeout → retry → thêm tải); tăng từng bước để tìm lại
+ *   mức DB chịu được mà không dao động.
+ *
+ * Class không phụ thuộc Spring — áp limit lên listener container là việc của ListenerFlowController.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    public enum Action { HOLD, PAUSE, DECREASE, INCREASE }
+
+    /**
+     * @param handlerLatencyMs latency trung bình của handler từ tick trước; NaN nếu không có record nào
+     */
+    public record Signals(int activeConnections, int maxConnections, int pendingThreads, double handlerLatencyMs) {}
+
+    public record Settings(int maxConcurrency, int pendingThreshold, double latencyThresholdMs, int recoveryTicks) {}
+
+    private final Settings settings;
+    private final AtomicInteger limit;
+    private int healthyTicks;
+    private Action lastAction = Action.HOLD;
+
+    private final Counter pauseCounter;
+    private final Counter decreaseCounter;
+    private final Counter increaseCounter;
+
+    /**
+     * @param name tên service — tag metric
+     */
+    public AdaptiveConcurrencyLimit(String name, Settings settings, MeterRegistry meterRegistry) {
+        if (settings.maxConcurrency() < 1 || settings.pendingThreshold() < 1 || settings.recoveryTicks() < 1) {
+            throw new IllegalArgumentException("maxConcurrency, pendingThreshold, recoveryTicks must be >= 1: " + settings);
+        }
+        this.settings = settings;
+        this.limit = new AtomicInteger(settings.maxConcurrency());
+
+        Gauge.builder("listener.flow.limit", limit, AtomicInteger::get)
+                .description("Số consumer / container được phép poll (còn lại bị pause)")
+                .tag("service", name).register(meterRegistry);
+        this.pauseCounter = adjustmentCounter(meterRegistry, name, "pause");
+        this.decreaseCounter = adjustmentCounter(meterRegistry, name, "decrease");
+        this.increaseCounter = adjustmentCounter(meterRegistry, name, "increase");
+    }
+
+    public int limit() {
+        return limit.get();
+    }
+
+    public synchronized Action lastAction() {
+        return lastAction;
+    }
+
+    /** 1 tick: tính limit mới từ số đo hiện tại. */
+    public synchronized int update(Signals signals) {
+        int current = limit.get();
+        boolean latencyHigh = signals.handlerLatencyMs() > settings.latencyThresholdMs();
+
+        if (signals.pendingThreads() >= Math.max(1, signals.maxConnections())) {
+            lastAction = current > 0 ? Action.PAUSE : Action.HOLD;
+            set(0, pauseCounter);
+        } else if (signals.pendingThreads() >= settings.pendingThreshold() || latencyHigh) {
+            lastAction = current > 1 ? Action.DECREASE : Action.HOLD;
+            if (current > 1) {
+                set(current / 2, decreaseCounter);
+            }
+            healthyTicks = 0;
+        } else if (signals.pendingThreads() == 0 && signals.activeConnections() < signals.maxConnections()) {
+            lastAction = Action.HOLD;
+            if (current < settings.maxConcurrency() && ++healthyTicks >= settings.recoveryTicks()) {
+                lastAction = Action.INCREASE;
+                set(current + 1, increaseCounter);
+            }
+        } else {
+            lastAction = Action.HOLD;
+            healthyTicks = 0;
+        }
+        return limit.get();
+    }
+
+    private void set(int value, Counter counter) {
+        if (limit.getAndSet(value) != value) {
+            counter.increment();
+        }
+        healthyTicks = 0;
+    }
+
+    private static Counter adjustmentCounter(MeterRegistry meterRegistry, String name, String action) {
+        return Counter.builder("listener.flow.adjustments")
+                .description("Số lần flow control đổi limit")
+                .tag("service", name).tag("action", action).register(meterRegistry);
+    }
+
+    /**
+     * Latency trung bình giữa 2 lần sample() của timer observation spring.kafka.listener
+     * (1 timer / listener id) và timer handler thật (ListenerThreads.HANDLER_TIMER).
+     * Không có record mới → NaN.
+     *
+     * WHY bỏ timer observation của listener đã có timer handler?
+     * → Listener key-ordered / async chỉ giao record cho lane rồi return: observation ~0ms kéo
+     *   trung bình về 0 đúng lúc DB chậm. Listener nào ghi timer handler thì chỉ tính timer đó.
+     *
+     * Delta tính theo từng timer → timer mới xuất hiện / bị bỏ giữa chừng không làm tổng âm.
+     */
+    public static class LatencyWindow {
+
+        private final MeterRegistry meterRegistry;
+        private final String timerName;
+        private final String handlerTimerName;
+        private final Map<Meter.Id, Snapshot> last = new HashMap<>();
+
+        public LatencyWindow(MeterRegistry meterRegistry, String timerName) {
+            this(meterRegistry, timerName, null);
+        }
+
+        public LatencyWindow(MeterRegistry meterRegistry, String timerName, String handlerTimerName) {
+            this.meterRegistry = meterRegistry;
+            this.timerName = timerName;
+            this.handlerTimerName = handlerTimerName;
+        }
+
+        public synchronized double sample() {
+            Set<String> handlerTimed = new HashSet<>();
+            Snapshot window = Snapshot.EMPTY;
+            if (handlerTimerName != null) {
+                for (Timer timer : meterRegistry.find(handlerTimerName).timers()) {
+                    String listenerId = timer.getId().getTag(ListenerThreads.LISTENER_ID_TAG);
+                    if (listenerId != null) {
+                        handlerTimed.add(listenerId);
+                    }
+                    window = window.plus(delta(timer));
+                }
+            }
+            for (Timer timer : meterRegistry.find(timerName).timers()) {
+                // Vẫn cập nhật mốc của timer bị bỏ — không dồn lịch sử nếu sau này được tính lại
+                Snapshot delta = delta(timer);
+                if (!handlerTimed.contains(timer.getId().getTag(ListenerThreads.LISTENER_ID_TAG))) {
+                    window = window.plus(delta);
+                }
+            }
+            return window.count() > 0 ? window.totalMs() / window.count() : Double.NaN;
+        }
+
+        private Snapshot delta(Timer timer) {
+            Snapshot now = new Snapshot(timer.count(), timer.totalTime(TimeUnit.MILLISECONDS));
+            Snapshot previous = last.put(timer.getId(), now);
+            return previous == null ? now : new Snapshot(now.count() - previous.count(),
+                    now.totalMs() - previous.totalMs());
+        }
+
+        private record Snapshot(long count, double totalMs) {
+
+            static final Snapshot EMPTY = new Snapshot(0, 0);
+
+            Snapshot plus(Snapshot other) {
+                return new Snapshot(count + other.count, totalMs + other.totalMs);
+            }
+        }
+    }
+}
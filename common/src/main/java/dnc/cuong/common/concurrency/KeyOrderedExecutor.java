@@ -0,0 +1,90 @@
+package dnc.cuong.common.concurrency;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * N lane tuần tự, chọn lane theo hash(key) — song song giữa các key, tuần tự trong 1 key.
+ *
+ * WHY lane cố định thay vì 1 queue / key?
+ * → Số key (orderId) không giới hạn; map key → queue phải dọn khi key rảnh, có race giữa
+ *   "queue rỗng → xoá" và "task mới tới". Lane cố định: không state theo key, cùng key
+ *   luôn cùng lane → thứ tự submit = thứ tự chạy.
+ * → Giá: 2 key khác nhau trùng lane thì chờ nhau (head-of-line) — tăng số lane để giảm.
+ *
+ * Caller submit theo thứ tự offset của partition → record cùng key chạy đúng thứ tự offset.
+ * Commit offset (chỉ tới offset thấp nhất chưa xong) là việc của caller — xem KeyOrderedDispatcher.
+ */
+public class KeyOrderedExecutor implements AutoCloseable {
+
+    private final ExecutorService[] lanes;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param name          tên service — tag metric
+     * @param threadFactory mỗi lane 1 thread (ListenerThreads.threadFactory: virtual hoặc platform)
+     */
+    public KeyOrderedExecutor(String name, int laneCount, ThreadFactory threadFactory, MeterRegistry meterRegistry) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("laneCount must be >= 1: " + laneCount);
+        }
+        this.lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+        Gauge.builder("listener.key_ordered.pending", pending, AtomicInteger::get)
+                .description("Record đã dispatch nhưng chưa xử lý xong")
+                .tag("service", name).register(meterRegistry);
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    public int laneOf(Object key) {
+        int h = key.hashCode();
+        // Trộn bit cao xuống — String.hashCode của "order-123" khác nhau chủ yếu ở bit thấp
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+    public void execute(Object key, Runnable task) {
+        pending.incrementAndGet();
+        lanes[laneOf(key)].execute(() -> {
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    /** Ngừng nhận task, đợi các lane chạy hết task đã nhận (tối đa 30s). */
+    @Override
+    public void close() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ExecutorService lane : lanes) {
+                if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (ExecutorService lane : lanes) {
+                lane.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package dnc.cuong.common.concurrency;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * ListenerFlowController dùng chung — order / inventory / payment @Import class này.
+ * Tên service (tag metric) lấy từ spring.application.name.
+ */
+@Configuration(proxyBeanMethods = false)
+public class ListenerFlowControlConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "kafka.listener.flow-control.enabled", havingValue = "true")
+    public ListenerFlowController listenerFlowController(
+            KafkaListenerEndpointRegistry registry,
+            DataSource dataSource,
+            MeterRegistry meterRegistry,
+            @Value("${spring.application.name}") String serviceName,
+            @Value("${kafka.listener.flow-control.excluded-listeners:}") Set<String> excludedListeners,
+            @Value("${kafka.listener.flow-control.max-concurrency:3}") int maxConcurrency,
+            @Value("${kafka.listener.flow-control.pending-threshold:2}") int pendingThreshold,
+            @Value("${kafka.listener.flow-control.latency-threshold-ms:500}") double latencyThresholdMs,
+            @Value("${kafka.listener.flow-control.recovery-ticks:5}") int recoveryTicks) throws SQLException {
+        return new ListenerFlowController(serviceName, registry, dataSource.unwrap(HikariDataSource.class),
+                excludedListeners,
+                new AdaptiveConcurrencyLimit.Settings(maxConcurrency, pendingThreshold, latencyThresholdMs, recoveryTicks),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,120 @@
+package dnc.cuong.common.concurrency;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Flow control cho listener theo độ bão hoà DB pool (kafka.listener.flow-control.enabled=true)
+ * — order / inventory / payment @Import ListenerFlowControlConfig.
+ *
+ * Mỗi interval-ms: đọc Hikari (active, pending) + latency handler → AdaptiveConcurrencyLimit → trong mỗi container, consumer con thứ i < limit chạy, còn lại pause.
+ *
+ * Latency handler: timer listener.handler.latency cho listener giao record sang thread khác
+ * (key-ordered, async charge) hoặc nhận cả poll (batch) — observation spring.kafka.listener của
+ * chúng chỉ đo lúc dispatch / không có; listener record thường vẫn lấy từ observation.
+ *
+ * WHY pause consumer con thay vì đổi concurrency?
+ * → Đổi concurrency phải stop/start container → rebalance — đúng thứ đang muốn tránh.
+ *   Consumer bị pause vẫn heartbeat + giữ partition, resume là nhận record ngay.
+ * → Giá: partition của consumer bị pause đứng lại (lag tăng) tới khi limit tăng — giữ DB sống
+ *   quan trọng hơn công bằng giữa các partition trong lúc quá tải.
+ *
+ * WHY chỉ resume consumer do chính controller pause?
+ * → Pause / resume cũng là công cụ vận hành (actuator, DLT replay...). Resume mọi consumer
+ *   đang pause = mở lại thứ operator vừa cố ý dừng. Controller nhớ consumer nó đã pause;
+ *   container bị pause cả cụm từ bên ngoài → bỏ qua, resume là việc của bên đã pause.
+ *
+ * excluded-listeners: listener id không đi qua DB pool chính hoặc không được phép đứng
+ * (vd. order-projection, order-cache-broadcast) — controller không bao giờ chạm tới.
+ *
+ * Chỉ chạy trên thread của scheduler (fixedDelay) → state không cần đồng bộ.
+ */
+@Slf4j
+public class ListenerFlowController {
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final HikariDataSource dataSource;
+    private final Set<String> excludedListeners;
+    private final AdaptiveConcurrencyLimit limit;
+    private final AdaptiveConcurrencyLimit.LatencyWindow latency;
+
+    /** Consumer con đang pause vì controller — theo identity: container restart tạo consumer con mới. */
+    private Set<MessageListenerContainer> pausedByController = newIdentitySet();
+
+    /**
+     * @param serviceName tên service — tag metric
+     */
+    public ListenerFlowController(String serviceName,
+                                  KafkaListenerEndpointRegistry registry,
+                                  HikariDataSource dataSource,
+                                  Set<String> excludedListeners,
+                                  AdaptiveConcurrencyLimit.Settings settings,
+                                  MeterRegistry meterRegistry) {
+        this.registry = registry;
+        this.dataSource = dataSource;
+        this.excludedListeners = Set.copyOf(excludedListeners);
+        this.limit = new AdaptiveConcurrencyLimit(serviceName, settings, meterRegistry);
+        this.latency = new AdaptiveConcurrencyLimit.LatencyWindow(meterRegistry,
+                "spring.kafka.listener", ListenerThreads.HANDLER_TIMER);
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.listener.flow-control.interval-ms:1000}")
+    public void tick() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return;   // pool chưa khởi tạo
+        }
+        int before = limit.limit();
+        int after = limit.update(new AdaptiveConcurrencyLimit.Signals(
+                pool.getActiveConnections(), dataSource.getMaximumPoolSize(),
+                pool.getThreadsAwaitingConnection(), latency.sample()));
+        if (after != before) {
+            log.warn("Listener flow control | action={} | limit={} -> {} | active={} | pending={}",
+                    limit.lastAction(), before, after, pool.getActiveConnections(), pool.getThreadsAwaitingConnection());
+        }
+        apply(after);
+    }
+
+    void apply(int allowed) {
+        Set<MessageListenerContainer> stillPaused = newIdentitySet();
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            // Container autoStartup=false (mode khác đang bật), bị loại trừ, hoặc bị pause cả cụm từ bên ngoài
+            if (!container.isRunning() || excludedListeners.contains(container.getListenerId())
+                    || container.isPauseRequested()
+                    || !(container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent)) {
+                continue;
+            }
+            List<? extends MessageListenerContainer> consumers = concurrent.getContainers();
+            for (int i = 0; i < consumers.size(); i++) {
+                MessageListenerContainer consumer = consumers.get(i);
+                boolean ours = pausedByController.contains(consumer);
+                if (i < allowed) {
+                    if (ours) {
+                        consumer.resume();
+                    }
+                } else if (ours) {
+                    stillPaused.add(consumer);
+                } else if (!consumer.isPauseRequested()) {
+                    consumer.pause();
+                    stillPaused.add(consumer);
+                }
+            }
+        }
+        pausedByController = stillPaused;
+    }
+
+    private static Set<MessageListenerContainer> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
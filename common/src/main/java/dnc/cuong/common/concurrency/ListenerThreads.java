@@ -0,0 +1,178 @@
+package dnc.cuong.common.concurrency;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chế độ thread cho Kafka listener: PLATFORM (hành vi cũ) hoặc VIRTUAL.
+ *
+ * VIRTUAL:
+ * - Consumer thread của container là virtual thread (service config gắn executor).
+ * - newRecordExecutor() → 1 virtual thread / task cho xử lý record song song theo key.
+ * - DB permit: Semaphore = hikari.maximum-pool-size, giữ trong suốt 1 record/batch.
+ *
+ * WHY cần permit khi đã có Hikari pool?
+ * → Virtual thread rẻ → số thread chạm DB không còn bị giới hạn bởi số consumer thread.
+ *   Không có permit, chúng xếp hàng TRONG Hikari getConnection(): connection-timeout (30s)
+ *   tính cho mỗi thread đợi → overload thành SQLTransientConnectionException → retry/DLT.
+ * → Semaphore chặn trước khi mở transaction: thread đợi permit không giữ connection,
+ *   không đốt connection-timeout, và thời gian đợi có metric riêng (listener.db.permit.wait).
+ *
+ * WHY permit theo thread (ThreadLocal) thay vì acquire/release trần?
+ * → Hook của Spring Kafka (intercept / afterRecord / clearThreadState) không đảm bảo đi
+ *   thành cặp trên mọi nhánh (record bị skip, consumer stop) → release 2 lần = tăng permit ảo.
+ *   acquire/release idempotent theo thread → gọi thừa vô hại.
+ *
+ * WHY timer listener.handler.latency riêng?
+ * → Timer observation spring.kafka.listener chỉ đo tới lúc listener return: listener key-ordered /
+ *   async return ngay sau khi giao record cho lane (~0ms), batch listener không có observation.
+ *   Handler thật ghi vào timer này (tag spring.kafka.listener.id) → ListenerFlowController dùng nó
+ *   thay cho observation của cùng listener.
+ *
+ * PLATFORM → permit là no-op: 3 listener × concurrency 3 = 9 thread < pool 10, giống trước.
+ * Class không phụ thuộc Spring — glue (RecordInterceptor, task executor) nằm ở KafkaConsumerConfig.
+ */
+public class ListenerThreads {
+
+    public static final String HANDLER_TIMER = "listener.handler.latency";
+    /** Cùng tag key với timer observation spring.kafka.listener — để khớp 2 timer của 1 listener. */
+    public static final String LISTENER_ID_TAG = "spring.kafka.listener.id";
+
+    public enum Mode {
+        PLATFORM, VIRTUAL;
+
+        public static Mode parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final String name;
+    private final Mode mode;
+    private final Semaphore dbPermits;
+    private final ThreadLocal<Boolean> holdingPermit = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private final Timer permitWaitTimer;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> handlerTimers = new ConcurrentHashMap<>();
+
+    /**
+     * @param name      tên service — tag metric, prefix tên thread
+     * @param dbPermits số record/batch được chạm DB đồng thời; <= 0 → không giới hạn (service không có DB)
+     */
+    public ListenerThreads(String name, Mode mode, int dbPermits, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.mode = mode;
+        this.dbPermits = mode == Mode.VIRTUAL && dbPermits > 0 ? new Semaphore(dbPermits, true) : null;
+        this.meterRegistry = meterRegistry;
+
+        this.permitWaitTimer = Timer.builder("listener.db.permit.wait")
+                .description("Thời gian record đợi DB permit trước khi chạy handler")
+                .tag("service", name)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        if (this.dbPermits != null) {
+            Gauge.builder("listener.db.permits.available", this.dbPermits, Semaphore::availablePermits)
+                    .tag("service", name).register(meterRegistry);
+        }
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public boolean isVirtual() {
+        return mode == Mode.VIRTUAL;
+    }
+
+    /** Executor cho xử lý record theo key: virtual thread/task, hoặc pool platform cố định. */
+    public ExecutorService newRecordExecutor(int platformThreads) {
+        return isVirtual()
+                ? Executors.newThreadPerTaskExecutor(threadFactory(name + "-record-"))
+                : Executors.newFixedThreadPool(platformThreads, threadFactory(name + "-record-"));
+    }
+
+    public ThreadFactory threadFactory(String prefix) {
+        return isVirtual()
+                ? Thread.ofVirtual().name(prefix, 0).factory()
+                : Thread.ofPlatform().name(prefix, 0).daemon(true).factory();
+    }
+
+    /** Đợi DB permit cho thread hiện tại. Đã giữ permit → no-op. */
+    public void acquireDbPermit() {
+        if (dbPermits == null || holdingPermit.get()) {
+            return;
+        }
+        long start = System.nanoTime();
+        dbPermits.acquireUninterruptibly();
+        holdingPermit.set(Boolean.TRUE);
+        permitWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /** Trả permit nếu thread hiện tại đang giữ. */
+    public void releaseDbPermit() {
+        if (dbPermits == null || !holdingPermit.get()) {
+            return;
+        }
+        holdingPermit.remove();
+        dbPermits.release();
+    }
+
+    /** Chạy task trong 1 permit — cho worker của newRecordExecutor(). */
+    public void runWithDbPermit(Runnable task) {
+        if (dbPermits == null || holdingPermit.get()) {
+            task.run();
+            return;
+        }
+        acquireDbPermit();
+        try {
+            task.run();
+        } finally {
+            releaseDbPermit();
+        }
+    }
+
+    /**
+     * Chạy handler của listener trong 1 permit, ghi latency handler (không tính thời gian đợi permit)
+     * — cho listener giao record sang thread khác (key-ordered lane, async charge).
+     */
+    public void runHandler(String listenerId, Runnable handler) {
+        Timer timer = handlerTimer(listenerId);
+        runWithDbPermit(() -> timer.record(handler));
+    }
+
+    /**
+     * Batch listener: thời gian cả batch chia đều cho từng record — cùng đơn vị (ms / record)
+     * với listener record để flow control cộng chung được.
+     */
+    public void recordBatch(String listenerId, long elapsedNanos, int records) {
+        if (records <= 0) {
+            return;
+        }
+        Timer timer = handlerTimer(listenerId);
+        long perRecord = elapsedNanos / records;
+        for (int i = 0; i < records; i++) {
+            timer.record(perRecord, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer handlerTimer(String listenerId) {
+        return handlerTimers.computeIfAbsent(listenerId, id -> Timer.builder(HANDLER_TIMER)
+                .description("Thời gian handler thật của listener xử lý 1 record")
+                .tag("service", name)
+                .tag(LISTENER_ID_TAG, id)
+                .register(meterRegistry));
+    }
+
+    public int availableDbPermits() {
+        return dbPermits == null ? Integer.MAX_VALUE : dbPermits.availablePermits();
+    }
+}
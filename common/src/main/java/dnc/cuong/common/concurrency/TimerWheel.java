@@ -0,0 +1,99 @@
+package dnc.cuong.common.concurrency;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel — tập key có deadline, lấy ra các key đã tới hạn theo từng tick.
+ *
+ * WHY wheel thay vì PriorityQueue / quét DB theo expires_at?
+ * → schedule / cancel O(1) (hash vào bucket theo tick) — cancel là đường chính: phần lớn key
+ *   bị huỷ trước hạn (order thanh toán xong), PriorityQueue.remove là O(n).
+ * → advance chỉ đụng các bucket của tick vừa trôi qua, không đụng key còn xa hạn.
+ * → Deadline xa hơn 1 vòng (tick × wheelSize) vẫn đúng: key nằm trong bucket, bị bỏ qua
+ *   tới vòng có deadline (so deadline tick, không chỉ index bucket).
+ *
+ * Độ chính xác = 1 tick: key hết hạn trong khoảng (deadline, deadline + tick].
+ * Thread-safe (synchronized) — schedule từ listener thread, advance từ scheduler.
+ */
+public class TimerWheel<K> {
+
+    private final long tickMillis;
+    private final List<Set<K>> buckets;
+    /** key → deadline tick — cancel tìm đúng bucket, advance phân biệt vòng hiện tại / vòng sau. */
+    private final Map<K, Long> deadlines = new HashMap<>();
+    private long currentTick;
+
+    public TimerWheel(long tickMillis, int wheelSize, long nowMillis) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be >= 1: " + tickMillis + ", " + wheelSize);
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new HashSet<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Đặt (hoặc dời) deadline của key. Deadline đã qua → tới hạn ở lần advance kế tiếp.
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        long tick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        Long previous = deadlines.put(key, tick);
+        if (previous != null) {
+            bucket(previous).remove(key);
+        }
+        bucket(tick).add(key);
+    }
+
+    /** @return true nếu key đang chờ và đã bị huỷ */
+    public synchronized boolean cancel(K key) {
+        Long tick = deadlines.remove(key);
+        if (tick == null) {
+            return false;
+        }
+        bucket(tick).remove(key);
+        return true;
+    }
+
+    /**
+     * Tiến wheel tới nowMillis, trả về (và gỡ khỏi wheel) mọi key có deadline <= now.
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<K> due = new ArrayList<>();
+        if (targetTick <= currentTick) {
+            return due;
+        }
+        // Trôi quá 1 vòng (scheduler bị trễ) → mỗi bucket chỉ cần xét 1 lần
+        long ticks = Math.min(targetTick - currentTick, buckets.size());
+        for (long t = targetTick - ticks + 1; t <= targetTick; t++) {
+            Iterator<K> it = bucket(t).iterator();
+            while (it.hasNext()) {
+                K key = it.next();
+                if (deadlines.get(key) <= targetTick) {
+                    it.remove();
+                    deadlines.remove(key);
+                    due.add(key);
+                }
+            }
+        }
+        currentTick = targetTick;
+        return due;
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    private Set<K> bucket(long tick) {
+        return buckets.get((int) Math.floorMod(tick, (long) buckets.size()));
+    }
+}
@@ -18,6 +18,8 @@ public final class KafkaTopics {
     public static final String ORDER_COMPLETED = "order.completed";
     public static final String ORDER_FAILED = "order.failed";
     public static final String PAYMENT_FAILED = "payment.failed";
+    // Status terminal order-service publish sau commit của chính nó — OrderCacheBroadcastConsumer
+    public static final String ORDER_STATUS = "order.status";
 
     // Dead Letter Topic suffix — Spring Kafka convention
     public static final String DLT_SUFFIX = ".DLT";
@@ -29,4 +31,24 @@ public final class KafkaTopics {
     public static String dlt(String sourceTopic) {
         return sourceTopic + DLT_SUFFIX;
     }
+
+    // Retry tier suffix — "order.placed.retry-10s" (xem RetryTiers)
+    public static final String RETRY_SUFFIX = ".retry-";
+
+    /**
+     * Generate retry tier topic name from source topic.
+     * e.g. ("order.placed", "10s") → "order.placed.retry-10s"
+     */
+    public static String retry(String sourceTopic, String tier) {
+        return sourceTopic + RETRY_SUFFIX + tier;
+    }
+
+    /**
+     * Source topic của 1 retry tier topic; topic thường trả về nguyên.
+     * e.g. "order.placed.retry-10s" → "order.placed"
+     */
+    public static String sourceOf(String topic) {
+        int i = topic.lastIndexOf(RETRY_SUFFIX);
+        return i < 0 ? topic : topic.substring(0, i);
+    }
 }
@@ -13,5 +13,10 @@ public enum OrderStatus {
     PAID,
     COMPLETED,
     FAILED,
-    PAYMENT_FAILED
+    PAYMENT_FAILED;
+
+    /** Saga đã kết thúc — status không đổi nữa. */
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED || this == PAYMENT_FAILED;
+    }
 }
@@ -0,0 +1,74 @@
+package dnc.cuong.common.idempotency;
+
+import dnc.cuong.common.tx.AfterCommit;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * IdempotencyGuard (LRU + claim processed_events) và ProcessedEventPurger dùng chung —
+ * order / inventory / payment @Import class này.
+ * Tên service (tag metric) lấy từ spring.application.name.
+ *
+ * WHY warm-up ngay trong @Bean method?
+ * → Bean được tạo trước khi listener container start → message đầu tiên đã thấy
+ *   eventId xử lý gần đây (sau restart, redelivery chủ yếu là các event này) mà không hỏi DB.
+ *
+ * WHY @AutoConfigurationPackage?
+ * → Giống OutboxConfig: ProcessedEvent / ProcessedEventRepository nằm ở common, đăng ký thêm
+ *   package vào entity + repository scan mặc định của Spring Boot.
+ */
+@Configuration(proxyBeanMethods = false)
+@AutoConfigurationPackage
+@Slf4j
+public class IdempotencyConfig {
+
+    @Bean
+    public IdempotencyGuard idempotencyGuard(
+            ProcessedEventRepository processedEventRepository,
+            MeterRegistry meterRegistry,
+            @Value("${spring.application.name}") String serviceName,
+            @Value("${idempotency.guard.enabled:true}") boolean enabled,
+            @Value("${idempotency.guard.recent-capacity:100000}") int recentCapacity,
+            @Value("${idempotency.guard.warm-up-hours:24}") long warmUpHours) {
+
+        IdempotencyGuard guard = new IdempotencyGuard(
+                serviceName,
+                new IdempotencyGuard.Settings(enabled, recentCapacity),
+                processedEventRepository::existsById,
+                (eventId, topic) -> processedEventRepository.claim(eventId, topic) == 1,
+                processedEventRepository::claimAll,
+                AfterCommit::run,   // LRU chỉ được chứa eventId đã commit
+                meterRegistry);
+
+        if (enabled) {
+            List<UUID> recent = processedEventRepository.findEventIdsProcessedSince(
+                    Instant.now().minus(warmUpHours, ChronoUnit.HOURS));
+            guard.warmUp(recent);
+            log.info("IdempotencyGuard warmed up | eventIds={} | windowHours={}", recent.size(), warmUpHours);
+        }
+        return guard;
+    }
+
+    @Bean
+    public ProcessedEventPurger processedEventPurger(
+            ProcessedEventRepository processedEventRepository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${spring.application.name}") String serviceName,
+            @Value("${idempotency.retention-hours:168}") long retentionHours,
+            @Value("${idempotency.cleanup-chunk-size:5000}") int chunkSize) {
+        return new ProcessedEventPurger(serviceName, processedEventRepository, transactionTemplate,
+                Duration.ofHours(retentionHours), chunkSize, meterRegistry);
+    }
+}
@@ -0,0 +1,191 @@
+package dnc.cuong.common.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Idempotency theo eventId — thay existsById() + save(ProcessedEvent) trên mỗi message.
+ *
+ * Thứ tự check:
+ * 1. LRU eventId vừa commit → hit → duplicate, không hỏi DB
+ * 2. Còn lại → claim: INSERT processed_events ... ON CONFLICT DO NOTHING, TRƯỚC side effect
+ *    → 1 row = event mới (handler chạy tiếp), 0 row = đã xử lý (ở instance này hoặc instance khác)
+ *
+ * WHY claim thay vì Bloom filter + existsById?
+ * → Bloom/LRU nằm trong memory của 1 instance. Sau rebalance, partition có thể chứa event
+ *   mà instance khác đã xử lý → Bloom miss nói "mới" mà không hỏi DB → xử lý 2 lần.
+ *   Chỉ kết quả chắc chắn (LRU hit = eventId đã commit) được phép bỏ qua DB.
+ * → Claim gộp check + ghi processed_events thành 1 statement: vẫn ít round-trip hơn existsById
+ *   + INSERT cũ, và không có khe hở giữa check và ghi.
+ * → Claim nằm trong transaction của handler: rollback → row claim biến mất → redeliver xử lý lại.
+ *   2 instance cùng claim 1 eventId → INSERT sau đợi row lock, transaction trước commit → 0 row.
+ *
+ * WHY LRU chỉ được thêm sau commit?
+ * → LRU hit = skip → chỉ được chứa eventId đã commit. afterCommit hook do service cung cấp
+ *   (class không phụ thuộc Spring).
+ *
+ * enabled=false → không dùng LRU: mọi check đi thẳng store.
+ */
+public class IdempotencyGuard {
+
+    public record Settings(boolean enabled, int recentCapacity) {
+
+        public static Settings defaults() {
+            return new Settings(true, 100_000);
+        }
+
+        public static Settings passThrough() {
+            return new Settings(false, 1);
+        }
+    }
+
+    private final boolean enabled;
+    private final RecentIdCache recentIds;
+    private final Predicate<UUID> store;
+    private final BiPredicate<UUID, String> claimStore;
+    private final BiFunction<Collection<UUID>, String, ? extends Collection<UUID>> bulkClaimStore;
+    private final Consumer<Runnable> afterCommit;
+
+    private final Counter recentHitCounter;
+    private final Counter storeHitCounter;
+    private final Counter storeMissCounter;
+    private final Counter claimedCounter;
+
+    /**
+     * @param name           tên service — tag metric
+     * @param store          check 1 eventId trong processed_events (existsById) — chỉ cho isDuplicate()
+     * @param claimStore     INSERT ... ON CONFLICT DO NOTHING 1 eventId → true nếu đã INSERT
+     * @param bulkClaimStore như claimStore cho nhiều eventId → trả về các eventId đã INSERT
+     * @param afterCommit    chạy Runnable sau khi transaction hiện tại commit (hoặc ngay nếu không có)
+     */
+    public IdempotencyGuard(String name, Settings settings,
+                            Predicate<UUID> store,
+                            BiPredicate<UUID, String> claimStore,
+                            BiFunction<Collection<UUID>, String, ? extends Collection<UUID>> bulkClaimStore,
+                            Consumer<Runnable> afterCommit,
+                            MeterRegistry meterRegistry) {
+        this.enabled = settings.enabled();
+        this.recentIds = new RecentIdCache(settings.recentCapacity());
+        this.store = store;
+        this.claimStore = claimStore;
+        this.bulkClaimStore = bulkClaimStore;
+        this.afterCommit = afterCommit;
+
+        this.recentHitCounter = lookupCounter(meterRegistry, name, "recent_hit");
+        this.storeHitCounter = lookupCounter(meterRegistry, name, "store_hit");
+        this.storeMissCounter = lookupCounter(meterRegistry, name, "store_miss");
+        this.claimedCounter = lookupCounter(meterRegistry, name, "claimed");
+
+        Gauge.builder("idempotency.recent.size", recentIds, RecentIdCache::size)
+                .tag("service", name).register(meterRegistry);
+    }
+
+    /**
+     * Giành quyền xử lý eventId — gọi TRONG transaction của handler, TRƯỚC side effect.
+     *
+     * @return true → event mới, handler chạy tiếp; false → duplicate, bỏ qua
+     */
+    public boolean claim(UUID eventId, String topic) {
+        if (isRecent(eventId)) {
+            return false;
+        }
+        if (!claimStore.test(eventId, topic)) {
+            storeHitCounter.increment();
+            return false;
+        }
+        claimedCounter.increment();
+        rememberAfterCommit(List.of(eventId));
+        return true;
+    }
+
+    /**
+     * Batch version — eventId không nằm trong LRU được claim bằng 1 statement.
+     * eventId lặp lại trong cùng batch chỉ được claim 1 lần.
+     *
+     * @return các eventId được claim (event mới), theo thứ tự đầu vào
+     */
+    public Set<UUID> claim(Collection<UUID> eventIds, String topic) {
+        List<UUID> candidates = new ArrayList<>(eventIds.size());
+        for (UUID eventId : new LinkedHashSet<>(eventIds)) {
+            if (!isRecent(eventId)) {
+                candidates.add(eventId);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        Set<UUID> inserted = new HashSet<>(bulkClaimStore.apply(candidates, topic));
+        Set<UUID> claimed = new LinkedHashSet<>(inserted.size());
+        for (UUID eventId : candidates) {
+            if (inserted.contains(eventId)) {
+                claimedCounter.increment();
+                claimed.add(eventId);
+            } else {
+                storeHitCounter.increment();
+            }
+        }
+        rememberAfterCommit(List.copyOf(claimed));
+        return claimed;
+    }
+
+    /**
+     * Check chỉ đọc — cho chỗ cần biết trước khi vào transaction (vd. trước khi gọi gateway).
+     * Không thay claim(): giữa check và ghi, instance khác vẫn có thể xử lý cùng eventId.
+     */
+    public boolean isDuplicate(UUID eventId) {
+        if (isRecent(eventId)) {
+            return true;
+        }
+        if (store.test(eventId)) {
+            storeHitCounter.increment();
+            return true;
+        }
+        storeMissCounter.increment();
+        return false;
+    }
+
+    /**
+     * Nạp eventId đã commit (processed_events gần đây) lúc startup.
+     */
+    public void warmUp(Collection<UUID> processedEventIds) {
+        if (!enabled) {
+            return;
+        }
+        processedEventIds.forEach(recentIds::add);
+    }
+
+    private boolean isRecent(UUID eventId) {
+        if (enabled && recentIds.contains(eventId)) {
+            recentHitCounter.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void rememberAfterCommit(List<UUID> eventIds) {
+        if (enabled && !eventIds.isEmpty()) {
+            afterCommit.accept(() -> eventIds.forEach(recentIds::add));
+        }
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder("idempotency.lookups.total")
+                .description("Idempotency checks by resolution tier")
+                .tag("service", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,49 @@
+package dnc.cuong.common.idempotency;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Bảng deduplication — lưu eventId đã xử lý để tránh process duplicate message.
+ *
+ * WHY dùng eventId làm PK?
+ * → Mỗi OrderEvent có eventId unique (UUID.randomUUID trong factory method).
+ * → Cùng orderId xuất hiện trong nhiều event (placed, validated, paid, completed).
+ * → eventId identify chính xác 1 message delivery — dùng để detect duplicate.
+ *
+ * WHY ghi trong cùng DB transaction với business logic?
+ * → Row được INSERT lúc claim (ProcessedEventRepository.claim), trước side effect:
+ *   business logic rollback → claim cũng rollback → retry xử lý lại.
+ * → PK là lưới an toàn cuối: 2 instance cùng claim 1 eventId thì chỉ 1 INSERT thành công.
+ *
+ * Index processed_at: warm-up (processed_at >= since) và ProcessedEventPurger (processed_at < cutoff).
+ *
+ * Entity chỉ dùng để đọc (warm-up, existsById) và sinh schema (ddl-auto) — ghi qua native INSERT.
+ */
+@Entity
+@Table(name = "processed_events",
+        indexes = @Index(name = "idx_processed_events_processed_at", columnList = "processed_at"))
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessedEvent {
+
+    @Id
+    @Column(nullable = false, updatable = false)
+    private UUID eventId;
+
+    @Column(nullable = false)
+    private String topic;
+
+    @Column(nullable = false, updatable = false)
+    private Instant processedAt;
+}
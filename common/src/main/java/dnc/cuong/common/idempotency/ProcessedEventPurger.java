@@ -0,0 +1,65 @@
+package dnc.cuong.common.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Dọn processed_events quá retention — bảng dedup không phình mãi.
+ *
+ * WHY retention = Kafka log retention (idempotency.retention-hours, mặc định 168h)?
+ * → eventId chỉ cần nhớ chừng nào record còn có thể được giao lại. Record cũ hơn log retention
+ *   đã bị broker xoá → không redeliver được → row dedup của nó không còn chặn được gì.
+ * → Đổi log.retention.hours / retention.ms của topic thì đổi theo (giữ >= retention của broker).
+ *
+ * WHY xoá theo chunk, mỗi chunk 1 transaction?
+ * → Lần purge đầu trên DB cũ có thể là hàng triệu row: 1 DELETE lớn giữ lock + WAL lâu, chặn
+ *   claim của consumer. Chunk nhỏ (DELETE ... LIMIT qua sub-select) commit dần, lặp tới khi hết.
+ */
+@Slf4j
+public class ProcessedEventPurger {
+
+    private final ProcessedEventRepository processedEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final int chunkSize;
+    private final Counter purgedCounter;
+
+    public ProcessedEventPurger(String serviceName,
+                                ProcessedEventRepository processedEventRepository,
+                                TransactionTemplate transactionTemplate,
+                                Duration retention,
+                                int chunkSize,
+                                MeterRegistry meterRegistry) {
+        this.processedEventRepository = processedEventRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.retention = retention;
+        this.chunkSize = chunkSize;
+        this.purgedCounter = Counter.builder("idempotency.processed_events.purged.total")
+                .description("processed_events rows removed after Kafka retention")
+                .tag("service", serviceName)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:3600000}")
+    public void purge() {
+        Instant cutoff = Instant.now().minus(retention);
+        long total = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status ->
+                    processedEventRepository.deleteProcessedBefore(cutoff, chunkSize));
+            purgedCounter.increment(deleted);
+            total += deleted;
+        } while (deleted >= chunkSize);
+
+        if (total > 0) {
+            log.info("Processed events purged | deleted={} | cutoff={}", total, cutoff);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package dnc.cuong.common.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, UUID> {
+
+    /**
+     * eventId xử lý gần đây — warm-up IdempotencyGuard lúc startup.
+     */
+    @Query("SELECT p.eventId FROM ProcessedEvent p WHERE p.processedAt >= :since")
+    List<UUID> findEventIdsProcessedSince(@Param("since") Instant since);
+
+    /**
+     * Claim 1 eventId — 1 = event mới, 0 = đã có (xử lý rồi hoặc instance khác đang xử lý và đã commit).
+     *
+     * WHY MANDATORY?
+     * → Claim ngoài transaction của handler sẽ auto-commit ngay: handler lỗi sau đó thì event
+     *   đã bị đánh dấu xử lý mà side effect chưa có.
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = """
+            INSERT INTO processed_events (event_id, topic, processed_at)
+            VALUES (:eventId, :topic, CURRENT_TIMESTAMP)
+            ON CONFLICT (event_id) DO NOTHING
+            """, nativeQuery = true)
+    int claim(@Param("eventId") UUID eventId, @Param("topic") String topic);
+
+    /**
+     * Claim nhiều eventId trong 1 statement — trả về các eventId vừa INSERT (event mới).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = """
+            INSERT INTO processed_events (event_id, topic, processed_at)
+            SELECT id, :topic, CURRENT_TIMESTAMP FROM unnest(ARRAY[:eventIds]) AS id
+            ON CONFLICT (event_id) DO NOTHING
+            RETURNING event_id
+            """, nativeQuery = true)
+    List<UUID> claimAll(@Param("eventIds") Collection<UUID> eventIds, @Param("topic") String topic);
+
+    /**
+     * Xoá tối đa limit row xử lý trước cutoff — ProcessedEventPurger gọi lặp tới khi hết.
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = """
+            DELETE FROM processed_events WHERE event_id IN (
+                SELECT event_id FROM processed_events WHERE processed_at < :cutoff LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteProcessedBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+}
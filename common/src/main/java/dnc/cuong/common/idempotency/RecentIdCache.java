@@ -0,0 +1,41 @@
+package dnc.cuong.common.idempotency;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * LRU bounded các id vừa xử lý (đã commit) — eventId trong IdempotencyGuard, orderId ở payment-service.
+ *
+ * WHY LRU?
+ * → Duplicate thực tế tập trung ở event rất gần: redelivery sau rebalance, retry của producer.
+ * → LRU trả lời "chắc chắn đã xử lý" không cần DB — kết quả duy nhất được phép bỏ qua DB.
+ *
+ * WHY chỉ chứa eventId ĐÃ COMMIT?
+ * → LRU hit = skip message. Nếu chứa id của transaction rollback → mất message.
+ */
+public final class RecentIdCache {
+
+    private final Map<UUID, Boolean> entries;
+
+    public RecentIdCache(int capacity) {
+        this.entries = new LinkedHashMap<>(Math.max(16, capacity * 4 / 3 + 1), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized boolean contains(UUID id) {
+        return entries.get(id) != null;
+    }
+
+    public synchronized void add(UUID id) {
+        entries.put(id, Boolean.TRUE);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,45 @@
+package dnc.cuong.common.outbox;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Outbox dùng chung cho order / inventory / payment — service @Import class này.
+ *
+ * WHY @AutoConfigurationPackage?
+ * → Entity scan + JPA repository scan của Spring Boot chỉ quét package của @SpringBootApplication
+ *   (dnc.cuong.order...). Đăng ký thêm dnc.cuong.common.outbox vào auto-configuration packages
+ *   → OutboxEvent / OutboxEventRepository được nhận mà service không phải khai báo
+ *   @EntityScan / @EnableJpaRepositories (2 annotation đó tắt scan mặc định của service).
+ */
+@Configuration(proxyBeanMethods = false)
+@AutoConfigurationPackage
+public class OutboxConfig {
+
+    @Bean
+    public OutboxWriter outboxWriter(OutboxEventRepository outboxEventRepository,
+                                     @Value("${outbox.enabled:false}") boolean enabled) {
+        return new OutboxWriter(outboxEventRepository, enabled);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "outbox.enabled", havingValue = "true")
+    public OutboxRelay outboxRelay(OutboxEventRepository outboxEventRepository,
+                                   KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${outbox.relay.chunk-size:500}") int chunkSize,
+                                   @Value("${outbox.relay.max-in-flight:200}") int maxInFlight,
+                                   @Value("${outbox.relay.send-timeout-ms:30000}") long sendTimeoutMs,
+                                   @Value("${outbox.retention-hours:24}") long retentionHours) {
+        return new OutboxRelay(outboxEventRepository, kafkaTemplate, transactionTemplate, meterRegistry,
+                chunkSize, maxInFlight, sendTimeoutMs, retentionHours);
+    }
+}
@@ -0,0 +1,61 @@
+package dnc.cuong.common.outbox;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Transactional outbox — event chờ publish lên Kafka, ghi CÙNG transaction với business data.
+ * Mỗi service có bảng outbox_events riêng trong DB của mình (order / inventory / payment).
+ *
+ * WHY outbox?
+ * → kafkaTemplate.send() trong @Transactional = dual-write: DB commit nhưng send fail
+ *   (hoặc send xong nhưng DB rollback) → Saga mất event / phát event "ma".
+ * → Ghi event vào bảng outbox cùng transaction → commit cả 2 hoặc không gì cả.
+ * → OutboxRelay đọc bảng này và publish sau commit (at-least-once, consumer đã idempotent).
+ *
+ * WHY payload là Avro binary (single-object encoding) thay vì JSON?
+ * → Relay decode thẳng ra OrderEventAvro → send, không qua mapper lần 2.
+ * → Nhỏ hơn JSON, schema fingerprint nằm trong header của payload.
+ *
+ * WHY id là sequence (allocationSize 50) thay vì UUID?
+ * → Sequence pooled cho phép Hibernate gom INSERT thành JDBC batch (IDENTITY thì không).
+ * → id KHÔNG phản ánh thứ tự tạo giữa các instance (mỗi instance giữ 1 block 50 id riêng) —
+ *   thứ tự theo key chỉ được giữ trong 1 chunk của relay (xem OutboxRelay).
+ */
+@Entity
+@Table(name = "outbox_events",
+        indexes = @Index(name = "idx_outbox_events_unpublished", columnList = "published_at, id"))
+@Getter
+@NoArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String topic;
+
+    @Column(nullable = false)
+    private String messageKey;
+
+    @Column(nullable = false)
+    private byte[] payload;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    /** null = chưa publish */
+    private Instant publishedAt;
+
+    public OutboxEvent(String topic, String messageKey, byte[] payload) {
+        this.topic = topic;
+        this.messageKey = messageKey;
+        this.payload = payload;
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,39 @@
+package dnc.cuong.common.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Lock chunk event chưa publish tiếp theo.
+     *
+     * WHY FOR UPDATE SKIP LOCKED?
+     * → Nhiều instance relay chạy song song: mỗi instance lấy 1 chunk khác nhau,
+     *   không chờ lock của nhau, không publish trùng.
+     */
+    @Query(value = """
+            SELECT * FROM outbox_events
+             WHERE published_at IS NULL
+             ORDER BY id
+             LIMIT :limit
+               FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxEvent> lockNextChunk(@Param("limit") int limit);
+
+    /**
+     * Đánh dấu published cho cả chunk — 1 UPDATE thay vì N.
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.publishedAt = :publishedAt WHERE e.id IN :ids")
+    int markPublished(@Param("ids") List<Long> ids, @Param("publishedAt") Instant publishedAt);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.publishedAt < :cutoff")
+    int deletePublishedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,253 @@
+package dnc.cuong.common.outbox;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Outbox relay — drain bảng outbox_events lên Kafka theo chunk lớn (outbox.enabled=true).
+ *
+ * Mỗi chunk (1 transaction):
+ * 1. SELECT ... FOR UPDATE SKIP LOCKED tối đa chunk-size rows
+ * 2. Gửi theo lượt: lượt k gửi event thứ k của mỗi key — pipeline qua KafkaTemplate,
+ *    tối đa max-in-flight futures chưa ack, flush() rồi chờ ack trước lượt sau
+ * 3. 1 UPDATE published_at cho các row đã ack
+ *
+ * WHY pipeline thay vì send().get() từng event?
+ * → send().get() = 1 round-trip broker / event, linger.ms (20ms) bị trả cho MỖI event.
+ * → Pipeline: producer gom các event vào batch.size (32KB) → vài request cho cả lượt.
+ * → max-in-flight chặn trên số record đang giữ trong buffer producer (memory bound).
+ *
+ * WHY chia lượt theo key?
+ * → Pipeline cả chunk thì event sau của cùng key có thể đã lên broker trong khi event trước
+ *   fail → consumer thấy sai thứ tự. Theo lượt: event k+1 của 1 key chỉ được gửi khi event k
+ *   đã ack; event k fail → các event sau của key đó không gửi, giữ nguyên chưa publish.
+ * → Chunk thường gồm nhiều key khác nhau, mỗi key 1-2 event → 1-2 lượt, gần như không mất throughput.
+ *
+ * Giới hạn: thứ tự chỉ được giữ trong 1 chunk của 1 relay. Nhiều instance (SKIP LOCKED chia row)
+ * và id cấp theo block / instance thì event cùng key có thể nằm ở chunk khác nhau hoặc id đảo
+ * thứ tự tạo — thực tế 2 event của 1 order cách nhau cả vòng Saga nên event trước đã publish từ lâu.
+ * Consumer không dựa vào thứ tự này: dedup eventId + kiểm tra trạng thái.
+ *
+ * WHY event lỗi không mark published?
+ * → Lần relay sau gửi lại → at-least-once. Consumer đã idempotent theo eventId nên duplicate vô hại.
+ *
+ * Tuning: so sánh outbox.relay.chunk.duration / outbox.relay.event.latency khi đổi chunk-size
+ * với linger.ms + batch.size của producer.
+ */
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, OrderEventAvro> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final long sendTimeoutMs;
+    private final long retentionHours;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final DistributionSummary chunkSizeSummary;
+    private final Timer chunkTimer;
+    private final Timer eventLatencyTimer;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       int chunkSize, int maxInFlight, long sendTimeoutMs, long retentionHours) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.retentionHours = retentionHours;
+
+        this.sentCounter = Counter.builder("outbox.relay.sent.total")
+                .description("Outbox events published and acked").register(meterRegistry);
+        this.failedCounter = Counter.builder("outbox.relay.failed.total")
+                .description("Outbox events that failed to publish (retried next round)").register(meterRegistry);
+        this.chunkSizeSummary = DistributionSummary.builder("outbox.relay.chunk.size")
+                .description("Rows locked per relay chunk").register(meterRegistry);
+        this.chunkTimer = Timer.builder("outbox.relay.chunk.duration")
+                .description("Lock + send + ack + mark duration per chunk")
+                .publishPercentileHistogram().register(meterRegistry);
+        this.eventLatencyTimer = Timer.builder("outbox.relay.event.latency")
+                .description("Outbox insert → broker ack latency per event")
+                .publishPercentileHistogram().register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:100}")
+    public void relay() {
+        // Chunk đầy → còn backlog → drain tiếp ngay, không chờ interval
+        Integer published;
+        do {
+            published = transactionTemplate.execute(status -> relayChunk());
+        } while (published != null && published == chunkSize);
+    }
+
+    /**
+     * @return số row đã publish — bằng chunk-size (không lỗi, còn backlog) thì relay() drain tiếp;
+     *         có lỗi thì đợi interval thay vì lock lại ngay đúng các row vừa fail
+     */
+    int relayChunk() {
+        List<OutboxEvent> chunk = outboxEventRepository.lockNextChunk(chunkSize);
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        // Chunk đã ORDER BY id → trong mỗi key, event theo thứ tự id
+        Map<String, Deque<OutboxEvent>> byKey = new LinkedHashMap<>();
+        for (OutboxEvent event : chunk) {
+            byKey.computeIfAbsent(event.getMessageKey(), k -> new ArrayDeque<>()).add(event);
+        }
+
+        List<Long> publishedIds = new ArrayList<>(chunk.size());
+        List<OutboxEvent> round = nextRound(byKey);
+        while (!round.isEmpty()) {
+            Set<Long> acked = sendRound(round);
+            for (OutboxEvent event : round) {
+                if (acked.contains(event.getId())) {
+                    publishedIds.add(event.getId());
+                } else {
+                    // Dừng key này trong chunk — event sau của nó chờ lần relay sau, sau event lỗi
+                    byKey.remove(event.getMessageKey());
+                }
+            }
+            round = nextRound(byKey);
+        }
+
+        if (!publishedIds.isEmpty()) {
+            outboxEventRepository.markPublished(publishedIds, Instant.now());
+        }
+
+        sentCounter.increment(publishedIds.size());
+        chunkSizeSummary.record(chunk.size());
+        chunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Outbox chunk relayed | locked={} | published={}", chunk.size(), publishedIds.size());
+
+        return publishedIds.size();
+    }
+
+    /** Event đầu của mỗi key còn lại; key hết event bị bỏ khỏi map. */
+    private static List<OutboxEvent> nextRound(Map<String, Deque<OutboxEvent>> byKey) {
+        List<OutboxEvent> round = new ArrayList<>(byKey.size());
+        byKey.values().removeIf(events -> {
+            round.add(events.poll());
+            return events.isEmpty();
+        });
+        return round;
+    }
+
+    /** Pipeline cả lượt, flush, chờ ack — trả về id đã ack trong sendTimeoutMs. */
+    private Set<Long> sendRound(List<OutboxEvent> round) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Set<Long> acked = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Void>> acks = new ArrayList<>(round.size());
+
+        for (OutboxEvent event : round) {
+            acquire(inFlight);
+            try {
+                acks.add(kafkaTemplate.send(event.getTopic(), event.getMessageKey(), decode(event))
+                        .handle((result, ex) -> {
+                            inFlight.release();
+                            if (ex != null) {
+                                failedCounter.increment();
+                                log.error("Outbox publish FAILED | id={} | topic={} | key={} | error={}",
+                                        event.getId(), event.getTopic(), event.getMessageKey(), ex.getMessage());
+                            } else {
+                                acked.add(event.getId());
+                                eventLatencyTimer.record(Duration.between(event.getCreatedAt(), Instant.now()));
+                            }
+                            return null;
+                        }));
+            } catch (RuntimeException e) {
+                inFlight.release();
+                failedCounter.increment();
+                log.error("Outbox publish FAILED | id={} | topic={} | error={}",
+                        event.getId(), event.getTopic(), e.getMessage(), e);
+            }
+        }
+
+        // Không chờ linger.ms cho batch cuối của lượt
+        kafkaTemplate.flush();
+        awaitAcks(acks);
+        // Copy: ack tới sau timeout không được tính (row giữ chưa publish, gửi lại lần sau)
+        return Set.copyOf(acked);
+    }
+
+    /**
+     * Dọn row đã publish quá retention — bảng outbox không phình mãi.
+     */
+    @Scheduled(fixedDelayString = "${outbox.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void purgePublished() {
+        int deleted = outboxEventRepository.deletePublishedBefore(
+                Instant.now().minus(retentionHours, ChronoUnit.HOURS));
+        if (deleted > 0) {
+            log.info("Outbox purged published events | deleted={}", deleted);
+        }
+    }
+
+    private void awaitAcks(List<CompletableFuture<Void>> acks) {
+        try {
+            CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new))
+                    .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Outbox ack timeout, unacked events retried next round | timeoutMs={}", sendTimeoutMs);
+        } catch (ExecutionException e) {
+            // handle() đã nuốt lỗi từng event — không xảy ra
+            log.error("Unexpected outbox ack failure | error={}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for outbox acks", e);
+        }
+    }
+
+    private static void acquire(Semaphore inFlight) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for in-flight slot", e);
+        }
+    }
+
+    private static OrderEventAvro decode(OutboxEvent event) {
+        try {
+            return OrderEventAvro.fromByteBuffer(ByteBuffer.wrap(event.getPayload()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot decode outbox payload id=" + event.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package dnc.cuong.common.outbox;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Ghi event vào bảng outbox thay vì send thẳng Kafka (outbox.enabled=true).
+ * Bean tạo trong OutboxConfig; producer của từng service hỏi isEnabled() rồi append.
+ *
+ * WHY Propagation.MANDATORY?
+ * → Outbox chỉ có nghĩa khi ghi cùng transaction với business data (order, stock, payment).
+ * → Gọi ngoài transaction = bug → fail ngay thay vì âm thầm commit riêng.
+ */
+public class OutboxWriter {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final boolean enabled;
+
+    public OutboxWriter(OutboxEventRepository outboxEventRepository, boolean enabled) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String topic, String key, OrderEventAvro avroEvent) {
+        outboxEventRepository.save(new OutboxEvent(topic, key, encode(avroEvent)));
+    }
+
+    private static byte[] encode(OrderEventAvro avroEvent) {
+        try {
+            ByteBuffer buffer = avroEvent.toByteBuffer();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode OrderEventAvro for outbox", e);
+        }
+    }
+}
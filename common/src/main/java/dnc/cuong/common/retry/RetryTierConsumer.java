@@ -0,0 +1,112 @@
+package dnc.cuong.common.retry;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.event.KafkaTopics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Delayed re-consumer cho retry tier topic (kafka.retry-topics.enabled=true) — dùng chung cho
+ * cả 4 service; service chỉ cung cấp handler theo topic gốc (bean trong KafkaConsumerConfig).
+ *
+ * 1 container / (topic gốc, tier): order.placed.retry-1s, order.placed.retry-10s, payment.failed.retry-1s...
+ * - Record chưa tới due-at → nack(remaining): container pause rồi đọc lại record, không chặn thread.
+ * - Tới hạn → handler của topic gốc chạy inline → ack.
+ * - Handler vẫn lỗi → error handler của retryTierKafkaListenerContainerFactory đẩy sang tier sau / .DLT.
+ *
+ * WHY 1 container / (topic gốc, tier) thay vì 1 container / tier?
+ * → nack() pause CẢ consumer, không chỉ partition của record. Chung container thì record
+ *   payment.failed đã tới hạn đứng chờ record order.placed chưa tới hạn.
+ * → Trong 1 tier topic, due-at = lúc publish + cùng 1 delay → record đầu mỗi partition luôn tới hạn
+ *   sớm nhất. Còn lại: partition khác của cùng tier topic cũng dừng theo (concurrency 1) →
+ *   record trễ thêm tối đa 1 tier delay so với due-at (đo bằng listener.retry.lag).
+ *
+ * WHY container tự tạo thay vì @KafkaListener?
+ * → Số tier đọc từ config (kafka.retry-topics.tiers) — annotation cần biết trước số listener.
+ *
+ * WHY groupId riêng (<service>-retry-group)?
+ * → Tier container join/leave không kéo consumer group chính vào rebalance.
+ *
+ * WHY không đi qua KeyOrderedDispatcher / batch / async path?
+ * → Cần AckMode.MANUAL không asyncAcks để nack. Tier topic chỉ chứa record lỗi, chạy tuần tự
+ *   trên consumer thread là đủ; thứ tự theo key đã mất từ lúc record rời partition gốc.
+ */
+@Slf4j
+public class RetryTierConsumer implements SmartLifecycle {
+
+    private final String groupId;
+    private final RetryTiers retryTiers;
+    private final ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> containerFactory;
+    private final Map<String, Consumer<OrderEventAvro>> handlers;
+    private final List<ConcurrentMessageListenerContainer<String, OrderEventAvro>> containers = new ArrayList<>();
+
+    /**
+     * @param handlers topic gốc → handler của listener chính (order.placed → onOrderPlaced...)
+     */
+    public RetryTierConsumer(RetryTiers retryTiers,
+                             ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> containerFactory,
+                             Map<String, Consumer<OrderEventAvro>> handlers) {
+        this.groupId = retryTiers.service() + "-retry-group";
+        this.retryTiers = retryTiers;
+        this.containerFactory = containerFactory;
+        this.handlers = Map.copyOf(handlers);
+    }
+
+    void onRecord(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack) {
+        Duration remaining = retryTiers.remainingDelay(record);
+        if (!remaining.isZero()) {
+            ack.nack(remaining);
+            return;
+        }
+        retryTiers.recordProcessing(record);
+
+        String source = KafkaTopics.sourceOf(record.topic());
+        Consumer<OrderEventAvro> handler = handlers.get(source);
+        if (handler == null) {
+            throw new IllegalStateException("No handler for retry topic " + record.topic());
+        }
+        log.info("Retrying from [{}] | key={} | offset={}", record.topic(), record.key(), record.offset());
+        handler.accept(record.value());
+        ack.acknowledge();
+    }
+
+    @Override
+    public synchronized void start() {
+        for (String source : handlers.keySet()) {
+            for (RetryTiers.Tier tier : retryTiers.tiers()) {
+                ConcurrentMessageListenerContainer<String, OrderEventAvro> container =
+                        containerFactory.createContainer(retryTiers.topic(source, tier));
+                container.getContainerProperties().setGroupId(groupId);
+                container.getContainerProperties().setMessageListener(
+                        (AcknowledgingMessageListener<String, OrderEventAvro>) this::onRecord);
+                container.setBeanName(retryTiers.service() + "-retry-" + source + "-" + tier.label());
+                container.start();
+                containers.add(container);
+            }
+        }
+        log.info("Retry tier consumers started | sources={} | tiers={} | containers={}",
+                handlers.keySet(), retryTiers.tiers(), containers.size());
+    }
+
+    @Override
+    public synchronized void stop() {
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return !containers.isEmpty();
+    }
+}
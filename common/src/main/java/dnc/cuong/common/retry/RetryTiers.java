@@ -0,0 +1,200 @@
+package dnc.cuong.common.retry;
+
+import dnc.cuong.common.event.KafkaTopics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Retry không chặn partition: record lỗi được publish sang topic retry tier kế tiếp thay vì
+ * retry tại chỗ bằng ExponentialBackOff.
+ *
+ * order.placed → order.placed.retry-1s → order.placed.retry-10s → order.placed.retry-60s → order.placed.DLT
+ *
+ * WHY retry topic thay vì backoff trong partition?
+ * → ExponentialBackOff (1s, 2s, 4s, 8s, 10s... tới 30s) giữ record lỗi ở đầu partition — mọi
+ *   order phía sau đứng chờ 30s dù không liên quan. Publish sang tier → offset main commit ngay,
+ *   partition chạy tiếp; chỉ record lỗi bị trễ.
+ * → Mỗi tier một delay cố định → record trong 1 tier topic luôn theo thứ tự due-at: consumer tier
+ *   chỉ cần đợi record đầu, không cần hàng đợi ưu tiên.
+ *
+ * Đánh đổi: record lỗi rời khỏi thứ tự partition — event sau của cùng key có thể xử lý trước nó.
+ * Chỉ dùng cho listener chịu được điều đó (handler idempotent, không phụ thuộc thứ tự theo key).
+ *
+ * Class không phụ thuộc Spring — service gắn destination/headers vào DeadLetterPublishingRecoverer;
+ * RetryTierConsumer chạy consumer cho các tier topic.
+ */
+public class RetryTiers {
+
+    /** Epoch millis lúc record được phép xử lý lại. */
+    public static final String DUE_AT_HEADER = "x-retry-due-at";
+
+    private static final Pattern TIER = Pattern.compile("(\\d+)(ms|s|m)");
+
+    /**
+     * @param label hậu tố topic — "10s" → order.placed.retry-10s
+     */
+    public record Tier(int index, String label, Duration delay) {}
+
+    private final String service;
+    private final List<Tier> tiers;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Counter> routed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> lag = new ConcurrentHashMap<>();
+
+    public RetryTiers(String service, List<Tier> tiers, Clock clock, MeterRegistry meterRegistry) {
+        if (tiers.isEmpty()) {
+            throw new IllegalArgumentException("At least one retry tier is required");
+        }
+        this.service = service;
+        this.tiers = List.copyOf(tiers);
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param spec danh sách delay, e.g. "1s,10s,60s" (đơn vị ms | s | m)
+     */
+    public static RetryTiers parse(String service, String spec, Clock clock, MeterRegistry meterRegistry) {
+        List<Tier> tiers = new ArrayList<>();
+        for (String token : spec.split(",")) {
+            String label = token.trim();
+            Matcher m = TIER.matcher(label);
+            if (!m.matches() || Long.parseLong(m.group(1)) <= 0) {
+                throw new IllegalArgumentException("Invalid retry tier '" + label + "' in: " + spec);
+            }
+            long amount = Long.parseLong(m.group(1));
+            Duration delay = switch (m.group(2)) {
+                case "ms" -> Duration.ofMillis(amount);
+                case "s" -> Duration.ofSeconds(amount);
+                default -> Duration.ofMinutes(amount);
+            };
+            tiers.add(new Tier(tiers.size(), label, delay));
+        }
+        return new RetryTiers(service, tiers, clock, meterRegistry);
+    }
+
+    public List<Tier> tiers() {
+        return tiers;
+    }
+
+    /** Tên service — tag metric, prefix groupId / tên container của RetryTierConsumer. */
+    public String service() {
+        return service;
+    }
+
+    /** Topic của 1 tier cho 1 source topic — RetryTierConsumer chạy 1 container / topic này. */
+    public String topic(String sourceTopic, Tier tier) {
+        return KafkaTopics.retry(sourceTopic, tier.label());
+    }
+
+    /** Tier của topic đang consume; empty nếu là topic chính. */
+    public Optional<Tier> tierOf(String topic) {
+        String source = KafkaTopics.sourceOf(topic);
+        if (source.equals(topic)) {
+            return Optional.empty();
+        }
+        String label = topic.substring(source.length() + KafkaTopics.RETRY_SUFFIX.length());
+        return tiers.stream().filter(t -> t.label().equals(label)).findFirst();
+    }
+
+    /** Tier kế tiếp sau topic hiện tại; empty → hết tier, đi DLT. */
+    Optional<Tier> nextTier(String topic) {
+        if (KafkaTopics.sourceOf(topic).equals(topic)) {
+            return Optional.of(tiers.get(0));
+        }
+        // Tier không còn trong config (đổi kafka.retry-topics.tiers khi còn record cũ) → DLT
+        int next = tierOf(topic).map(t -> t.index() + 1).orElse(tiers.size());
+        return next < tiers.size() ? Optional.of(tiers.get(next)) : Optional.empty();
+    }
+
+    /**
+     * Destination resolver cho DeadLetterPublishingRecoverer: topic chính → tier đầu → ... → DLT.
+     *
+     * Partition -1 → producer chia theo key: tier topic và DLT không cùng số partition với topic chính.
+     * value null (deserialize fail) → DLT luôn: retry bao nhiêu lần cũng vẫn không đọc được.
+     */
+    public TopicPartition destination(ConsumerRecord<?, ?> record, Exception exception) {
+        String source = KafkaTopics.sourceOf(record.topic());
+        Optional<Tier> next = record.value() == null ? Optional.empty() : nextTier(record.topic());
+        String label = next.map(Tier::label).orElse("dlt");
+        routed.computeIfAbsent(label, l -> Counter.builder("listener.retry.routed")
+                .description("Record lỗi được chuyển sang retry tier / DLT")
+                .tag("service", service).tag("tier", l).register(meterRegistry)).increment();
+        return new TopicPartition(
+                next.map(tier -> KafkaTopics.retry(source, tier.label())).orElse(KafkaTopics.dlt(source)), -1);
+    }
+
+    /**
+     * Headers bổ sung khi publish: due-at = now + delay của tier đích.
+     * Đi DLT → không cần due-at (null → DeadLetterPublishingRecoverer không thêm gì).
+     */
+    public Headers headers(ConsumerRecord<?, ?> record, Exception exception) {
+        Optional<Tier> next = record.value() == null ? Optional.empty() : nextTier(record.topic());
+        if (next.isEmpty()) {
+            return null;
+        }
+        long dueAt = clock.millis() + next.get().delay().toMillis();
+        return new RecordHeaders().add(DUE_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAt).array());
+    }
+
+    /**
+     * Thời gian còn phải đợi trước khi xử lý lại, tối đa bằng delay của tier
+     * (đồng hồ lệch giữa các instance không làm consumer đợi lâu hơn tier).
+     */
+    public Duration remainingDelay(ConsumerRecord<?, ?> record) {
+        long dueAt = dueAt(record);
+        if (dueAt < 0) {
+            return Duration.ZERO;
+        }
+        long remaining = dueAt - clock.millis();
+        Duration max = tierOf(record.topic()).map(Tier::delay).orElse(Duration.ZERO);
+        return remaining <= 0 ? Duration.ZERO : min(Duration.ofMillis(remaining), max);
+    }
+
+    /**
+     * Ghi lag = lúc bắt đầu xử lý lại - due-at — tier consumer theo kịp thì lag ≈ 0,
+     * lag tăng nghĩa là tier đó đang dồn (handler vẫn lỗi hoặc consumer tier quá chậm).
+     */
+    public void recordProcessing(ConsumerRecord<?, ?> record) {
+        long dueAt = dueAt(record);
+        if (dueAt < 0) {
+            return;
+        }
+        String label = tierOf(record.topic()).map(Tier::label).orElse("unknown");
+        lag.computeIfAbsent(label, l -> Timer.builder("listener.retry.lag")
+                        .description("Trễ giữa due-at và lúc retry tier thực sự xử lý record")
+                        .tag("service", service).tag("tier", l).register(meterRegistry))
+                .record(Math.max(0, clock.millis() - dueAt), TimeUnit.MILLISECONDS);
+    }
+
+    private static long dueAt(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(DUE_AT_HEADER);
+        if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+            return -1;
+        }
+        return ByteBuffer.wrap(header.value()).getLong();
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
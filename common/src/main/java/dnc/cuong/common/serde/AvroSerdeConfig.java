@@ -0,0 +1,84 @@
+package dnc.cuong.common.serde;
+
+import org.apache.avro.Schema;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Config key của PinnedAvroSerializer / PinnedAvroDeserializer — đọc từ producer/consumer properties.
+ *
+ * schema.registry.url giữ nguyên key của Confluent → application.yml hiện có không phải đổi.
+ */
+public final class AvroSerdeConfig {
+
+    private AvroSerdeConfig() {}
+
+    /**
+     * http://host:port (nhiều URL cách nhau dấu phẩy), mock://scope — registry in-process cho test,
+     * hoặc file:///path.json — registry local dùng chung giữa các process (FileSchemaRegistry).
+     */
+    public static final String SCHEMA_REGISTRY_URL = "schema.registry.url";
+
+    /** File JSON lưu subject → schema id và id → schema. Không set → chỉ cache trong memory. */
+    public static final String SCHEMA_CACHE_PATH = "schema.cache.path";
+
+    /** Topic producer đăng ký + pin schema ngay lúc configure(), trước message đầu tiên. Consumer bỏ qua. */
+    public static final String PINNED_TOPICS = "schema.pinned.topics";
+
+    /** Topic OrderEventAvroSerializer ghi wire format v3 (OrderEventAvroV3). Không set → mọi topic v1. */
+    public static final String V3_TOPICS = "schema.v3.topics";
+
+    static String registryUrl(Map<String, ?> configs) {
+        Object url = configs.get(SCHEMA_REGISTRY_URL);
+        if (url == null || url.toString().isBlank()) {
+            throw new IllegalArgumentException(SCHEMA_REGISTRY_URL + " is required");
+        }
+        return url.toString().trim();
+    }
+
+    static List<String> registryUrls(String url) {
+        return Arrays.stream(url.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    static String cachePath(Map<String, ?> configs) {
+        Object path = configs.get(SCHEMA_CACHE_PATH);
+        return path == null || path.toString().isBlank() ? null : path.toString().trim();
+    }
+
+    static List<String> pinnedTopics(Map<String, ?> configs) {
+        return topics(configs, PINNED_TOPICS);
+    }
+
+    static List<String> v3Topics(Map<String, ?> configs) {
+        return topics(configs, V3_TOPICS);
+    }
+
+    /** Chấp nhận List (Spring bind YAML list) hoặc String "a,b,c". */
+    private static List<String> topics(Map<String, ?> configs, String key) {
+        Object topics = configs.get(key);
+        if (topics == null) {
+            return List.of();
+        }
+        if (topics instanceof List<?> list) {
+            return list.stream().map(Object::toString).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        }
+        return Arrays.stream(topics.toString().split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    static String subject(String topic, boolean isKey) {
+        return topic + (isKey ? "-key" : "-value");
+    }
+
+    /** TopicRecordNameStrategy: record khác trên cùng topic có subject riêng, không đụng compatibility của v1. */
+    static String recordSubject(String topic, Schema schema) {
+        return topic + "-" + schema.getFullName();
+    }
+}
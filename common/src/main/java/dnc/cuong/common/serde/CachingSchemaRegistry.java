@@ -0,0 +1,137 @@
+package dnc.cuong.common.serde;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache subject → schema id và id → schema trước registry thật, persist xuống file JSON.
+ *
+ * WHY cache được vĩnh viễn, không cần TTL?
+ * → Trong Schema Registry, (subject, schema) → id và id → schema là bất biến: id đã cấp
+ *   không bao giờ đổi nghĩa. Đã biết thì không cần hỏi lại.
+ *
+ * WHY cache thêm khi CachedSchemaRegistryClient đã cache?
+ * → Cache của client Confluent chỉ nằm trong memory — mất khi restart.
+ *
+ * WHY persist xuống disk?
+ * → Restart lúc registry đang down: load file → producer có id để gửi, consumer có writer schema
+ *   để decode → service vẫn phục vụ, chỉ schema MỚI mới cần registry.
+ * → Consumer cold start không trả 1 lookup cho mỗi schema id đã từng gặp.
+ *
+ * File ghi registryUrl: trỏ sang registry khác (cluster khác) → id có thể khác nghĩa → bỏ cache cũ.
+ * Ghi file là best-effort (temp + atomic move); lỗi I/O chỉ log, không làm hỏng serialize.
+ */
+public final class CachingSchemaRegistry implements SchemaRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingSchemaRegistry.class);
+
+    private final String registryUrl;
+    private final SchemaRegistry delegate;
+    private final Path cacheFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Integer> idsBySubjectSchema = new ConcurrentHashMap<>();
+    private final Map<Integer, Schema> schemasById = new ConcurrentHashMap<>();
+
+    /**
+     * @param cacheFile null → chỉ cache trong memory
+     */
+    CachingSchemaRegistry(String registryUrl, SchemaRegistry delegate, Path cacheFile) {
+        this.registryUrl = registryUrl;
+        this.delegate = delegate;
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    @Override
+    public int register(String subject, Schema schema) throws IOException {
+        String key = cacheKey(subject, schema);
+        Integer cached = idsBySubjectSchema.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int id = delegate.register(subject, schema);
+        idsBySubjectSchema.put(key, id);
+        schemasById.putIfAbsent(id, schema);
+        persist();
+        return id;
+    }
+
+    @Override
+    public Schema getById(int id) throws IOException {
+        Schema cached = schemasById.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        Schema schema = delegate.getById(id);
+        schemasById.put(id, schema);
+        persist();
+        return schema;
+    }
+
+    int cachedSchemaCount() {
+        return schemasById.size();
+    }
+
+    private static String cacheKey(String subject, Schema schema) {
+        return subject + '|' + Long.toHexString(SchemaNormalization.parsingFingerprint64(schema));
+    }
+
+    private void load() {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return;
+        }
+        try {
+            CacheFile file = objectMapper.readValue(cacheFile.toFile(), CacheFile.class);
+            if (!registryUrl.equals(file.registryUrl())) {
+                log.info("Ignoring schema cache {} — written for registry {}, now {}",
+                        cacheFile, file.registryUrl(), registryUrl);
+                return;
+            }
+            // Parser mới cho mỗi schema — 1 Parser không cho định nghĩa lại cùng record name
+            file.schemas().forEach((id, schema) -> schemasById.put(id, new Schema.Parser().parse(schema)));
+            idsBySubjectSchema.putAll(file.subjects());
+            log.info("Loaded schema cache | file={} | schemas={} | subjects={}",
+                    cacheFile, schemasById.size(), idsBySubjectSchema.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot read schema cache {}, starting empty | error={}", cacheFile, e.getMessage());
+        }
+    }
+
+    private synchronized void persist() {
+        if (cacheFile == null) {
+            return;
+        }
+        Map<Integer, String> schemas = new TreeMap<>();
+        schemasById.forEach((id, schema) -> schemas.put(id, schema.toString()));
+        CacheFile file = new CacheFile(registryUrl, new TreeMap<>(idsBySubjectSchema), schemas);
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, cacheFile.getFileName().toString(), ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), file);
+            try {
+                Files.move(temp, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write schema cache {} | error={}", cacheFile, e.getMessage());
+        }
+    }
+
+    /** Layout file cache — subject key = "{subject}|{fingerprint hex}". */
+    record CacheFile(String registryUrl, Map<String, Integer> subjects, Map<Integer, String> schemas) {}
+}
@@ -0,0 +1,43 @@
+package dnc.cuong.common.serde;
+
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import org.apache.avro.Schema;
+
+import java.io.IOException;
+
+/**
+ * SchemaRegistry trên SchemaRegistryClient của Confluent.
+ *
+ * WHY không tự gọi REST API?
+ * → CachedSchemaRegistryClient đã lo failover nhiều URL, auth, SSL, retry và cache memory;
+ *   mock:// (MockSchemaRegistry) dùng chung code path cho test.
+ * → Lớp này chỉ đổi AvroSchema ↔ Schema và RestClientException → IOException.
+ */
+final class ConfluentSchemaRegistry implements SchemaRegistry {
+
+    private final SchemaRegistryClient client;
+
+    ConfluentSchemaRegistry(SchemaRegistryClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public int register(String subject, Schema schema) throws IOException {
+        try {
+            return client.register(subject, new AvroSchema(schema));
+        } catch (RestClientException e) {
+            throw new IOException("Schema Registry rejected subject " + subject + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Schema getById(int id) throws IOException {
+        try {
+            return (Schema) client.getSchemaById(id).rawSchema();
+        } catch (RestClientException e) {
+            throw new IOException("Schema Registry has no schema id " + id + ": " + e.getMessage(), e);
+        }
+    }
+}
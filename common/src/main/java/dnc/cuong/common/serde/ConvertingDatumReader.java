@@ -0,0 +1,37 @@
+package dnc.cuong.common.serde;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.specific.SpecificDatumReader;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Decode theo record của writer (S) rồi convert sang record deserializer trả về (T) — v1 ↔ v3.
+ */
+final class ConvertingDatumReader<S, T> implements DatumReader<T> {
+
+    private final SpecificDatumReader<S> delegate;
+    private final Function<S, T> converter;
+
+    /**
+     * @param writerSchema schema trong registry (id của message)
+     * @param sourceSchema schema compile sẵn của S — resolve writer → S như PinnedAvroDeserializer
+     */
+    ConvertingDatumReader(Schema writerSchema, Schema sourceSchema, Function<S, T> converter) {
+        this.delegate = new SpecificDatumReader<>(writerSchema, sourceSchema);
+        this.converter = converter;
+    }
+
+    @Override
+    public void setSchema(Schema schema) {
+        delegate.setSchema(schema);
+    }
+
+    @Override
+    public T read(T reuse, Decoder in) throws IOException {
+        return converter.apply(delegate.read(null, in));
+    }
+}
@@ -0,0 +1,129 @@
+package dnc.cuong.common.serde;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Schema;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Schema Registry local trên 1 file JSON — schema.registry.url=file:///path/registry.json.
+ *
+ * WHY file thay vì mock://?
+ * → mock:// (MockSchemaRegistry) nằm trong memory của 1 JVM: 4 service chạy local cấp id riêng
+ *   → id order-service ghi vào message không có trong registry của inventory-service → decode fail.
+ * → Cùng 1 file = cùng bảng id cho mọi process trên máy → chạy cả pipeline không cần container registry.
+ *
+ * WHY file lock?
+ * → 4 service start cùng lúc đều register lúc configure(). Đọc → cấp id → ghi trong FileLock
+ *   (lock file <registry>.lock) → 2 process không cấp trùng id. Ghi temp + atomic move → reader
+ *   không bao giờ thấy file ghi dở.
+ *
+ * Giống Confluent: id global, cùng schema (mọi subject) → cùng id, id không bao giờ đổi nghĩa.
+ * Khác: không kiểm tra compatibility — chỉ dùng cho dev local (profile local-registry).
+ */
+final class FileSchemaRegistry implements SchemaRegistry {
+
+    private static final Object JVM_LOCK = new Object();
+
+    private final Path file;
+    private final Path lockFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Integer, Schema> schemasById = new ConcurrentHashMap<>();
+
+    FileSchemaRegistry(Path file) {
+        this.file = file.toAbsolutePath();
+        this.lockFile = this.file.resolveSibling(this.file.getFileName() + ".lock");
+    }
+
+    /** file:///tmp/learn-kafka/schema-registry.json → Path. */
+    static FileSchemaRegistry fromUrl(String url) {
+        return new FileSchemaRegistry(Path.of(URI.create(url)));
+    }
+
+    static boolean supports(String url) {
+        return url.startsWith("file:");
+    }
+
+    @Override
+    public int register(String subject, Schema schema) throws IOException {
+        String canonical = schema.toString();
+        // FileLock giữ theo process — 2 thread cùng JVM lock lại sẽ OverlappingFileLockException
+        synchronized (JVM_LOCK) {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                RegistryFile registry = read();
+                Integer id = registry.idOf(canonical);
+                if (id == null) {
+                    id = registry.schemas().keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+                    registry.schemas().put(id, canonical);
+                }
+                List<Integer> versions = registry.subjects().computeIfAbsent(subject, s -> new ArrayList<>());
+                if (!versions.contains(id)) {
+                    versions.add(id);
+                    write(registry);
+                }
+                schemasById.putIfAbsent(id, schema);
+                return id;
+            }
+        }
+    }
+
+    @Override
+    public Schema getById(int id) throws IOException {
+        Schema cached = schemasById.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        // Id lạ → process khác vừa register — đọc lại file
+        String schema = read().schemas().get(id);
+        if (schema == null) {
+            throw new IOException("Schema id " + id + " not found in " + file);
+        }
+        return schemasById.computeIfAbsent(id, key -> new Schema.Parser().parse(schema));
+    }
+
+    private RegistryFile read() throws IOException {
+        if (!Files.exists(file)) {
+            return new RegistryFile(new TreeMap<>(), new TreeMap<>());
+        }
+        RegistryFile registry = objectMapper.readValue(file.toFile(), RegistryFile.class);
+        return new RegistryFile(new TreeMap<>(registry.subjects()), new TreeMap<>(registry.schemas()));
+    }
+
+    private void write(RegistryFile registry) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), registry);
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Layout file: subject → các id theo version, id → schema JSON. */
+    record RegistryFile(Map<String, List<Integer>> subjects, Map<Integer, String> schemas) {
+
+        Integer idOf(String canonical) {
+            for (Map.Entry<Integer, String> entry : schemas.entrySet()) {
+                if (entry.getValue().equals(canonical)) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+    }
+}
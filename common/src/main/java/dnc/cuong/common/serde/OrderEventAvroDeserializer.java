@@ -0,0 +1,29 @@
+package dnc.cuong.common.serde;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventAvroV3;
+import dnc.cuong.common.avro.OrderEventV3Mapper;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumReader;
+
+/**
+ * Value deserializer cho mọi topic order event — luôn trả OrderEventAvro (SpecificRecord).
+ *
+ * Message producer ghi v3 (schema.v3.topics) → decode OrderEventAvroV3 rồi toV1() —
+ * listener không biết topic đã chuyển wire format.
+ */
+public class OrderEventAvroDeserializer extends PinnedAvroDeserializer<OrderEventAvro> {
+
+    public OrderEventAvroDeserializer() {
+        super(OrderEventAvro.getClassSchema());
+    }
+
+    @Override
+    protected DatumReader<OrderEventAvro> readerFor(Schema writerSchema) {
+        if (writerSchema.getFullName().equals(OrderEventAvroV3.getClassSchema().getFullName())) {
+            return new ConvertingDatumReader<OrderEventAvroV3, OrderEventAvro>(
+                    writerSchema, OrderEventAvroV3.getClassSchema(), OrderEventV3Mapper::toV1);
+        }
+        return super.readerFor(writerSchema);
+    }
+}
@@ -0,0 +1,54 @@
+package dnc.cuong.common.serde;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventV3Mapper;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Value serializer cho mọi topic order event — pin schema OrderEventAvro compile trong common.
+ *
+ * Topic trong schema.v3.topics → ghi OrderEventAvroV3 (compact) qua OrderEventAvroV3Serializer.
+ *
+ * WHY chọn v3 ở serializer thay vì đổi KafkaTemplate của producer?
+ * → Mọi producer / DLT publisher / outbox relay gửi OrderEventAvro — đổi wire format của 1 topic chỉ
+ *   là config, không đụng code gửi. Bật cho topic khi mọi consumer đã chạy OrderEventAvroDeserializer
+ *   đọc được v3; tắt lại bất cứ lúc nào (consumer đọc được cả 2).
+ */
+public class OrderEventAvroSerializer extends PinnedAvroSerializer<OrderEventAvro> {
+
+    private final OrderEventAvroV3Serializer v3 = new OrderEventAvroV3Serializer();
+    private Set<String> v3Topics = Set.of();
+
+    public OrderEventAvroSerializer() {
+        super(OrderEventAvro.getClassSchema());
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        configure(SchemaRegistries.fromConfig(configs), isKey,
+                AvroSerdeConfig.pinnedTopics(configs), AvroSerdeConfig.v3Topics(configs));
+    }
+
+    void configure(SchemaRegistry registry, boolean isKey, List<String> pinnedTopics, List<String> v3Topics) {
+        this.v3Topics = Set.copyOf(v3Topics);
+        super.configure(registry, isKey, pinnedTopics.stream().filter(t -> !this.v3Topics.contains(t)).toList());
+        v3.configure(registry, isKey, pinnedTopics.stream().filter(this.v3Topics::contains).toList());
+    }
+
+    @Override
+    public byte[] serialize(String topic, OrderEventAvro data) {
+        if (data == null || !v3Topics.contains(topic)) {
+            return super.serialize(topic, data);
+        }
+        try {
+            return v3.serialize(topic, OrderEventV3Mapper.fromV1(data));
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            // Amount lẻ hơn cent / UUID sai format — không encode được ở v3
+            throw new SerializationException("Cannot convert event to OrderEventAvroV3 for topic " + topic, e);
+        }
+    }
+}
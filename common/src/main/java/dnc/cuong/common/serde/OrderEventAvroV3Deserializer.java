@@ -0,0 +1,28 @@
+package dnc.cuong.common.serde;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventAvroV3;
+import dnc.cuong.common.avro.OrderEventV3Mapper;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumReader;
+
+/**
+ * Value deserializer trả OrderEventAvroV3 — cho consumer đọc thẳng v3 (không String trung gian).
+ *
+ * Message v1 (producer chưa bật schema.v3.topics, hoặc record cũ trong topic) → decode v1 rồi fromV1().
+ */
+public class OrderEventAvroV3Deserializer extends PinnedAvroDeserializer<OrderEventAvroV3> {
+
+    public OrderEventAvroV3Deserializer() {
+        super(OrderEventAvroV3.getClassSchema());
+    }
+
+    @Override
+    protected DatumReader<OrderEventAvroV3> readerFor(Schema writerSchema) {
+        if (writerSchema.getFullName().equals(OrderEventAvro.getClassSchema().getFullName())) {
+            return new ConvertingDatumReader<OrderEventAvro, OrderEventAvroV3>(
+                    writerSchema, OrderEventAvro.getClassSchema(), OrderEventV3Mapper::fromV1);
+        }
+        return super.readerFor(writerSchema);
+    }
+}
@@ -0,0 +1,21 @@
+package dnc.cuong.common.serde;
+
+import dnc.cuong.common.avro.OrderEventAvroV3;
+
+/**
+ * Serializer OrderEventAvroV3 — subject <topic>-dnc.cuong.common.avro.OrderEventAvroV3, tách khỏi subject
+ * v1 (<topic>-value) nên registry không chặn vì string → fixed/bytes không compatible.
+ *
+ * OrderEventAvroSerializer dùng bên trong cho topic trong schema.v3.topics.
+ */
+public class OrderEventAvroV3Serializer extends PinnedAvroSerializer<OrderEventAvroV3> {
+
+    public OrderEventAvroV3Serializer() {
+        super(OrderEventAvroV3.getClassSchema());
+    }
+
+    @Override
+    protected String subject(String topic, boolean isKey) {
+        return AvroSerdeConfig.recordSubject(topic, OrderEventAvroV3.getClassSchema());
+    }
+}
@@ -0,0 +1,94 @@
+package dnc.cuong.common.serde;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Avro deserializer đọc Confluent wire format, luôn trả về SpecificRecord của reader schema pin sẵn.
+ *
+ * WHY cache DatumReader theo schema id?
+ * → Id = writer schema (bất biến). Reader resolve writer → reader schema 1 lần,
+ *   các message sau cùng id chỉ decode.
+ * → Writer schema == reader schema (trường hợp thường gặp) → SpecificDatumReader thẳng, không resolve.
+ *
+ * WHY consumer chỉ tra schema theo id, không bao giờ register?
+ * → Subject thuộc về producer. Consumer register reader schema của mình có thể tạo version mới
+ *   trong subject của topic nó không sở hữu (hoặc bị từ chối khi subject đặt READONLY).
+ * → Id lạ chỉ tốn 1 lookup lần đầu; file cache giữ writer schema qua restart.
+ *
+ * Id lạ + registry down + không có trong file cache → SerializationException (giống KafkaAvroDeserializer).
+ */
+public class PinnedAvroDeserializer<T extends SpecificRecord> implements Deserializer<T> {
+
+    private static final int HEADER_SIZE = 5;
+
+    private final Schema readerSchema;
+    private final Map<Integer, DatumReader<T>> readersBySchemaId = new ConcurrentHashMap<>();
+
+    private SchemaRegistry registry;
+
+    protected PinnedAvroDeserializer(Schema readerSchema) {
+        this.readerSchema = readerSchema;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        configure(SchemaRegistries.fromConfig(configs));
+    }
+
+    void configure(SchemaRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length < HEADER_SIZE || data[0] != PinnedAvroSerializer.MAGIC_BYTE) {
+            throw new SerializationException("Unknown magic byte for topic " + topic
+                    + " — payload is not Confluent Avro wire format");
+        }
+        int schemaId = ((data[1] & 0xFF) << 24) | ((data[2] & 0xFF) << 16)
+                | ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
+
+        DatumReader<T> reader = readersBySchemaId.get(schemaId);
+        if (reader == null) {
+            reader = readerForId(schemaId);
+            readersBySchemaId.putIfAbsent(schemaId, reader);
+        }
+        try {
+            return reader.read(null, DecoderFactory.get()
+                    .binaryDecoder(data, HEADER_SIZE, data.length - HEADER_SIZE, null));
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Cannot decode schema id " + schemaId + " from topic " + topic, e);
+        }
+    }
+
+    private DatumReader<T> readerForId(int schemaId) {
+        Schema writerSchema;
+        try {
+            writerSchema = registry.getById(schemaId);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot fetch writer schema id " + schemaId
+                    + " (registry unreachable and not cached)", e);
+        }
+        return readerFor(writerSchema);
+    }
+
+    /** Override khi writer là record khác cần convert (OrderEventAvroDeserializer đọc v3). */
+    protected DatumReader<T> readerFor(Schema writerSchema) {
+        return writerSchema.equals(readerSchema)
+                ? new SpecificDatumReader<>(readerSchema)
+                : new SpecificDatumReader<>(writerSchema, readerSchema);
+    }
+}
@@ -0,0 +1,117 @@
+package dnc.cuong.common.serde;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Avro serializer với schema compile sẵn được pin — thay KafkaAvroSerializer.
+ *
+ * Wire format giữ đúng Confluent: [magic 0][schema id 4 bytes big-endian][Avro binary]
+ * → consumer KafkaAvroDeserializer, Kafka UI, ksqlDB vẫn đọc được.
+ *
+ * WHY pin schema thay vì lấy record.getSchema() mỗi lần?
+ * → Producer chỉ gửi 1 loại record (class generate từ .avsc) → schema cố định.
+ * → Id resolve 1 lần mỗi topic (configure() cho schema.pinned.topics, lazy cho topic khác như .DLT),
+ *   sau đó hot path chỉ là 1 lookup ConcurrentHashMap — không chạm registry.
+ *
+ * Registry down:
+ * → Id đã có (memory / file cache) → gửi bình thường.
+ * → Chưa có → SerializationException, giống KafkaAvroSerializer (send fail, caller xử lý).
+ */
+public class PinnedAvroSerializer<T extends SpecificRecord> implements Serializer<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(PinnedAvroSerializer.class);
+
+    static final byte MAGIC_BYTE = 0;
+
+    private final Schema schema;
+    private final SpecificDatumWriter<T> datumWriter;
+    private final Map<String, Integer> schemaIdByTopic = new ConcurrentHashMap<>();
+
+    private SchemaRegistry registry;
+    private boolean isKey;
+
+    protected PinnedAvroSerializer(Schema schema) {
+        this.schema = schema;
+        this.datumWriter = new SpecificDatumWriter<>(schema);
+    }
+
+    /**
+     * Idempotent — DefaultKafkaProducerFactory configure lại instance mỗi lần tạo producer.
+     */
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        configure(SchemaRegistries.fromConfig(configs), isKey, AvroSerdeConfig.pinnedTopics(configs));
+    }
+
+    void configure(SchemaRegistry registry, boolean isKey, Iterable<String> pinnedTopics) {
+        this.registry = registry;
+        this.isKey = isKey;
+        for (String topic : pinnedTopics) {
+            try {
+                int id = schemaId(topic);
+                log.info("Pinned Avro schema | subject={} | schemaId={} | schema={}",
+                        subject(topic, isKey), id, schema.getFullName());
+            } catch (SerializationException e) {
+                // Không chặn startup: topic sẽ resolve lại ở lần send đầu tiên
+                log.warn("Cannot pin Avro schema yet | subject={} | error={}",
+                        subject(topic, isKey), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+        int id = schemaId(topic);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.write(MAGIC_BYTE);
+        out.write(id >>> 24);
+        out.write(id >>> 16);
+        out.write(id >>> 8);
+        out.write(id);
+        try {
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+            datumWriter.write(data, encoder);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Cannot encode " + schema.getFullName() + " for topic " + topic, e);
+        }
+        return out.toByteArray();
+    }
+
+    /** Subject đăng ký schema — mặc định TopicNameStrategy (<topic>-value). */
+    protected String subject(String topic, boolean isKey) {
+        return AvroSerdeConfig.subject(topic, isKey);
+    }
+
+    int schemaId(String topic) {
+        Integer cached = schemaIdByTopic.get(topic);
+        if (cached != null) {
+            return cached;
+        }
+        String subject = subject(topic, isKey);
+        try {
+            int id = registry.register(subject, schema);
+            schemaIdByTopic.put(topic, id);
+            return id;
+        } catch (IOException e) {
+            throw new SerializationException("Cannot resolve schema id for subject " + subject
+                    + " (registry unreachable and no cached id)", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package dnc.cuong.common.serde;
+
+import io.confluent.kafka.schemaregistry.avro.AvroSchemaProvider;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClientFactory;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tạo / dùng chung SchemaRegistry theo config của serde.
+ *
+ * WHY dùng chung 1 instance cho cả JVM?
+ * → Kafka tạo serializer/deserializer riêng cho từng producer, từng consumer thread (concurrency=3).
+ *   Dùng chung → 1 cache, 1 file, id resolve 1 lần cho cả service.
+ *
+ * SchemaRegistryClientFactory chọn client theo URL: http → CachedSchemaRegistryClient,
+ * mock://scope → MockSchemaRegistry (in-process, chỉ cho test / benchmark).
+ * file:///path → FileSchemaRegistry: 1 file dùng chung cho mọi service local (profile local-registry).
+ * Config khác của client Confluent (basic.auth.*, schema.registry.ssl.*...) truyền nguyên.
+ */
+public final class SchemaRegistries {
+
+    /** Số schema client Confluent giữ trong memory — service chỉ dùng vài schema. */
+    private static final int CLIENT_CACHE_CAPACITY = 100;
+
+    private static final Map<String, SchemaRegistry> INSTANCES = new ConcurrentHashMap<>();
+
+    private SchemaRegistries() {}
+
+    public static SchemaRegistry fromConfig(Map<String, ?> configs) {
+        String url = AvroSerdeConfig.registryUrl(configs);
+        String cachePath = AvroSerdeConfig.cachePath(configs);
+
+        return INSTANCES.computeIfAbsent(url + '|' + cachePath, key -> {
+            SchemaRegistry delegate = FileSchemaRegistry.supports(url)
+                    ? FileSchemaRegistry.fromUrl(url)
+                    : new ConfluentSchemaRegistry(SchemaRegistryClientFactory.newClient(
+                            AvroSerdeConfig.registryUrls(url), CLIENT_CACHE_CAPACITY,
+                            List.of(new AvroSchemaProvider()), configs, Map.of()));
+            return new CachingSchemaRegistry(url, delegate, cachePath == null ? null : Path.of(cachePath));
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package dnc.cuong.common.serde;
+
+import org.apache.avro.Schema;
+
+import java.io.IOException;
+
+/**
+ * Phần tối thiểu của Schema Registry mà serde cần: đăng ký schema lấy id, và tra schema theo id.
+ *
+ * WHY interface riêng bọc SchemaRegistryClient của Confluent?
+ * → Cho phép xếp lớp: client Confluent (http / mock://), bọc ngoài là cache có persist xuống disk.
+ * → Serde chỉ cần 2 call này — wire format vẫn giữ đúng Confluent (magic byte + schema id).
+ */
+public interface SchemaRegistry {
+
+    /**
+     * Đăng ký schema cho subject — schema giống hệt đã có thì registry trả lại id cũ (idempotent).
+     */
+    int register(String subject, Schema schema) throws IOException;
+
+    Schema getById(int id) throws IOException;
+}
@@ -0,0 +1,34 @@
+package dnc.cuong.common.tx;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Chạy task sau khi transaction hiện tại commit — rollback thì không chạy.
+ * Không có transaction (synchronization chưa active) → chạy ngay.
+ *
+ * Dùng cho mọi thứ chỉ được thấy dữ liệu đã commit: LRU eventId / orderId, response cache,
+ * long-poll waiter, Kafka send khi không bật outbox.
+ *
+ * WHY task chạy trong afterCommit không được ném exception?
+ * → Transaction đã commit: exception ở đây chỉ lan lên caller (vd. HTTP 500) cho thao tác
+ *   thực ra đã thành công → client retry tạo bản ghi trùng. Task tự bắt lỗi của mình.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+}
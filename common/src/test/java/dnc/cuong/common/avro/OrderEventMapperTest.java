@@ -208,4 +208,28 @@ class OrderEventMapperTest {
         // Then
         assertEquals(3, avro.getItems().size());
     }
+
+    @Test
+    void parseInstant_shouldMatchInstantParse_forAllToStringPrecisions() {
+        for (String text : List.of(
+                "2024-01-15T10:30:00Z",
+                "2024-02-29T23:59:59.1Z",
+                "2024-01-15T10:30:00.123Z",
+                "1999-12-31T00:00:00.123456Z",
+                "2024-01-15T10:30:00.123456789Z",
+                Instant.now().toString())) {
+            assertEquals(Instant.parse(text), OrderEventMapper.parseInstant(text), text);
+        }
+    }
+
+    @Test
+    void parseInstant_shouldFallBackForNonCanonicalFormats() {
+        // Offset khác Z / năm > 9999 → đi qua Instant.parse
+        assertEquals(Instant.parse("2024-01-15T10:30:00+07:00"),
+                OrderEventMapper.parseInstant("2024-01-15T10:30:00+07:00"));
+        assertEquals(Instant.parse("+10000-01-01T00:00:00Z"),
+                OrderEventMapper.parseInstant("+10000-01-01T00:00:00Z"));
+        assertThrows(java.time.format.DateTimeParseException.class,
+                () -> OrderEventMapper.parseInstant("2024-02-30T10:30:00Z"));
+    }
 }
@@ -0,0 +1,71 @@
+package dnc.cuong.common.avro;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho OrderEventV3Mapper — round trip qua binary encoding thật (single-object encoding).
+ */
+class OrderEventV3MapperTest {
+
+    @Test
+    void roundTrip_shouldPreserveAllDataThroughBinaryEncoding() throws Exception {
+        OrderEvent original = new OrderEvent(
+                UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                List.of(new OrderEvent.OrderItem(UUID.randomUUID(), "MacBook Pro", 2, new BigDecimal("2499.99")),
+                        new OrderEvent.OrderItem(UUID.randomUUID(), "Magic Mouse", 1, new BigDecimal("99.90"))),
+                new BigDecimal("5099.88"),
+                OrderStatus.FAILED, "Insufficient stock",
+                Instant.now().truncatedTo(ChronoUnit.MICROS)
+        );
+
+        ByteBuffer encoded = OrderEventV3Mapper.toAvro(original, "order-service").toByteBuffer();
+        OrderEvent restored = OrderEventV3Mapper.fromAvro(OrderEventAvroV3.fromByteBuffer(encoded));
+
+        assertEquals(original, restored);
+    }
+
+    @Test
+    void toAvro_shouldEncodeSmallerThanV1() throws Exception {
+        OrderEvent event = new OrderEvent(
+                UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                List.of(new OrderEvent.OrderItem(UUID.randomUUID(), "iPhone 15", 1, new BigDecimal("1199.00"))),
+                new BigDecimal("1199.00"), OrderStatus.PLACED, null, Instant.now()
+        );
+
+        int v1Bytes = OrderEventMapper.toAvro(event, "order-service").toByteBuffer().remaining();
+        int v3Bytes = OrderEventV3Mapper.toAvro(event, "order-service").toByteBuffer().remaining();
+
+        assertTrue(v3Bytes < v1Bytes, "v3=" + v3Bytes + " v1=" + v1Bytes);
+    }
+
+    @Test
+    void toAvro_shouldNormalizeAmountScale_andRejectSubCentPrecision() {
+        OrderEvent whole = event(new BigDecimal("100"));
+        assertEquals(new BigDecimal("100.00"), OrderEventV3Mapper.toAvro(whole, "test").getTotalAmount());
+
+        OrderEvent subCent = event(new BigDecimal("100.005"));
+        assertThrows(ArithmeticException.class, () -> OrderEventV3Mapper.toAvro(subCent, "test"));
+    }
+
+    @Test
+    void uuid16_shouldRoundTripBitsExactly() {
+        UUID uuid = new UUID(0x8000_0000_0000_00FFL, -1L);
+        assertEquals(uuid, OrderEventV3Mapper.fromUuid16(OrderEventV3Mapper.toUuid16(uuid)));
+    }
+
+    private static OrderEvent event(BigDecimal amount) {
+        return new OrderEvent(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                List.of(), amount, OrderStatus.PLACED, null, Instant.now());
+    }
+}
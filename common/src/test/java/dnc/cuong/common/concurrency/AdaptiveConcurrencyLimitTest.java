@@ -0,0 +1,120 @@
+package dnc.cuong.common.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho AdaptiveConcurrencyLimit — giảm nhanh khi pool bão hoà, tăng chậm khi khoẻ.
+ */
+class AdaptiveConcurrencyLimitTest {
+
+    private static final int POOL = 10;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test",
+            new AdaptiveConcurrencyLimit.Settings(4, 2, 500, 3), meterRegistry);
+
+    @Test
+    void update_shouldHalveLimit_whenThreadsQueueOnPool() {
+        assertEquals(2, limit.update(signals(POOL, 3, 50)));
+        assertEquals(AdaptiveConcurrencyLimit.Action.DECREASE, limit.lastAction());
+        assertEquals(1, limit.update(signals(POOL, 3, 50)));
+        // Không giảm dưới 1 khi chưa tới ngưỡng pause
+        assertEquals(1, limit.update(signals(POOL, 3, 50)));
+
+        assertEquals(2, adjustments("decrease"));
+    }
+
+    @Test
+    void update_shouldHalveLimit_whenHandlerLatencyHigh_evenWithoutPending() {
+        assertEquals(2, limit.update(signals(5, 0, 900)));
+    }
+
+    @Test
+    void update_shouldPauseAll_whenWaitersExceedPoolSize() {
+        assertEquals(0, limit.update(signals(POOL, POOL, Double.NaN)));
+
+        assertEquals(AdaptiveConcurrencyLimit.Action.PAUSE, limit.lastAction());
+        assertEquals(0.0, meterRegistry.get("listener.flow.limit").gauge().value());
+        assertEquals(1, adjustments("pause"));
+    }
+
+    @Test
+    void update_shouldGrowOneStep_afterConsecutiveHealthyTicks() {
+        limit.update(signals(POOL, POOL, Double.NaN));
+
+        // Tick khoẻ bị ngắt bởi 1 tick pool đầy → đếm lại từ đầu
+        limit.update(signals(2, 0, 10));
+        limit.update(signals(POOL, 0, 10));
+        limit.update(signals(2, 0, 10));
+        limit.update(signals(2, 0, Double.NaN));
+        assertEquals(0, limit.limit());
+        assertEquals(1, limit.update(signals(2, 0, 10)));
+        assertEquals(AdaptiveConcurrencyLimit.Action.INCREASE, limit.lastAction());
+
+        for (int i = 0; i < 20; i++) {
+            limit.update(signals(2, 0, 10));
+        }
+        assertEquals(4, limit.limit());
+        assertEquals(4, adjustments("increase"));
+    }
+
+    @Test
+    void latencyWindow_shouldAverageOnlyRecordsSinceLastSample() {
+        AdaptiveConcurrencyLimit.LatencyWindow window =
+                new AdaptiveConcurrencyLimit.LatencyWindow(meterRegistry, "spring.kafka.listener");
+        Timer a = observation("a");
+        Timer b = observation("b");
+
+        a.record(Duration.ofMillis(100));
+        b.record(Duration.ofMillis(300));
+        assertEquals(200, window.sample(), 0.001);
+
+        assertTrue(Double.isNaN(window.sample()));
+
+        a.record(Duration.ofMillis(40));
+        assertEquals(40, window.sample(), 0.001);
+    }
+
+    @Test
+    void latencyWindow_shouldPreferHandlerTimer_overDispatchOnlyObservation() {
+        AdaptiveConcurrencyLimit.LatencyWindow window = new AdaptiveConcurrencyLimit.LatencyWindow(
+                meterRegistry, "spring.kafka.listener", ListenerThreads.HANDLER_TIMER);
+        ListenerThreads threads = new ListenerThreads("test", ListenerThreads.Mode.PLATFORM, 0, meterRegistry);
+        Timer recordListener = observation("record");
+        Timer keyOrdered = observation("key-ordered");
+
+        recordListener.record(Duration.ofMillis(100));
+        keyOrdered.record(Duration.ofMillis(100));
+        assertEquals(100, window.sample(), 0.001);
+
+        // Key-ordered chỉ giao record cho lane (~0ms); handler thật chạy 300ms trên lane
+        keyOrdered.record(Duration.ZERO);
+        threads.recordBatch("key-ordered", Duration.ofMillis(300).toNanos(), 1);
+        recordListener.record(Duration.ofMillis(100));
+        assertEquals(200, window.sample(), 0.001);
+
+        // Batch 4 record trong 800ms → 4 mẫu 200ms
+        threads.recordBatch("batch", Duration.ofMillis(800).toNanos(), 4);
+        assertEquals(200, window.sample(), 0.001);
+    }
+
+    private Timer observation(String listenerId) {
+        return Timer.builder("spring.kafka.listener").tag(ListenerThreads.LISTENER_ID_TAG, listenerId)
+                .register(meterRegistry);
+    }
+
+    private static AdaptiveConcurrencyLimit.Signals signals(int active, int pending, double latencyMs) {
+        return new AdaptiveConcurrencyLimit.Signals(active, POOL, pending, latencyMs);
+    }
+
+    private double adjustments(String action) {
+        return meterRegistry.get("listener.flow.adjustments").tag("action", action).counter().count();
+    }
+}
@@ -0,0 +1,102 @@
+package dnc.cuong.common.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho KeyOrderedExecutor — thứ tự trong 1 key, song song giữa các lane.
+ */
+class KeyOrderedExecutorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void execute_shouldPreserveSubmissionOrder_perKey() {
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+
+        try (KeyOrderedExecutor executor = new KeyOrderedExecutor("test", 4,
+                Thread.ofVirtual().factory(), meterRegistry)) {
+            for (int i = 0; i < 1_000; i++) {
+                String key = "order-" + (i % 17);
+                int sequence = i;
+                executor.execute(key, () -> seen
+                        .computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(sequence));
+            }
+        }
+
+        assertEquals(17, seen.size());
+        seen.values().forEach(sequences -> {
+            List<Integer> sorted = new ArrayList<>(sequences);
+            Collections.sort(sorted);
+            assertEquals(sorted, sequences);
+        });
+    }
+
+    @Test
+    void execute_shouldRunDifferentLanesConcurrently() throws Exception {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        AtomicInteger completed = new AtomicInteger();
+
+        try (KeyOrderedExecutor executor = new KeyOrderedExecutor("test", 8,
+                Thread.ofPlatform().daemon(true).factory(), meterRegistry)) {
+            String first = "order-1";
+            String second = keyOnOtherLane(executor, first);
+
+            for (String key : List.of(first, second)) {
+                executor.execute(key, () -> {
+                    bothRunning.countDown();
+                    try {
+                        // Chỉ qua được nếu lane kia cũng đang chạy
+                        if (bothRunning.await(5, TimeUnit.SECONDS)) {
+                            completed.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        }
+
+        assertEquals(2, completed.get());
+    }
+
+    @Test
+    void pending_shouldDropToZero_afterClose() {
+        KeyOrderedExecutor executor = new KeyOrderedExecutor("test", 2, Thread.ofVirtual().factory(), meterRegistry);
+        for (int i = 0; i < 100; i++) {
+            executor.execute("order-" + i, () -> {});
+        }
+        executor.close();
+
+        assertEquals(0, executor.pending());
+        assertEquals(0.0, meterRegistry.get("listener.key_ordered.pending").gauge().value());
+    }
+
+    @Test
+    void constructor_shouldRejectZeroLanes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new KeyOrderedExecutor("test", 0, Thread.ofVirtual().factory(), meterRegistry));
+    }
+
+    private static String keyOnOtherLane(KeyOrderedExecutor executor, String key) {
+        for (int i = 2; ; i++) {
+            String candidate = "order-" + i;
+            if (executor.laneOf(candidate) != executor.laneOf(key)) {
+                return candidate;
+            }
+        }
+    }
+}
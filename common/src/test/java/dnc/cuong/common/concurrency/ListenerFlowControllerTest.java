@@ -0,0 +1,122 @@
+package dnc.cuong.common.concurrency;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho ListenerFlowController.apply() — container là mock, pause/resume đổi cờ isPauseRequested
+ * như container thật. Việc tính limit được test ở AdaptiveConcurrencyLimitTest.
+ */
+class ListenerFlowControllerTest {
+
+    private final KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+    private final List<MessageListenerContainer> containers = new ArrayList<>();
+
+    private ListenerFlowController controller;
+
+    @BeforeEach
+    void setUp() {
+        when(registry.getListenerContainers()).thenReturn(containers);
+        controller = new ListenerFlowController("test", registry, new HikariDataSource(),
+                Set.of("order-cache-broadcast"),
+                new AdaptiveConcurrencyLimit.Settings(3, 2, 500, 5), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void apply_shouldPauseConsumersAboveLimit_thenResumeThem() {
+        List<MessageListenerContainer> consumers = addContainer("order-placed", false);
+
+        controller.apply(1);
+        assertEquals(List.of(false, true, true), paused(consumers));
+
+        controller.apply(3);
+        assertEquals(List.of(false, false, false), paused(consumers));
+    }
+
+    @Test
+    void apply_shouldNotResumeConsumerPausedByOperator() {
+        List<MessageListenerContainer> consumers = addContainer("order-placed", false);
+        consumers.get(2).pause();
+
+        controller.apply(1);
+        controller.apply(3);
+
+        assertEquals(List.of(false, false, true), paused(consumers));
+        verify(consumers.get(2), never()).resume();
+    }
+
+    @Test
+    void apply_shouldSkipExcludedAndExternallyPausedContainers() {
+        List<MessageListenerContainer> excluded = addContainer("order-cache-broadcast", false);
+        List<MessageListenerContainer> pausedByOperator = addContainer("order-paid", true);
+
+        controller.apply(0);
+        controller.apply(3);
+
+        assertEquals(List.of(false, false, false), paused(excluded));
+        assertEquals(List.of(true, true, true), paused(pausedByOperator));
+        for (MessageListenerContainer consumer : pausedByOperator) {
+            verify(consumer, never()).resume();
+        }
+    }
+
+    @Test
+    void apply_shouldForgetConsumersOfExternallyPausedContainer() {
+        List<MessageListenerContainer> consumers = addContainer("order-placed", false);
+        controller.apply(1);
+
+        // Operator pause cả container → controller bỏ qua; operator resume → về trạng thái của operator
+        MessageListenerContainer container = containers.get(0);
+        when(container.isPauseRequested()).thenReturn(true);
+        consumers.forEach(MessageListenerContainer::pause);
+        controller.apply(3);
+        when(container.isPauseRequested()).thenReturn(false);
+        consumers.forEach(MessageListenerContainer::resume);
+        controller.apply(1);
+
+        assertEquals(List.of(false, true, true), paused(consumers));
+        controller.apply(3);
+        assertEquals(List.of(false, false, false), paused(consumers));
+    }
+
+    private List<MessageListenerContainer> addContainer(String listenerId, boolean pausedByOperator) {
+        List<MessageListenerContainer> consumers = List.of(consumer(), consumer(), consumer());
+        ConcurrentMessageListenerContainer<?, ?> container = mock(ConcurrentMessageListenerContainer.class);
+        when(container.isRunning()).thenReturn(true);
+        when(container.getListenerId()).thenReturn(listenerId);
+        when(container.isPauseRequested()).thenReturn(pausedByOperator);
+        doReturn(consumers).when(container).getContainers();
+        if (pausedByOperator) {
+            consumers.forEach(MessageListenerContainer::pause);
+        }
+        containers.add(container);
+        return consumers;
+    }
+
+    /** Consumer con giả lập: pause()/resume() đổi cờ isPauseRequested. */
+    private static MessageListenerContainer consumer() {
+        MessageListenerContainer consumer = mock(KafkaMessageListenerContainer.class);
+        boolean[] paused = {false};
+        doAnswer(invocation -> paused[0] = true).when(consumer).pause();
+        doAnswer(invocation -> paused[0] = false).when(consumer).resume();
+        when(consumer.isPauseRequested()).thenAnswer(invocation -> paused[0]);
+        return consumer;
+    }
+
+    private static List<Boolean> paused(List<MessageListenerContainer> consumers) {
+        return consumers.stream().map(MessageListenerContainer::isPauseRequested).toList();
+    }
+}
@@ -0,0 +1,119 @@
+package dnc.cuong.common.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho ListenerThreads — permit theo thread, executor virtual/platform.
+ */
+class ListenerThreadsTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void platformMode_shouldNotLimitDbAccess() {
+        ListenerThreads threads = new ListenerThreads("test", ListenerThreads.Mode.PLATFORM, 2, meterRegistry);
+
+        threads.acquireDbPermit();
+        threads.acquireDbPermit();
+
+        assertEquals(Integer.MAX_VALUE, threads.availableDbPermits());
+        assertNull(meterRegistry.find("listener.db.permits.available").gauge());
+    }
+
+    @Test
+    void acquireAndRelease_shouldBeIdempotentPerThread() {
+        ListenerThreads threads = new ListenerThreads("test", ListenerThreads.Mode.VIRTUAL, 2, meterRegistry);
+
+        threads.acquireDbPermit();
+        threads.acquireDbPermit();
+        assertEquals(1, threads.availableDbPermits());
+
+        threads.releaseDbPermit();
+        threads.releaseDbPermit();
+        assertEquals(2, threads.availableDbPermits());
+    }
+
+    @Test
+    void runWithDbPermit_shouldKeepOuterPermit_whenNested() {
+        ListenerThreads threads = new ListenerThreads("test", ListenerThreads.Mode.VIRTUAL, 2, meterRegistry);
+
+        threads.acquireDbPermit();
+        threads.runWithDbPermit(() -> assertEquals(1, threads.availableDbPermits()));
+
+        assertEquals(1, threads.availableDbPermits());
+        threads.releaseDbPermit();
+        assertEquals(2, threads.availableDbPermits());
+    }
+
+    @Test
+    void runHandler_shouldTimeHandlerInsidePermit_perListener() {
+        ListenerThreads threads = new ListenerThreads("test", ListenerThreads.Mode.VIRTUAL, 2, meterRegistry);
+
+        threads.runHandler("order-paid", () -> assertEquals(1, threads.availableDbPermits()));
+        assertThrows(IllegalStateException.class, () -> threads.runHandler("order-paid", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(2, threads.availableDbPermits());
+        assertEquals(2, meterRegistry.get(ListenerThreads.HANDLER_TIMER)
+                .tags("service", "test", ListenerThreads.LISTENER_ID_TAG, "order-paid").timer().count());
+    }
+
+    @Test
+    void recordExecutor_shouldCapConcurrentDbWork_atPermitCount() throws Exception {
+        ListenerThreads threads = new ListenerThreads("test", ListenerThreads.Mode.VIRTUAL, 3, meterRegistry);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger virtualWorkers = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(50);
+
+        try (ExecutorService executor = threads.newRecordExecutor(1)) {
+            for (int i = 0; i < 50; i++) {
+                executor.submit(() -> threads.runWithDbPermit(() -> {
+                    if (Thread.currentThread().isVirtual()) {
+                        virtualWorkers.incrementAndGet();
+                    }
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    sleepQuietly(2);
+                    inFlight.decrementAndGet();
+                    done.countDown();
+                }));
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(50, virtualWorkers.get());
+        assertTrue(maxInFlight.get() <= 3, "maxInFlight=" + maxInFlight.get());
+        assertEquals(3, threads.availableDbPermits());
+        assertEquals(50, meterRegistry.get("listener.db.permit.wait").timer().count());
+    }
+
+    @Test
+    void platformRecordExecutor_shouldUseFixedPlatformThreads() throws Exception {
+        ListenerThreads threads = new ListenerThreads("test", ListenerThreads.Mode.PLATFORM, 0, meterRegistry);
+
+        try (ExecutorService executor = threads.newRecordExecutor(2)) {
+            Future<Thread> worker = executor.submit(Thread::currentThread);
+            assertFalse(worker.get().isVirtual());
+            assertTrue(worker.get().getName().startsWith("test-record-"));
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
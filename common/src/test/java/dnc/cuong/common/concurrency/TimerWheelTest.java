@@ -0,0 +1,63 @@
+package dnc.cuong.common.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho TimerWheel — tới hạn đúng tick, cancel, deadline xa hơn 1 vòng, scheduler trễ.
+ */
+class TimerWheelTest {
+
+    private static final long START = 1_000_000;
+
+    @Test
+    void advance_shouldReturnOnlyDueKeys() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, 8, START);
+        wheel.schedule("a", START + 250);
+        wheel.schedule("b", START + 500);
+
+        assertEquals(List.of(), wheel.advance(START + 200));
+        assertEquals(List.of("a"), wheel.advance(START + 300));
+        assertEquals(List.of("b"), wheel.advance(START + 500));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancel_shouldRemoveKey_andReschedulingShouldMoveDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, 8, START);
+        wheel.schedule("a", START + 100);
+        wheel.schedule("b", START + 100);
+        wheel.schedule("b", START + 400);
+
+        assertTrue(wheel.cancel("a"));
+        assertFalse(wheel.cancel("a"));
+        assertEquals(List.of(), wheel.advance(START + 300));
+        assertEquals(List.of("b"), wheel.advance(START + 400));
+    }
+
+    @Test
+    void advance_shouldKeepKeysDueInLaterRounds() {
+        // 8 bucket × 100ms = 1 vòng 800ms; deadline 1000ms rơi vào cùng bucket với 200ms
+        TimerWheel<String> wheel = new TimerWheel<>(100, 8, START);
+        wheel.schedule("far", START + 1000);
+
+        assertEquals(List.of(), wheel.advance(START + 800));
+        assertEquals(List.of("far"), wheel.advance(START + 1000));
+    }
+
+    @Test
+    void advance_shouldCatchUpAfterLongPause_andPastDeadlinesFireNextTick() {
+        TimerWheel<String> wheel = new TimerWheel<>(100, 8, START);
+        wheel.schedule("a", START + 100);
+        wheel.schedule("b", START + 700);
+        wheel.schedule("c", START + 5000);
+
+        assertEquals(2, wheel.advance(START + 3000).size());
+        wheel.schedule("late", START - 1000);
+        assertEquals(List.of("late"), wheel.advance(START + 3100));
+        assertEquals(1, wheel.size());
+    }
+}
@@ -0,0 +1,60 @@
+package dnc.cuong.common.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho UuidV7 — layout bit đúng RFC 9562, tăng dần trong 1 JVM.
+ */
+class UuidV7Test {
+
+    @Test
+    void next_shouldSetVersion7AndRfcVariant() {
+        UUID id = UuidV7.next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+    }
+
+    @Test
+    void next_shouldEmbedCurrentTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7.next();
+        long after = System.currentTimeMillis();
+
+        long timestamp = UuidV7.timestamp(id);
+        // Có thể chạy trước đồng hồ vài ms khi sequence tràn (test khác chạy song song)
+        assertTrue(timestamp >= before && timestamp <= after + 10, "timestamp=" + timestamp);
+    }
+
+    @Test
+    void next_shouldBeStrictlyIncreasing_evenWithinSameMillisecond() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(UuidV7.next());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            // So sánh unsigned theo byte = thứ tự cột uuid của Postgres
+            assertTrue(Long.compareUnsigned(ids.get(i - 1).getMostSignificantBits(),
+                    ids.get(i).getMostSignificantBits()) < 0, "not increasing at " + i);
+        }
+    }
+
+    @Test
+    void of_shouldLayoutFieldsPerRfc() {
+        UUID id = UuidV7.of(0x0189_8F2A_5C11L, 0xABC, -1L);
+
+        assertEquals("01898f2a-5c11-7abc-bfff-ffffffffffff", id.toString());
+    }
+
+    @Test
+    void timestamp_shouldRejectOtherVersions() {
+        assertThrows(IllegalArgumentException.class, () -> UuidV7.timestamp(UUID.randomUUID()));
+    }
+}
@@ -0,0 +1,167 @@
+package dnc.cuong.common.idempotency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho IdempotencyGuard — processed_events giả lập bằng Set, afterCommit chạy thủ công.
+ *
+ * WHY afterCommit thủ công?
+ * -> Verify eventId chưa commit KHÔNG nằm trong LRU (rollback không được làm mất message).
+ */
+class IdempotencyGuardTest {
+
+    private final Set<UUID> committed = new HashSet<>();
+    private final Set<UUID> claimedInTx = new HashSet<>();
+    private final List<Runnable> pendingAfterCommit = new ArrayList<>();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private int storeQueries;
+
+    private IdempotencyGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        guard = new IdempotencyGuard("test",
+                new IdempotencyGuard.Settings(true, 100),
+                id -> {
+                    storeQueries++;
+                    return committed.contains(id);
+                },
+                (id, topic) -> {
+                    storeQueries++;
+                    return insert(id);
+                },
+                (ids, topic) -> {
+                    storeQueries++;
+                    return ids.stream().filter(this::insert).toList();
+                },
+                pendingAfterCommit::add,
+                meterRegistry);
+    }
+
+    @Test
+    void claim_shouldInsertThroughStore_forNewEvent() {
+        UUID eventId = UUID.randomUUID();
+
+        assertTrue(guard.claim(eventId, "order.placed"));
+
+        assertEquals(1, storeQueries);
+        assertEquals(1.0, lookups("claimed"));
+    }
+
+    @Test
+    void claim_shouldAskStore_whenEventProcessedByAnotherInstance() {
+        // Instance khác đã commit eventId trước rebalance — memory local không biết gì về nó
+        UUID eventId = UUID.randomUUID();
+        committed.add(eventId);
+
+        assertFalse(guard.claim(eventId, "order.placed"));
+
+        assertEquals(1, storeQueries);
+        assertEquals(1.0, lookups("store_hit"));
+    }
+
+    @Test
+    void claim_shouldHitRecentCache_afterCommit() {
+        UUID eventId = UUID.randomUUID();
+        assertTrue(guard.claim(eventId, "order.placed"));
+        commit();
+
+        assertFalse(guard.claim(eventId, "order.placed"));
+        assertTrue(guard.isDuplicate(eventId));
+
+        assertEquals(1, storeQueries);
+        assertEquals(2.0, lookups("recent_hit"));
+    }
+
+    @Test
+    void claim_shouldSucceedAgain_whenTransactionRolledBack() {
+        UUID eventId = UUID.randomUUID();
+        assertTrue(guard.claim(eventId, "order.placed"));
+        rollback();
+
+        assertTrue(guard.claim(eventId, "order.placed"));
+        assertEquals(2, storeQueries);
+    }
+
+    @Test
+    void claimBatch_shouldSkipRecent_andClaimRestInOneStatement() {
+        UUID recent = UUID.randomUUID();
+        UUID elsewhere = UUID.randomUUID();
+        UUID fresh = UUID.randomUUID();
+        guard.claim(recent, "order.placed");
+        commit();
+        committed.add(elsewhere);
+        storeQueries = 0;
+
+        Set<UUID> claimed = guard.claim(List.of(recent, elsewhere, fresh, fresh), "order.placed");
+
+        assertEquals(Set.of(fresh), claimed);
+        assertEquals(1, storeQueries);
+    }
+
+    @Test
+    void isDuplicate_shouldAskStore_onRecentMiss() {
+        UUID eventId = UUID.randomUUID();
+        assertFalse(guard.isDuplicate(eventId));
+        committed.add(eventId);
+        assertTrue(guard.isDuplicate(eventId));
+
+        assertEquals(2, storeQueries);
+        assertEquals(1.0, lookups("store_miss"));
+        assertEquals(1.0, lookups("store_hit"));
+    }
+
+    @Test
+    void warmUp_shouldMakeRecentEventsDuplicateWithoutStore() {
+        UUID eventId = UUID.randomUUID();
+        guard.warmUp(List.of(eventId));
+
+        assertFalse(guard.claim(eventId, "order.placed"));
+        assertEquals(0, storeQueries);
+    }
+
+    @Test
+    void passThrough_shouldAlwaysDelegateToStore() {
+        IdempotencyGuard passThrough = new IdempotencyGuard("pass", IdempotencyGuard.Settings.passThrough(),
+                committed::contains, (id, topic) -> insert(id), (ids, topic) -> ids.stream().filter(this::insert).toList(),
+                Runnable::run, meterRegistry);
+        UUID eventId = UUID.randomUUID();
+
+        assertTrue(passThrough.claim(eventId, "order.placed"));
+        commit();
+        assertFalse(passThrough.claim(eventId, "order.placed"));
+        assertTrue(passThrough.isDuplicate(eventId));
+    }
+
+    /** INSERT ... ON CONFLICT DO NOTHING giả lập — row thuộc transaction đang mở cho tới commit. */
+    private boolean insert(UUID eventId) {
+        return !committed.contains(eventId) && claimedInTx.add(eventId);
+    }
+
+    private void commit() {
+        committed.addAll(claimedInTx);
+        claimedInTx.clear();
+        pendingAfterCommit.forEach(Runnable::run);
+        pendingAfterCommit.clear();
+    }
+
+    private void rollback() {
+        claimedInTx.clear();
+        pendingAfterCommit.clear();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.counter("idempotency.lookups.total", "service", "test", "result", result).count();
+    }
+}
@@ -0,0 +1,50 @@
+package dnc.cuong.common.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho ProcessedEventPurger — repository mock trả số row xoá mỗi chunk.
+ */
+class ProcessedEventPurgerTest {
+
+    private final ProcessedEventRepository repository = mock(ProcessedEventRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ProcessedEventPurger purger = new ProcessedEventPurger("test", repository,
+            new TransactionTemplate(transactionManager), Duration.ofHours(168), 100, meterRegistry);
+
+    @Test
+    void purge_shouldDeleteChunksUntilLessThanChunkSize_andCountRows() {
+        when(repository.deleteProcessedBefore(any(), eq(100))).thenReturn(100, 100, 7);
+
+        purger.purge();
+
+        verify(repository, times(3)).deleteProcessedBefore(any(), eq(100));
+        // Mỗi chunk 1 transaction
+        verify(transactionManager, times(3)).commit(any());
+        assertEquals(207, meterRegistry.get("idempotency.processed_events.purged.total").counter().count());
+    }
+
+    @Test
+    void purge_shouldUseKafkaRetentionAsCutoff() {
+        Instant before = Instant.now().minus(Duration.ofHours(168));
+
+        purger.purge();
+
+        verify(repository).deleteProcessedBefore(argThat(cutoff ->
+                !cutoff.isBefore(before) && cutoff.isBefore(before.plusSeconds(60))), eq(100));
+        assertEquals(0, meterRegistry.get("idempotency.processed_events.purged.total").counter().count());
+    }
+}
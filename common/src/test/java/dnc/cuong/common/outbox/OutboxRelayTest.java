@@ -0,0 +1,151 @@
+package dnc.cuong.common.outbox;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OutboxRelay — mock repository + KafkaTemplate, gọi relayChunk() trực tiếp
+ * (transaction do TransactionTemplate bọc ngoài, không cần ở đây).
+ */
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    private static final int CHUNK_SIZE = 10;
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private KafkaTemplate<String, OrderEventAvro> kafkaTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(outboxEventRepository, kafkaTemplate, transactionTemplate,
+                meterRegistry, CHUNK_SIZE, 2, 1000, 24);
+    }
+
+    @Test
+    void relayChunk_shouldMarkOnlyAckedEventsPublished() throws Exception {
+        OutboxEvent ok1 = outboxEvent(1L, "order-1");
+        OutboxEvent failed = outboxEvent(2L, "order-2");
+        OutboxEvent ok2 = outboxEvent(3L, "order-3");
+        when(outboxEventRepository.lockNextChunk(CHUNK_SIZE)).thenReturn(List.of(ok1, failed, ok2));
+
+        when(kafkaTemplate.send(eq(KafkaTopics.ORDER_PLACED), anyString(), any(OrderEventAvro.class)))
+                .thenAnswer(inv -> "order-2".equals(inv.getArgument(1))
+                        ? CompletableFuture.failedFuture(new RuntimeException("broker down"))
+                        : CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        int published = relay.relayChunk();
+
+        assertEquals(2, published);
+        verify(kafkaTemplate).flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Long>> idsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository).markPublished(idsCaptor.capture(), any(Instant.class));
+        assertEquals(List.of(1L, 3L), idsCaptor.getValue().stream().sorted().toList());
+
+        assertEquals(2.0, meterRegistry.counter("outbox.relay.sent.total").count());
+        assertEquals(1.0, meterRegistry.counter("outbox.relay.failed.total").count());
+    }
+
+    @Test
+    void relayChunk_shouldStopKeyAtFirstFailure_soLaterEventsOfThatKeyAreNotSentAhead() throws Exception {
+        OutboxEvent placed = outboxEvent(1L, "order-1");
+        OutboxEvent other = outboxEvent(2L, "order-2");
+        OutboxEvent completed = outboxEvent(3L, "order-1");
+        OutboxEvent otherNext = outboxEvent(4L, "order-2");
+        when(outboxEventRepository.lockNextChunk(CHUNK_SIZE)).thenReturn(List.of(placed, other, completed, otherNext));
+
+        List<String> sentKeys = new ArrayList<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any(OrderEventAvro.class))).thenAnswer(inv -> {
+            sentKeys.add(inv.getArgument(1));
+            // Event đầu của order-1 fail
+            return sentKeys.size() == 1
+                    ? CompletableFuture.failedFuture(new RuntimeException("broker down"))
+                    : CompletableFuture.completedFuture(mock(SendResult.class));
+        });
+
+        assertEquals(2, relay.relayChunk());
+
+        // order-1 không gửi event thứ 2 khi event thứ nhất chưa lên broker; order-2 đi đủ 2 lượt
+        assertEquals(List.of("order-1", "order-2", "order-2"), sentKeys);
+        verify(kafkaTemplate, times(2)).flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Long>> idsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository).markPublished(idsCaptor.capture(), any(Instant.class));
+        assertEquals(List.of(2L, 4L), idsCaptor.getValue());
+    }
+
+    @Test
+    void relayChunk_shouldSendDecodedPayloadWithOriginalKey() throws Exception {
+        OutboxEvent event = outboxEvent(7L, "order-7");
+        when(outboxEventRepository.lockNextChunk(CHUNK_SIZE)).thenReturn(List.of(event));
+        when(kafkaTemplate.send(anyString(), anyString(), any(OrderEventAvro.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        relay.relayChunk();
+
+        ArgumentCaptor<OrderEventAvro> avroCaptor = ArgumentCaptor.forClass(OrderEventAvro.class);
+        verify(kafkaTemplate).send(eq(KafkaTopics.ORDER_PLACED), eq("order-7"), avroCaptor.capture());
+        assertEquals(OrderEventAvro.fromByteBuffer(ByteBuffer.wrap(event.getPayload())),
+                avroCaptor.getValue());
+    }
+
+    @Test
+    void relayChunk_shouldDoNothingWhenOutboxEmpty() {
+        when(outboxEventRepository.lockNextChunk(CHUNK_SIZE)).thenReturn(List.of());
+
+        assertEquals(0, relay.relayChunk());
+
+        verifyNoInteractions(kafkaTemplate);
+        verify(outboxEventRepository, never()).markPublished(any(), any());
+    }
+
+    private static OutboxEvent outboxEvent(long id, String key) throws Exception {
+        OrderEvent event = OrderEvent.create(UUID.randomUUID(), UUID.randomUUID(),
+                List.of(new OrderEvent.OrderItem(UUID.randomUUID(), "Laptop", 1, BigDecimal.TEN)),
+                BigDecimal.TEN, OrderStatus.PLACED);
+        ByteBuffer buffer = OrderEventMapper.toAvro(event, "order-service").toByteBuffer();
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        OutboxEvent outboxEvent = new OutboxEvent(KafkaTopics.ORDER_PLACED, key, payload);
+        ReflectionTestUtils.setField(outboxEvent, "id", id);
+        return outboxEvent;
+    }
+}
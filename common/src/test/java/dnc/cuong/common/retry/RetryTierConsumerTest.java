@@ -0,0 +1,129 @@
+package dnc.cuong.common.retry;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho RetryTierConsumer — đợi tới due-at bằng nack, tới hạn thì gọi handler của topic gốc.
+ */
+@ExtendWith(MockitoExtension.class)
+class RetryTierConsumerTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Mock
+    private Consumer<OrderEventAvro> orderPlacedHandler;
+
+    @Mock
+    private Consumer<OrderEventAvro> paymentFailedHandler;
+
+    @Mock
+    private ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> containerFactory;
+
+    @Mock
+    private Acknowledgment ack;
+
+    @Test
+    void onRecord_shouldNackRemainingDelay_whenNotDueYet() {
+        ConsumerRecord<String, OrderEventAvro> record = retried("order.placed.retry-10s", NOW + 4_000);
+
+        consumer(NOW).onRecord(record, ack);
+
+        verify(ack).nack(Duration.ofSeconds(4));
+        verify(ack, never()).acknowledge();
+        verifyNoInteractions(orderPlacedHandler, paymentFailedHandler);
+    }
+
+    @Test
+    void onRecord_shouldRunSourceTopicHandlerThenAck_whenDue() {
+        ConsumerRecord<String, OrderEventAvro> record = retried("payment.failed.retry-1s", NOW - 50);
+
+        consumer(NOW).onRecord(record, ack);
+
+        verify(paymentFailedHandler).accept(record.value());
+        verify(orderPlacedHandler, never()).accept(any());
+        verify(ack).acknowledge();
+    }
+
+    @Test
+    void onRecord_shouldPropagateFailureWithoutAck_soErrorHandlerRoutesToNextTier() {
+        ConsumerRecord<String, OrderEventAvro> record = retried("order.placed.retry-1s", NOW);
+        doThrow(new IllegalStateException("db down")).when(orderPlacedHandler).accept(any());
+
+        assertThrows(IllegalStateException.class, () -> consumer(NOW).onRecord(record, ack));
+
+        verify(ack, never()).acknowledge();
+    }
+
+    @Test
+    void start_shouldCreateOneContainerPerSourceTopicAndTier() {
+        // nack pause cả consumer → mỗi (topic gốc, tier) 1 container riêng, không chặn topic khác
+        ConcurrentMessageListenerContainer<String, OrderEventAvro> container = mock(ConcurrentMessageListenerContainer.class);
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties("any"));
+        when(containerFactory.createContainer(anyString())).thenReturn(container);
+        RetryTierConsumer consumer = consumer(NOW);
+
+        consumer.start();
+
+        for (String source : List.of(KafkaTopics.ORDER_PLACED, KafkaTopics.PAYMENT_FAILED)) {
+            for (String tier : List.of("1s", "10s", "60s")) {
+                verify(containerFactory).createContainer(KafkaTopics.retry(source, tier));
+                verify(container).setBeanName("inventory-service-retry-" + source + "-" + tier);
+            }
+        }
+        verify(container, times(6)).start();
+        assertEquals("inventory-service-retry-group", container.getContainerProperties().getGroupId());
+        assertTrue(consumer.isRunning());
+
+        consumer.stop();
+        verify(container, times(6)).stop();
+        assertFalse(consumer.isRunning());
+    }
+
+    private RetryTierConsumer consumer(long nowMs) {
+        RetryTiers retryTiers = RetryTiers.parse("inventory-service", "1s,10s,60s",
+                Clock.fixed(Instant.ofEpochMilli(nowMs), ZoneOffset.UTC), new SimpleMeterRegistry());
+        return new RetryTierConsumer(retryTiers, containerFactory, Map.of(
+                KafkaTopics.ORDER_PLACED, orderPlacedHandler,
+                KafkaTopics.PAYMENT_FAILED, paymentFailedHandler));
+    }
+
+    private static ConsumerRecord<String, OrderEventAvro> retried(String topic, long dueAt) {
+        OrderEvent event = new OrderEvent(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                List.of(new OrderEvent.OrderItem(UUID.randomUUID(), "Test Product", 1, new BigDecimal("10.00"))),
+                new BigDecimal("10.00"), OrderStatus.PLACED, null, Instant.now());
+        ConsumerRecord<String, OrderEventAvro> record = new ConsumerRecord<>(topic, 0, 0,
+                event.orderId().toString(), OrderEventMapper.toAvro(event, "test"));
+        record.headers().add(RetryTiers.DUE_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAt).array());
+        return record;
+    }
+}
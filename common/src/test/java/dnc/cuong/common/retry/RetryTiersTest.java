@@ -0,0 +1,108 @@
+package dnc.cuong.common.retry;
+
+import dnc.cuong.common.event.KafkaTopics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho RetryTiers — chuỗi topic main → tier → DLT, due-at header và metrics.
+ */
+class RetryTiersTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RetryTiers retryTiers = RetryTiers.parse("test", "1s, 10s,2m",
+            Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC), meterRegistry);
+
+    @Test
+    void parse_shouldReadLabelsAndDelays() {
+        assertEquals(List.of(
+                new RetryTiers.Tier(0, "1s", Duration.ofSeconds(1)),
+                new RetryTiers.Tier(1, "10s", Duration.ofSeconds(10)),
+                new RetryTiers.Tier(2, "2m", Duration.ofMinutes(2))), retryTiers.tiers());
+        assertEquals("order.placed.retry-10s", retryTiers.topic(KafkaTopics.ORDER_PLACED, retryTiers.tiers().get(1)));
+        assertEquals("payment.failed.retry-10s", retryTiers.topic(KafkaTopics.PAYMENT_FAILED, retryTiers.tiers().get(1)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RetryTiers.parse("test", "1s,0s", Clock.systemUTC(), meterRegistry));
+        assertThrows(IllegalArgumentException.class,
+                () -> RetryTiers.parse("test", "1h", Clock.systemUTC(), meterRegistry));
+    }
+
+    @Test
+    void destination_shouldWalkTiersThenDlt() {
+        assertEquals(new TopicPartition("order.placed.retry-1s", -1), route("order.placed"));
+        assertEquals(new TopicPartition("order.placed.retry-10s", -1), route("order.placed.retry-1s"));
+        assertEquals(new TopicPartition("order.placed.retry-2m", -1), route("order.placed.retry-10s"));
+        assertEquals(new TopicPartition("order.placed.DLT", -1), route("order.placed.retry-2m"));
+        // Tier đã bị bỏ khỏi config → DLT
+        assertEquals(new TopicPartition("order.placed.DLT", -1), route("order.placed.retry-5s"));
+
+        assertEquals(1.0, meterRegistry.get("listener.retry.routed").tag("tier", "1s").counter().count());
+        assertEquals(2.0, meterRegistry.get("listener.retry.routed").tag("tier", "dlt").counter().count());
+    }
+
+    @Test
+    void destination_shouldSkipTiers_whenValueCouldNotBeDeserialized() {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("order.placed", 2, 7, "key", null);
+
+        assertEquals(new TopicPartition("order.placed.DLT", -1),
+                retryTiers.destination(record, new IllegalStateException("bad bytes")));
+        assertNull(retryTiers.headers(record, new IllegalStateException("bad bytes")));
+    }
+
+    @Test
+    void headers_shouldCarryDueAtOfNextTier_andRemainingDelayIsCappedByTier() {
+        Headers headers = retryTiers.headers(record("order.placed.retry-1s"), new RuntimeException());
+        ConsumerRecord<String, String> retried = record("order.placed.retry-10s");
+        headers.forEach(h -> retried.headers().add(h));
+
+        assertEquals(Duration.ofSeconds(10), retryTiers.remainingDelay(retried));
+
+        // due-at do instance lệch đồng hồ ghi xa hơn delay của tier → chỉ đợi tối đa 1 tier
+        ConsumerRecord<String, String> skewed = record("order.placed.retry-1s");
+        headers.forEach(h -> skewed.headers().add(h));
+        assertEquals(Duration.ofSeconds(1), retryTiers.remainingDelay(skewed));
+
+        assertEquals(Duration.ZERO, retryTiers.remainingDelay(record("order.placed.retry-1s")));
+    }
+
+    @Test
+    void recordProcessing_shouldTrackLagPastDueAt() {
+        RetryTiers late = RetryTiers.parse("test", "1s,10s",
+                Clock.fixed(Instant.ofEpochMilli(NOW + 10_000 + 250), ZoneOffset.UTC), meterRegistry);
+        ConsumerRecord<String, String> retried = record("order.placed.retry-10s");
+        retryTiers.headers(record("order.placed.retry-1s"), new RuntimeException())
+                .forEach(h -> retried.headers().add(h));
+
+        assertEquals(Duration.ZERO, late.remainingDelay(retried));
+        late.recordProcessing(retried);
+
+        Timer lag = meterRegistry.get("listener.retry.lag").tag("tier", "10s").timer();
+        assertEquals(1, lag.count());
+        assertEquals(250.0, lag.totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    private TopicPartition route(String topic) {
+        return retryTiers.destination(record(topic), new RuntimeException("boom"));
+    }
+
+    private static ConsumerRecord<String, String> record(String topic) {
+        return new ConsumerRecord<>(topic, 0, 0, "key", "value");
+    }
+}
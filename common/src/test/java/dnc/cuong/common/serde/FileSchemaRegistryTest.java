@@ -0,0 +1,68 @@
+package dnc.cuong.common.serde;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventAvroV3;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho FileSchemaRegistry — 2 instance trên cùng file giả lập 2 service local.
+ */
+class FileSchemaRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void register_shouldShareIdsAcrossInstancesOnSameFile() throws IOException {
+        Path file = tempDir.resolve("registry.json");
+        FileSchemaRegistry orderService = new FileSchemaRegistry(file);
+        FileSchemaRegistry inventoryService = new FileSchemaRegistry(file);
+        Schema v1 = OrderEventAvro.getClassSchema();
+
+        int placed = orderService.register("order.placed-value", v1);
+        int validated = inventoryService.register("order.validated-value", v1);
+        int v3 = inventoryService.register("order.validated-dnc.cuong.common.avro.OrderEventAvroV3",
+                OrderEventAvroV3.getClassSchema());
+
+        // Cùng schema → cùng id dù khác subject / process; schema khác → id mới
+        assertEquals(placed, validated);
+        assertNotEquals(placed, v3);
+        assertEquals(OrderEventAvroV3.getClassSchema(), orderService.getById(v3));
+    }
+
+    @Test
+    void getById_shouldThrow_whenIdUnknown() {
+        FileSchemaRegistry registry = new FileSchemaRegistry(tempDir.resolve("registry.json"));
+
+        assertThrows(IOException.class, () -> registry.getById(42));
+    }
+
+    @Test
+    void serde_shouldDecodeMessageProducedByAnotherProcess() {
+        String url = tempDir.resolve("registry.json").toUri().toString();
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        serializer.configure(FileSchemaRegistry.fromUrl(url), false, List.of("order.placed"));
+        OrderEventAvroDeserializer deserializer = new OrderEventAvroDeserializer();
+        deserializer.configure(FileSchemaRegistry.fromUrl(url));
+        UUID id = UUID.randomUUID();
+        OrderEventAvro event = OrderEventMapper.toAvro(new OrderEvent(id, id, id, List.of(),
+                new BigDecimal("10.00"), OrderStatus.PLACED, null, Instant.parse("2024-01-15T10:30:00Z")), "test");
+
+        assertTrue(FileSchemaRegistry.supports(url));
+        assertEquals(event, deserializer.deserialize("order.placed", serializer.serialize("order.placed", event)));
+    }
+}
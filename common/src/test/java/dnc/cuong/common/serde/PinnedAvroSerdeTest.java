@@ -0,0 +1,233 @@
+package dnc.cuong.common.serde;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventAvroV3;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.avro.OrderEventV3Mapper;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import org.apache.avro.Schema;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho PinnedAvroSerializer / PinnedAvroDeserializer + CachingSchemaRegistry,
+ * v1 ↔ v3 qua schema.v3.topics.
+ *
+ * Registry "down" = delegate luôn throw IOException → chỉ còn memory/file cache để phục vụ.
+ */
+class PinnedAvroSerdeTest {
+
+    private static final String TOPIC = "order.placed";
+    private static final String URL = "http://registry:8081";
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        MockSchemaRegistry.dropScope("serde-test");
+    }
+
+    @Test
+    void mockRegistry_shouldRoundTripInConfluentWireFormat() {
+        Map<String, Object> configs = Map.of(
+                AvroSerdeConfig.SCHEMA_REGISTRY_URL, "mock://serde-test",
+                AvroSerdeConfig.PINNED_TOPICS, TOPIC);
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        OrderEventAvroDeserializer deserializer = new OrderEventAvroDeserializer();
+        serializer.configure(configs, false);
+        deserializer.configure(configs, false);
+        OrderEventAvro event = sampleEvent();
+
+        byte[] bytes = serializer.serialize(TOPIC, event);
+
+        assertEquals(0, bytes[0]);
+        int schemaId = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+        assertTrue(schemaId > 0);
+        assertEquals(event, deserializer.deserialize(TOPIC, bytes));
+    }
+
+    @Test
+    void deserializer_shouldOnlyLookUpById_neverRegister() {
+        FakeRegistry registry = new FakeRegistry(false);
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        serializer.configure(registry, false, List.of(TOPIC));
+        byte[] bytes = serializer.serialize(TOPIC, sampleEvent());
+        int registersBefore = registry.registers.get();
+
+        OrderEventAvroDeserializer deserializer = new OrderEventAvroDeserializer();
+        deserializer.configure(registry);
+        deserializer.deserialize(TOPIC, bytes);
+
+        assertEquals(registersBefore, registry.registers.get());
+    }
+
+    @Test
+    void restart_shouldServeFromDiskCache_whenRegistryIsDown() {
+        Path cacheFile = tempDir.resolve("schemas.json");
+        FakeRegistry upRegistry = new FakeRegistry(false);
+        OrderEventAvroSerializer warmSerializer = new OrderEventAvroSerializer();
+        warmSerializer.configure(new CachingSchemaRegistry(URL, upRegistry, cacheFile), false, List.of(TOPIC));
+        byte[] bytes = warmSerializer.serialize(TOPIC, sampleEvent());
+
+        // "Restart": cache mới đọc từ file, registry không trả lời
+        FakeRegistry downRegistry = new FakeRegistry(true);
+        CachingSchemaRegistry restarted = new CachingSchemaRegistry(URL, downRegistry, cacheFile);
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        OrderEventAvroDeserializer deserializer = new OrderEventAvroDeserializer();
+        serializer.configure(restarted, false, List.of(TOPIC));
+        deserializer.configure(restarted);
+
+        assertArrayEquals(bytes, serializer.serialize(TOPIC, sampleEvent()));
+        assertEquals(sampleEvent(), deserializer.deserialize(TOPIC, bytes));
+        assertEquals(0, downRegistry.calls.get());
+    }
+
+    @Test
+    void cacheWrittenForAnotherRegistry_shouldBeIgnored() {
+        Path cacheFile = tempDir.resolve("schemas.json");
+        new OrderEventAvroSerializer().configure(
+                new CachingSchemaRegistry(URL, new FakeRegistry(false), cacheFile), false, List.of(TOPIC));
+
+        CachingSchemaRegistry otherCluster = new CachingSchemaRegistry("http://other:8081", new FakeRegistry(true), cacheFile);
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        serializer.configure(otherCluster, false, List.of(TOPIC));
+
+        assertEquals(0, otherCluster.cachedSchemaCount());
+        assertThrows(SerializationException.class, () -> serializer.serialize(TOPIC, sampleEvent()));
+    }
+
+    @Test
+    void deserializer_shouldFetchWriterSchemaOncePerId() {
+        FakeRegistry registry = new FakeRegistry(false);
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        serializer.configure(registry, false, List.of());
+        byte[] bytes = serializer.serialize(TOPIC, sampleEvent());
+
+        OrderEventAvroDeserializer deserializer = new OrderEventAvroDeserializer();
+        deserializer.configure(registry);
+        int callsBefore = registry.calls.get();
+        deserializer.deserialize(TOPIC, bytes);
+        deserializer.deserialize(TOPIC, bytes);
+
+        assertEquals(callsBefore + 1, registry.calls.get());
+    }
+
+    @Test
+    void v1Reader_shouldDecodeV3Data_whenTopicSwitchedToV3() {
+        FakeRegistry registry = new FakeRegistry(false);
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        serializer.configure(registry, false, List.of(TOPIC), List.of(TOPIC));
+        byte[] v3Bytes = serializer.serialize(TOPIC, sampleEvent());
+        byte[] v1Bytes = serializer.serialize("order.paid", sampleEvent());
+
+        OrderEventAvroDeserializer deserializer = new OrderEventAvroDeserializer();
+        deserializer.configure(registry);
+
+        assertEquals(sampleEvent(), deserializer.deserialize(TOPIC, v3Bytes));
+        assertTrue(v3Bytes.length < v1Bytes.length, "v3=" + v3Bytes.length + " v1=" + v1Bytes.length);
+        // Subject riêng — không thêm version không compatible vào order.placed-value của v1
+        assertEquals(Set.of("order.placed-dnc.cuong.common.avro.OrderEventAvroV3", "order.paid-value"),
+                registry.subjects);
+    }
+
+    @Test
+    void v3Reader_shouldDecodeV1Data() {
+        FakeRegistry registry = new FakeRegistry(false);
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        serializer.configure(registry, false, List.of(TOPIC));
+        byte[] v1Bytes = serializer.serialize(TOPIC, sampleEvent());
+
+        OrderEventAvroV3Deserializer deserializer = new OrderEventAvroV3Deserializer();
+        deserializer.configure(registry);
+        OrderEventAvroV3 decoded = deserializer.deserialize(TOPIC, v1Bytes);
+
+        assertEquals(OrderEventV3Mapper.fromV1(sampleEvent()), decoded);
+        assertEquals(sampleEvent(), OrderEventV3Mapper.toV1(decoded));
+    }
+
+    @Test
+    void v3Topic_shouldFailSerialization_whenAmountHasSubCentPrecision() {
+        OrderEventAvroSerializer serializer = new OrderEventAvroSerializer();
+        serializer.configure(new FakeRegistry(false), false, List.of(), List.of(TOPIC));
+        OrderEventAvro event = sampleEvent();
+        event.setTotalAmount("4999.985");
+
+        assertThrows(SerializationException.class, () -> serializer.serialize(TOPIC, event));
+    }
+
+    @Test
+    void deserialize_shouldRejectPayloadWithoutMagicByte() {
+        OrderEventAvroDeserializer deserializer = new OrderEventAvroDeserializer();
+        deserializer.configure(new FakeRegistry(false));
+
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize(TOPIC, "{\"eventId\":\"x\"}".getBytes()));
+        assertNull(deserializer.deserialize(TOPIC, null));
+    }
+
+    private static OrderEventAvro sampleEvent() {
+        UUID id = UUID.fromString("3f2b8c1e-6a4d-4c2e-9b7a-1d2e3f4a5b6c");
+        return OrderEventMapper.toAvro(new OrderEvent(id, id, id,
+                List.of(new OrderEvent.OrderItem(id, "MacBook Pro", 2, new BigDecimal("2499.99"))),
+                new BigDecimal("4999.98"), OrderStatus.PLACED, null,
+                Instant.parse("2024-01-15T10:30:00Z")), "order-service");
+    }
+
+    /** Registry in-memory đếm số call; down=true → mọi call throw như registry mất kết nối. */
+    private static final class FakeRegistry implements SchemaRegistry {
+        private final Map<Integer, Schema> schemasById = new ConcurrentHashMap<>();
+        private final boolean down;
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger registers = new AtomicInteger();
+        final Set<String> subjects = ConcurrentHashMap.newKeySet();
+
+        FakeRegistry(boolean down) {
+            this.down = down;
+        }
+
+        @Override
+        public int register(String subject, Schema schema) throws IOException {
+            calls.incrementAndGet();
+            registers.incrementAndGet();
+            if (down) {
+                throw new IOException("Connection refused");
+            }
+            subjects.add(subject);
+            // Cùng schema → cùng id, như registry thật
+            int id = schema.hashCode() & Integer.MAX_VALUE;
+            schemasById.put(id, schema);
+            return id;
+        }
+
+        @Override
+        public Schema getById(int id) throws IOException {
+            calls.incrementAndGet();
+            if (down) {
+                throw new IOException("Connection refused");
+            }
+            Schema schema = schemasById.get(id);
+            if (schema == null) {
+                throw new IOException("Schema id " + id + " not found");
+            }
+            return schema;
+        }
+    }
+}
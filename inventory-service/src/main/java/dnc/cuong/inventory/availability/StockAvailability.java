@@ -0,0 +1,20 @@
+package dnc.cuong.inventory.availability;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Response của availability API — 1 product trong snapshot.
+ *
+ * asOf = lúc availableQuantity được đọc từ nguồn stock; client biết số liệu cũ tới đâu.
+ */
+public record StockAvailability(UUID productId, String name, int availableQuantity, boolean inStock, Instant asOf) {
+
+    static StockAvailability of(UUID productId, String name, int availableQuantity, Instant asOf) {
+        return new StockAvailability(productId, name, availableQuantity, availableQuantity > 0, asOf);
+    }
+
+    StockAvailability withAvailable(int availableQuantity, Instant asOf) {
+        return of(productId, name, availableQuantity, asOf);
+    }
+}
@@ -0,0 +1,161 @@
+package dnc.cuong.inventory.availability;
+
+import dnc.cuong.common.tx.AfterCommit;
+import dnc.cuong.inventory.domain.Product;
+import dnc.cuong.inventory.domain.ProductRepository;
+import dnc.cuong.inventory.service.StockReservationStrategy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot available theo product trong RAM — nguồn duy nhất của availability API.
+ *
+ * WHY snapshot thay vì SELECT products mỗi request?
+ * → Storefront hỏi "còn hàng?" nhiều hơn đặt hàng vài bậc; mỗi request 1 query = tranh
+ *   connection Hikari với consumer đang reserve, và đọc đúng các row hot đang bị lock.
+ * → Request chỉ đọc ConcurrentHashMap — không bao giờ chạm Postgres.
+ *
+ * WHY đánh dấu stale rồi refresh theo chu kỳ, thay vì cập nhật ngay trong reserve?
+ * → Reserve/release chỉ thêm productId vào set (sau commit — rollback thì không có gì đổi).
+ *   refreshStale() gom mọi product bị chạm trong max-staleness-ms thành 1 lần đọc nguồn stock
+ *   của mode hiện tại (StockReservationStrategy.availableQuantities — ledger mode đọc RAM).
+ * → Hot SKU bị reserve 1000 lần/s vẫn chỉ đọc lại 1 lần mỗi chu kỳ.
+ * → refreshAll() thưa hơn bắt thay đổi từ instance khác / ngoài saga.
+ *
+ * WHY refreshAll() đọc lại danh sách id từ products?
+ * → Product tạo sau startup (insert ngoài service) không có trong snapshot → API trả 404 mãi.
+ *   Mỗi lượt full refresh hỏi thêm id (1 query chỉ lấy PK), refresh gặp id mới thì nạp name rồi thêm entry.
+ * → Chỉ thêm product mà nguồn stock của mode hiện tại trả về: ledger / sharded mode chỉ biết product
+ *   có lúc startup → product mới chưa reserve được thì cũng chưa hiện ở API.
+ */
+@Component
+@Slf4j
+public class StockAvailabilitySnapshot {
+
+    private final StockReservationStrategy stockReservation;
+    private final ProductRepository productRepository;
+    private final Map<UUID, StockAvailability> entries = new ConcurrentHashMap<>();
+    private final Set<UUID> staleProductIds = ConcurrentHashMap.newKeySet();
+    private final Timer refreshTimer;
+    private volatile boolean ready;
+
+    public StockAvailabilitySnapshot(StockReservationStrategy stockReservation,
+                                     ProductRepository productRepository,
+                                     MeterRegistry meterRegistry) {
+        this.stockReservation = stockReservation;
+        this.productRepository = productRepository;
+        this.refreshTimer = Timer.builder("inventory.availability.refresh")
+                .description("Time to re-read available quantities into the availability snapshot")
+                .register(meterRegistry);
+        Gauge.builder("inventory.availability.stale.products", staleProductIds, Set::size)
+                .description("Products changed since the last snapshot refresh").register(meterRegistry);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Optional<StockAvailability> get(UUID productId) {
+        return Optional.ofNullable(entries.get(productId));
+    }
+
+    /** Product không có trong snapshot thì bỏ qua — giữ thứ tự productIds. */
+    public List<StockAvailability> getAll(Collection<UUID> productIds) {
+        List<StockAvailability> result = new ArrayList<>(productIds.size());
+        for (UUID productId : productIds) {
+            StockAvailability entry = entries.get(productId);
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Nạp catalog (id, name) lúc startup — DataInitializer gọi sau khi seed và sau khi
+     * ledger / shards đã sẵn sàng, rồi đọc available từ nguồn stock của mode hiện tại.
+     */
+    public void load(Collection<Product> products) {
+        Instant now = Instant.now();
+        for (Product product : products) {
+            entries.put(product.getId(),
+                    StockAvailability.of(product.getId(), product.getName(), product.getAvailableQuantity(), now));
+        }
+        refresh(List.copyOf(entries.keySet()));
+        ready = true;
+        log.info("Stock availability snapshot loaded | products={}", entries.size());
+    }
+
+    /**
+     * Reserve / release vừa chạm các product này — refresh ở chu kỳ kế tiếp, sau khi transaction commit.
+     */
+    public void markStale(Collection<UUID> productIds) {
+        AfterCommit.run(() -> staleProductIds.addAll(productIds));
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.availability.max-staleness-ms:500}")
+    public void refreshStale() {
+        if (staleProductIds.isEmpty()) {
+            return;
+        }
+        List<UUID> productIds = new ArrayList<>(staleProductIds);
+        // Remove TRƯỚC khi đọc: product bị chạm lại trong lúc đọc vẫn còn stale cho chu kỳ sau
+        productIds.forEach(staleProductIds::remove);
+        refresh(productIds);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.availability.full-refresh-ms:60000}",
+            initialDelayString = "${inventory.availability.full-refresh-ms:60000}")
+    public void refreshAll() {
+        Set<UUID> productIds = new LinkedHashSet<>(entries.keySet());
+        try {
+            productIds.addAll(productRepository.findAllIds());
+        } catch (Exception e) {
+            log.warn("Product catalog read FAILED, refreshing known products only | error={}", e.getMessage());
+        }
+        refresh(List.copyOf(productIds));
+    }
+
+    private void refresh(List<UUID> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Map<UUID, Integer> available;
+        List<Product> added;
+        try {
+            available = refreshTimer.recordCallable(() -> stockReservation.availableQuantities(productIds));
+            List<UUID> unknown = available.keySet().stream().filter(id -> !entries.containsKey(id)).toList();
+            added = unknown.isEmpty() ? List.of() : productRepository.findAllByIdIn(unknown);
+        } catch (Exception e) {
+            staleProductIds.addAll(productIds);
+            log.warn("Stock availability refresh FAILED, will retry | products={} | error={}",
+                    productIds.size(), e.getMessage());
+            return;
+        }
+        Instant now = Instant.now();
+        for (Product product : added) {
+            entries.putIfAbsent(product.getId(), StockAvailability.of(product.getId(), product.getName(),
+                    available.get(product.getId()), now));
+        }
+        available.forEach((productId, quantity) ->
+                entries.computeIfPresent(productId, (id, entry) -> entry.withAvailable(quantity, now)));
+        if (!added.isEmpty()) {
+            log.info("Stock availability snapshot added products | added={} | products={}", added.size(), entries.size());
+        }
+    }
+}
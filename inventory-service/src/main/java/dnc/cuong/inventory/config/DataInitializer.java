@@ -1,9 +1,14 @@
 package dnc.cuong.inventory.config;
 
+import dnc.cuong.inventory.availability.StockAvailabilitySnapshot;
 import dnc.cuong.inventory.domain.Product;
 import dnc.cuong.inventory.domain.ProductRepository;
+import dnc.cuong.inventory.ledger.StockLedger;
+import dnc.cuong.inventory.service.StockHolds;
+import dnc.cuong.inventory.shard.ShardedStockReservation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
@@ -22,6 +27,13 @@ import java.util.UUID;
  * → Để test request từ Order Service dùng đúng productId.
  * → Reproducible: mỗi lần restart đều có cùng products.
  * → README chứa curl commands với các UUID này.
+ *
+ * WHY rebuild StockLedger ở đây?
+ * → Ledger (inventory.stock.mode=ledger) phải nạp stock từ DB SAU khi seed xong.
+ * → ObjectProvider: ledger bean chỉ tồn tại ở ledger mode.
+ * → Tương tự sharded mode: chia stock của product chưa có shard ra product_stock_shards.
+ * → Stock holds còn hạn sau restart được nạp lại vào timer wheel.
+ * → Availability snapshot nạp SAU ledger / shards — đọc available từ nguồn stock của mode hiện tại.
  */
 @Component
 @RequiredArgsConstructor
@@ -29,9 +41,21 @@ import java.util.UUID;
 public class DataInitializer implements CommandLineRunner {
 
     private final ProductRepository productRepository;
+    private final ObjectProvider<StockLedger> stockLedger;
+    private final ObjectProvider<ShardedStockReservation> shardedStock;
+    private final StockHolds stockHolds;
+    private final StockAvailabilitySnapshot availabilitySnapshot;
 
     @Override
     public void run(String... args) {
+        seedProducts();
+        stockLedger.ifAvailable(ledger -> ledger.rebuild(productRepository.findAll()));
+        shardedStock.ifAvailable(sharded -> sharded.initialize(productRepository.findAll()));
+        stockHolds.reload();
+        availabilitySnapshot.load(productRepository.findAll());
+    }
+
+    private void seedProducts() {
         if (productRepository.count() > 0) {
             log.info("Products already exist, skipping seed data");
             return;
@@ -1,21 +1,44 @@
 package dnc.cuong.inventory.config;
 
 import dnc.cuong.common.avro.OrderEventAvro;
-import io.confluent.kafka.serializers.KafkaAvroDeserializer;
-import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig;
+import dnc.cuong.common.concurrency.ListenerFlowControlConfig;
+import dnc.cuong.common.concurrency.ListenerThreads;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.retry.RetryTierConsumer;
+import dnc.cuong.common.retry.RetryTiers;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroDeserializer;
+import dnc.cuong.common.idempotency.IdempotencyConfig;
+import dnc.cuong.inventory.kafka.InventoryKafkaConsumer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchInterceptor;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.util.backoff.BackOff;
 import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.time.Clock;
 import java.util.Map;
 
 /**
@@ -25,28 +48,58 @@ import java.util.Map;
  * → FixedBackOff chỉ retry rồi skip — message bị mất.
  * → DeadLetterPublishingRecoverer publish message fail vào .DLT topic.
  * → Kết hợp ExponentialBackOff: retry thông minh hơn, tránh hammering.
+ *
+ * WHY thêm batchKafkaListenerContainerFactory?
+ * → Flash-sale: 1 poll có thể trả về tới max.poll.records (100) order.placed.
+ * → Batch listener nhận cả poll → InventoryService xử lý trong 1 transaction
+ *   (1 query dedup, 1 query products, JDBC batch UPDATE/INSERT).
+ * → Bật bằng inventory.batch-listener.enabled=true — mặc định vẫn là record listener.
+ *
+ * WHY kafka.listener.threads (platform | virtual)?
+ * → virtual: consumer thread là virtual thread; record listener giữ 1 DB permit / record,
+ *   batch listener giữ 1 permit / poll (cả batch chạy trong 1 transaction = 1 connection).
+ *
+ * WHY kafka.retry-topics.enabled?
+ * → order.placed lỗi (DB chập chờn, lock timeout) retry tại chỗ giữ cả partition tới 30s —
+ *   flash-sale thì hàng nghìn order khác đứng sau 1 record. Bật → lỗi publish sang
+ *   order.placed.retry-1s / -10s / -60s rồi mới .DLT, partition chính commit và chạy tiếp.
+ * → Handler trừ kho idempotent (processed_events) nên xử lý lại lệch thứ tự vẫn an toàn.
+ *
+ * IdempotencyGuard (LRU + claim processed_events) đến từ common — @Import(IdempotencyConfig).
+ * ListenerFlowController (kafka.listener.flow-control.enabled) cũng vậy — @Import(ListenerFlowControlConfig).
  */
 @Configuration
+@Import({IdempotencyConfig.class, ListenerFlowControlConfig.class})
 public class KafkaConsumerConfig {
 
+    private static final String SERVICE_NAME = "inventory-service";
+
     @Bean
     public ConsumerFactory<String, OrderEventAvro> consumerFactory(KafkaProperties kafkaProperties) {
         Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
 
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaAvroDeserializer.class);
-        props.put(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                props.getOrDefault(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                        "http://localhost:8085"));
-        props.put(KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG, true);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, OrderEventAvroDeserializer.class);
+        props.put(AvroSerdeConfig.SCHEMA_REGISTRY_URL,
+                props.getOrDefault(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "http://localhost:8085"));
 
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
+    @Bean
+    public ListenerThreads listenerThreads(
+            @Value("${kafka.listener.threads:platform}") String mode,
+            @Value("${kafka.listener.db-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int dbPermits,
+            MeterRegistry meterRegistry) {
+        return new ListenerThreads(SERVICE_NAME, ListenerThreads.Mode.parse(mode), dbPermits, meterRegistry);
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> kafkaListenerContainerFactory(
             ConsumerFactory<String, OrderEventAvro> consumerFactory,
-            KafkaTemplate<String, OrderEventAvro> kafkaTemplate) {
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers) {
 
         ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
@@ -54,15 +107,181 @@ public class KafkaConsumerConfig {
         factory.setConsumerFactory(consumerFactory);
         factory.setConcurrency(3);
         factory.getContainerProperties().setObservationEnabled(true);
+        applyListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers.getIfAvailable()));
+
+        return factory;
+    }
 
-        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate);
+    /**
+     * Container factory cho batch listener (List<OrderEventAvro> mỗi poll).
+     *
+     * WHY dùng chung DefaultErrorHandler?
+     * → Listener throw BatchListenerFailedException(index) → error handler commit offset
+     *   các record TRƯỚC index, retry/DLT đúng record lỗi thay vì cả batch.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers) {
 
-        ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
-        backOff.setMaxInterval(10000L);
-        backOff.setMaxElapsedTime(30000L);
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
 
-        factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer, backOff));
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(3);
+        factory.setBatchListener(true);
+        applyBatchListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers.getIfAvailable()));
 
         return factory;
     }
+
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public RetryTiers retryTiers(@Value("${kafka.retry-topics.tiers:1s,10s,60s}") String tiers,
+                                 MeterRegistry meterRegistry) {
+        return RetryTiers.parse(SERVICE_NAME, tiers, Clock.systemUTC(), meterRegistry);
+    }
+
+    /**
+     * Container factory cho RetryTierConsumer — 1 container / (topic gốc, tier).
+     *
+     * WHY AckMode.MANUAL?
+     * → Record chưa tới due-at → nack(remaining): consumer pause rồi đọc lại đúng record đó,
+     *   không sleep consumer thread, không vượt max.poll.interval.ms.
+     * → Concurrency 1: tier topic ít record, 1 partition là đủ.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> retryTierKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            RetryTiers retryTiers) {
+
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setObservationEnabled(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        applyListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers));
+
+        return factory;
+    }
+
+    /**
+     * Re-consumer cho retry tier topic (common RetryTierConsumer) — service chỉ cung cấp handler
+     * theo topic gốc: tới hạn thì record đi lại đúng handler của listener chính.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public RetryTierConsumer retryTierConsumer(
+            RetryTiers retryTiers,
+            @Qualifier("retryTierKafkaListenerContainerFactory")
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> containerFactory,
+            InventoryKafkaConsumer inventoryKafkaConsumer) {
+        return new RetryTierConsumer(retryTiers, containerFactory, Map.of(
+                KafkaTopics.ORDER_PLACED, inventoryKafkaConsumer::onOrderPlaced,
+                KafkaTopics.PAYMENT_FAILED, inventoryKafkaConsumer::onPaymentFailed,
+                KafkaTopics.ORDER_PAID, inventoryKafkaConsumer::onOrderPaid));
+    }
+
+    /**
+     * retryTiers null → ExponentialBackOff tại chỗ rồi .DLT (mặc định).
+     * Có retryTiers → không retry tại chỗ: publish ngay sang tier kế tiếp (hết tier → .DLT).
+     */
+    private DefaultErrorHandler errorHandler(KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+                                             RetryTiers retryTiers) {
+        DeadLetterPublishingRecoverer recoverer;
+        BackOff backOff;
+        if (retryTiers == null) {
+            recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate);
+            ExponentialBackOff exponential = new ExponentialBackOff(1000L, 2.0);
+            exponential.setMaxInterval(10000L);
+            exponential.setMaxElapsedTime(30000L);
+            backOff = exponential;
+        } else {
+            recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate, retryTiers::destination);
+            recoverer.setHeadersFunction(retryTiers::headers);
+            backOff = new FixedBackOff(0L, 0L);
+        }
+
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer, backOff);
+        return errorHandler;
+    }
+
+    /**
+     * virtual → consumer thread là virtual thread + record giữ DB permit từ intercept tới afterRecord.
+     * clearThreadState (consumer dừng) trả permit nếu record cuối chưa đi tới afterRecord.
+     */
+    private static void applyListenerThreads(
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory,
+            ListenerThreads listenerThreads) {
+        if (!listenerThreads.isVirtual()) {
+            return;
+        }
+        factory.getContainerProperties().setListenerTaskExecutor(
+                new SimpleAsyncTaskExecutor(listenerThreads.threadFactory(SERVICE_NAME + "-listener-")));
+        factory.setRecordInterceptor(new RecordInterceptor<>() {
+            @Override
+            public ConsumerRecord<String, OrderEventAvro> intercept(ConsumerRecord<String, OrderEventAvro> record,
+                                                                    Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.acquireDbPermit();
+                return record;
+            }
+
+            @Override
+            public void afterRecord(ConsumerRecord<String, OrderEventAvro> record,
+                                    Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+
+            @Override
+            public void clearThreadState(Consumer<?, ?> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+        });
+    }
+
+    /** Batch: 1 permit cho cả poll — giữ từ intercept tới success/failure. */
+    private static void applyBatchListenerThreads(
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory,
+            ListenerThreads listenerThreads) {
+        if (!listenerThreads.isVirtual()) {
+            return;
+        }
+        factory.getContainerProperties().setListenerTaskExecutor(
+                new SimpleAsyncTaskExecutor(listenerThreads.threadFactory(SERVICE_NAME + "-batch-listener-")));
+        factory.setBatchInterceptor(new BatchInterceptor<>() {
+            @Override
+            public ConsumerRecords<String, OrderEventAvro> intercept(ConsumerRecords<String, OrderEventAvro> records,
+                                                                     Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.acquireDbPermit();
+                return records;
+            }
+
+            @Override
+            public void success(ConsumerRecords<String, OrderEventAvro> records,
+                                Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+
+            @Override
+            public void failure(ConsumerRecords<String, OrderEventAvro> records, Exception exception,
+                                Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+
+            @Override
+            public void clearThreadState(Consumer<?, ?> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+        });
+    }
 }
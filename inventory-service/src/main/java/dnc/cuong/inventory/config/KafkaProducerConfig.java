@@ -1,13 +1,15 @@
 package dnc.cuong.inventory.config;
 
 import dnc.cuong.common.avro.OrderEventAvro;
-import io.confluent.kafka.serializers.KafkaAvroSerializer;
-import io.confluent.kafka.serializers.KafkaAvroSerializerConfig;
+import dnc.cuong.common.outbox.OutboxConfig;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroSerializer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
@@ -21,8 +23,13 @@ import java.util.Map;
  * → Inventory Service là CONSUMER của order.placed,
  *   nhưng cũng là PRODUCER của order.validated và order.failed.
  * → Choreography pattern: mỗi service vừa consume vừa produce events.
+ *
+ * WHY @Import(OutboxConfig)?
+ * → OutboxWriter / OutboxRelay / entity outbox_events dùng chung ở common — import để có bean
+ *   (relay chỉ chạy khi outbox.enabled=true).
  */
 @Configuration
+@Import(OutboxConfig.class)
 public class KafkaProducerConfig {
 
     @Bean
@@ -30,12 +37,14 @@ public class KafkaProducerConfig {
         Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
 
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaAvroSerializer.class);
-        props.put(KafkaAvroSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                props.getOrDefault(KafkaAvroSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                        "http://localhost:8085"));
+        props.put(AvroSerdeConfig.SCHEMA_REGISTRY_URL,
+                props.getOrDefault(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "http://localhost:8085"));
+
+        // Configure ngay khi tạo bean → schema được đăng ký + pin lúc startup, không phải ở send đầu tiên
+        OrderEventAvroSerializer valueSerializer = new OrderEventAvroSerializer();
+        valueSerializer.configure(props, false);
 
-        return new DefaultKafkaProducerFactory<>(props);
+        return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), valueSerializer);
     }
 
     @Bean
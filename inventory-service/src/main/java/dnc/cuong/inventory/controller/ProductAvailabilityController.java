@@ -0,0 +1,62 @@
+package dnc.cuong.inventory.controller;
+
+import dnc.cuong.inventory.availability.StockAvailability;
+import dnc.cuong.inventory.availability.StockAvailabilitySnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * "Còn hàng?" cho storefront — đọc StockAvailabilitySnapshot, không chạm Postgres.
+ *
+ * WHY không trả reservedQuantity?
+ * → Storefront chỉ cần đặt được hay không; reserved là chi tiết nội bộ của saga.
+ *
+ * Số liệu trễ tối đa khoảng inventory.availability.max-staleness-ms — order vẫn có thể bị
+ * từ chối ở bước reserve, đây chỉ là gợi ý hiển thị.
+ */
+@RestController
+@RequestMapping("/api/products")
+@RequiredArgsConstructor
+public class ProductAvailabilityController {
+
+    private static final int MAX_BULK_SIZE = 100;
+
+    private final StockAvailabilitySnapshot snapshot;
+
+    @GetMapping("/{productId}/availability")
+    public ResponseEntity<StockAvailability> getAvailability(@PathVariable UUID productId) {
+        ensureReady();
+        return snapshot.get(productId)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found: " + productId));
+    }
+
+    /**
+     * Bulk: GET /api/products/availability?ids=a,b,c — product không tồn tại bị bỏ khỏi kết quả.
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<List<StockAvailability>> getAvailabilities(@RequestParam List<UUID> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_BULK_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "ids size must be between 1 and " + MAX_BULK_SIZE + ": " + ids.size());
+        }
+        ensureReady();
+        return ResponseEntity.ok(snapshot.getAll(ids.stream().distinct().toList()));
+    }
+
+    private void ensureReady() {
+        if (!snapshot.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Stock availability snapshot not loaded yet");
+        }
+    }
+}
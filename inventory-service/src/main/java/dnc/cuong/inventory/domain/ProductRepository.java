@@ -1,11 +1,15 @@
 package dnc.cuong.inventory.domain;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.UUID;
 
-public interface ProductRepository extends JpaRepository<Product, UUID> {
+/**
+ * Products — JPA (entity mode) + UPDATE có điều kiện qua JDBC (ProductStockOperations, conditional mode).
+ */
+public interface ProductRepository extends JpaRepository<Product, UUID>, ProductStockOperations {
 
     /**
      * Batch lookup products by IDs.
@@ -16,4 +20,8 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
      * → Performance: 1 round-trip tới DB thay vì N round-trips.
      */
     List<Product> findAllByIdIn(List<UUID> ids);
+
+    /** Id mọi product — StockAvailabilitySnapshot phát hiện product tạo sau startup. */
+    @Query("SELECT p.id FROM Product p")
+    List<UUID> findAllIds();
 }
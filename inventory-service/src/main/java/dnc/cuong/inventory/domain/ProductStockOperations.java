@@ -0,0 +1,41 @@
+package dnc.cuong.inventory.domain;
+
+import dnc.cuong.common.event.OrderEvent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Thao tác stock bằng UPDATE có điều kiện — fragment của ProductRepository (impl: ProductStockOperationsImpl).
+ *
+ * WHY không load Product rồi check hasStock() trong Java?
+ * → SELECT rồi UPDATE là read-modify-write: 2 consumer thread cùng đọc available=1 → cả 2 reserve → oversell.
+ * → "WHERE available_quantity >= ?" check + trừ trong 1 statement dưới row lock → không race,
+ *   và cả order đi trong 1 JDBC batch (1 round-trip) thay vì SELECT + flush UPDATE.
+ *
+ * Không qua persistence context: chạy trong transaction của caller, Product entity đã load
+ * trong cùng transaction KHÔNG thấy thay đổi — caller không được trộn 2 cách.
+ */
+public interface ProductStockOperations {
+
+    /**
+     * Reserve từng item bằng UPDATE có điều kiện, tất cả trong 1 JDBC batch, theo đúng thứ tự truyền vào.
+     *
+     * @return update count từng item — 1 = đã reserve, 0 = thiếu stock hoặc product không tồn tại
+     */
+    int[] reserveIfAvailable(List<OrderEvent.OrderItem> items);
+
+    /**
+     * Trả reserved → available cho từng item (chỉ khi reserved_quantity đủ), 1 JDBC batch.
+     *
+     * @return update count từng item — 0 = product không tồn tại hoặc reserved không đủ
+     */
+    int[] releaseReserved(List<OrderEvent.OrderItem> items);
+
+    /**
+     * Đọc stock hiện tại (id, name, available, reserved) — Product trả về KHÔNG managed,
+     * chỉ dùng để dựng failure reason.
+     */
+    List<Product> findStockLevels(Collection<UUID> ids);
+}
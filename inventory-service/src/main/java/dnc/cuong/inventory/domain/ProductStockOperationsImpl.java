@@ -0,0 +1,83 @@
+package dnc.cuong.inventory.domain;
+
+import dnc.cuong.common.event.OrderEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JDBC implementation của ProductStockOperations — Spring Data ghép vào ProductRepository theo hậu tố Impl.
+ *
+ * JdbcTemplate dùng chung connection của JpaTransactionManager → batch chạy trong transaction của caller.
+ */
+public class ProductStockOperationsImpl implements ProductStockOperations {
+
+    private static final String RESERVE_SQL = """
+            UPDATE products
+               SET available_quantity = available_quantity - ?,
+                   reserved_quantity = reserved_quantity + ?,
+                   updated_at = ?
+             WHERE id = ? AND available_quantity >= ?
+            """;
+
+    private static final String RELEASE_SQL = """
+            UPDATE products
+               SET available_quantity = available_quantity + ?,
+                   reserved_quantity = reserved_quantity - ?,
+                   updated_at = ?
+             WHERE id = ? AND reserved_quantity >= ?
+            """;
+
+    private static final String STOCK_LEVELS_SQL = """
+            SELECT id, name, available_quantity, reserved_quantity
+              FROM products
+             WHERE id IN (:ids)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductStockOperationsImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int[] reserveIfAvailable(List<OrderEvent.OrderItem> items) {
+        return batch(RESERVE_SQL, items);
+    }
+
+    @Override
+    public int[] releaseReserved(List<OrderEvent.OrderItem> items) {
+        return batch(RELEASE_SQL, items);
+    }
+
+    @Override
+    public List<Product> findStockLevels(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return new NamedParameterJdbcTemplate(jdbcTemplate).query(STOCK_LEVELS_SQL, Map.of("ids", ids),
+                (rs, rowNum) -> Product.builder()
+                        .id(rs.getObject(1, UUID.class))
+                        .name(rs.getString(2))
+                        .availableQuantity(rs.getInt(3))
+                        .reservedQuantity(rs.getInt(4))
+                        .build());
+    }
+
+    private int[] batch(String sql, List<OrderEvent.OrderItem> items) {
+        if (items.isEmpty()) {
+            return new int[0];
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> args = items.stream()
+                .map(item -> new Object[]{item.quantity(), item.quantity(), now, item.productId(), item.quantity()})
+                .toList();
+        return jdbcTemplate.batchUpdate(sql, args);
+    }
+}
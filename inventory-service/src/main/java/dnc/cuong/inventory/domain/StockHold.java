@@ -0,0 +1,87 @@
+package dnc.cuong.inventory.domain;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Stock đang giữ cho 1 order — 1 row / (orderId, productId), tồn tại từ lúc reserve tới khi
+ * order.paid (xác nhận), payment.failed (compensation) hoặc hết hạn (StockHoldSweeper trả stock).
+ *
+ * WHY cần bảng này khi Product đã có reservedQuantity?
+ * → reservedQuantity chỉ là tổng — không biết order nào giữ bao nhiêu. Payment không bao giờ tới
+ *   (message mất, DLT bị bỏ quên) → stock kẹt reserved mãi mãi.
+ * → Compensation release đúng số đã giữ (đọc ở đây), không tin quantity trong event tới.
+ *
+ * WHY PK (order_id, product_id)?
+ * → Tìm hold của 1 order = index seek trên prefix của PK. Event lặp lại không tạo hold thứ 2.
+ * → Index expires_at cho lượt quét dự phòng (hold do instance khác tạo rồi instance đó chết).
+ */
+@Entity
+@Table(name = "stock_holds", indexes = @Index(name = "idx_stock_holds_expires_at", columnList = "expires_at"))
+@IdClass(StockHold.Key.class)
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockHold implements Persistable<StockHold.Key> {
+
+    @Id
+    private UUID orderId;
+
+    @Id
+    private UUID productId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private boolean persisted;
+
+    public StockHold(UUID orderId, UUID productId, int quantity, Instant expiresAt) {
+        this.orderId = orderId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+        this.createdAt = Instant.now();
+    }
+
+    /** Như ProcessedEvent: id gán sẵn → persist thẳng, không SELECT trước INSERT. */
+    @Override
+    public Key getId() {
+        return new Key(orderId, productId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private UUID orderId;
+        private UUID productId;
+    }
+}
@@ -0,0 +1,35 @@
+package dnc.cuong.inventory.domain;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface StockHoldRepository extends JpaRepository<StockHold, StockHold.Key> {
+
+    /**
+     * Hold của các order, lock FOR UPDATE.
+     *
+     * WHY lock?
+     * → payment.failed và sweeper có thể cùng lấy hold của 1 order: transaction sau chờ,
+     *   rồi thấy row đã bị xoá → không release 2 lần.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM StockHold h WHERE h.orderId IN :orderIds")
+    List<StockHold> findForUpdateByOrderIdIn(@Param("orderIds") Collection<UUID> orderIds);
+
+    /** Lượt quét dự phòng — dùng idx_stock_holds_expires_at. */
+    @Query("SELECT DISTINCT h.orderId FROM StockHold h WHERE h.expiresAt <= :now")
+    List<UUID> findExpiredOrderIds(@Param("now") Instant now, Limit limit);
+
+    /** orderId → deadline sớm nhất — nạp lại timer wheel lúc startup. */
+    @Query("SELECT h.orderId, MIN(h.expiresAt) FROM StockHold h GROUP BY h.orderId")
+    List<Object[]> findOrderDeadlines();
+}
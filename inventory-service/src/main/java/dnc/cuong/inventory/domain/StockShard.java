@@ -0,0 +1,54 @@
+package dnc.cuong.inventory.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * 1 phần (bucket) stock của product khi inventory.stock.mode=sharded.
+ *
+ * WHY tách stock 1 product ra K row?
+ * → Entity mode: mọi reservation của hot SKU UPDATE cùng 1 row products → row lock giữ tới commit,
+ *   các transaction xếp hàng tuần tự. K shard → K transaction giữ lock song song.
+ * → Tổng available/reserved của product = SUM trên các shard (StockShardStore.sumAvailable).
+ *
+ * Entity chỉ để ddl-auto tạo bảng — đọc/ghi qua StockShardStore (JDBC, UPDATE có điều kiện),
+ * không qua persistence context.
+ */
+@Entity
+@Table(name = "product_stock_shards")
+@IdClass(StockShard.Key.class)
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockShard {
+
+    @Id
+    private UUID productId;
+
+    @Id
+    private int shardNo;
+
+    @Column(nullable = false)
+    private int availableQuantity;
+
+    @Column(nullable = false)
+    private int reservedQuantity;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private UUID productId;
+        private int shardNo;
+    }
+}
@@ -2,31 +2,46 @@ package dnc.cuong.inventory.kafka;
 
 import dnc.cuong.common.avro.OrderEventAvro;
 import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.concurrency.ListenerThreads;
 import dnc.cuong.common.event.KafkaTopics;
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.inventory.service.InventoryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * Kafka Consumer — listen topics order.placed và payment.failed (Avro format).
+ * Kafka Consumer — listen topics order.placed, payment.failed và order.paid (Avro format).
  *
  * Consumer nhận OrderEventAvro (Avro SpecificRecord) → convert sang OrderEvent (Java record)
  * → delegate cho InventoryService (service layer không biết về Avro).
+ *
+ * order.placed có 2 mode (inventory.batch-listener.enabled):
+ * - false (default): onOrderPlaced — 1 record / 1 transaction.
+ * - true: onOrderPlacedBatch — cả poll / 1 transaction.
+ * WHY autoStartup thay vì 2 class riêng?
+ * → Cả 2 listener cùng groupId; chỉ listener được start mới join group → không chia partition cho nhau.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryKafkaConsumer {
 
+    static final String BATCH_LISTENER_ID = "inventory-order-placed-batch";
+
     private final InventoryService inventoryService;
+    private final ListenerThreads listenerThreads;
 
     @KafkaListener(
             topics = KafkaTopics.ORDER_PLACED,
             groupId = "inventory-service-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "kafkaListenerContainerFactory",
+            autoStartup = "#{!${inventory.batch-listener.enabled:false}}"
     )
     public void onOrderPlaced(OrderEventAvro avroEvent) {
         OrderEvent event = OrderEventMapper.fromAvro(avroEvent);
@@ -39,6 +54,64 @@ public class InventoryKafkaConsumer {
         log.info("Finished processing [{}] | orderId={}", KafkaTopics.ORDER_PLACED, event.orderId());
     }
 
+    /**
+     * Batch mode: nhận cả poll order.placed (tối đa max.poll.records).
+     *
+     * WHY fallback từng record khi batch fail?
+     * → Batch transaction rollback toàn bộ → chưa order nào được quyết định.
+     * → Chạy lại từng order theo offset order, mỗi order 1 transaction (idempotent nhờ processed_events).
+     * → Order lỗi tại index i → BatchListenerFailedException(i): offset trước i được commit,
+     *   error handler retry/DLT đúng record i — các order khác không bị kéo theo.
+     */
+    @KafkaListener(
+            id = BATCH_LISTENER_ID,
+            topics = KafkaTopics.ORDER_PLACED,
+            groupId = "inventory-service-group",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${inventory.batch-listener.enabled:false}"
+    )
+    public void onOrderPlacedBatch(List<OrderEventAvro> avroEvents) {
+        // Batch listener không có observation spring.kafka.listener — flow control đọc timer này
+        long start = System.nanoTime();
+        try {
+            log.info("Received batch from [{}] | size={}", KafkaTopics.ORDER_PLACED, avroEvents.size());
+
+            List<OrderEvent> events = new ArrayList<>(avroEvents.size());
+            for (int i = 0; i < avroEvents.size(); i++) {
+                try {
+                    events.add(OrderEventMapper.fromAvro(avroEvents.get(i)));
+                } catch (RuntimeException e) {
+                    // Xử lý phần trước record lỗi, rồi báo index cho error handler
+                    processBatch(events);
+                    throw new BatchListenerFailedException("Cannot map order.placed record", e, i);
+                }
+            }
+
+            processBatch(events);
+
+            log.info("Finished processing batch [{}] | size={}", KafkaTopics.ORDER_PLACED, events.size());
+        } finally {
+            listenerThreads.recordBatch(BATCH_LISTENER_ID, System.nanoTime() - start, avroEvents.size());
+        }
+    }
+
+    private void processBatch(List<OrderEvent> events) {
+        try {
+            inventoryService.processOrderPlacedBatch(events);
+        } catch (RuntimeException batchFailure) {
+            log.warn("Batch processing FAILED, falling back to per-record | size={} | error={}",
+                    events.size(), batchFailure.getMessage());
+
+            for (int i = 0; i < events.size(); i++) {
+                try {
+                    inventoryService.processOrderPlaced(events.get(i));
+                } catch (RuntimeException e) {
+                    throw new BatchListenerFailedException("Failed to process order.placed record", e, i);
+                }
+            }
+        }
+    }
+
     @KafkaListener(
             topics = KafkaTopics.PAYMENT_FAILED,
             groupId = "inventory-service-group",
@@ -54,4 +127,22 @@ public class InventoryKafkaConsumer {
 
         log.info("Finished processing [{}] | orderId={}", KafkaTopics.PAYMENT_FAILED, event.orderId());
     }
+
+    /**
+     * order.paid → xoá stock hold (stock đã bán). Chỉ chạy khi inventory.holds.enabled=true.
+     */
+    @KafkaListener(
+            topics = KafkaTopics.ORDER_PAID,
+            groupId = "inventory-service-group",
+            containerFactory = "kafkaListenerContainerFactory",
+            autoStartup = "${inventory.holds.enabled:false}"
+    )
+    public void onOrderPaid(OrderEventAvro avroEvent) {
+        OrderEvent event = OrderEventMapper.fromAvro(avroEvent);
+
+        log.info("Received event from [{}] | eventId={} | orderId={} | status={}",
+                KafkaTopics.ORDER_PAID, event.eventId(), event.orderId(), event.status());
+
+        inventoryService.confirmReservation(event);
+    }
 }
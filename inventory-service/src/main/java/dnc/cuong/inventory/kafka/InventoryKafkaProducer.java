@@ -4,6 +4,7 @@ import dnc.cuong.common.avro.OrderEventAvro;
 import dnc.cuong.common.avro.OrderEventMapper;
 import dnc.cuong.common.event.KafkaTopics;
 import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.outbox.OutboxWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -19,6 +20,10 @@ import java.util.concurrent.CompletableFuture;
  * → Choreography pattern: downstream service chỉ listen topic nó quan tâm.
  * → Payment Service chỉ listen order.validated (không cần biết order.failed).
  * → Tách topic giúp decouple consumers, dễ scale independently.
+ *
+ * WHY check outboxWriter.isEnabled()?
+ * → outbox.enabled=true: event ghi vào bảng outbox cùng transaction của service,
+ *   OutboxRelay publish sau commit → hết dual-write.
  */
 @Component
 @RequiredArgsConstructor
@@ -28,6 +33,7 @@ public class InventoryKafkaProducer {
     private static final String SOURCE = "inventory-service";
 
     private final KafkaTemplate<String, OrderEventAvro> kafkaTemplate;
+    private final OutboxWriter outboxWriter;
 
     public CompletableFuture<SendResult<String, OrderEventAvro>> sendOrderValidated(OrderEvent event) {
         String key = event.orderId().toString();
@@ -36,6 +42,11 @@ public class InventoryKafkaProducer {
         log.info("Publishing event to [{}] | key={} | eventId={} | status={}",
                 KafkaTopics.ORDER_VALIDATED, key, event.eventId(), event.status());
 
+        if (outboxWriter.isEnabled()) {
+            outboxWriter.append(KafkaTopics.ORDER_VALIDATED, key, avroEvent);
+            return CompletableFuture.completedFuture(null);
+        }
+
         CompletableFuture<SendResult<String, OrderEventAvro>> future =
                 kafkaTemplate.send(KafkaTopics.ORDER_VALIDATED, key, avroEvent);
 
@@ -61,6 +72,11 @@ public class InventoryKafkaProducer {
         log.info("Publishing event to [{}] | key={} | eventId={} | status={} | reason={}",
                 KafkaTopics.ORDER_FAILED, key, event.eventId(), event.status(), event.reason());
 
+        if (outboxWriter.isEnabled()) {
+            outboxWriter.append(KafkaTopics.ORDER_FAILED, key, avroEvent);
+            return CompletableFuture.completedFuture(null);
+        }
+
         CompletableFuture<SendResult<String, OrderEventAvro>> future =
                 kafkaTemplate.send(KafkaTopics.ORDER_FAILED, key, avroEvent);
 
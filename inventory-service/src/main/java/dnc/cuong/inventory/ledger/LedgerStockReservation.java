@@ -0,0 +1,97 @@
+package dnc.cuong.inventory.ledger;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.service.StockReservationStrategy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Strategy inventory.stock.mode=ledger — reserve/release trên StockLedger.
+ *
+ * WHY gắn vào transaction synchronization?
+ * → Ledger không tham gia DB transaction. Nếu save processed_events rollback
+ *   mà ledger đã trừ stock → stock "bốc hơi".
+ * → Reserve: trừ ngay (phải quyết định), rollback → trả lại, commit → ghi delta cho flusher.
+ * → Release: chỉ verify trong transaction, cộng stock SAU commit
+ *   (cộng sớm rồi rollback thì stock có thể đã bị order khác lấy mất → không undo được).
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock.mode", havingValue = "ledger")
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerStockReservation implements StockReservationStrategy {
+
+    private static final int RESERVE = 1;
+    private static final int RELEASE = -1;
+
+    private final StockLedger stockLedger;
+
+    @Override
+    public List<Decision> reserve(List<OrderEvent> events) {
+        List<Decision> decisions = new ArrayList<>(events.size());
+        List<OrderEvent.OrderItem> reservedItems = new ArrayList<>();
+
+        for (OrderEvent event : events) {
+            List<String> failureReasons = stockLedger.tryReserve(event.items());
+            if (failureReasons.isEmpty()) {
+                reservedItems.addAll(event.items());
+                decisions.add(Decision.reserved(event));
+            } else {
+                decisions.add(Decision.rejected(event, failureReasons));
+            }
+        }
+
+        if (!reservedItems.isEmpty()) {
+            afterTransaction(
+                    () -> stockLedger.recordCommitted(reservedItems, RESERVE),
+                    () -> stockLedger.release(reservedItems));
+        }
+        return decisions;
+    }
+
+    @Override
+    public void release(OrderEvent event) {
+        stockLedger.verifyReleasable(event.items());
+
+        afterTransaction(
+                () -> {
+                    stockLedger.release(event.items());
+                    stockLedger.recordCommitted(event.items(), RELEASE);
+                },
+                () -> { });
+    }
+
+    /** Đọc thẳng ledger trong RAM — không chạm DB. */
+    @Override
+    public Map<UUID, Integer> availableQuantities(Collection<UUID> productIds) {
+        return stockLedger.availableQuantities(productIds);
+    }
+
+    private void afterTransaction(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    log.warn("Transaction not committed, reverting ledger changes | status={}", status);
+                    onRollback.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,100 @@
+package dnc.cuong.inventory.ledger;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stock của 1 product trong ledger — available + reserved đóng gói trong 1 AtomicLong.
+ *
+ * WHY pack 2 int vào 1 long?
+ * → Reserve = available -= q VÀ reserved += q — phải đổi cả 2 atomically.
+ * → 1 compareAndSet trên 1 long → không cần lock, không có trạng thái "nửa vời".
+ * → high 32 bit = available, low 32 bit = reserved.
+ */
+final class StockCell {
+
+    private final UUID productId;
+    private final String name;
+    private final AtomicLong state;
+
+    /** Delta reserved chưa ghi xuống DB (+ reserve, - release) — flusher drain bằng getAndSet(0). */
+    private final AtomicLong pendingReservedDelta = new AtomicLong();
+
+    StockCell(UUID productId, String name, int available, int reserved) {
+        this.productId = productId;
+        this.name = name;
+        this.state = new AtomicLong(pack(available, reserved));
+    }
+
+    UUID productId() {
+        return productId;
+    }
+
+    String name() {
+        return name;
+    }
+
+    int available() {
+        return available(state.get());
+    }
+
+    int reserved() {
+        return reserved(state.get());
+    }
+
+    /**
+     * CAS loop: available -= q, reserved += q nếu còn đủ.
+     *
+     * @return false nếu available < quantity (không đổi state)
+     */
+    boolean tryReserve(int quantity) {
+        while (true) {
+            long current = state.get();
+            int available = available(current);
+            if (available < quantity) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(available - quantity, reserved(current) + quantity))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * CAS loop: reserved -= q, available += q nếu reserved đủ.
+     *
+     * @return false nếu reserved < quantity (không đổi state)
+     */
+    boolean tryRelease(int quantity) {
+        while (true) {
+            long current = state.get();
+            int reserved = reserved(current);
+            if (reserved < quantity) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(available(current) + quantity, reserved - quantity))) {
+                return true;
+            }
+        }
+    }
+
+    void addPendingDelta(long reservedDelta) {
+        pendingReservedDelta.addAndGet(reservedDelta);
+    }
+
+    long drainPendingDelta() {
+        return pendingReservedDelta.getAndSet(0);
+    }
+
+    private static long pack(int available, int reserved) {
+        return ((long) available << 32) | (reserved & 0xFFFFFFFFL);
+    }
+
+    private static int available(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int reserved(long state) {
+        return (int) state;
+    }
+}
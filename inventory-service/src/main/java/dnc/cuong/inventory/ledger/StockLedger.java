@@ -0,0 +1,204 @@
+package dnc.cuong.inventory.ledger;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.domain.Product;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory stock ledger — nguồn sự thật về stock khi inventory.stock.mode=ledger.
+ *
+ * WHY ledger thay vì reserve trên Product entity?
+ * → Entity path: mỗi reservation = managed entity + dirty checking + row lock tới khi commit.
+ *   Hot SKU (flash sale) → mọi transaction xếp hàng trên cùng 1 row products.
+ * → Ledger: reserve = 1 CAS trong RAM. DB chỉ nhận delta gộp theo product
+ *   (N reservations → 1 UPDATE mỗi lần flush, xem StockLedgerFlusher).
+ *
+ * WHY rebuild từ DB lúc startup?
+ * → DB là durable state, ledger chỉ là cache có quyền ghi.
+ * → DataInitializer gọi rebuild() sau khi seed — trước đó ledger chưa ready,
+ *   reserve sẽ throw → DefaultErrorHandler retry với backoff tới khi rebuild xong.
+ *
+ * Giới hạn: ledger là single-writer — chỉ chạy 1 instance inventory-service ở mode này
+ * (nhiều instance = nhiều ledger độc lập → oversell).
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock.mode", havingValue = "ledger")
+@Slf4j
+public class StockLedger {
+
+    private final Map<UUID, StockCell> cells = new ConcurrentHashMap<>();
+    private final Set<UUID> dirtyProductIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean ready;
+
+    public StockLedger(MeterRegistry meterRegistry) {
+        Gauge.builder("inventory.ledger.products", cells, Map::size)
+                .description("Products tracked by the in-memory stock ledger").register(meterRegistry);
+        Gauge.builder("inventory.ledger.dirty.products", dirtyProductIds, Set::size)
+                .description("Products with stock deltas not yet written to Postgres").register(meterRegistry);
+    }
+
+    /**
+     * Nạp lại toàn bộ ledger từ products trong DB.
+     */
+    public void rebuild(Collection<Product> products) {
+        cells.clear();
+        dirtyProductIds.clear();
+        for (Product product : products) {
+            cells.put(product.getId(), new StockCell(product.getId(), product.getName(),
+                    product.getAvailableQuantity(), product.getReservedQuantity()));
+        }
+        ready = true;
+        log.info("Stock ledger rebuilt | products={}", cells.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Reserve tất cả items của 1 order, all-or-nothing.
+     *
+     * WHY reserve từng item rồi undo khi fail, thay vì check trước?
+     * → Check-then-reserve không atomic giữa các thread.
+     * → Reserve ngay bằng CAS; item sau thiếu → trả lại các item trước.
+     * → Thread khác có thể thấy tạm stock thấp hơn thực tế trong khoảnh khắc undo
+     *   → chỉ có thể reject nhầm (conservative), không bao giờ oversell.
+     *
+     * @return failure reasons — rỗng nghĩa là đã reserve
+     */
+    public List<String> tryReserve(List<OrderEvent.OrderItem> items) {
+        ensureReady();
+
+        List<String> failureReasons = new ArrayList<>();
+        List<OrderEvent.OrderItem> reserved = new ArrayList<>(items.size());
+
+        for (OrderEvent.OrderItem item : items) {
+            StockCell cell = cells.get(item.productId());
+
+            if (cell == null) {
+                failureReasons.add("Product not found: " + item.productId());
+            } else if (cell.tryReserve(item.quantity())) {
+                reserved.add(item);
+            } else {
+                failureReasons.add(String.format(
+                        "Insufficient stock for '%s': available=%d, requested=%d",
+                        cell.name(), cell.available(), item.quantity()));
+            }
+        }
+
+        if (!failureReasons.isEmpty()) {
+            reserved.forEach(item -> cells.get(item.productId()).tryRelease(item.quantity()));
+        }
+        return failureReasons;
+    }
+
+    /**
+     * Kiểm tra release hợp lệ (reserved đủ) mà không đổi state.
+     *
+     * @throws IllegalStateException nếu release nhiều hơn reserved — giống Product.releaseStock
+     */
+    public void verifyReleasable(List<OrderEvent.OrderItem> items) {
+        ensureReady();
+
+        for (OrderEvent.OrderItem item : items) {
+            StockCell cell = cells.get(item.productId());
+            if (cell != null && cell.reserved() < item.quantity()) {
+                throw new IllegalStateException(
+                        "Cannot release more than reserved for product " + item.productId() +
+                        ": reserved=" + cell.reserved() + ", requested=" + item.quantity());
+            }
+        }
+    }
+
+    /**
+     * Trả reserved → available cho từng item (compensation đã commit, hoặc undo reserve khi rollback).
+     */
+    public void release(List<OrderEvent.OrderItem> items) {
+        ensureReady();
+
+        for (OrderEvent.OrderItem item : items) {
+            StockCell cell = cells.get(item.productId());
+            if (cell == null) {
+                log.warn("Product not found during compensation | productId={}", item.productId());
+            } else if (!cell.tryRelease(item.quantity())) {
+                log.error("Ledger release exceeds reserved, skipped | productId={} | reserved={} | requested={}",
+                        item.productId(), cell.reserved(), item.quantity());
+            }
+        }
+    }
+
+    /** Available hiện tại trong ledger — product không có trong ledger thì bỏ qua. */
+    public Map<UUID, Integer> availableQuantities(Collection<UUID> productIds) {
+        ensureReady();
+
+        Map<UUID, Integer> available = new HashMap<>();
+        for (UUID productId : productIds) {
+            StockCell cell = cells.get(productId);
+            if (cell != null) {
+                available.put(productId, cell.available());
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Ghi nhận delta đã commit để flusher ghi xuống DB.
+     *
+     * WHY cộng pending TRƯỚC rồi mới đánh dấu dirty?
+     * → Flusher remove dirty rồi mới drain pending — thứ tự ngược nhau đảm bảo
+     *   không delta nào bị bỏ sót (tệ nhất là 1 lần drain ra 0).
+     */
+    public void recordCommitted(List<OrderEvent.OrderItem> items, int sign) {
+        for (OrderEvent.OrderItem item : items) {
+            StockCell cell = cells.get(item.productId());
+            if (cell != null) {
+                cell.addPendingDelta((long) sign * item.quantity());
+                dirtyProductIds.add(item.productId());
+            }
+        }
+    }
+
+    /**
+     * Lấy và reset toàn bộ delta chưa ghi — productId → reserved delta.
+     */
+    public Map<UUID, Long> drainPendingDeltas() {
+        Map<UUID, Long> deltas = new HashMap<>();
+        for (UUID productId : dirtyProductIds) {
+            dirtyProductIds.remove(productId);
+            long delta = cells.get(productId).drainPendingDelta();
+            if (delta != 0) {
+                deltas.put(productId, delta);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Trả delta lại ledger khi flush thất bại — lần flush sau ghi tiếp.
+     */
+    public void restorePendingDeltas(Map<UUID, Long> deltas) {
+        deltas.forEach((productId, delta) -> {
+            cells.get(productId).addPendingDelta(delta);
+            dirtyProductIds.add(productId);
+        });
+    }
+
+    private void ensureReady() {
+        if (!ready) {
+            throw new IllegalStateException("Stock ledger not rebuilt yet");
+        }
+    }
+}
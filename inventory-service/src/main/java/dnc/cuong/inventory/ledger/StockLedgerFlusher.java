@@ -0,0 +1,91 @@
+package dnc.cuong.inventory.ledger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ghi delta của StockLedger xuống bảng products — async, theo batch.
+ *
+ * WHY relative UPDATE (available = available - ?) thay vì ghi giá trị tuyệt đối?
+ * → Idempotent với thứ tự flush, không cần đọc lại row.
+ * → 1 UPDATE / product / lần flush dù có hàng trăm reservation → hot SKU hết xếp hàng trên row lock.
+ *
+ * WHY JdbcTemplate.batchUpdate thay vì JPA?
+ * → Không cần load entity, không dirty checking — 1 round-trip cho cả batch.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock.mode", havingValue = "ledger")
+@Slf4j
+public class StockLedgerFlusher {
+
+    private static final String UPDATE_SQL = """
+            UPDATE products
+               SET available_quantity = available_quantity - ?,
+                   reserved_quantity = reserved_quantity + ?,
+                   updated_at = ?
+             WHERE id = ?
+            """;
+
+    private final StockLedger stockLedger;
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter flushedRowsCounter;
+    private final Counter flushFailuresCounter;
+    private final Timer flushTimer;
+
+    public StockLedgerFlusher(StockLedger stockLedger, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.stockLedger = stockLedger;
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushedRowsCounter = Counter.builder("inventory.ledger.flushed.rows")
+                .description("Product rows updated by ledger write-back").register(meterRegistry);
+        this.flushFailuresCounter = Counter.builder("inventory.ledger.flush.failures")
+                .description("Ledger write-back batches that failed and were re-queued").register(meterRegistry);
+        this.flushTimer = Timer.builder("inventory.ledger.flush")
+                .description("Ledger write-back batch duration").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms:200}")
+    public void flush() {
+        Map<UUID, Long> deltas = stockLedger.drainPendingDeltas();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> args.add(new Object[]{delta, delta, now, productId}));
+
+        try {
+            flushTimer.record(() -> jdbcTemplate.batchUpdate(UPDATE_SQL, args));
+            flushedRowsCounter.increment(args.size());
+            log.debug("Ledger deltas flushed | products={}", args.size());
+        } catch (DataAccessException e) {
+            stockLedger.restorePendingDeltas(deltas);
+            flushFailuresCounter.increment();
+            log.error("Ledger flush FAILED, deltas re-queued | products={} | error={}",
+                    args.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Graceful shutdown — ghi nốt delta còn lại trước khi JVM tắt.
+     */
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
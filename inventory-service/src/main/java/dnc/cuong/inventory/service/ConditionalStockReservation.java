@@ -0,0 +1,113 @@
+package dnc.cuong.inventory.service;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.domain.Product;
+import dnc.cuong.inventory.domain.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Conditional mode — mỗi order = 1 JDBC batch "UPDATE products ... WHERE id = ? AND available_quantity >= ?",
+ * thành công hay không đọc từ update count.
+ *
+ * WHY thay entity mode?
+ * → Entity mode: SELECT products → hasStock() trong Java → dirty checking UPDATE lúc commit.
+ *   Với concurrency > 1 hai thread cùng đọc stock cũ → cùng reserve → oversell; và tốn 2 round-trip.
+ * → Ở đây DB check + trừ dưới row lock: không bao giờ âm, 1 round-trip cho happy path.
+ *
+ * WHY sort items theo productId?
+ * → Order A (p1, p2) và order B (p2, p1) chạy song song → lock ngược chiều → deadlock.
+ *   Cùng thứ tự lock ở mọi transaction thì không.
+ *
+ * Order bị từ chối: trả lại các item đã trừ trong cùng transaction (batch release) rồi đọc stock
+ * để dựng reason giống entity mode — chỉ path thất bại tốn thêm round-trip.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock.mode", havingValue = "conditional")
+@RequiredArgsConstructor
+@Slf4j
+public class ConditionalStockReservation implements StockReservationStrategy {
+
+    private static final Comparator<OrderEvent.OrderItem> BY_PRODUCT = Comparator.comparing(OrderEvent.OrderItem::productId);
+
+    private final ProductRepository productRepository;
+
+    @Override
+    public List<Decision> reserve(List<OrderEvent> events) {
+        List<Decision> decisions = new ArrayList<>(events.size());
+        for (OrderEvent event : events) {
+            decisions.add(reserve(event));
+        }
+        return decisions;
+    }
+
+    private Decision reserve(OrderEvent event) {
+        List<OrderEvent.OrderItem> items = event.items().stream().sorted(BY_PRODUCT).toList();
+        int[] counts = productRepository.reserveIfAvailable(items);
+
+        List<OrderEvent.OrderItem> applied = new ArrayList<>(items.size());
+        List<OrderEvent.OrderItem> missed = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            (counts[i] > 0 ? applied : missed).add(items.get(i));
+        }
+        if (missed.isEmpty()) {
+            return Decision.reserved(event);
+        }
+
+        // All-or-nothing: undo phần đã trừ trước khi đọc stock cho reason
+        productRepository.releaseReserved(applied);
+        return Decision.rejected(event, failureReasons(missed));
+    }
+
+    @Override
+    public void release(OrderEvent event) {
+        List<OrderEvent.OrderItem> items = event.items().stream().sorted(BY_PRODUCT).toList();
+        int[] counts = productRepository.releaseReserved(items);
+        for (int i = 0; i < items.size(); i++) {
+            OrderEvent.OrderItem item = items.get(i);
+            if (counts[i] > 0) {
+                log.info("Released stock | productId={} | quantity={}", item.productId(), item.quantity());
+            } else {
+                log.warn("Product not found or reserved below quantity during compensation | productId={} | quantity={}",
+                        item.productId(), item.quantity());
+            }
+        }
+    }
+
+    @Override
+    public Map<UUID, Integer> availableQuantities(Collection<UUID> productIds) {
+        return productRepository.findStockLevels(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Product::getAvailableQuantity));
+    }
+
+    private List<String> failureReasons(List<OrderEvent.OrderItem> missed) {
+        Map<UUID, Product> stock = productRepository.findStockLevels(
+                        missed.stream().map(OrderEvent.OrderItem::productId).distinct().toList())
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<String> failureReasons = new ArrayList<>(missed.size());
+        for (OrderEvent.OrderItem item : missed) {
+            Product product = stock.get(item.productId());
+            if (product == null) {
+                failureReasons.add("Product not found: " + item.productId());
+            } else {
+                failureReasons.add(String.format(
+                        "Insufficient stock for '%s': available=%d, requested=%d",
+                        product.getName(), product.getAvailableQuantity(), item.quantity()));
+            }
+        }
+        return failureReasons;
+    }
+}
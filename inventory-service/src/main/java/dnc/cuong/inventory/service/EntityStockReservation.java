@@ -0,0 +1,115 @@
+package dnc.cuong.inventory.service;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.domain.Product;
+import dnc.cuong.inventory.domain.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Default strategy — reserve trực tiếp trên Product entity (JPA dirty checking).
+ *
+ * WHY load union productIds 1 lần cho cả list events?
+ * → Record mode: 1 event → 1 query. Batch mode: N events → vẫn 1 query.
+ * → Các order sau thấy stock đã bị order trước reserve (cùng managed entity).
+ *
+ * WHY không gọi productRepository.save(product)?
+ * → JPA dirty checking: entity đã managed trong @Transactional của caller.
+ * → Khi transaction commit → Hibernate tự detect thay đổi và flush UPDATE.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock.mode", havingValue = "entity", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class EntityStockReservation implements StockReservationStrategy {
+
+    private final ProductRepository productRepository;
+
+    @Override
+    public List<Decision> reserve(List<OrderEvent> events) {
+        List<UUID> productIds = events.stream()
+                .flatMap(event -> event.items().stream())
+                .map(OrderEvent.OrderItem::productId)
+                .distinct()
+                .toList();
+        Map<UUID, Product> productMap = loadProducts(productIds);
+
+        List<Decision> decisions = new ArrayList<>(events.size());
+        for (OrderEvent event : events) {
+            List<String> failureReasons = validateStock(event, productMap);
+
+            if (failureReasons.isEmpty()) {
+                for (OrderEvent.OrderItem item : event.items()) {
+                    productMap.get(item.productId()).reserveStock(item.quantity());
+                }
+                decisions.add(Decision.reserved(event));
+            } else {
+                decisions.add(Decision.rejected(event, failureReasons));
+            }
+        }
+        return decisions;
+    }
+
+    @Override
+    public void release(OrderEvent event) {
+        List<UUID> productIds = event.items().stream()
+                .map(OrderEvent.OrderItem::productId)
+                .toList();
+
+        Map<UUID, Product> productMap = loadProducts(productIds);
+
+        for (OrderEvent.OrderItem item : event.items()) {
+            Product product = productMap.get(item.productId());
+            if (product != null) {
+                product.releaseStock(item.quantity());
+                log.info("Released stock | productId={} | productName={} | quantity={}",
+                        product.getId(), product.getName(), item.quantity());
+            } else {
+                log.warn("Product not found during compensation | productId={}", item.productId());
+            }
+        }
+    }
+
+    /** JDBC, không qua persistence context — gọi ngoài transaction cũng đọc giá trị đã commit. */
+    @Override
+    public Map<UUID, Integer> availableQuantities(Collection<UUID> productIds) {
+        return productRepository.findStockLevels(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Product::getAvailableQuantity));
+    }
+
+    private Map<UUID, Product> loadProducts(List<UUID> productIds) {
+        return productRepository.findAllByIdIn(productIds)
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    private List<String> validateStock(OrderEvent event, Map<UUID, Product> productMap) {
+        List<String> failureReasons = new ArrayList<>();
+
+        for (OrderEvent.OrderItem item : event.items()) {
+            Product product = productMap.get(item.productId());
+
+            if (product == null) {
+                failureReasons.add("Product not found: " + item.productId());
+                continue;
+            }
+
+            if (!product.hasStock(item.quantity())) {
+                failureReasons.add(String.format(
+                        "Insufficient stock for '%s': available=%d, requested=%d",
+                        product.getName(), product.getAvailableQuantity(), item.quantity()));
+            }
+        }
+        return failureReasons;
+    }
+}
@@ -3,12 +3,12 @@ package dnc.cuong.inventory.service;
 import dnc.cuong.common.event.KafkaTopics;
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.common.event.OrderStatus;
-import dnc.cuong.inventory.domain.ProcessedEvent;
-import dnc.cuong.inventory.domain.ProcessedEventRepository;
-import dnc.cuong.inventory.domain.Product;
-import dnc.cuong.inventory.domain.ProductRepository;
+import dnc.cuong.common.idempotency.IdempotencyGuard;
+import dnc.cuong.inventory.availability.StockAvailabilitySnapshot;
 import dnc.cuong.inventory.kafka.InventoryKafkaProducer;
+import dnc.cuong.inventory.service.StockReservationStrategy.Decision;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
@@ -16,12 +16,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Business logic cho Inventory — validate stock và reserve.
@@ -35,21 +37,30 @@ import java.util.stream.Collectors;
  * → Reserve stock = UPDATE nhiều products trong DB.
  * → Nếu reserve product A thành công nhưng product B thất bại
  *   → rollback tất cả → tránh inconsistent state.
- * → Dual-write problem (DB + Kafka) sẽ giải quyết ở Step 6.
+ * → Dual-write problem (DB + Kafka): bật outbox.enabled=true → event đi qua bảng outbox_events.
+ *
+ * WHY inject StockReservationStrategy thay vì ProductRepository?
+ * → Service giữ phần chung: idempotency, metrics, publish event.
+ * → Cách reserve stock (JPA entity / in-memory ledger) là strategy, chọn bằng inventory.stock.mode.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryService {
 
-    private final ProductRepository productRepository;
-    private final ProcessedEventRepository processedEventRepository;
+    private final StockReservationStrategy stockReservation;
+    private final IdempotencyGuard idempotencyGuard;
     private final InventoryKafkaProducer kafkaProducer;
+    private final StockHolds stockHolds;
+    private final StockAvailabilitySnapshot availabilitySnapshot;
     private final MeterRegistry meterRegistry;
 
     private Counter inventoryValidatedCounter;
     private Counter inventoryRejectedCounter;
     private Counter inventoryCompensatedCounter;
+    private Counter holdsExpiredCounter;
+    private Counter holdsConfirmMissedCounter;
+    private DistributionSummary batchSizeSummary;
 
     @PostConstruct
     void initMetrics() {
@@ -59,21 +70,27 @@ public class InventoryService {
                 .description("Total orders rejected (insufficient stock)").register(meterRegistry);
         inventoryCompensatedCounter = Counter.builder("inventory.compensated.total")
                 .description("Total stock compensations (payment failed)").register(meterRegistry);
+        holdsExpiredCounter = Counter.builder("inventory.holds.expired.total")
+                .description("Orders whose stock hold expired and was released").register(meterRegistry);
+        holdsConfirmMissedCounter = Counter.builder("inventory.holds.confirm_missed.total")
+                .description("order.paid received with no active stock hold").register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("inventory.batch.size")
+                .description("Orders per order.placed batch (batch listener mode)").register(meterRegistry);
     }
 
     /**
      * Xử lý event order.placed: validate stock → reserve hoặc reject.
      *
      * Flow:
-     * 1. Batch fetch tất cả products theo productId
-     * 2. Validate: product tồn tại + đủ stock
+     * 1. Batch fetch tất cả products theo productId (strategy)
+     * 2. Validate: product tồn tại + đủ stock (strategy)
      * 3. Nếu OK → reserve stock, publish order.validated
      * 4. Nếu FAIL → publish order.failed với reason
      */
     @Transactional
     public void processOrderPlaced(OrderEvent event) {
-        // Idempotency check: skip if already processed
-        if (processedEventRepository.existsById(event.eventId())) {
+        // Idempotency: claim eventId trước khi reserve — duplicate thì skip
+        if (!idempotencyGuard.claim(event.eventId(), KafkaTopics.ORDER_PLACED)) {
             log.warn("Duplicate event detected, skipping | eventId={} | orderId={} | topic={}",
                     event.eventId(), event.orderId(), KafkaTopics.ORDER_PLACED);
             return;
@@ -82,41 +99,14 @@ public class InventoryService {
         log.info("Processing order.placed | orderId={} | itemCount={}",
                 event.orderId(), event.items().size());
 
-        // 1. Extract productIds và batch fetch
-        List<UUID> productIds = event.items().stream()
-                .map(OrderEvent.OrderItem::productId)
-                .toList();
-
-        Map<UUID, Product> productMap = productRepository.findAllByIdIn(productIds)
-                .stream()
-                .collect(Collectors.toMap(Product::getId, Function.identity()));
-
-        // 2. Validate từng item
-        List<String> failureReasons = new ArrayList<>();
-
-        for (OrderEvent.OrderItem item : event.items()) {
-            Product product = productMap.get(item.productId());
-
-            if (product == null) {
-                failureReasons.add("Product not found: " + item.productId());
-                continue;
-            }
-
-            if (!product.hasStock(item.quantity())) {
-                failureReasons.add(String.format(
-                        "Insufficient stock for '%s': available=%d, requested=%d",
-                        product.getName(), product.getAvailableQuantity(), item.quantity()));
-            }
-        }
+        // 1-2. Validate + reserve (all-or-nothing) qua strategy
+        Decision decision = stockReservation.reserve(List.of(event)).get(0);
 
         // 3. Nếu có lỗi → publish order.failed
-        if (!failureReasons.isEmpty()) {
-            String reason = String.join("; ", failureReasons);
+        if (!decision.isReserved()) {
+            String reason = decision.failureReason();
             log.warn("Stock validation FAILED | orderId={} | reason={}", event.orderId(), reason);
 
-            // Save ProcessedEvent even for failure path — prevent duplicate validation
-            processedEventRepository.save(new ProcessedEvent(event.eventId(), KafkaTopics.ORDER_PLACED));
-
             OrderEvent failedEvent = OrderEvent.withReason(
                     event.orderId(), event.customerId(),
                     event.items(), event.totalAmount(),
@@ -127,21 +117,13 @@ public class InventoryService {
             return;
         }
 
-        // 4. Stock đủ → reserve tất cả items
-        for (OrderEvent.OrderItem item : event.items()) {
-            Product product = productMap.get(item.productId());
-            product.reserveStock(item.quantity());
-            // WHY không gọi productRepository.save(product)?
-            // → JPA dirty checking: entity đã managed trong @Transactional.
-            // → Khi transaction commit → Hibernate tự detect thay đổi và flush UPDATE.
-            // → Giảm boilerplate code.
-        }
-
+        // 4. Stock đủ → strategy đã reserve tất cả items
         log.info("Stock reserved successfully | orderId={} | itemCount={}",
                 event.orderId(), event.items().size());
 
-        // 5. Save ProcessedEvent — trong cùng transaction với reserve stock
-        processedEventRepository.save(new ProcessedEvent(event.eventId(), KafkaTopics.ORDER_PLACED));
+        // 5. Hold có hạn — trong cùng transaction với reserve stock (và claim eventId)
+        stockHolds.hold(List.of(event));
+        availabilitySnapshot.markStale(productIds(event.items()));
 
         // 6. Publish order.validated
         OrderEvent validatedEvent = OrderEvent.create(
@@ -153,49 +135,170 @@ public class InventoryService {
         inventoryValidatedCounter.increment();
     }
 
+    /**
+     * Batch version của processOrderPlaced — xử lý cả poll order.placed trong 1 transaction.
+     *
+     * Round-trips cho N orders (thay vì ~3N + N*items ở record mode):
+     * 1. 1 INSERT processed_events ... ON CONFLICT DO NOTHING RETURNING — claim + dedup cả batch
+     * 2. 1 SELECT products WHERE id IN (union productIds) — entity strategy
+     * 3. JDBC batch UPDATE products khi commit (hibernate.jdbc.batch_size)
+     *
+     * WHY quyết định từng order theo offset order trên cùng stock state?
+     * → Order trước reserve xong → order sau thấy stock đã giảm (giống hệt record mode).
+     * → Order thiếu stock bị FAILED riêng, không ảnh hưởng order khác trong batch.
+     */
+    @Transactional
+    public void processOrderPlacedBatch(List<OrderEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        batchSizeSummary.record(events.size());
+
+        // 1. Dedup: claim cả batch (tối đa 1 statement) — eventId trùng ngay trong batch chỉ claim 1 lần
+        Set<UUID> claimed = new HashSet<>(idempotencyGuard.claim(
+                events.stream().map(OrderEvent::eventId).toList(), KafkaTopics.ORDER_PLACED));
+
+        List<OrderEvent> freshEvents = new ArrayList<>(events.size());
+        for (OrderEvent event : events) {
+            if (claimed.remove(event.eventId())) {
+                freshEvents.add(event);
+            } else {
+                log.warn("Duplicate event detected, skipping | eventId={} | orderId={} | topic={}",
+                        event.eventId(), event.orderId(), KafkaTopics.ORDER_PLACED);
+            }
+        }
+
+        // 2-3. Strategy load union productIds 1 lần, quyết định từng order theo offset order
+        List<Decision> decisions = stockReservation.reserve(freshEvents);
+
+        List<OrderEvent> outcomes = new ArrayList<>(freshEvents.size());
+
+        for (Decision decision : decisions) {
+            OrderEvent event = decision.event();
+
+            if (decision.isReserved()) {
+                outcomes.add(OrderEvent.create(
+                        event.orderId(), event.customerId(),
+                        event.items(), event.totalAmount(),
+                        OrderStatus.VALIDATED
+                ));
+            } else {
+                log.warn("Stock validation FAILED | orderId={} | reason={}",
+                        event.orderId(), decision.failureReason());
+                outcomes.add(OrderEvent.withReason(
+                        event.orderId(), event.customerId(),
+                        event.items(), event.totalAmount(),
+                        OrderStatus.FAILED, decision.failureReason()
+                ));
+            }
+        }
+
+        List<OrderEvent> reservedEvents = decisions.stream().filter(Decision::isReserved).map(Decision::event).toList();
+        stockHolds.hold(reservedEvents);
+        availabilitySnapshot.markStale(reservedEvents.stream()
+                .flatMap(event -> productIds(event.items()).stream()).distinct().toList());
+
+        // 4. Publish theo đúng thứ tự quyết định — producer tự gom batch (linger.ms)
+        for (OrderEvent outcome : outcomes) {
+            if (outcome.status() == OrderStatus.VALIDATED) {
+                kafkaProducer.sendOrderValidated(outcome);
+                inventoryValidatedCounter.increment();
+            } else {
+                kafkaProducer.sendOrderFailed(outcome);
+                inventoryRejectedCounter.increment();
+            }
+        }
+
+        log.info("Batch processed | size={} | duplicates={} | validated={} | failed={}",
+                events.size(), events.size() - freshEvents.size(),
+                outcomes.stream().filter(o -> o.status() == OrderStatus.VALIDATED).count(),
+                outcomes.stream().filter(o -> o.status() == OrderStatus.FAILED).count());
+    }
+
     /**
      * Compensation: hoàn trả stock khi payment thất bại.
      *
      * Flow:
-     * 1. Batch fetch products theo order items
-     * 2. Release reserved stock cho từng item
-     * 3. JPA dirty checking tự flush UPDATE khi transaction commit
+     * 1. Claim eventId (processed_events) trong cùng transaction — duplicate thì skip
+     * 2. Lấy số lượng cần trả: từ stock_holds (holds bật) hoặc items trong event
+     * 3. Strategy release reserved stock cho từng item
+     *
+     * WHY không tin items trong event khi holds bật?
+     * → Hold là thứ Inventory thực sự đã giữ: hold đã hết hạn (đã trả) hoặc order chưa từng
+     *   reserve → không có gì để trả, thay vì cộng stock thừa theo payload của service khác.
      */
     @Transactional
     public void compensateReservation(OrderEvent event) {
-        // Idempotency check: prevent double release (stock cộng thừa)
-        if (processedEventRepository.existsById(event.eventId())) {
+        // Idempotency: claim eventId trước khi release — prevent double release (stock cộng thừa)
+        if (!idempotencyGuard.claim(event.eventId(), KafkaTopics.PAYMENT_FAILED)) {
             log.warn("Duplicate compensation event detected, skipping | eventId={} | orderId={}",
                     event.eventId(), event.orderId());
             return;
         }
 
+        OrderEvent release = event;
+        if (stockHolds.isEnabled()) {
+            List<OrderEvent.OrderItem> held = stockHolds.take(List.of(event.orderId()))
+                    .getOrDefault(event.orderId(), List.of());
+            release = OrderEvent.withReason(event.orderId(), event.customerId(), held,
+                    event.totalAmount(), event.status(), event.reason());
+        }
+
         log.info("Compensating reservation | orderId={} | itemCount={}",
-                event.orderId(), event.items().size());
+                event.orderId(), release.items().size());
 
-        List<UUID> productIds = event.items().stream()
-                .map(OrderEvent.OrderItem::productId)
-                .toList();
+        if (release.items().isEmpty()) {
+            log.warn("No active stock hold, nothing to release (expired or never reserved) | orderId={}",
+                    event.orderId());
+        } else {
+            stockReservation.release(release);
+            availabilitySnapshot.markStale(productIds(release.items()));
+        }
 
-        Map<UUID, Product> productMap = productRepository.findAllByIdIn(productIds)
-                .stream()
-                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        log.info("Compensation completed | orderId={}", event.orderId());
+        inventoryCompensatedCounter.increment();
+    }
 
-        for (OrderEvent.OrderItem item : event.items()) {
-            Product product = productMap.get(item.productId());
-            if (product != null) {
-                product.releaseStock(item.quantity());
-                log.info("Released stock | productId={} | productName={} | quantity={}",
-                        product.getId(), product.getName(), item.quantity());
-            } else {
-                log.warn("Product not found during compensation | productId={}", item.productId());
-            }
+    /**
+     * order.paid: stock đã bán → xoá hold để sweeper không trả lại.
+     *
+     * Không cần ProcessedEvent: event lặp lại chỉ thấy không còn hold (no-op).
+     */
+    @Transactional
+    public void confirmReservation(OrderEvent event) {
+        if (!stockHolds.isEnabled()) {
+            return;
         }
+        if (stockHolds.take(List.of(event.orderId())).isEmpty()) {
+            // Hold đã hết hạn + stock đã trả trước khi payment xong → cần đối soát
+            log.warn("Payment confirmed but no active stock hold (expired or already confirmed) | orderId={}",
+                    event.orderId());
+            holdsConfirmMissedCounter.increment();
+        }
+    }
 
-        // Save ProcessedEvent — trong cùng transaction với release stock
-        processedEventRepository.save(new ProcessedEvent(event.eventId(), KafkaTopics.PAYMENT_FAILED));
+    /**
+     * Trả stock của các order có hold đã hết hạn — gọi bởi StockHoldSweeper theo chunk.
+     *
+     * Lock + đọc lại hold trong transaction: order vừa được confirm / compensate ở consumer
+     * khác thì không còn hold → bỏ qua, không trả 2 lần.
+     *
+     * @return số order đã trả stock
+     */
+    @Transactional
+    public int releaseExpiredHolds(Collection<UUID> orderIds) {
+        Map<UUID, List<OrderEvent.OrderItem>> expired = stockHolds.takeExpired(orderIds, Instant.now());
+        expired.forEach((orderId, items) -> {
+            stockReservation.release(OrderEvent.withReason(
+                    orderId, null, items, null, OrderStatus.FAILED, "Stock hold expired"));
+            log.warn("Stock hold expired, released | orderId={} | itemCount={}", orderId, items.size());
+            availabilitySnapshot.markStale(productIds(items));
+        });
+        holdsExpiredCounter.increment(expired.size());
+        return expired.size();
+    }
 
-        log.info("Compensation completed | orderId={}", event.orderId());
-        inventoryCompensatedCounter.increment();
+    private static List<UUID> productIds(List<OrderEvent.OrderItem> items) {
+        return items.stream().map(OrderEvent.OrderItem::productId).distinct().toList();
     }
 }
@@ -0,0 +1,61 @@
+package dnc.cuong.inventory.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Trả stock của hold hết hạn — theo tick của TimerWheel, và quét DB dự phòng thưa hơn.
+ *
+ * WHY chunk CHUNK_SIZE order / transaction?
+ * → Release theo lô: 1 SELECT ... FOR UPDATE + 1 batch DELETE + strategy release cho cả chunk.
+ *   Chunk giới hạn độ dài transaction / số row lock khi hàng nghìn hold hết hạn cùng lúc
+ *   (consumer Payment dừng lâu).
+ * → Chunk lỗi không chặn chunk khác; order đã rời wheel sẽ được lượt quét DB nhặt lại.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.holds.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class StockHoldSweeper {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final StockHolds stockHolds;
+    private final InventoryService inventoryService;
+
+    @Scheduled(fixedDelayString = "${inventory.holds.tick-ms:1000}")
+    public void sweep() {
+        release(stockHolds.dueOrderIds(System.currentTimeMillis()));
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.holds.scan-interval-ms:300000}",
+            initialDelayString = "${inventory.holds.scan-interval-ms:300000}")
+    public void scan() {
+        List<UUID> orderIds;
+        do {
+            orderIds = stockHolds.expiredOrderIds(Instant.now(), CHUNK_SIZE);
+        } while (release(orderIds) == CHUNK_SIZE);
+    }
+
+    /** @return số order đã trả stock */
+    int release(List<UUID> orderIds) {
+        int released = 0;
+        for (int from = 0; from < orderIds.size(); from += CHUNK_SIZE) {
+            List<UUID> chunk = orderIds.subList(from, Math.min(from + CHUNK_SIZE, orderIds.size()));
+            try {
+                released += inventoryService.releaseExpiredHolds(chunk);
+            } catch (RuntimeException e) {
+                log.error("Expired hold release FAILED, left for DB scan | orders={} | error={}",
+                        chunk.size(), e.getMessage(), e);
+            }
+        }
+        return released;
+    }
+}
@@ -0,0 +1,137 @@
+package dnc.cuong.inventory.service;
+
+import dnc.cuong.common.concurrency.TimerWheel;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.domain.StockHold;
+import dnc.cuong.inventory.domain.StockHoldRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hold có hạn cho stock đã reserve (bảng stock_holds) + TimerWheel các order đang giữ hold.
+ *
+ * WHY timer wheel trong RAM thay vì chỉ quét DB theo expires_at?
+ * → Hầu hết hold bị xoá trước hạn (order.paid / payment.failed) — wheel cancel O(1),
+ *   sweeper mỗi tick chỉ nhận đúng các order vừa tới hạn, không query khi không có gì hết hạn.
+ * → Wheel chỉ biết hold do instance này tạo (hoặc nạp lúc startup) → lượt quét DB thưa
+ *   (expiredOrderIds) bắt nốt hold mồ côi.
+ *
+ * inventory.holds.enabled=false (mặc định) → không ghi hold, compensation tin items trong event (hành vi cũ).
+ */
+@Component
+@Slf4j
+public class StockHolds {
+
+    private static final int WHEEL_SIZE = 4096;
+
+    private final StockHoldRepository repository;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final TimerWheel<UUID> wheel;
+
+    public StockHolds(StockHoldRepository repository,
+                      @Value("${inventory.holds.enabled:false}") boolean enabled,
+                      @Value("${inventory.holds.ttl-minutes:15}") long ttlMinutes,
+                      @Value("${inventory.holds.tick-ms:1000}") long tickMillis,
+                      MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.wheel = new TimerWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+        Gauge.builder("inventory.holds.tracked", wheel, TimerWheel::size)
+                .description("Orders with an active stock hold in the expiry timer wheel").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ghi hold cho các order vừa reserve — cùng transaction với reserve + processed_events.
+     *
+     * Wheel được schedule ngay cả khi transaction rollback sau đó: sweeper đọc lại DB,
+     * không thấy row → bỏ qua.
+     */
+    public void hold(List<OrderEvent> reservedEvents) {
+        if (!enabled || reservedEvents.isEmpty()) {
+            return;
+        }
+        Instant expiresAt = Instant.now().plus(ttl);
+        List<StockHold> holds = new ArrayList<>();
+        for (OrderEvent event : reservedEvents) {
+            // Cùng product xuất hiện 2 lần trong 1 order → 1 hold (PK orderId, productId)
+            Map<UUID, Integer> quantities = new LinkedHashMap<>();
+            event.items().forEach(item -> quantities.merge(item.productId(), item.quantity(), Integer::sum));
+            quantities.forEach((productId, quantity) ->
+                    holds.add(new StockHold(event.orderId(), productId, quantity, expiresAt)));
+        }
+        repository.saveAll(holds);
+        reservedEvents.forEach(event -> wheel.schedule(event.orderId(), expiresAt.toEpochMilli()));
+    }
+
+    /**
+     * Lock + xoá hold của các order (payment.failed / order.paid).
+     *
+     * @return orderId → items đã giữ; order không còn hold thì không có trong map
+     */
+    public Map<UUID, List<OrderEvent.OrderItem>> take(Collection<UUID> orderIds) {
+        return take(orderIds, null);
+    }
+
+    /** Như take nhưng chỉ lấy hold đã hết hạn tại now — order vừa bị take ở nơi khác thì bỏ qua. */
+    public Map<UUID, List<OrderEvent.OrderItem>> takeExpired(Collection<UUID> orderIds, Instant now) {
+        return take(orderIds, now);
+    }
+
+    /** Order đã tới hạn theo wheel — gỡ khỏi wheel. */
+    public List<UUID> dueOrderIds(long nowMillis) {
+        return wheel.advance(nowMillis);
+    }
+
+    /** Lượt quét dự phòng trên DB. */
+    public List<UUID> expiredOrderIds(Instant now, int limit) {
+        return repository.findExpiredOrderIds(now, Limit.of(limit));
+    }
+
+    /** Nạp lại wheel từ DB lúc startup — hold còn sống sau restart vẫn được hết hạn đúng giờ. */
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        List<Object[]> deadlines = repository.findOrderDeadlines();
+        for (Object[] row : deadlines) {
+            wheel.schedule((UUID) row[0], ((Instant) row[1]).toEpochMilli());
+        }
+        log.info("Stock holds reloaded into timer wheel | orders={}", deadlines.size());
+    }
+
+    private Map<UUID, List<OrderEvent.OrderItem>> take(Collection<UUID> orderIds, Instant expiredAt) {
+        Map<UUID, List<OrderEvent.OrderItem>> taken = new LinkedHashMap<>();
+        if (orderIds.isEmpty()) {
+            return taken;
+        }
+        List<StockHold> holds = repository.findForUpdateByOrderIdIn(orderIds).stream()
+                .filter(hold -> expiredAt == null || !hold.getExpiresAt().isAfter(expiredAt))
+                .toList();
+        for (StockHold hold : holds) {
+            taken.computeIfAbsent(hold.getOrderId(), id -> new ArrayList<>())
+                    .add(new OrderEvent.OrderItem(hold.getProductId(), null, hold.getQuantity(), null));
+        }
+        repository.deleteAll(holds);
+        taken.keySet().forEach(wheel::cancel);
+        return taken;
+    }
+}
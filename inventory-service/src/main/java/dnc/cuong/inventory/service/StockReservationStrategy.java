@@ -0,0 +1,60 @@
+package dnc.cuong.inventory.service;
+
+import dnc.cuong.common.event.OrderEvent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Chiến lược reserve/release stock — tách "stock được giữ ở đâu, lock thế nào" khỏi InventoryService.
+ *
+ * WHY cần interface?
+ * → InventoryService chỉ lo idempotency, metrics, publish event.
+ * → Cách giữ stock có nhiều lựa chọn với trade-off khác nhau:
+ *   - entity (default): JPA entity + dirty checking, đơn giản nhất.
+ *   - conditional: 1 JDBC batch UPDATE ... WHERE available_quantity >= ? / order, không read-modify-write.
+ *   - ledger: in-memory atomic counters, ghi DB async theo batch.
+ *   - sharded: stock mỗi product chia ra K row, reserve bằng UPDATE có điều kiện trên 1 row ngẫu nhiên.
+ * → Chọn bằng property inventory.stock.mode — chỉ 1 implementation được tạo bean.
+ */
+public interface StockReservationStrategy {
+
+    /**
+     * Reserve stock cho từng order theo đúng thứ tự truyền vào (offset order).
+     * Mỗi order là all-or-nothing: thiếu 1 item → không reserve item nào của order đó.
+     *
+     * @return 1 Decision cho mỗi event, cùng thứ tự với input
+     */
+    List<Decision> reserve(List<OrderEvent> events);
+
+    /**
+     * Hoàn trả stock đã reserve cho order (Saga compensation).
+     */
+    void release(OrderEvent event);
+
+    /**
+     * Available hiện tại theo product, đọc từ nơi mode này giữ stock (products / ledger / shards) —
+     * nguồn refresh của StockAvailabilitySnapshot. Product không tồn tại → không có key.
+     */
+    Map<UUID, Integer> availableQuantities(Collection<UUID> productIds);
+
+    /**
+     * Kết quả reserve của 1 order — failureReason == null nghĩa là đã reserve.
+     */
+    record Decision(OrderEvent event, String failureReason) {
+
+        public static Decision reserved(OrderEvent event) {
+            return new Decision(event, null);
+        }
+
+        public static Decision rejected(OrderEvent event, List<String> failureReasons) {
+            return new Decision(event, String.join("; ", failureReasons));
+        }
+
+        public boolean isReserved() {
+            return failureReason == null;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package dnc.cuong.inventory.shard;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.domain.Product;
+import dnc.cuong.inventory.service.StockReservationStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strategy inventory.stock.mode=sharded — stock mỗi product chia ra inventory.stock.shards.count row.
+ *
+ * Reserve 1 item:
+ * 1. UPDATE có điều kiện trên 1 shard ngẫu nhiên — transaction đồng thời của cùng hot SKU
+ *    phần lớn rơi vào shard khác nhau → không chờ row lock của nhau.
+ * 2. Shard đó không đủ → thử lần lượt các shard còn lại.
+ * 3. Không shard nào đủ một mình (quantity lớn / stock sắp hết) → lock mọi shard theo shard_no,
+ *    lấy dần từ nhiều shard nếu tổng đủ. Chậm nhưng hiếm — StockShardRebalancer giữ các shard đều nhau.
+ *
+ * WHY item gộp theo productId rồi sắp xếp?
+ * → Order nhiều item lock shard của nhiều product — cùng thứ tự product giữa mọi transaction
+ *   thì không deadlock vòng tròn giữa các product.
+ * → Trong 1 product: transaction chỉ chờ lock khi CHƯA giữ shard nào của product đó — fast path
+ *   lấy đúng 1 shard, spill lock mọi shard theo shard_no (như StockShardRebalancer). Item trùng product
+ *   trong cùng order mà không gộp = giữ shard ngẫu nhiên A rồi chờ shard B → vòng chờ với spill / rebalance.
+ *
+ * WHY không chạy chung với batch listener (inventory.batch-listener.enabled)?
+ * → Batch = nhiều order trong 1 transaction: order sau chờ shard khác của product mà order trước đã giữ,
+ *   và thứ tự product giữa các order không sắp được → 2 batch giữ shard của nhau → deadlock abort,
+ *   fallback từng record đúng lúc hot SKU tải cao. Startup fail thay vì để chạy như vậy.
+ *
+ * WHY hasStock (SUM không lock) trước spill?
+ * → Hot SKU hết hàng: mọi order bị reject đều tới spill — lock cả K shard chỉ để biết không đủ.
+ *   Tổng không đủ trên dữ liệu đã commit → reject ngay, không lock gì (có thể reject nhầm khi release
+ *   chưa commit — conservative, không bao giờ oversell).
+ *
+ * WHY release không cần nhớ shard đã reserve?
+ * → reserved_quantity cộng vào shard nào cũng như nhau — chỉ tổng của product có nghĩa.
+ *   Release tìm shard bất kỳ có đủ reserved, hết thì rải trên nhiều shard.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock.mode", havingValue = "sharded")
+@Slf4j
+public class ShardedStockReservation implements StockReservationStrategy {
+
+    private final StockShardStore store;
+    private final int shardCount;
+    private final Counter spillCounter;
+
+    public ShardedStockReservation(StockShardStore store,
+                                   @Value("${inventory.stock.shards.count:8}") int shardCount,
+                                   @Value("${inventory.batch-listener.enabled:false}") boolean batchListener,
+                                   MeterRegistry meterRegistry) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("inventory.stock.shards.count must be >= 1: " + shardCount);
+        }
+        if (batchListener) {
+            throw new IllegalArgumentException(
+                    "inventory.stock.mode=sharded cannot run with inventory.batch-listener.enabled=true");
+        }
+        this.store = store;
+        this.shardCount = shardCount;
+        this.spillCounter = Counter.builder("inventory.shards.spill")
+                .description("Reservations/releases no single shard could satisfy (locked every shard)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tạo shard cho product chưa được shard — DataInitializer gọi sau khi seed.
+     */
+    public void initialize(List<Product> products) {
+        int created = store.createMissingShards(products, shardCount);
+        log.info("Stock shards initialized | products={} | shardsPerProduct={} | created={}",
+                products.size(), shardCount, created);
+    }
+
+    /** Còn đủ stock không — cộng available của mọi shard, không lock. */
+    public boolean hasStock(UUID productId, int quantity) {
+        return store.sumAvailable(productId) >= quantity;
+    }
+
+    @Override
+    public List<Decision> reserve(List<OrderEvent> events) {
+        List<Decision> decisions = new ArrayList<>(events.size());
+        for (OrderEvent event : events) {
+            List<Allocation> taken = new ArrayList<>();
+            List<String> failureReasons = new ArrayList<>();
+
+            for (OrderEvent.OrderItem item : mergedByProduct(event.items())) {
+                List<Allocation> allocations = reserveItem(item.productId(), item.quantity());
+                if (allocations != null) {
+                    taken.addAll(allocations);
+                } else {
+                    failureReasons.add(failureReason(item));
+                }
+            }
+
+            if (failureReasons.isEmpty()) {
+                decisions.add(Decision.reserved(event));
+            } else {
+                // All-or-nothing: trả lại đúng shard vừa trừ — row đang do transaction này lock
+                taken.forEach(a -> store.tryRelease(a.productId(), a.shardNo(), a.quantity()));
+                decisions.add(Decision.rejected(event, failureReasons));
+            }
+        }
+        return decisions;
+    }
+
+    @Override
+    public void release(OrderEvent event) {
+        for (OrderEvent.OrderItem item : mergedByProduct(event.items())) {
+            releaseItem(item.productId(), item.quantity());
+        }
+    }
+
+    /** Tổng available của các shard — product chưa được shard thì không có key. */
+    @Override
+    public Map<UUID, Integer> availableQuantities(Collection<UUID> productIds) {
+        return store.sumAvailable(productIds);
+    }
+
+    /** @return shard đã trừ, null nếu tổng các shard không đủ (không trừ gì) */
+    private List<Allocation> reserveItem(UUID productId, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            int shardNo = (start + i) % shardCount;
+            if (store.tryReserve(productId, shardNo, quantity)) {
+                return List.of(new Allocation(productId, shardNo, quantity));
+            }
+        }
+
+        if (!hasStock(productId, quantity)) {
+            return null;
+        }
+        List<StockShardStore.Shard> shards = store.lockShards(productId);
+        long total = shards.stream().mapToLong(StockShardStore.Shard::availableQuantity).sum();
+        if (shards.isEmpty() || total < quantity) {
+            return null;
+        }
+        spillCounter.increment();
+
+        List<Allocation> allocations = new ArrayList<>();
+        int remaining = quantity;
+        for (StockShardStore.Shard shard : shards) {
+            int take = Math.min(remaining, shard.availableQuantity());
+            if (take > 0 && store.tryReserve(productId, shard.shardNo(), take)) {
+                allocations.add(new Allocation(productId, shard.shardNo(), take));
+                remaining -= take;
+            }
+            if (remaining == 0) {
+                break;
+            }
+        }
+        return allocations;
+    }
+
+    private void releaseItem(UUID productId, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            if (store.tryRelease(productId, (start + i) % shardCount, quantity)) {
+                log.info("Released stock | productId={} | quantity={}", productId, quantity);
+                return;
+            }
+        }
+
+        List<StockShardStore.Shard> shards = store.lockShards(productId);
+        if (shards.isEmpty()) {
+            log.warn("Product not found during compensation | productId={}", productId);
+            return;
+        }
+        long reserved = shards.stream().mapToLong(StockShardStore.Shard::reservedQuantity).sum();
+        if (reserved < quantity) {
+            // Giống Product.releaseStock — compensation vượt quá reserved là bug, fail loudly
+            throw new IllegalStateException("Cannot release more than reserved for product " + productId +
+                    ": reserved=" + reserved + ", requested=" + quantity);
+        }
+        spillCounter.increment();
+
+        int remaining = quantity;
+        for (StockShardStore.Shard shard : shards) {
+            int give = Math.min(remaining, shard.reservedQuantity());
+            if (give > 0 && store.tryRelease(productId, shard.shardNo(), give)) {
+                remaining -= give;
+            }
+            if (remaining == 0) {
+                break;
+            }
+        }
+        log.info("Released stock across shards | productId={} | quantity={}", productId, quantity);
+    }
+
+    /** Chỉ chạy ở nhánh reject — hot path không đọc bảng products. */
+    private String failureReason(OrderEvent.OrderItem item) {
+        String name = store.productName(item.productId());
+        if (name == null) {
+            return "Product not found: " + item.productId();
+        }
+        return String.format("Insufficient stock for '%s': available=%d, requested=%d",
+                name, store.sumAvailable(item.productId()), item.quantity());
+    }
+
+    /** 1 item / product (cộng quantity), theo thứ tự productId. */
+    private static List<OrderEvent.OrderItem> mergedByProduct(List<OrderEvent.OrderItem> items) {
+        Map<UUID, OrderEvent.OrderItem> merged = new TreeMap<>();
+        for (OrderEvent.OrderItem item : items) {
+            merged.merge(item.productId(), item, (a, b) ->
+                    new OrderEvent.OrderItem(a.productId(), a.productName(), a.quantity() + b.quantity(), a.price()));
+        }
+        return List.copyOf(merged.values());
+    }
+
+    private record Allocation(UUID productId, int shardNo, int quantity) {}
+}
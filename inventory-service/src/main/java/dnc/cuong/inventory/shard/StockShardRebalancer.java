@@ -0,0 +1,119 @@
+package dnc.cuong.inventory.shard;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * San đều available giữa các shard của từng product + ghi tổng ngược về products.
+ *
+ * WHY cần rebalance?
+ * → Reserve chọn shard ngẫu nhiên nhưng quantity mỗi order khác nhau → các shard cạn không đều.
+ *   Shard cạn = fast path trượt sang shard khác (thêm UPDATE) rồi tới spill (lock mọi shard) —
+ *   đúng lúc hot SKU sắp hết hàng, là lúc contention cao nhất.
+ *
+ * WHY đọc shard không lock trước, chỉ lock khi lệch?
+ * → Mỗi vòng (1s) lock mọi shard của mọi product = hot SKU lại dồn về 1 điểm chờ mỗi giây —
+ *   đúng thứ sharding muốn bỏ. 1 SELECT không lock cho cả bảng → isSkewed → phần lớn vòng không lock gì.
+ * → Lệch → 1 transaction ngắn / product: lock mọi shard (FOR UPDATE theo shard_no, cùng thứ tự với spill),
+ *   kiểm tra lại trên số đã lock rồi mới san. Lỗi 1 product (lock timeout, deadlock) không bỏ dở cả vòng.
+ *
+ * WHY chỉ UPDATE products khi tổng khác?
+ * → Row products của hot SKU là chỗ nóng cũ — ghi mỗi giây dù không đổi là thêm 1 row lock + WAL vô ích.
+ *
+ * Chỉ di chuyển available — reserved ở shard nào cũng được (release không cần đúng shard).
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock.mode", havingValue = "sharded")
+@Slf4j
+public class StockShardRebalancer {
+
+    private final StockShardStore store;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter rebalancedCounter;
+    private final Counter movedUnitsCounter;
+
+    public StockShardRebalancer(StockShardStore store, TransactionTemplate transactionTemplate,
+                                MeterRegistry meterRegistry) {
+        this.store = store;
+        this.transactionTemplate = transactionTemplate;
+        this.rebalancedCounter = Counter.builder("inventory.shards.rebalanced")
+                .description("Products whose shard stock was redistributed").register(meterRegistry);
+        this.movedUnitsCounter = Counter.builder("inventory.shards.moved.units")
+                .description("Available units moved between shards by the rebalancer").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.stock.shards.rebalance-interval-ms:1000}")
+    public void rebalanceAll() {
+        Map<UUID, List<StockShardStore.Shard>> allShards = store.readShards();
+        Map<UUID, StockShardStore.Totals> productTotals = store.productTotals(allShards.keySet());
+
+        allShards.forEach((productId, shards) -> {
+            StockShardStore.Totals totals = StockShardStore.Totals.of(shards);
+            StockShardStore.Totals recorded = productTotals.get(productId);
+            try {
+                if (isSkewed(shards, totals.availableQuantity())) {
+                    transactionTemplate.executeWithoutResult(status -> rebalance(productId, recorded));
+                } else if (!totals.equals(recorded)) {
+                    store.syncProductTotals(productId, totals);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Shard rebalance FAILED, retry next round | productId={} | error={}",
+                        productId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @param recorded tổng đang ghi trong products (null nếu chưa đọc được) — chỉ sync khi khác
+     */
+    void rebalance(UUID productId, StockShardStore.Totals recorded) {
+        List<StockShardStore.Shard> shards = store.lockShards(productId);
+        if (shards.isEmpty()) {
+            return;
+        }
+        StockShardStore.Totals totals = StockShardStore.Totals.of(shards);
+        long available = totals.availableQuantity();
+
+        // Số đọc không lock có thể đã cũ — chỉ san khi vẫn lệch trên số đã lock
+        if (isSkewed(shards, available)) {
+            int[] target = StockShardStore.split(available, shards.size());
+            long moved = 0;
+            for (int i = 0; i < shards.size(); i++) {
+                StockShardStore.Shard shard = shards.get(i);
+                if (shard.availableQuantity() != target[i]) {
+                    store.setAvailable(productId, shard.shardNo(), target[i]);
+                    moved += Math.max(0, target[i] - shard.availableQuantity());
+                }
+            }
+            rebalancedCounter.increment();
+            movedUnitsCounter.increment(moved);
+            log.debug("Shards rebalanced | productId={} | available={} | moved={}", productId, available, moved);
+        }
+        if (!totals.equals(recorded)) {
+            store.syncProductTotals(productId, totals);
+        }
+    }
+
+    /**
+     * Shard nghèo nhất còn chưa tới nửa phần chia đều → order cỡ trung bình bắt đầu trượt khỏi shard đó.
+     * Tổng < số shard (phần chia đều = 0) → không san nữa, spill lo phần còn lại.
+     */
+    static boolean isSkewed(List<StockShardStore.Shard> shards, long totalAvailable) {
+        if (shards.size() < 2) {
+            return false;
+        }
+        long fairShare = totalAvailable / shards.size();
+        int min = shards.stream().mapToInt(StockShardStore.Shard::availableQuantity).min().orElse(0);
+        return min * 2L < fairShare;
+    }
+}
@@ -0,0 +1,211 @@
+package dnc.cuong.inventory.shard;
+
+import dnc.cuong.inventory.domain.Product;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Truy cập bảng product_stock_shards bằng JDBC — dùng chung bởi ShardedStockReservation và StockShardRebalancer.
+ *
+ * WHY UPDATE có điều kiện (available_quantity >= ?) thay vì load entity rồi sửa?
+ * → Check + trừ trong 1 statement, 1 round-trip, row lock chỉ lấy khi thực sự trừ được.
+ * → Không qua persistence context: row vừa bị UPDATE bởi statement khác không bao giờ bị
+ *   entity cũ trong session ghi đè.
+ *
+ * Mọi method chạy trong transaction của caller (JdbcTemplate dùng chung connection của JpaTransactionManager).
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock.mode", havingValue = "sharded")
+public class StockShardStore {
+
+    private static final String RESERVE_SQL = """
+            UPDATE product_stock_shards
+               SET available_quantity = available_quantity - ?,
+                   reserved_quantity = reserved_quantity + ?
+             WHERE product_id = ? AND shard_no = ? AND available_quantity >= ?
+            """;
+
+    private static final String RELEASE_SQL = """
+            UPDATE product_stock_shards
+               SET available_quantity = available_quantity + ?,
+                   reserved_quantity = reserved_quantity - ?
+             WHERE product_id = ? AND shard_no = ? AND reserved_quantity >= ?
+            """;
+
+    /** ORDER BY shard_no — mọi transaction lock các shard của 1 product theo cùng thứ tự. */
+    private static final String LOCK_SQL = """
+            SELECT shard_no, available_quantity, reserved_quantity
+              FROM product_stock_shards
+             WHERE product_id = ?
+             ORDER BY shard_no
+               FOR UPDATE
+            """;
+
+    private static final String READ_ALL_SQL = """
+            SELECT product_id, shard_no, available_quantity, reserved_quantity
+              FROM product_stock_shards
+             ORDER BY product_id, shard_no
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StockShardStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** @return true nếu shard còn đủ và đã trừ */
+    public boolean tryReserve(UUID productId, int shardNo, int quantity) {
+        return jdbcTemplate.update(RESERVE_SQL, quantity, quantity, productId, shardNo, quantity) == 1;
+    }
+
+    /** @return true nếu shard có đủ reserved và đã trả về available */
+    public boolean tryRelease(UUID productId, int shardNo, int quantity) {
+        return jdbcTemplate.update(RELEASE_SQL, quantity, quantity, productId, shardNo, quantity) == 1;
+    }
+
+    /** Lock tất cả shard của product (SELECT ... FOR UPDATE) — rỗng nếu product chưa được shard. */
+    public List<Shard> lockShards(UUID productId) {
+        return jdbcTemplate.query(LOCK_SQL,
+                (rs, rowNum) -> new Shard(rs.getInt(1), rs.getInt(2), rs.getInt(3)),
+                productId);
+    }
+
+    /** Tổng available trên mọi shard, không lock — hasStock của sharded mode. */
+    public long sumAvailable(UUID productId) {
+        Long sum = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(available_quantity), 0) FROM product_stock_shards WHERE product_id = ?",
+                Long.class, productId);
+        return sum != null ? sum : 0;
+    }
+
+    /** Tổng available theo product, 1 query GROUP BY cho cả danh sách. */
+    public Map<UUID, Integer> sumAvailable(Collection<UUID> productIds) {
+        Map<UUID, Integer> sums = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return sums;
+        }
+        new NamedParameterJdbcTemplate(jdbcTemplate).query("""
+                SELECT product_id, SUM(available_quantity)
+                  FROM product_stock_shards
+                 WHERE product_id IN (:ids)
+                 GROUP BY product_id
+                """, Map.of("ids", productIds),
+                rs -> {
+                    sums.put(rs.getObject(1, UUID.class), rs.getInt(2));
+                });
+        return sums;
+    }
+
+    public void setAvailable(UUID productId, int shardNo, int availableQuantity) {
+        jdbcTemplate.update(
+                "UPDATE product_stock_shards SET available_quantity = ? WHERE product_id = ? AND shard_no = ?",
+                availableQuantity, productId, shardNo);
+    }
+
+    /**
+     * Shard của mọi product, KHÔNG lock — StockShardRebalancer quyết định có cần lock không.
+     * Key theo thứ tự product_id, shard theo shard_no.
+     */
+    public Map<UUID, List<Shard>> readShards() {
+        Map<UUID, List<Shard>> shards = new LinkedHashMap<>();
+        jdbcTemplate.query(READ_ALL_SQL, rs -> {
+            shards.computeIfAbsent(rs.getObject(1, UUID.class), id -> new ArrayList<>())
+                    .add(new Shard(rs.getInt(2), rs.getInt(3), rs.getInt(4)));
+        });
+        return shards;
+    }
+
+    /** Tổng đang ghi trong products của các product này — so với tổng shard trước khi sync. */
+    public Map<UUID, Totals> productTotals(Collection<UUID> productIds) {
+        Map<UUID, Totals> totals = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return totals;
+        }
+        new NamedParameterJdbcTemplate(jdbcTemplate).query(
+                "SELECT id, available_quantity, reserved_quantity FROM products WHERE id IN (:ids)",
+                Map.of("ids", productIds),
+                rs -> {
+                    totals.put(rs.getObject(1, UUID.class), new Totals(rs.getLong(2), rs.getLong(3)));
+                });
+        return totals;
+    }
+
+    /** @return null nếu product không tồn tại */
+    public String productName(UUID productId) {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT name FROM products WHERE id = ?", String.class, productId);
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    /**
+     * Ghi tổng của các shard ngược về products — products vẫn đúng (trễ 1 chu kỳ rebalance)
+     * cho người đọc bảng products và khi quay lại inventory.stock.mode=entity.
+     */
+    public void syncProductTotals(UUID productId, Totals totals) {
+        jdbcTemplate.update(
+                "UPDATE products SET available_quantity = ?, reserved_quantity = ?, updated_at = ? WHERE id = ?",
+                totals.availableQuantity(), totals.reservedQuantity(), Timestamp.from(Instant.now()), productId);
+    }
+
+    /**
+     * Tạo shard còn thiếu cho từng product.
+     *
+     * Product chưa có shard nào → chia available/reserved hiện tại của products đều cho shardCount shard.
+     * Product đã shard (tăng shardCount) → thêm shard rỗng, StockShardRebalancer san stock sang sau.
+     *
+     * @return số row shard đã tạo
+     */
+    public int createMissingShards(List<Product> products, int shardCount) {
+        Map<UUID, Integer> existing = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, COUNT(*) FROM product_stock_shards GROUP BY product_id",
+                rs -> {
+                    existing.put(rs.getObject(1, UUID.class), rs.getInt(2));
+                });
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Product product : products) {
+            int present = existing.getOrDefault(product.getId(), 0);
+            int[] available = present == 0 ? split(product.getAvailableQuantity(), shardCount) : new int[shardCount];
+            int[] reserved = present == 0 ? split(product.getReservedQuantity(), shardCount) : new int[shardCount];
+            for (int shardNo = present; shardNo < shardCount; shardNo++) {
+                rows.add(new Object[]{product.getId(), shardNo, available[shardNo], reserved[shardNo]});
+            }
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO product_stock_shards (product_id, shard_no, available_quantity, reserved_quantity)
+                VALUES (?, ?, ?, ?)
+                """, rows);
+        return rows.size();
+    }
+
+    /** Chia total thành parts phần chênh nhau tối đa 1 — phần dư dồn vào các shard đầu. */
+    static int[] split(long total, int parts) {
+        int[] result = new int[parts];
+        for (int i = 0; i < parts; i++) {
+            result[i] = (int) (total / parts + (i < total % parts ? 1 : 0));
+        }
+        return result;
+    }
+
+    public record Shard(int shardNo, int availableQuantity, int reservedQuantity) {}
+
+    public record Totals(long availableQuantity, long reservedQuantity) {
+
+        static Totals of(List<Shard> shards) {
+            return new Totals(shards.stream().mapToLong(Shard::availableQuantity).sum(),
+                    shards.stream().mapToLong(Shard::reservedQuantity).sum());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package dnc.cuong.inventory.availability;
+
+import dnc.cuong.inventory.domain.Product;
+import dnc.cuong.inventory.domain.ProductRepository;
+import dnc.cuong.inventory.service.StockReservationStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho StockAvailabilitySnapshot — đọc chỉ từ RAM, refresh gom theo product bị chạm.
+ */
+@ExtendWith(MockitoExtension.class)
+class StockAvailabilitySnapshotTest {
+
+    private final UUID macbook = UUID.randomUUID();
+    private final UUID mouse = UUID.randomUUID();
+
+    @Mock
+    private StockReservationStrategy stockReservation;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private StockAvailabilitySnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new StockAvailabilitySnapshot(stockReservation, productRepository, new SimpleMeterRegistry());
+        when(stockReservation.availableQuantities(anyCollection())).thenReturn(Map.of(macbook, 50, mouse, 0));
+        snapshot.load(List.of(product(macbook, "MacBook Pro 14"), product(mouse, "Magic Mouse")));
+        clearInvocations(stockReservation);
+    }
+
+    @Test
+    void get_shouldServeLoadedQuantitiesWithoutReadingSource() {
+        StockAvailability entry = snapshot.get(macbook).orElseThrow();
+
+        assertTrue(snapshot.isReady());
+        assertEquals("MacBook Pro 14", entry.name());
+        assertEquals(50, entry.availableQuantity());
+        assertTrue(entry.inStock());
+        assertFalse(snapshot.get(mouse).orElseThrow().inStock());
+        assertTrue(snapshot.get(UUID.randomUUID()).isEmpty());
+        verifyNoInteractions(stockReservation);
+    }
+
+    @Test
+    void refreshStale_shouldReadOnlyTouchedProductsOnce() {
+        when(stockReservation.availableQuantities(List.of(macbook))).thenReturn(Map.of(macbook, 47));
+
+        snapshot.markStale(List.of(macbook));
+        snapshot.markStale(List.of(macbook));
+        snapshot.refreshStale();
+        snapshot.refreshStale();
+
+        verify(stockReservation, times(1)).availableQuantities(anyCollection());
+        assertEquals(47, snapshot.get(macbook).orElseThrow().availableQuantity());
+        assertEquals(0, snapshot.get(mouse).orElseThrow().availableQuantity());
+    }
+
+    @Test
+    void refreshStale_shouldKeepProductsStaleWhenSourceFails() {
+        when(stockReservation.availableQuantities(List.of(macbook)))
+                .thenThrow(new IllegalStateException("Stock ledger not rebuilt yet"))
+                .thenReturn(Map.of(macbook, 45));
+
+        snapshot.markStale(List.of(macbook));
+        snapshot.refreshStale();
+        assertEquals(50, snapshot.get(macbook).orElseThrow().availableQuantity());
+
+        snapshot.refreshStale();
+        assertEquals(45, snapshot.get(macbook).orElseThrow().availableQuantity());
+    }
+
+    @Test
+    void refreshStale_shouldAddProductCreatedAfterStartup() {
+        UUID keyboard = UUID.randomUUID();
+        when(stockReservation.availableQuantities(List.of(keyboard))).thenReturn(Map.of(keyboard, 20));
+        when(productRepository.findAllByIdIn(List.of(keyboard))).thenReturn(List.of(product(keyboard, "Magic Keyboard")));
+
+        snapshot.markStale(List.of(keyboard));
+        snapshot.refreshStale();
+
+        StockAvailability entry = snapshot.get(keyboard).orElseThrow();
+        assertEquals("Magic Keyboard", entry.name());
+        assertEquals(20, entry.availableQuantity());
+    }
+
+    @Test
+    void refreshAll_shouldDiscoverNewProductsFromCatalog() {
+        UUID keyboard = UUID.randomUUID();
+        when(productRepository.findAllIds()).thenReturn(List.of(macbook, mouse, keyboard));
+        // Thứ tự id theo thứ tự duyệt map của snapshot — chỉ so tập hợp
+        when(stockReservation.availableQuantities(argThat(ids -> Set.copyOf(ids).equals(Set.of(macbook, mouse, keyboard)))))
+                .thenReturn(Map.of(macbook, 48, mouse, 0, keyboard, 20));
+        when(productRepository.findAllByIdIn(List.of(keyboard))).thenReturn(List.of(product(keyboard, "Magic Keyboard")));
+
+        snapshot.refreshAll();
+
+        assertEquals(20, snapshot.get(keyboard).orElseThrow().availableQuantity());
+        assertEquals(48, snapshot.get(macbook).orElseThrow().availableQuantity());
+    }
+
+    @Test
+    void refreshAll_shouldSkipProductsUnknownToStockSource() {
+        UUID notInLedger = UUID.randomUUID();
+        when(productRepository.findAllIds()).thenReturn(List.of(macbook, mouse, notInLedger));
+        when(stockReservation.availableQuantities(anyCollection())).thenReturn(Map.of(macbook, 50, mouse, 0));
+
+        snapshot.refreshAll();
+
+        assertTrue(snapshot.get(notInLedger).isEmpty());
+        verify(productRepository, never()).findAllByIdIn(anyList());
+    }
+
+    @Test
+    void getAll_shouldSkipUnknownProductsAndKeepOrder() {
+        List<StockAvailability> entries = snapshot.getAll(List.of(mouse, UUID.randomUUID(), macbook));
+
+        assertEquals(List.of(mouse, macbook), entries.stream().map(StockAvailability::productId).toList());
+    }
+
+    private static Product product(UUID id, String name) {
+        return Product.builder().id(id).name(name).skuCode(name).availableQuantity(0).build();
+    }
+}
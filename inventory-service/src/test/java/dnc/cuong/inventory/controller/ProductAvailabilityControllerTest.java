@@ -0,0 +1,89 @@
+package dnc.cuong.inventory.controller;
+
+import dnc.cuong.inventory.availability.StockAvailability;
+import dnc.cuong.inventory.availability.StockAvailabilitySnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Controller test dùng @WebMvcTest — chỉ load web layer, snapshot là mock.
+ */
+@WebMvcTest(ProductAvailabilityController.class)
+class ProductAvailabilityControllerTest {
+
+    private final UUID productId = UUID.fromString("7c9e6679-7425-40de-944b-e07fc1f90ae7");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private StockAvailabilitySnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        when(snapshot.isReady()).thenReturn(true);
+    }
+
+    @Test
+    void getAvailability_shouldReturnSnapshotEntry() throws Exception {
+        when(snapshot.get(productId)).thenReturn(Optional.of(
+                new StockAvailability(productId, "MacBook Pro 14", 50, true, Instant.now())));
+
+        mockMvc.perform(get("/api/products/{id}/availability", productId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productId").value(productId.toString()))
+                .andExpect(jsonPath("$.availableQuantity").value(50))
+                .andExpect(jsonPath("$.inStock").value(true));
+    }
+
+    @Test
+    void getAvailability_shouldReturn404ForUnknownProduct() throws Exception {
+        when(snapshot.get(productId)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/products/{id}/availability", productId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getAvailability_shouldReturn503BeforeSnapshotLoaded() throws Exception {
+        when(snapshot.isReady()).thenReturn(false);
+
+        mockMvc.perform(get("/api/products/{id}/availability", productId))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void getAvailabilities_shouldReturnKnownProducts() throws Exception {
+        UUID unknown = UUID.randomUUID();
+        when(snapshot.getAll(List.of(productId, unknown))).thenReturn(List.of(
+                new StockAvailability(productId, "MacBook Pro 14", 0, false, Instant.now())));
+
+        mockMvc.perform(get("/api/products/availability").param("ids", productId + "," + unknown))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].inStock").value(false));
+    }
+
+    @Test
+    void getAvailabilities_shouldRejectTooManyIds() throws Exception {
+        String ids = String.join(",", Stream.generate(() -> UUID.randomUUID().toString())
+                .limit(101).toList());
+
+        mockMvc.perform(get("/api/products/availability").param("ids", ids))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,146 @@
+package dnc.cuong.inventory.ledger;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.inventory.domain.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho StockLedger — CAS reserve/release, all-or-nothing, delta tracking.
+ *
+ * WHY test concurrency ở đây?
+ * -> Ledger thay thế row lock của DB → nếu CAS sai là oversell thật sự.
+ * -> Pure unit test, không cần DB/Kafka.
+ */
+class StockLedgerTest {
+
+    private static final UUID HOT_PRODUCT = UUID.randomUUID();
+    private static final UUID OTHER_PRODUCT = UUID.randomUUID();
+
+    private StockLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new StockLedger(new SimpleMeterRegistry());
+        ledger.rebuild(List.of(
+                product(HOT_PRODUCT, "iPhone 15 Pro", 1000),
+                product(OTHER_PRODUCT, "Magic Mouse", 1)));
+    }
+
+    @Test
+    void tryReserve_shouldNeverOversellUnderConcurrency() throws Exception {
+        // Given — 8 threads x 250 lần reserve 1 = 2000 yêu cầu cho 1000 stock
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int success = 0;
+                for (int i = 0; i < 250; i++) {
+                    if (ledger.tryReserve(List.of(item(HOT_PRODUCT, 1))).isEmpty()) {
+                        success++;
+                    }
+                }
+                return success;
+            }));
+        }
+
+        // When
+        start.countDown();
+        int totalSuccess = 0;
+        for (Future<Integer> result : results) {
+            totalSuccess += result.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then — đúng 1000 thành công, stock đã hết
+        assertEquals(1000, totalSuccess);
+        assertFalse(ledger.tryReserve(List.of(item(HOT_PRODUCT, 1))).isEmpty());
+        assertTrue(ledger.drainPendingDeltas().isEmpty(), "Chưa commit thì chưa có delta");
+    }
+
+    @Test
+    void tryReserve_shouldBeAllOrNothingPerOrder() {
+        // When — item thứ 2 thiếu stock
+        List<String> failures = ledger.tryReserve(List.of(item(HOT_PRODUCT, 5), item(OTHER_PRODUCT, 2)));
+
+        // Then — item 1 được trả lại
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0).contains("Insufficient stock for 'Magic Mouse'"));
+        assertTrue(ledger.tryReserve(List.of(item(HOT_PRODUCT, 1000))).isEmpty());
+    }
+
+    @Test
+    void tryReserve_shouldReportUnknownProduct() {
+        UUID unknown = UUID.randomUUID();
+
+        List<String> failures = ledger.tryReserve(List.of(item(unknown, 1)));
+
+        assertEquals(List.of("Product not found: " + unknown), failures);
+    }
+
+    @Test
+    void recordCommitted_shouldAggregateDeltasPerProduct() {
+        // Given — 3 reservations + 1 release đã commit
+        ledger.recordCommitted(List.of(item(HOT_PRODUCT, 2)), 1);
+        ledger.recordCommitted(List.of(item(HOT_PRODUCT, 3), item(OTHER_PRODUCT, 1)), 1);
+        ledger.recordCommitted(List.of(item(HOT_PRODUCT, 1)), -1);
+
+        // When
+        Map<UUID, Long> deltas = ledger.drainPendingDeltas();
+
+        // Then — 1 delta / product, drain lần 2 rỗng
+        assertEquals(Map.of(HOT_PRODUCT, 4L, OTHER_PRODUCT, 1L), deltas);
+        assertTrue(ledger.drainPendingDeltas().isEmpty());
+
+        // Flush fail → restore → lần sau flush lại
+        ledger.restorePendingDeltas(deltas);
+        assertEquals(deltas, ledger.drainPendingDeltas());
+    }
+
+    @Test
+    void verifyReleasable_shouldThrow_whenReleasingMoreThanReserved() {
+        ledger.tryReserve(List.of(item(OTHER_PRODUCT, 1)));
+
+        assertThrows(IllegalStateException.class,
+                () -> ledger.verifyReleasable(List.of(item(OTHER_PRODUCT, 2))));
+        assertDoesNotThrow(() -> ledger.verifyReleasable(List.of(item(OTHER_PRODUCT, 1))));
+    }
+
+    @Test
+    void tryReserve_shouldThrow_beforeRebuild() {
+        StockLedger coldLedger = new StockLedger(new SimpleMeterRegistry());
+
+        assertThrows(IllegalStateException.class,
+                () -> coldLedger.tryReserve(List.of(item(HOT_PRODUCT, 1))));
+    }
+
+    // --- Helpers ---
+
+    private static Product product(UUID id, String name, int available) {
+        return Product.builder()
+                .id(id).name(name).skuCode(name.toUpperCase())
+                .availableQuantity(available).reservedQuantity(0).build();
+    }
+
+    private static OrderEvent.OrderItem item(UUID productId, int quantity) {
+        return new OrderEvent.OrderItem(productId, "Test Product", quantity, new BigDecimal("100.00"));
+    }
+}
@@ -0,0 +1,197 @@
+package dnc.cuong.inventory.service;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.inventory.domain.ProductRepository;
+import dnc.cuong.inventory.domain.ProductStockOperationsImpl;
+import dnc.cuong.inventory.service.StockReservationStrategy.Decision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test ConditionalStockReservation trên H2 in-memory (MODE=PostgreSQL) — UPDATE có điều kiện và
+ * row lock thật, nhiều thread cùng reserve như consumer concurrency > 1.
+ *
+ * WHY không mock ProductRepository như InventoryServiceTest?
+ * → Thứ cần chứng minh là DB không để stock âm khi các transaction chạy song song — mock không có lock.
+ */
+class ConditionalStockReservationTest {
+
+    private static final int THREADS = 8;
+
+    private final UUID macbook = UUID.randomUUID();
+    private final UUID mouse = UUID.randomUUID();
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ConditionalStockReservation reservation;
+
+    @BeforeEach
+    void setUp() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:conditional_" + UUID.randomUUID()
+                + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(THREADS);
+        dataSource = new HikariDataSource(config);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE products (
+                    id UUID PRIMARY KEY,
+                    name VARCHAR(255) NOT NULL,
+                    available_quantity INT NOT NULL,
+                    reserved_quantity INT NOT NULL,
+                    updated_at TIMESTAMP)
+                """);
+        insertProduct(macbook, "MacBook Pro 14", 50);
+        insertProduct(mouse, "Magic Mouse", 30);
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // Repository thật chỉ là proxy Spring Data quanh ProductStockOperationsImpl — delegate thẳng vào impl
+        ProductRepository repository = mock(ProductRepository.class,
+                delegatesTo(new ProductStockOperationsImpl(jdbcTemplate)));
+        reservation = new ConditionalStockReservation(repository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void reserve_shouldDecrementAvailableAndIncrementReserved() {
+        Decision decision = reserveInTransaction(order(item(macbook, 3), item(mouse, 2)));
+
+        assertTrue(decision.isReserved());
+        assertStock(macbook, 47, 3);
+        assertStock(mouse, 28, 2);
+    }
+
+    @Test
+    void reserve_shouldRejectWholeOrderAndUndoAppliedItems() {
+        UUID missing = UUID.randomUUID();
+
+        Decision decision = reserveInTransaction(order(item(macbook, 3), item(mouse, 31), item(missing, 1)));
+
+        assertFalse(decision.isReserved());
+        assertTrue(decision.failureReason().contains("Insufficient stock for 'Magic Mouse': available=30, requested=31"),
+                decision.failureReason());
+        assertTrue(decision.failureReason().contains("Product not found: " + missing), decision.failureReason());
+        assertStock(macbook, 50, 0);
+        assertStock(mouse, 30, 0);
+    }
+
+    @Test
+    void release_shouldMoveReservedBackToAvailable() {
+        reserveInTransaction(order(item(macbook, 5)));
+
+        transactionTemplate.executeWithoutResult(status -> reservation.release(order(item(macbook, 5))));
+
+        assertStock(macbook, 50, 0);
+    }
+
+    @Test
+    void reserve_concurrentOrders_shouldNeverOversell() throws Exception {
+        // 8 thread × 40 order (mỗi order 1-2 item, thứ tự item ngẫu nhiên) tranh 50 MacBook + 30 Mouse
+        List<Callable<List<OrderEvent>>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(() -> {
+                List<OrderEvent> reserved = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    OrderEvent order = randomOrder();
+                    if (reserveInTransaction(order).isReserved()) {
+                        reserved.add(order);
+                    }
+                }
+                return reserved;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<OrderEvent> reserved = new ArrayList<>();
+        try {
+            for (Future<List<OrderEvent>> future : executor.invokeAll(workers)) {
+                reserved.addAll(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int macbookReserved = reservedQuantity(reserved, macbook);
+        int mouseReserved = reservedQuantity(reserved, mouse);
+        assertTrue(macbookReserved <= 50 && mouseReserved <= 30);
+        // Stock trong DB khớp đúng tổng các order được báo reserved — không mất update, không âm
+        assertStock(macbook, 50 - macbookReserved, macbookReserved);
+        assertStock(mouse, 30 - mouseReserved, mouseReserved);
+        // Mọi order đều có MacBook, 320 order >> 50 → bán hết (còn tối đa 1 nếu chỉ còn order xin 2)
+        assertTrue(macbookReserved >= 49, "macbook=" + macbookReserved);
+    }
+
+    // --- Helpers ---
+
+    private Decision reserveInTransaction(OrderEvent order) {
+        return transactionTemplate.execute(status -> reservation.reserve(List.of(order)).get(0));
+    }
+
+    private OrderEvent randomOrder() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<OrderEvent.OrderItem> items = new ArrayList<>(List.of(item(macbook, 1 + random.nextInt(2))));
+        if (random.nextBoolean()) {
+            items.add(random.nextBoolean() ? 0 : 1, item(mouse, 1));
+        }
+        return order(items.toArray(OrderEvent.OrderItem[]::new));
+    }
+
+    private static int reservedQuantity(List<OrderEvent> orders, UUID productId) {
+        return orders.stream()
+                .flatMap(order -> order.items().stream())
+                .filter(item -> item.productId().equals(productId))
+                .mapToInt(OrderEvent.OrderItem::quantity)
+                .sum();
+    }
+
+    private void insertProduct(UUID id, String name, int available) {
+        jdbcTemplate.update("INSERT INTO products (id, name, available_quantity, reserved_quantity) VALUES (?, ?, ?, 0)",
+                id, name, available);
+    }
+
+    private void assertStock(UUID productId, int available, int reserved) {
+        assertEquals(available, jdbcTemplate.queryForObject(
+                "SELECT available_quantity FROM products WHERE id = ?", Integer.class, productId));
+        assertEquals(reserved, jdbcTemplate.queryForObject(
+                "SELECT reserved_quantity FROM products WHERE id = ?", Integer.class, productId));
+    }
+
+    private static OrderEvent.OrderItem item(UUID productId, int quantity) {
+        return new OrderEvent.OrderItem(productId, "Test Product", quantity, new BigDecimal("100.00"));
+    }
+
+    private static OrderEvent order(OrderEvent.OrderItem... items) {
+        return new OrderEvent(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                Arrays.asList(items), new BigDecimal("100.00"), OrderStatus.PLACED, null, Instant.now());
+    }
+}
@@ -2,17 +2,19 @@ package dnc.cuong.inventory.service;
 
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.common.event.OrderStatus;
-import dnc.cuong.inventory.domain.ProcessedEvent;
-import dnc.cuong.inventory.domain.ProcessedEventRepository;
+import dnc.cuong.common.idempotency.IdempotencyGuard;
+import dnc.cuong.common.idempotency.ProcessedEventRepository;
+import dnc.cuong.inventory.availability.StockAvailabilitySnapshot;
 import dnc.cuong.inventory.domain.Product;
 import dnc.cuong.inventory.domain.ProductRepository;
+import dnc.cuong.inventory.domain.StockHold;
+import dnc.cuong.inventory.domain.StockHoldRepository;
 import dnc.cuong.inventory.kafka.InventoryKafkaProducer;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -48,15 +50,28 @@ class InventoryServiceTest {
     @Mock
     private InventoryKafkaProducer kafkaProducer;
 
+    @Mock
+    private StockHoldRepository stockHoldRepository;
+
     @Spy
     private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
-    @InjectMocks
     private InventoryService inventoryService;
 
     @BeforeEach
     void setUp() {
-        inventoryService.initMetrics();
+        // Default strategy (inventory.stock.mode=entity) trên mocked ProductRepository
+        inventoryService = newService(false);
+    }
+
+    private InventoryService newService(boolean holdsEnabled) {
+        EntityStockReservation strategy = new EntityStockReservation(productRepository);
+        InventoryService service = new InventoryService(
+                strategy, passThroughGuard(),
+                kafkaProducer, new StockHolds(stockHoldRepository, holdsEnabled, 15, 1000, meterRegistry),
+                new StockAvailabilitySnapshot(strategy, productRepository, meterRegistry), meterRegistry);
+        service.initMetrics();
+        return service;
     }
 
     // --- processOrderPlaced: Happy path ---
@@ -71,7 +86,7 @@ class InventoryServiceTest {
 
         OrderEvent event = createOrderPlacedEvent(productId, 3);
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(productRepository.findAllByIdIn(List.of(productId))).thenReturn(List.of(product));
 
         // When
@@ -82,7 +97,7 @@ class InventoryServiceTest {
         assertEquals(3, product.getReservedQuantity());
 
         // Idempotency record saved
-        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
 
         // order.validated event published
         ArgumentCaptor<OrderEvent> eventCaptor = ArgumentCaptor.forClass(OrderEvent.class);
@@ -105,7 +120,7 @@ class InventoryServiceTest {
 
         OrderEvent event = createMultiItemEvent(productId1, 2, productId2, 5);
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(productRepository.findAllByIdIn(List.of(productId1, productId2)))
                 .thenReturn(List.of(product1, product2));
 
@@ -129,7 +144,7 @@ class InventoryServiceTest {
         UUID unknownProductId = UUID.randomUUID();
         OrderEvent event = createOrderPlacedEvent(unknownProductId, 1);
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(productRepository.findAllByIdIn(List.of(unknownProductId))).thenReturn(List.of());
 
         // When
@@ -147,7 +162,7 @@ class InventoryServiceTest {
         verify(kafkaProducer, never()).sendOrderValidated(any());
 
         // Idempotency still saved for failure path
-        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
     }
 
     @Test
@@ -160,7 +175,7 @@ class InventoryServiceTest {
 
         OrderEvent event = createOrderPlacedEvent(productId, 5);
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(productRepository.findAllByIdIn(List.of(productId))).thenReturn(List.of(product));
 
         // When
@@ -182,7 +197,7 @@ class InventoryServiceTest {
     void processOrderPlaced_shouldSkipDuplicateEvent() {
         // Given
         OrderEvent event = createOrderPlacedEvent(UUID.randomUUID(), 1);
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(true);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(0);
 
         // When
         inventoryService.processOrderPlaced(event);
@@ -193,6 +208,71 @@ class InventoryServiceTest {
         verify(kafkaProducer, never()).sendOrderFailed(any());
     }
 
+    // --- processOrderPlacedBatch ---
+
+    @Test
+    void processOrderPlacedBatch_shouldDecideOrdersInOffsetOrderAgainstSharedStock() {
+        // Given — 2 orders tranh nhau 5 sản phẩm: order đầu được reserve, order sau thiếu stock
+        UUID productId = UUID.randomUUID();
+        Product product = Product.builder()
+                .id(productId).name("iPhone 15 Pro").skuCode("PHONE-001")
+                .availableQuantity(5).reservedQuantity(0).build();
+
+        OrderEvent first = createOrderPlacedEvent(productId, 3);
+        OrderEvent second = createOrderPlacedEvent(productId, 3);
+
+        when(processedEventRepository.claimAll(List.of(first.eventId(), second.eventId()), "order.placed"))
+                .thenReturn(List.of(first.eventId(), second.eventId()));
+        when(productRepository.findAllByIdIn(List.of(productId))).thenReturn(List.of(product));
+
+        // When
+        inventoryService.processOrderPlacedBatch(List.of(first, second));
+
+        // Then — chỉ order đầu được reserve
+        assertEquals(2, product.getAvailableQuantity());
+        assertEquals(3, product.getReservedQuantity());
+
+        ArgumentCaptor<OrderEvent> validatedCaptor = ArgumentCaptor.forClass(OrderEvent.class);
+        verify(kafkaProducer).sendOrderValidated(validatedCaptor.capture());
+        assertEquals(first.orderId(), validatedCaptor.getValue().orderId());
+
+        ArgumentCaptor<OrderEvent> failedCaptor = ArgumentCaptor.forClass(OrderEvent.class);
+        verify(kafkaProducer).sendOrderFailed(failedCaptor.capture());
+        assertEquals(second.orderId(), failedCaptor.getValue().orderId());
+        assertTrue(failedCaptor.getValue().reason().contains("Insufficient stock"));
+
+        // 1 query products cho cả batch, 1 claim processed_events
+        verify(productRepository, times(1)).findAllByIdIn(any());
+        verify(processedEventRepository, times(1)).claimAll(any(), anyString());
+        verify(processedEventRepository, never()).claim(any(), anyString());
+    }
+
+    @Test
+    void processOrderPlacedBatch_shouldSkipDuplicatesFromDbAndWithinBatch() {
+        // Given
+        UUID productId = UUID.randomUUID();
+        Product product = Product.builder()
+                .id(productId).name("Magic Mouse").skuCode("MOUSE-001")
+                .availableQuantity(100).reservedQuantity(0).build();
+
+        OrderEvent alreadyProcessed = createOrderPlacedEvent(productId, 1);
+        OrderEvent fresh = createOrderPlacedEvent(productId, 2);
+
+        // eventId lặp trong batch chỉ được claim 1 lần; alreadyProcessed đụng conflict
+        when(processedEventRepository.claimAll(List.of(alreadyProcessed.eventId(), fresh.eventId()), "order.placed"))
+                .thenReturn(List.of(fresh.eventId()));
+        when(productRepository.findAllByIdIn(List.of(productId))).thenReturn(List.of(product));
+
+        // When — fresh bị redeliver 2 lần trong cùng poll
+        inventoryService.processOrderPlacedBatch(List.of(alreadyProcessed, fresh, fresh));
+
+        // Then — chỉ reserve 1 lần cho fresh
+        assertEquals(98, product.getAvailableQuantity());
+        assertEquals(2, product.getReservedQuantity());
+        verify(kafkaProducer, times(1)).sendOrderValidated(any(OrderEvent.class));
+        verify(kafkaProducer, never()).sendOrderFailed(any());
+    }
+
     // --- compensateReservation ---
 
     @Test
@@ -205,7 +285,7 @@ class InventoryServiceTest {
 
         OrderEvent event = createPaymentFailedEvent(productId, 3);
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(productRepository.findAllByIdIn(List.of(productId))).thenReturn(List.of(product));
 
         // When
@@ -214,7 +294,7 @@ class InventoryServiceTest {
         // Then — stock restored
         assertEquals(50, product.getAvailableQuantity());
         assertEquals(0, product.getReservedQuantity());
-        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
     }
 
     @Test
@@ -223,21 +303,21 @@ class InventoryServiceTest {
         UUID missingProductId = UUID.randomUUID();
         OrderEvent event = createPaymentFailedEvent(missingProductId, 1);
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(productRepository.findAllByIdIn(List.of(missingProductId))).thenReturn(List.of());
 
         // When — should not throw
         assertDoesNotThrow(() -> inventoryService.compensateReservation(event));
 
         // ProcessedEvent still saved
-        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
     }
 
     @Test
     void compensateReservation_shouldSkipDuplicateEvent() {
         // Given
         OrderEvent event = createPaymentFailedEvent(UUID.randomUUID(), 1);
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(true);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(0);
 
         // When
         inventoryService.compensateReservation(event);
@@ -246,6 +326,105 @@ class InventoryServiceTest {
         verify(productRepository, never()).findAllByIdIn(any());
     }
 
+    // --- Stock holds (inventory.holds.enabled=true) ---
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processOrderPlaced_withHolds_shouldWriteHoldPerProduct() {
+        inventoryService = newService(true);
+        UUID productId = UUID.randomUUID();
+        Product product = Product.builder()
+                .id(productId).name("MacBook Pro").skuCode("MBP-14")
+                .availableQuantity(50).reservedQuantity(0).build();
+        OrderEvent event = createOrderPlacedEvent(productId, 3);
+
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
+        when(productRepository.findAllByIdIn(List.of(productId))).thenReturn(List.of(product));
+
+        inventoryService.processOrderPlaced(event);
+
+        ArgumentCaptor<List<StockHold>> holdsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(stockHoldRepository).saveAll(holdsCaptor.capture());
+        StockHold hold = holdsCaptor.getValue().get(0);
+        assertEquals(event.orderId(), hold.getOrderId());
+        assertEquals(3, hold.getQuantity());
+        assertTrue(hold.getExpiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void compensateReservation_withHolds_shouldReleaseHeldQuantityNotEventQuantity() {
+        inventoryService = newService(true);
+        UUID productId = UUID.randomUUID();
+        Product product = Product.builder()
+                .id(productId).name("MacBook Pro").skuCode("MBP-14")
+                .availableQuantity(47).reservedQuantity(3).build();
+        // Event nói 10 — Inventory chỉ giữ 3
+        OrderEvent event = createPaymentFailedEvent(productId, 10);
+        StockHold hold = new StockHold(event.orderId(), productId, 3, Instant.now().plusSeconds(600));
+
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
+        when(stockHoldRepository.findForUpdateByOrderIdIn(List.of(event.orderId()))).thenReturn(List.of(hold));
+        when(productRepository.findAllByIdIn(List.of(productId))).thenReturn(List.of(product));
+
+        inventoryService.compensateReservation(event);
+
+        assertEquals(50, product.getAvailableQuantity());
+        assertEquals(0, product.getReservedQuantity());
+        verify(stockHoldRepository).deleteAll(List.of(hold));
+    }
+
+    @Test
+    void compensateReservation_withHolds_shouldReleaseNothingWhenHoldGone() {
+        inventoryService = newService(true);
+        OrderEvent event = createPaymentFailedEvent(UUID.randomUUID(), 2);
+
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
+        when(stockHoldRepository.findForUpdateByOrderIdIn(List.of(event.orderId()))).thenReturn(List.of());
+
+        inventoryService.compensateReservation(event);
+
+        verify(productRepository, never()).findAllByIdIn(any());
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
+    }
+
+    @Test
+    void releaseExpiredHolds_shouldReleaseOnlyExpiredHolds() {
+        inventoryService = newService(true);
+        UUID productId = UUID.randomUUID();
+        Product product = Product.builder()
+                .id(productId).name("MacBook Pro").skuCode("MBP-14")
+                .availableQuantity(40).reservedQuantity(10).build();
+        UUID expiredOrder = UUID.randomUUID();
+        UUID liveOrder = UUID.randomUUID();
+        StockHold expired = new StockHold(expiredOrder, productId, 4, Instant.now().minusSeconds(1));
+        StockHold live = new StockHold(liveOrder, productId, 6, Instant.now().plusSeconds(600));
+
+        when(stockHoldRepository.findForUpdateByOrderIdIn(List.of(expiredOrder, liveOrder)))
+                .thenReturn(List.of(expired, live));
+        when(productRepository.findAllByIdIn(List.of(productId))).thenReturn(List.of(product));
+
+        int released = inventoryService.releaseExpiredHolds(List.of(expiredOrder, liveOrder));
+
+        assertEquals(1, released);
+        assertEquals(44, product.getAvailableQuantity());
+        assertEquals(6, product.getReservedQuantity());
+        verify(stockHoldRepository).deleteAll(List.of(expired));
+    }
+
+    @Test
+    void confirmReservation_withHolds_shouldDeleteHoldWithoutReleasing() {
+        inventoryService = newService(true);
+        UUID productId = UUID.randomUUID();
+        OrderEvent event = createPaymentFailedEvent(productId, 1);
+        StockHold hold = new StockHold(event.orderId(), productId, 1, Instant.now().plusSeconds(600));
+        when(stockHoldRepository.findForUpdateByOrderIdIn(List.of(event.orderId()))).thenReturn(List.of(hold));
+
+        inventoryService.confirmReservation(event);
+
+        verify(stockHoldRepository).deleteAll(List.of(hold));
+        verify(productRepository, never()).findAllByIdIn(any());
+    }
+
     // --- Helpers ---
 
     private OrderEvent createOrderPlacedEvent(UUID productId, int quantity) {
@@ -277,4 +456,16 @@ class InventoryServiceTest {
                 OrderStatus.PAYMENT_FAILED, "Payment declined", Instant.now()
         );
     }
+
+    /**
+     * Pass-through guard: mọi check đi thẳng processedEventRepository (mock) — stub claim()/existsById()
+     * quyết định event mới hay duplicate. Hành vi LRU được test ở common.
+     */
+    private IdempotencyGuard passThroughGuard() {
+        return new IdempotencyGuard("test", IdempotencyGuard.Settings.passThrough(),
+                processedEventRepository::existsById,
+                (eventId, topic) -> processedEventRepository.claim(eventId, topic) == 1,
+                processedEventRepository::claimAll,
+                Runnable::run, meterRegistry);
+    }
 }
@@ -0,0 +1,119 @@
+package dnc.cuong.inventory.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * StockShardStore trên HashMap — cùng ngữ nghĩa UPDATE có điều kiện, không cần DB.
+ * Đếm số lần lockShards để test biết khi nào phải đi nhánh spill / rebalance có lock.
+ * syncedTotals đóng vai cột tổng của bảng products.
+ */
+class InMemoryShardStore extends StockShardStore {
+
+    final Map<UUID, int[]> available = new HashMap<>();
+    final Map<UUID, int[]> reserved = new HashMap<>();
+    final Map<UUID, String> names = new HashMap<>();
+    final Map<UUID, Totals> syncedTotals = new HashMap<>();
+    int lockCalls;
+    int syncCalls;
+
+    InMemoryShardStore() {
+        super(null);
+    }
+
+    void put(UUID productId, String name, int... availablePerShard) {
+        names.put(productId, name);
+        available.put(productId, availablePerShard.clone());
+        reserved.put(productId, new int[availablePerShard.length]);
+    }
+
+    int totalAvailable(UUID productId) {
+        return java.util.Arrays.stream(available.get(productId)).sum();
+    }
+
+    int totalReserved(UUID productId) {
+        return java.util.Arrays.stream(reserved.get(productId)).sum();
+    }
+
+    @Override
+    public synchronized boolean tryReserve(UUID productId, int shardNo, int quantity) {
+        int[] a = available.get(productId);
+        if (a == null || shardNo >= a.length || a[shardNo] < quantity) {
+            return false;
+        }
+        a[shardNo] -= quantity;
+        reserved.get(productId)[shardNo] += quantity;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean tryRelease(UUID productId, int shardNo, int quantity) {
+        int[] r = reserved.get(productId);
+        if (r == null || shardNo >= r.length || r[shardNo] < quantity) {
+            return false;
+        }
+        r[shardNo] -= quantity;
+        available.get(productId)[shardNo] += quantity;
+        return true;
+    }
+
+    @Override
+    public synchronized List<Shard> lockShards(UUID productId) {
+        lockCalls++;
+        List<Shard> shards = new ArrayList<>();
+        int[] a = available.get(productId);
+        if (a != null) {
+            for (int i = 0; i < a.length; i++) {
+                shards.add(new Shard(i, a[i], reserved.get(productId)[i]));
+            }
+        }
+        return shards;
+    }
+
+    @Override
+    public synchronized long sumAvailable(UUID productId) {
+        return available.containsKey(productId) ? totalAvailable(productId) : 0;
+    }
+
+    @Override
+    public synchronized void setAvailable(UUID productId, int shardNo, int availableQuantity) {
+        available.get(productId)[shardNo] = availableQuantity;
+    }
+
+    @Override
+    public synchronized Map<UUID, List<Shard>> readShards() {
+        Map<UUID, List<Shard>> shards = new LinkedHashMap<>();
+        for (UUID productId : available.keySet()) {
+            List<Shard> list = new ArrayList<>();
+            int[] a = available.get(productId);
+            for (int i = 0; i < a.length; i++) {
+                list.add(new Shard(i, a[i], reserved.get(productId)[i]));
+            }
+            shards.put(productId, list);
+        }
+        return shards;
+    }
+
+    @Override
+    public Map<UUID, Totals> productTotals(Collection<UUID> productIds) {
+        Map<UUID, Totals> totals = new HashMap<>();
+        productIds.stream().filter(syncedTotals::containsKey).forEach(id -> totals.put(id, syncedTotals.get(id)));
+        return totals;
+    }
+
+    @Override
+    public String productName(UUID productId) {
+        return names.get(productId);
+    }
+
+    @Override
+    public void syncProductTotals(UUID productId, Totals totals) {
+        syncCalls++;
+        syncedTotals.put(productId, totals);
+    }
+}
@@ -0,0 +1,157 @@
+package dnc.cuong.inventory.shard;
+
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.inventory.service.StockReservationStrategy.Decision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho ShardedStockReservation — shard ngẫu nhiên + fallback, spill qua nhiều shard,
+ * all-or-nothing, release không cần nhớ shard.
+ */
+class ShardedStockReservationTest {
+
+    private static final UUID HOT_PRODUCT = UUID.randomUUID();
+    private static final UUID OTHER_PRODUCT = UUID.randomUUID();
+
+    private final InMemoryShardStore store = new InMemoryShardStore();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ShardedStockReservation reservation = new ShardedStockReservation(store, 4, false, meterRegistry);
+
+    @Test
+    void reserve_shouldTakeFromOneShard_withoutLocking_whenAnyShardHasEnough() {
+        store.put(HOT_PRODUCT, "iPhone 15 Pro", 0, 0, 5, 0);
+
+        List<Decision> decisions = reservation.reserve(List.of(event(item(HOT_PRODUCT, 3))));
+
+        assertTrue(decisions.get(0).isReserved());
+        assertArrayEquals(new int[]{0, 0, 2, 0}, store.available.get(HOT_PRODUCT));
+        assertEquals(0, store.lockCalls, "fallback qua shard khác, chưa cần spill");
+    }
+
+    @Test
+    void reserve_shouldSpillAcrossShards_whenNoSingleShardHasEnough() {
+        store.put(HOT_PRODUCT, "iPhone 15 Pro", 2, 2, 2, 2);
+
+        List<Decision> decisions = reservation.reserve(List.of(event(item(HOT_PRODUCT, 7))));
+
+        assertTrue(decisions.get(0).isReserved());
+        assertEquals(1, store.totalAvailable(HOT_PRODUCT));
+        assertEquals(7, store.totalReserved(HOT_PRODUCT));
+        assertEquals(1.0, meterRegistry.get("inventory.shards.spill").counter().count());
+    }
+
+    @Test
+    void reserve_shouldUndoEarlierItems_whenLaterItemHasInsufficientStock() {
+        store.put(HOT_PRODUCT, "iPhone 15 Pro", 5, 5, 5, 5);
+        store.put(OTHER_PRODUCT, "Magic Mouse", 1, 0, 0, 0);
+
+        List<Decision> decisions = reservation.reserve(List.of(
+                event(item(HOT_PRODUCT, 2), item(OTHER_PRODUCT, 2))));
+
+        assertFalse(decisions.get(0).isReserved());
+        assertEquals("Insufficient stock for 'Magic Mouse': available=1, requested=2",
+                decisions.get(0).failureReason());
+        assertEquals(20, store.totalAvailable(HOT_PRODUCT));
+        assertEquals(0, store.totalReserved(HOT_PRODUCT));
+    }
+
+    @Test
+    void reserve_shouldRejectWithoutLockingShards_whenTotalInsufficient() {
+        store.put(HOT_PRODUCT, "iPhone 15 Pro", 1, 1, 1, 1);
+
+        List<Decision> decisions = reservation.reserve(List.of(event(item(HOT_PRODUCT, 5))));
+
+        assertFalse(decisions.get(0).isReserved());
+        assertEquals(0, store.lockCalls, "hasStock đã biết không đủ — không cần lock mọi shard");
+    }
+
+    @Test
+    void reserve_shouldMergeItemsOfSameProduct_intoOneReservation() {
+        store.put(HOT_PRODUCT, "iPhone 15 Pro", 0, 0, 4, 0);
+
+        List<Decision> decisions = reservation.reserve(List.of(event(item(HOT_PRODUCT, 1), item(HOT_PRODUCT, 3))));
+
+        // 1 + 3 lấy cùng lúc từ 1 shard — không giữ shard này rồi đi tìm shard khác
+        assertTrue(decisions.get(0).isReserved());
+        assertArrayEquals(new int[]{0, 0, 0, 0}, store.available.get(HOT_PRODUCT));
+        assertArrayEquals(new int[]{0, 0, 4, 0}, store.reserved.get(HOT_PRODUCT));
+        assertEquals(0, store.lockCalls);
+    }
+
+    @Test
+    void constructor_shouldRejectBatchListener() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShardedStockReservation(store, 4, true, meterRegistry));
+    }
+
+    @Test
+    void reserve_shouldRejectUnknownProduct() {
+        UUID missing = UUID.randomUUID();
+
+        List<Decision> decisions = reservation.reserve(List.of(event(item(missing, 1))));
+
+        assertEquals("Product not found: " + missing, decisions.get(0).failureReason());
+    }
+
+    @Test
+    void reserve_shouldNeverOversellUnderConcurrency() throws Exception {
+        store.put(HOT_PRODUCT, "iPhone 15 Pro", 25, 25, 25, 25);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            results.add(executor.submit(() ->
+                    reservation.reserve(List.of(event(item(HOT_PRODUCT, 1)))).get(0).isReserved()));
+        }
+        int reserved = 0;
+        for (Future<Boolean> result : results) {
+            reserved += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertEquals(100, reserved);
+        assertEquals(0, store.totalAvailable(HOT_PRODUCT));
+        assertEquals(100, store.totalReserved(HOT_PRODUCT));
+    }
+
+    @Test
+    void release_shouldSpreadAcrossShards_andRejectMoreThanReserved() {
+        store.put(HOT_PRODUCT, "iPhone 15 Pro", 3, 3, 3, 3);
+        reservation.reserve(List.of(event(item(HOT_PRODUCT, 2))));
+        reservation.reserve(List.of(event(item(HOT_PRODUCT, 2))));
+        reservation.reserve(List.of(event(item(HOT_PRODUCT, 2))));
+
+        reservation.release(event(item(HOT_PRODUCT, 5)));
+
+        assertEquals(1, store.totalReserved(HOT_PRODUCT));
+        assertThrows(IllegalStateException.class, () -> reservation.release(event(item(HOT_PRODUCT, 2))));
+    }
+
+    @Test
+    void hasStock_shouldAggregateAllShards() {
+        store.put(HOT_PRODUCT, "iPhone 15 Pro", 1, 1, 1, 1);
+
+        assertTrue(reservation.hasStock(HOT_PRODUCT, 4));
+        assertFalse(reservation.hasStock(HOT_PRODUCT, 5));
+    }
+
+    private static OrderEvent.OrderItem item(UUID productId, int quantity) {
+        return new OrderEvent.OrderItem(productId, "product", quantity, BigDecimal.TEN);
+    }
+
+    private static OrderEvent event(OrderEvent.OrderItem... items) {
+        return OrderEvent.create(UUID.randomUUID(), UUID.randomUUID(), List.of(items),
+                BigDecimal.TEN, OrderStatus.PLACED);
+    }
+}
@@ -0,0 +1,78 @@
+package dnc.cuong.inventory.shard;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit test cho StockShardRebalancer — chỉ lock khi lệch, chỉ ghi tổng về products khi khác.
+ */
+class StockShardRebalancerTest {
+
+    private static final UUID PRODUCT = UUID.randomUUID();
+
+    private final InMemoryShardStore store = new InMemoryShardStore();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StockShardRebalancer rebalancer = new StockShardRebalancer(store,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), meterRegistry);
+
+    @Test
+    void rebalanceAll_shouldEvenOutSkewedShards_andSyncProductTotals() {
+        store.put(PRODUCT, "iPhone 15 Pro", 0, 1, 20, 9);
+        store.reserved.get(PRODUCT)[0] = 4;
+
+        rebalancer.rebalanceAll();
+
+        assertArrayEquals(new int[]{8, 8, 7, 7}, store.available.get(PRODUCT));
+        assertEquals(new StockShardStore.Totals(30, 4), store.syncedTotals.get(PRODUCT));
+        assertEquals(1, store.lockCalls);
+        assertEquals(1.0, meterRegistry.get("inventory.shards.rebalanced").counter().count());
+        assertEquals(15.0, meterRegistry.get("inventory.shards.moved.units").counter().count());
+    }
+
+    @Test
+    void rebalanceAll_shouldNotLockOrWrite_whenBalancedAndTotalsUnchanged() {
+        store.put(PRODUCT, "iPhone 15 Pro", 7, 8, 6, 9);
+        store.syncedTotals.put(PRODUCT, new StockShardStore.Totals(30, 0));
+
+        rebalancer.rebalanceAll();
+
+        assertArrayEquals(new int[]{7, 8, 6, 9}, store.available.get(PRODUCT));
+        assertEquals(0, store.lockCalls);
+        assertEquals(0, store.syncCalls);
+        assertEquals(0.0, meterRegistry.get("inventory.shards.rebalanced").counter().count());
+    }
+
+    @Test
+    void rebalanceAll_shouldSyncChangedTotals_withoutLockingShards() {
+        store.put(PRODUCT, "iPhone 15 Pro", 7, 8, 6, 9);
+        store.syncedTotals.put(PRODUCT, new StockShardStore.Totals(32, 0));
+
+        rebalancer.rebalanceAll();
+
+        assertEquals(new StockShardStore.Totals(30, 0), store.syncedTotals.get(PRODUCT));
+        assertEquals(0, store.lockCalls);
+        assertEquals(1, store.syncCalls);
+    }
+
+    @Test
+    void isSkewed_shouldIgnoreSingleShardAndNearlyEmptyProducts() {
+        assertFalse(StockShardRebalancer.isSkewed(List.of(new StockShardStore.Shard(0, 0, 0)), 0));
+        // 3 unit / 4 shard → phần chia đều = 0, để spill xử lý
+        assertFalse(StockShardRebalancer.isSkewed(List.of(
+                new StockShardStore.Shard(0, 3, 0), new StockShardStore.Shard(1, 0, 0),
+                new StockShardStore.Shard(2, 0, 0), new StockShardStore.Shard(3, 0, 0)), 3));
+    }
+
+    @Test
+    void split_shouldDifferByAtMostOne() {
+        assertArrayEquals(new int[]{4, 4, 4, 4, 4, 4, 3, 3}, StockShardStore.split(30, 8));
+    }
+}
@@ -0,0 +1,43 @@
+package dnc.cuong.notification.config;
+
+import dnc.cuong.notification.dedup.UuidDedupWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Dedup window cho NotificationService.
+ *
+ * WHY restore snapshot trong @Bean method?
+ * → Bean tạo xong trước khi listener container start → message đầu tiên sau restart
+ *   đã thấy eventId của window cũ.
+ * → Snapshot hỏng/thiếu → log + start rỗng (duplicate email < service không start).
+ */
+@Configuration
+@Slf4j
+public class DedupWindowConfig {
+
+    @Bean
+    public UuidDedupWindow uuidDedupWindow(
+            @Value("${notification.dedup.capacity:500000}") int capacity,
+            @Value("${notification.dedup.ttl:7d}") Duration ttl,
+            @Value("${notification.dedup.snapshot-path:}") String snapshotPath) {
+
+        UuidDedupWindow window = new UuidDedupWindow(capacity, ttl);
+        if (!snapshotPath.isBlank()) {
+            try {
+                int restored = window.restoreFrom(Path.of(snapshotPath));
+                log.info("Dedup window restored | entries={} | path={}", restored, snapshotPath);
+            } catch (IOException e) {
+                log.warn("Dedup window snapshot unreadable, starting empty | path={} | error={}",
+                        snapshotPath, e.getMessage());
+            }
+        }
+        return window;
+    }
+}
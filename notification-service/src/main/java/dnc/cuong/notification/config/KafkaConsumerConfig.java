@@ -1,21 +1,35 @@
 package dnc.cuong.notification.config;
 
 import dnc.cuong.common.avro.OrderEventAvro;
-import io.confluent.kafka.serializers.KafkaAvroDeserializer;
-import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig;
+import dnc.cuong.common.concurrency.ListenerThreads;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.retry.RetryTierConsumer;
+import dnc.cuong.common.retry.RetryTiers;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroDeserializer;
+import dnc.cuong.notification.kafka.NotificationKafkaConsumer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.time.Clock;
 import java.util.Map;
 
 /**
@@ -23,28 +37,42 @@ import java.util.Map;
  *
  * Notification Service consume 3 topics: order.completed, order.failed, payment.failed.
  * Sử dụng DeadLetterPublishingRecoverer + ExponentialBackOff.
+ *
+ * kafka.listener.threads=virtual → consumer thread là virtual thread. Không có DB
+ * → không cần DB permit, ListenerThreads chỉ cấp thread.
+ *
+ * kafka.retry-topics.enabled=true → gửi mail/SMS lỗi (provider down) không retry tại chỗ mà đi
+ * <topic>.retry-1s / -10s / -60s rồi .DLT — thông báo của order khác không phải đợi 30s.
  */
 @Configuration
 public class KafkaConsumerConfig {
 
+    private static final String SERVICE_NAME = "notification-service";
+
     @Bean
     public ConsumerFactory<String, OrderEventAvro> consumerFactory(KafkaProperties kafkaProperties) {
         Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
 
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaAvroDeserializer.class);
-        props.put(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                props.getOrDefault(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                        "http://localhost:8085"));
-        props.put(KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG, true);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, OrderEventAvroDeserializer.class);
+        props.put(AvroSerdeConfig.SCHEMA_REGISTRY_URL,
+                props.getOrDefault(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "http://localhost:8085"));
 
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
+    @Bean
+    public ListenerThreads listenerThreads(@Value("${kafka.listener.threads:platform}") String mode,
+                                           MeterRegistry meterRegistry) {
+        return new ListenerThreads(SERVICE_NAME, ListenerThreads.Mode.parse(mode), 0, meterRegistry);
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> kafkaListenerContainerFactory(
             ConsumerFactory<String, OrderEventAvro> consumerFactory,
-            KafkaTemplate<String, OrderEventAvro> kafkaTemplate) {
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers) {
 
         ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
@@ -52,6 +80,72 @@ public class KafkaConsumerConfig {
         factory.setConsumerFactory(consumerFactory);
         factory.setConcurrency(3);
         factory.getContainerProperties().setObservationEnabled(true);
+        applyListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers.getIfAvailable()));
+
+        return factory;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public RetryTiers retryTiers(@Value("${kafka.retry-topics.tiers:1s,10s,60s}") String tiers,
+                                 MeterRegistry meterRegistry) {
+        return RetryTiers.parse(SERVICE_NAME, tiers, Clock.systemUTC(), meterRegistry);
+    }
+
+    /**
+     * Container factory cho RetryTierConsumer — AckMode.MANUAL để nack(remaining)
+     * record chưa tới due-at thay vì sleep consumer thread.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> retryTierKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            RetryTiers retryTiers) {
+
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setObservationEnabled(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        applyListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers));
+
+        return factory;
+    }
+
+    /**
+     * Re-consumer cho retry tier topic (common RetryTierConsumer) — service chỉ cung cấp handler
+     * theo topic gốc: tới hạn thì record đi lại đúng handler của listener chính.
+     *
+     * Retry không gửi trùng thông báo: NotificationService dedup theo eventId (DedupWindow) — bản retry mang eventId cũ.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public RetryTierConsumer retryTierConsumer(
+            RetryTiers retryTiers,
+            @Qualifier("retryTierKafkaListenerContainerFactory")
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> containerFactory,
+            NotificationKafkaConsumer notificationKafkaConsumer) {
+        return new RetryTierConsumer(retryTiers, containerFactory, Map.of(
+                KafkaTopics.ORDER_COMPLETED, notificationKafkaConsumer::onOrderCompleted,
+                KafkaTopics.ORDER_FAILED, notificationKafkaConsumer::onOrderFailed,
+                KafkaTopics.PAYMENT_FAILED, notificationKafkaConsumer::onPaymentFailed));
+    }
+
+    /** retryTiers null → ExponentialBackOff rồi .DLT; có → tier kế tiếp ngay, hết tier mới .DLT. */
+    private static DefaultErrorHandler errorHandler(KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+                                                    RetryTiers retryTiers) {
+        if (retryTiers != null) {
+            DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                    retryTiers::destination);
+            recoverer.setHeadersFunction(retryTiers::headers);
+            return new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
+        }
 
         DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate);
 
@@ -59,8 +153,15 @@ public class KafkaConsumerConfig {
         backOff.setMaxInterval(10000L);
         backOff.setMaxElapsedTime(30000L);
 
-        factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer, backOff));
+        return new DefaultErrorHandler(recoverer, backOff);
+    }
 
-        return factory;
+    private static void applyListenerThreads(
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory,
+            ListenerThreads listenerThreads) {
+        if (listenerThreads.isVirtual()) {
+            factory.getContainerProperties().setListenerTaskExecutor(
+                    new SimpleAsyncTaskExecutor(listenerThreads.threadFactory(SERVICE_NAME + "-listener-")));
+        }
     }
 }
@@ -1,8 +1,8 @@
 package dnc.cuong.notification.config;
 
 import dnc.cuong.common.avro.OrderEventAvro;
-import io.confluent.kafka.serializers.KafkaAvroSerializer;
-import io.confluent.kafka.serializers.KafkaAvroSerializerConfig;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroSerializer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
@@ -31,12 +31,14 @@ public class KafkaProducerConfig {
         Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
 
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaAvroSerializer.class);
-        props.put(KafkaAvroSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                props.getOrDefault(KafkaAvroSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                        "http://localhost:8085"));
+        props.put(AvroSerdeConfig.SCHEMA_REGISTRY_URL,
+                props.getOrDefault(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "http://localhost:8085"));
 
-        return new DefaultKafkaProducerFactory<>(props);
+        // Configure ngay khi tạo bean → schema được đăng ký + pin lúc startup, không phải ở send đầu tiên
+        OrderEventAvroSerializer valueSerializer = new OrderEventAvroSerializer();
+        valueSerializer.configure(props, false);
+
+        return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), valueSerializer);
     }
 
     @Bean
@@ -0,0 +1,48 @@
+package dnc.cuong.notification.dedup;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Snapshot định kỳ dedup window ra file local (chỉ khi set notification.dedup.snapshot-path).
+ *
+ * WHY định kỳ + lúc shutdown?
+ * → Shutdown graceful: snapshot cuối đầy đủ nhất.
+ * → Crash: mất tối đa 1 interval eventId → vài email trùng, chấp nhận được.
+ */
+@Component
+@ConditionalOnProperty(name = "notification.dedup.snapshot-path")
+@Slf4j
+public class DedupWindowSnapshotter {
+
+    private final UuidDedupWindow dedupWindow;
+    private final Path snapshotPath;
+
+    public DedupWindowSnapshotter(UuidDedupWindow dedupWindow,
+                                  @Value("${notification.dedup.snapshot-path}") String snapshotPath) {
+        this.dedupWindow = dedupWindow;
+        this.snapshotPath = Path.of(snapshotPath);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.dedup.snapshot-interval-ms:30000}")
+    public void snapshot() {
+        try {
+            int entries = dedupWindow.snapshotTo(snapshotPath);
+            log.debug("Dedup window snapshot written | entries={} | path={}", entries, snapshotPath);
+        } catch (IOException e) {
+            log.error("Dedup window snapshot FAILED | path={} | error={}", snapshotPath, e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    void snapshotOnShutdown() {
+        snapshot();
+    }
+}
@@ -0,0 +1,259 @@
+package dnc.cuong.notification.dedup;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Dedup window cho eventId (UUID) — bounded theo số lượng VÀ thời gian.
+ *
+ * WHY không dùng ConcurrentHashMap.newKeySet() nữa?
+ * → Không bao giờ evict → pod chạy lâu = memory leak.
+ * → Mỗi entry ~80 bytes (UUID object + node + table slot) so với 28 bytes ở đây.
+ *
+ * Cấu trúc:
+ * - FIFO ring: 3 mảng long song song (msb, lsb, insertedAt) — entry cũ nhất ở head.
+ * - Index open addressing (linear probing) trỏ vào slot của ring; xoá bằng backward shift
+ *   → không cần tombstone, probe length không xấu dần theo thời gian.
+ *
+ * WHY TTL gắn với Kafka retention?
+ * → Message cũ hơn retention không thể redeliver → giữ eventId lâu hơn là lãng phí.
+ * → Cap (capacity) chặn memory khi throughput cao; evict theo FIFO (cũ nhất trước).
+ *
+ * Thread-safe bằng 1 lock — O(1) mỗi thao tác, notification throughput không cần hơn.
+ */
+public class UuidDedupWindow implements MeterBinder {
+
+    private static final int SNAPSHOT_MAGIC = 0x44445550; // "DDUP"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;           // magic(int) + version(int) + count(long)
+    private static final int RECORD_BYTES = 24;           // msb + lsb + insertedAt
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final long[] msb;
+    private final long[] lsb;
+    private final long[] insertedAt;
+    private int head;
+    private int size;
+
+    /** ring slot + 1; 0 = trống */
+    private final int[] index;
+    private final int indexMask;
+
+    private volatile long expiredEvictions;
+    private volatile long capacityEvictions;
+    private volatile long duplicates;
+
+    public UuidDedupWindow(int capacity, Duration ttl) {
+        this(capacity, ttl, System::currentTimeMillis);
+    }
+
+    UuidDedupWindow(int capacity, Duration ttl, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.msb = new long[capacity];
+        this.lsb = new long[capacity];
+        this.insertedAt = new long[capacity];
+        // Load factor ≤ 0.5 → probe ngắn
+        int indexSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.index = new int[indexSize];
+        this.indexMask = indexSize - 1;
+    }
+
+    /**
+     * @return true nếu eventId mới (đã ghi nhận), false nếu duplicate trong window
+     */
+    public synchronized boolean tryAdd(UUID eventId) {
+        long now = clock.getAsLong();
+        evictExpired(now);
+
+        long hi = eventId.getMostSignificantBits();
+        long lo = eventId.getLeastSignificantBits();
+        if (findIndex(hi, lo) >= 0) {
+            duplicates++;
+            return false;
+        }
+        if (size == capacity) {
+            evictOldest();
+            capacityEvictions++;
+        }
+        append(hi, lo, now);
+        return true;
+    }
+
+    public synchronized boolean contains(UUID eventId) {
+        evictExpired(clock.getAsLong());
+        return findIndex(eventId.getMostSignificantBits(), eventId.getLeastSignificantBits()) >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Ghi window ra file qua memory-mapped buffer (ghi file tạm rồi atomic move).
+     *
+     * WHY mmap?
+     * → Ghi 1 lần cả vùng, không qua buffer stream; 500K entries ≈ 12 MB, vài ms.
+     */
+    public synchronized int snapshotTo(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long bytes = HEADER_BYTES + (long) size * RECORD_BYTES;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(size);
+            for (int i = 0; i < size; i++) {
+                int slot = (head + i) % capacity;
+                buffer.putLong(msb[slot]).putLong(lsb[slot]).putLong(insertedAt[slot]);
+            }
+            buffer.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    /**
+     * Nạp lại window từ snapshot, bỏ qua entry đã hết TTL.
+     *
+     * @return số entry được nạp
+     */
+    public synchronized int restoreFrom(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        int restored = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES
+                    || buffer.getInt() != SNAPSHOT_MAGIC
+                    || buffer.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a dedup window snapshot: " + path);
+            }
+            long count = buffer.getLong();
+            if (count * RECORD_BYTES > buffer.remaining()) {
+                throw new IOException("Truncated dedup window snapshot: " + path);
+            }
+            for (long i = 0; i < count; i++) {
+                long hi = buffer.getLong();
+                long lo = buffer.getLong();
+                long at = buffer.getLong();
+                if (now - at >= ttlMillis || findIndex(hi, lo) >= 0) {
+                    continue;
+                }
+                if (size == capacity) {
+                    evictOldest();
+                }
+                append(hi, lo, at);
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("notifications.dedup.size", this, UuidDedupWindow::size)
+                .description("EventIds currently held in the dedup window").register(registry);
+        Gauge.builder("notifications.dedup.occupancy", this, w -> (double) w.size() / w.capacity())
+                .description("Dedup window fill ratio (size / capacity)").register(registry);
+        FunctionCounter.builder("notifications.dedup.evictions.total", this, w -> w.expiredEvictions)
+                .tag("reason", "expired").description("EventIds evicted after TTL").register(registry);
+        FunctionCounter.builder("notifications.dedup.evictions.total", this, w -> w.capacityEvictions)
+                .tag("reason", "capacity").description("EventIds evicted because the window was full")
+                .register(registry);
+        FunctionCounter.builder("notifications.dedup.duplicates.total", this, w -> w.duplicates)
+                .description("Duplicate eventIds rejected").register(registry);
+    }
+
+    private void evictExpired(long now) {
+        while (size > 0 && now - insertedAt[head] >= ttlMillis) {
+            evictOldest();
+            expiredEvictions++;
+        }
+    }
+
+    private void append(long hi, long lo, long at) {
+        int slot = (head + size) % capacity;
+        msb[slot] = hi;
+        lsb[slot] = lo;
+        insertedAt[slot] = at;
+        size++;
+
+        int pos = hash(hi, lo) & indexMask;
+        while (index[pos] != 0) {
+            pos = (pos + 1) & indexMask;
+        }
+        index[pos] = slot + 1;
+    }
+
+    private void evictOldest() {
+        removeIndexAt(findIndex(msb[head], lsb[head]));
+        head = (head + 1) % capacity;
+        size--;
+    }
+
+    private int findIndex(long hi, long lo) {
+        int pos = hash(hi, lo) & indexMask;
+        while (true) {
+            int entry = index[pos];
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            if (msb[slot] == hi && lsb[slot] == lo) {
+                return pos;
+            }
+            pos = (pos + 1) & indexMask;
+        }
+    }
+
+    /**
+     * Backward shift deletion — kéo các entry phía sau về lấp lỗ nếu lỗ nằm trên đường probe của chúng.
+     */
+    private void removeIndexAt(int hole) {
+        int next = (hole + 1) & indexMask;
+        while (index[next] != 0) {
+            int slot = index[next] - 1;
+            int ideal = hash(msb[slot], lsb[slot]) & indexMask;
+            if (((next - ideal) & indexMask) >= ((next - hole) & indexMask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+        index[hole] = 0;
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = hi ^ (lo * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
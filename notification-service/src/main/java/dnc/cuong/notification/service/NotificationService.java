@@ -1,6 +1,7 @@
 package dnc.cuong.notification.service;
 
 import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.notification.dedup.UuidDedupWindow;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
@@ -8,9 +9,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Notification logic — simulate gửi email/push notification.
@@ -19,10 +17,11 @@ import java.util.concurrent.ConcurrentHashMap;
  * Trong production: tích hợp SendGrid, Firebase, SNS, etc.
  * Hiện tại: log ra console để verify Saga flow hoạt động đúng.
  *
- * WHY dùng in-memory Set cho idempotency thay vì DB?
+ * WHY dùng in-memory UuidDedupWindow cho idempotency thay vì DB?
  * → Notification Service không có database (stateless).
- * → ConcurrentHashMap.newKeySet() thread-safe, O(1) lookup.
- * → Trade-off: mất deduplication khi restart. Chấp nhận được vì:
+ * → Window bounded (capacity + TTL theo Kafka retention) → không leak memory khi chạy lâu.
+ * → Restart: nạp lại từ snapshot local nếu bật notification.dedup.snapshot-path.
+ * → Trade-off còn lại: eventId bị evict sớm (window đầy) có thể gửi trùng. Chấp nhận được vì:
  *   - Duplicate email < lost email (at-least-once tốt hơn at-most-once).
  *   - Production: dùng Redis SET hoặc thêm lightweight DB.
  */
@@ -31,8 +30,8 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class NotificationService {
 
+    private final UuidDedupWindow dedupWindow;
     private final MeterRegistry meterRegistry;
-    private final Set<UUID> processedEventIds = ConcurrentHashMap.newKeySet();
 
     private Counter notifyOrderCompletedCounter;
     private Counter notifyOrderFailedCounter;
@@ -49,7 +48,7 @@ public class NotificationService {
     }
 
     public void notifyOrderCompleted(OrderEvent event) {
-        if (!processedEventIds.add(event.eventId())) {
+        if (!dedupWindow.tryAdd(event.eventId())) {
             log.warn("Duplicate notification skipped | eventId={} | orderId={} | type=ORDER_COMPLETED",
                     event.eventId(), event.orderId());
             return;
@@ -66,7 +65,7 @@ public class NotificationService {
     }
 
     public void notifyOrderFailed(OrderEvent event) {
-        if (!processedEventIds.add(event.eventId())) {
+        if (!dedupWindow.tryAdd(event.eventId())) {
             log.warn("Duplicate notification skipped | eventId={} | orderId={} | type=ORDER_FAILED",
                     event.eventId(), event.orderId());
             return;
@@ -82,7 +81,7 @@ public class NotificationService {
     }
 
     public void notifyPaymentFailed(OrderEvent event) {
-        if (!processedEventIds.add(event.eventId())) {
+        if (!dedupWindow.tryAdd(event.eventId())) {
             log.warn("Duplicate notification skipped | eventId={} | orderId={} | type=PAYMENT_FAILED",
                     event.eventId(), event.orderId());
             return;
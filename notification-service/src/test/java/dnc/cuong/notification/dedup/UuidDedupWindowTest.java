@@ -0,0 +1,112 @@
+package dnc.cuong.notification.dedup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho UuidDedupWindow — clock giả lập để test TTL không cần sleep.
+ */
+class UuidDedupWindowTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    @Test
+    void tryAdd_shouldRejectDuplicateWithinWindow() {
+        UuidDedupWindow window = new UuidDedupWindow(10, Duration.ofMinutes(5), now::get);
+        UUID eventId = UUID.randomUUID();
+
+        assertTrue(window.tryAdd(eventId));
+        assertFalse(window.tryAdd(eventId));
+        assertEquals(1, window.size());
+    }
+
+    @Test
+    void tryAdd_shouldEvictOldestWhenFull() {
+        UuidDedupWindow window = new UuidDedupWindow(3, Duration.ofMinutes(5), now::get);
+        UUID first = UUID.randomUUID();
+        window.tryAdd(first);
+        window.tryAdd(UUID.randomUUID());
+        window.tryAdd(UUID.randomUUID());
+
+        window.tryAdd(UUID.randomUUID());
+
+        assertEquals(3, window.size());
+        assertFalse(window.contains(first));
+    }
+
+    @Test
+    void tryAdd_shouldExpireEntriesAfterTtl() {
+        UuidDedupWindow window = new UuidDedupWindow(10, Duration.ofMinutes(5), now::get);
+        UUID eventId = UUID.randomUUID();
+        window.tryAdd(eventId);
+
+        now.addAndGet(Duration.ofMinutes(5).toMillis());
+
+        assertFalse(window.contains(eventId));
+        assertEquals(0, window.size());
+        assertTrue(window.tryAdd(eventId));
+    }
+
+    @Test
+    void index_shouldStayConsistentUnderChurn() {
+        // Nhiều vòng evict → backward shift deletion phải giữ mọi entry còn lại tìm được
+        UuidDedupWindow window = new UuidDedupWindow(64, Duration.ofDays(1), now::get);
+        List<UUID> all = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            UUID id = UUID.randomUUID();
+            assertTrue(window.tryAdd(id));
+            all.add(id);
+        }
+
+        List<UUID> live = all.subList(all.size() - 64, all.size());
+        live.forEach(id -> assertTrue(window.contains(id)));
+        all.subList(0, all.size() - 64).stream().limit(500).forEach(id -> assertFalse(window.contains(id)));
+    }
+
+    @Test
+    void snapshot_shouldRestoreUnexpiredEntries(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("dedup.bin");
+        UuidDedupWindow window = new UuidDedupWindow(10, Duration.ofMinutes(5), now::get);
+        UUID old = UUID.randomUUID();
+        window.tryAdd(old);
+        now.addAndGet(Duration.ofMinutes(3).toMillis());
+        UUID recent = UUID.randomUUID();
+        window.tryAdd(recent);
+
+        assertEquals(2, window.snapshotTo(file));
+
+        // Restart 3 phút sau: old đã quá TTL, recent còn hạn
+        now.addAndGet(Duration.ofMinutes(3).toMillis());
+        UuidDedupWindow restored = new UuidDedupWindow(10, Duration.ofMinutes(5), now::get);
+
+        assertEquals(1, restored.restoreFrom(file));
+        assertTrue(restored.contains(recent));
+        assertFalse(restored.contains(old));
+    }
+
+    @Test
+    void bindTo_shouldExposeOccupancyAndEvictions() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        UuidDedupWindow window = new UuidDedupWindow(2, Duration.ofMinutes(5), now::get);
+        window.bindTo(registry);
+
+        window.tryAdd(UUID.randomUUID());
+        window.tryAdd(UUID.randomUUID());
+        window.tryAdd(UUID.randomUUID());
+
+        assertEquals(1.0, registry.get("notifications.dedup.occupancy").gauge().value());
+        assertEquals(1.0, registry.get("notifications.dedup.evictions.total")
+                .tag("reason", "capacity").functionCounter().count());
+    }
+}
@@ -2,11 +2,13 @@ package dnc.cuong.notification.service;
 
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.notification.dedup.UuidDedupWindow;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
@@ -18,8 +20,7 @@ import static org.junit.jupiter.api.Assertions.*;
  *
  * WHY test NotificationService mà nó chỉ log?
  * -> Business logic quan trọng nhất: deduplication (tránh gửi email trùng).
- * -> ConcurrentHashMap.newKeySet() behavior cần verify đúng.
- * -> Không cần mock — service là stateless (ngoại trừ processedEventIds Set).
+ * -> Không cần mock — service là stateless (ngoại trừ UuidDedupWindow).
  */
 class NotificationServiceTest {
 
@@ -27,7 +28,7 @@ class NotificationServiceTest {
 
     @BeforeEach
     void setUp() {
-        notificationService = new NotificationService(new SimpleMeterRegistry());
+        notificationService = new NotificationService(new UuidDedupWindow(1_000, Duration.ofDays(7)), new SimpleMeterRegistry());
         notificationService.initMetrics();
     }
 
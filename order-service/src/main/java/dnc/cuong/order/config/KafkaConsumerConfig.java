@@ -1,64 +1,171 @@
 package dnc.cuong.order.config;
 
 import dnc.cuong.common.avro.OrderEventAvro;
-import io.confluent.kafka.serializers.KafkaAvroDeserializer;
-import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig;
+import dnc.cuong.common.concurrency.KeyOrderedExecutor;
+import dnc.cuong.common.concurrency.ListenerFlowControlConfig;
+import dnc.cuong.common.concurrency.ListenerThreads;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.retry.RetryTierConsumer;
+import dnc.cuong.common.retry.RetryTiers;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroDeserializer;
+import dnc.cuong.common.idempotency.IdempotencyConfig;
+import dnc.cuong.order.kafka.KeyOrderedDispatcher;
+import dnc.cuong.order.kafka.OrderKafkaConsumer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.util.backoff.BackOff;
 import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.time.Clock;
 import java.util.Map;
 
 /**
  * Kafka Consumer configuration — Avro deserialization với Schema Registry.
  *
- * WHY KafkaAvroDeserializer thay vì JsonDeserializer?
- * → Deserialize Avro binary → SpecificRecord (OrderEventAvro).
- * → Schema Registry cung cấp writer schema (schema lúc produce) để deserialize chính xác.
- * → specific.avro.reader=true → trả về SpecificRecord thay vì GenericRecord.
+ * WHY OrderEventAvroDeserializer (common) thay vì JsonDeserializer / KafkaAvroDeserializer?
+ * → Deserialize Avro binary → SpecificRecord (OrderEventAvro), luôn type-safe.
+ * → Schema Registry cung cấp writer schema (schema lúc produce) để deserialize chính xác —
+ *   đã lookup thì cache theo id (memory + schema.cache.path) → registry down vẫn decode được.
  *
  * WHY DeadLetterPublishingRecoverer thay vì FixedBackOff?
  * → FixedBackOff chỉ retry rồi skip — message bị mất.
  * → DeadLetterPublishingRecoverer publish message fail vào .DLT topic.
  * → Kết hợp ExponentialBackOff: retry thông minh hơn, tránh hammering.
+ *
+ * WHY kafka.listener.threads (platform | virtual)?
+ * → Handler chủ yếu block trên JDBC. virtual: consumer thread là virtual thread, mỗi record
+ *   giữ 1 DB permit (ListenerThreads) trong lúc chạy handler — permit = hikari.maximum-pool-size
+ *   → không đẩy contention vào Hikari getConnection().
+ * → Mặc định platform = hành vi cũ. So sánh throughput/p99: ListenerThreadingReport (benchmarks).
+ *
+ * WHY keyOrderedKafkaListenerContainerFactory?
+ * → 3 partition = 3 luồng tuần tự. KeyOrderedDispatcher fan-out record của 1 partition ra
+ *   N lane theo hash(orderId): cùng order vẫn tuần tự, order khác nhau chạy song song.
+ *
+ * WHY kafka.retry-topics.enabled?
+ * → Backoff 30s giữ partition (key-ordered tắt) hoặc lane (bật) — mọi order cùng partition / lane
+ *   đứng chờ. Bật → lỗi đi <topic>.retry-1s / -10s / -60s rồi .DLT, không retry tại chỗ.
+ * → Đánh đổi: record retry rời khỏi thứ tự theo orderId. Chấp nhận được vì order.paid /
+ *   order.failed / payment.failed là event kết thúc, loại trừ nhau cho 1 order, và
+ *   IdempotencyGuard chặn xử lý trùng theo eventId. Projection (order_views) không dùng retry topic.
+ *
+ * IdempotencyGuard (LRU + claim processed_events) đến từ common — @Import(IdempotencyConfig).
+ * ListenerFlowController (kafka.listener.flow-control.enabled) cũng vậy — @Import(ListenerFlowControlConfig).
  */
 @Configuration
+@Import({IdempotencyConfig.class, ListenerFlowControlConfig.class})
 public class KafkaConsumerConfig {
 
+    private static final String SERVICE_NAME = "order-service";
+
     @Bean
     public ConsumerFactory<String, OrderEventAvro> consumerFactory(KafkaProperties kafkaProperties) {
         Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
 
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaAvroDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, OrderEventAvroDeserializer.class);
 
         // Schema Registry URL cho deserializer
-        props.put(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                props.getOrDefault(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                        "http://localhost:8085"));
-
-        // WHY specific.avro.reader = true?
-        // → false (default): trả về GenericRecord — cần access field by name (string).
-        // → true: trả về SpecificRecord (OrderEventAvro) — type-safe, có getter/setter.
-        // → Cần class OrderEventAvro trên classpath (generated từ avro-maven-plugin).
-        props.put(KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG, true);
+        props.put(AvroSerdeConfig.SCHEMA_REGISTRY_URL,
+                props.getOrDefault(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "http://localhost:8085"));
 
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
+    @Bean
+    public ListenerThreads listenerThreads(
+            @Value("${kafka.listener.threads:platform}") String mode,
+            @Value("${kafka.listener.db-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int dbPermits,
+            MeterRegistry meterRegistry) {
+        return new ListenerThreads(SERVICE_NAME, ListenerThreads.Mode.parse(mode), dbPermits, meterRegistry);
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> kafkaListenerContainerFactory(
             ConsumerFactory<String, OrderEventAvro> consumerFactory,
-            KafkaTemplate<String, OrderEventAvro> kafkaTemplate) {
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers) {
+
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(3);
+        factory.getContainerProperties().setObservationEnabled(true);
+        applyListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers.getIfAvailable()));
+
+        return factory;
+    }
+
+    /**
+     * Container factory cho listener dispatch qua KeyOrderedDispatcher.
+     *
+     * WHY AckMode.MANUAL + asyncAcks?
+     * → Listener return ngay sau khi giao record cho lane — offset chưa được commit.
+     *   Lane xử lý xong mới ack, thứ tự ack bất kỳ. asyncAcks: container chỉ commit tới
+     *   offset thấp nhất chưa ack của mỗi partition, và pause consumer tới khi poll trước ack hết
+     *   → record in-flight tối đa = max.poll.records / partition.
+     * → Không có DB permit ở interceptor: consumer thread chỉ dispatch, permit do dispatcher giữ.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> keyOrderedKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers) {
+
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(3);
+        factory.getContainerProperties().setObservationEnabled(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        applyListenerTaskExecutor(factory, listenerThreads);
+        // Chỉ còn bắt lỗi trước khi tới listener (deserialize...) — lỗi handler do dispatcher retry/DLT
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers.getIfAvailable()));
+
+        return factory;
+    }
+
+    /**
+     * Container factory cho OrderProjectionConsumer (read model order_views).
+     *
+     * WHY error handler riêng, không DLT?
+     * → View dựng lại được từ topic, và event không được phép bị bỏ qua (view sai tới lần rebuild sau):
+     *   lỗi tạm thời (DB down) retry mãi với backoff, partition đứng chờ thay vì skip.
+     * → .DLT của order.paid/order.failed/payment.failed là của Saga — DltKafkaConsumer không được
+     *   thấy lỗi của projection lẫn vào. Event hỏng (mapping / data) chỉ log rồi bỏ qua.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> projectionKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory) {
 
         ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
@@ -67,16 +174,161 @@ public class KafkaConsumerConfig {
         factory.setConcurrency(3);
         factory.getContainerProperties().setObservationEnabled(true);
 
-        // ExponentialBackOff: 1s → 2s → 4s → 8s → 10s (max), ~3 retries
-        // Sau khi retry hết → message publish vào <topic>.DLT
-        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate);
+        ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
+        backOff.setMaxInterval(30000L);   // maxElapsedTime mặc định: không giới hạn
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(backOff);
+        errorHandler.addNotRetryableExceptions(IllegalArgumentException.class, NullPointerException.class,
+                DataIntegrityViolationException.class);
+        factory.setCommonErrorHandler(errorHandler);
+
+        return factory;
+    }
+
+    /**
+     * kafka.listener.key-ordered.enabled=false → dispatcher chạy handler ngay trên consumer thread
+     * (hành vi cũ, lỗi đi qua DefaultErrorHandler).
+     * Retry topic bật → lane không retry tại chỗ, lỗi đi thẳng tier đầu.
+     */
+    @Bean
+    public KeyOrderedDispatcher keyOrderedDispatcher(
+            @Value("${kafka.listener.key-ordered.enabled:false}") boolean enabled,
+            @Value("${kafka.listener.key-ordered.lanes:8}") int lanes,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers,
+            MeterRegistry meterRegistry) {
+        KeyOrderedExecutor executor = enabled
+                ? new KeyOrderedExecutor(SERVICE_NAME, lanes,
+                        listenerThreads.threadFactory(SERVICE_NAME + "-lane-"), meterRegistry)
+                : null;
+        RetryTiers tiers = retryTiers.getIfAvailable();
+        return new KeyOrderedDispatcher(executor, listenerThreads,
+                recoverer(kafkaTemplate, tiers), backOff(tiers));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public RetryTiers retryTiers(@Value("${kafka.retry-topics.tiers:1s,10s,60s}") String tiers,
+                                 MeterRegistry meterRegistry) {
+        return RetryTiers.parse(SERVICE_NAME, tiers, Clock.systemUTC(), meterRegistry);
+    }
+
+    /**
+     * Container factory cho RetryTierConsumer — handler chạy inline trên consumer thread
+     * (không qua KeyOrderedDispatcher: tier topic ít record, thứ tự theo key đã mất từ lúc rời partition).
+     *
+     * WHY AckMode.MANUAL (không asyncAcks)?
+     * → Record chưa tới due-at → nack(remaining): consumer pause rồi đọc lại đúng record đó.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> retryTierKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            RetryTiers retryTiers) {
+
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setObservationEnabled(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        applyListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers));
+
+        return factory;
+    }
 
+    /**
+     * Re-consumer cho retry tier topic (common RetryTierConsumer) — service chỉ cung cấp handler
+     * theo topic gốc: tới hạn thì record đi lại đúng handler của listener chính.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public RetryTierConsumer retryTierConsumer(
+            RetryTiers retryTiers,
+            @Qualifier("retryTierKafkaListenerContainerFactory")
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> containerFactory,
+            OrderKafkaConsumer orderKafkaConsumer) {
+        return new RetryTierConsumer(retryTiers, containerFactory, Map.of(
+                KafkaTopics.ORDER_PAID, orderKafkaConsumer::handleOrderPaid,
+                KafkaTopics.ORDER_FAILED, orderKafkaConsumer::handleOrderFailed,
+                KafkaTopics.PAYMENT_FAILED, orderKafkaConsumer::handlePaymentFailed));
+    }
+
+    private static DefaultErrorHandler errorHandler(KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+                                                    RetryTiers retryTiers) {
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer(kafkaTemplate, retryTiers),
+                backOff(retryTiers));
+        return errorHandler;
+    }
+
+    /**
+     * Sau khi retry hết → message publish vào <topic>.DLT.
+     * Retry topic bật → publish vào tier kế tiếp (RetryTiers.destination), hết tier mới .DLT.
+     */
+    private static DeadLetterPublishingRecoverer recoverer(KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+                                                           RetryTiers retryTiers) {
+        if (retryTiers == null) {
+            return new DeadLetterPublishingRecoverer(kafkaTemplate);
+        }
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                retryTiers::destination);
+        recoverer.setHeadersFunction(retryTiers::headers);
+        return recoverer;
+    }
+
+    /** ExponentialBackOff: 1s → 2s → 4s → 8s → 10s (max), ~3 retries; retry topic bật → không retry tại chỗ. */
+    private static BackOff backOff(RetryTiers retryTiers) {
+        if (retryTiers != null) {
+            return new FixedBackOff(0L, 0L);
+        }
         ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
         backOff.setMaxInterval(10000L);
         backOff.setMaxElapsedTime(30000L);
+        return backOff;
+    }
 
-        factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer, backOff));
+    /**
+     * virtual → consumer thread là virtual thread + record giữ DB permit từ intercept tới afterRecord.
+     * clearThreadState (consumer dừng) trả permit nếu record cuối chưa đi tới afterRecord.
+     */
+    private static void applyListenerThreads(
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory,
+            ListenerThreads listenerThreads) {
+        if (!listenerThreads.isVirtual()) {
+            return;
+        }
+        applyListenerTaskExecutor(factory, listenerThreads);
+        factory.setRecordInterceptor(new RecordInterceptor<>() {
+            @Override
+            public ConsumerRecord<String, OrderEventAvro> intercept(ConsumerRecord<String, OrderEventAvro> record,
+                                                                    Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.acquireDbPermit();
+                return record;
+            }
 
-        return factory;
+            @Override
+            public void afterRecord(ConsumerRecord<String, OrderEventAvro> record,
+                                    Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+
+            @Override
+            public void clearThreadState(Consumer<?, ?> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+        });
+    }
+
+    private static void applyListenerTaskExecutor(
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory,
+            ListenerThreads listenerThreads) {
+        if (listenerThreads.isVirtual()) {
+            factory.getContainerProperties().setListenerTaskExecutor(
+                    new SimpleAsyncTaskExecutor(listenerThreads.threadFactory(SERVICE_NAME + "-listener-")));
+        }
     }
 }
@@ -1,13 +1,15 @@
 package dnc.cuong.order.config;
 
 import dnc.cuong.common.avro.OrderEventAvro;
-import io.confluent.kafka.serializers.KafkaAvroSerializer;
-import io.confluent.kafka.serializers.KafkaAvroSerializerConfig;
+import dnc.cuong.common.outbox.OutboxConfig;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroSerializer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
@@ -17,17 +19,27 @@ import java.util.Map;
 /**
  * Kafka Producer configuration — Avro serialization với Schema Registry.
  *
- * WHY migrate từ JsonSerializer sang KafkaAvroSerializer?
+ * WHY migrate từ JsonSerializer sang Avro + Schema Registry?
  * → JSON không enforce schema — producer có thể gửi bất kỳ format nào.
  * → Avro + Schema Registry validate schema trước khi publish.
  * → Schema Registry kiểm tra compatibility (BACKWARD default) — ngăn breaking changes.
  * → Avro binary format nhỏ hơn JSON ~30-50%, parse nhanh hơn.
  *
+ * WHY OrderEventAvroSerializer (common) thay vì KafkaAvroSerializer?
+ * → Schema OrderEventAvro pin lúc startup; schema id cache memory + file (schema.cache.path)
+ *   → registry chậm/down không làm treo producer, restart vẫn gửi được.
+ * → Wire format giữ nguyên Confluent — consumer/tool khác không phải đổi.
+ *
  * WHY inject KafkaProperties thay vì tự tạo Map?
  * → KafkaProperties đã bind từ application.yml (spring.kafka.*).
  * → Merge với custom config ở đây → không duplicate cấu hình.
+ *
+ * WHY @Import(OutboxConfig)?
+ * → OutboxWriter / OutboxRelay / entity outbox_events dùng chung ở common — import để có bean
+ *   (relay chỉ chạy khi outbox.enabled=true).
  */
 @Configuration
+@Import(OutboxConfig.class)
 public class KafkaProducerConfig {
 
     @Bean
@@ -35,17 +47,18 @@ public class KafkaProducerConfig {
         Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
 
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaAvroSerializer.class);
 
         // WHY schema.registry.url ở đây thay vì chỉ application.yml?
-        // → KafkaAvroSerializer cần biết Schema Registry endpoint để register + validate schema.
-        // → Config này cũng có thể đặt trong application.yml via spring.kafka.producer.properties.
+        // → Serializer cần biết Schema Registry endpoint để register schema (mock://... cho test).
         // → Đặt ở đây cho tường minh, dễ thấy dependency giữa producer và Schema Registry.
-        props.put(KafkaAvroSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                props.getOrDefault(KafkaAvroSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                        "http://localhost:8085"));
+        props.put(AvroSerdeConfig.SCHEMA_REGISTRY_URL,
+                props.getOrDefault(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "http://localhost:8085"));
+
+        // Configure ngay khi tạo bean → schema được đăng ký + pin lúc startup, không phải ở send đầu tiên
+        OrderEventAvroSerializer valueSerializer = new OrderEventAvroSerializer();
+        valueSerializer.configure(props, false);
 
-        return new DefaultKafkaProducerFactory<>(props);
+        return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), valueSerializer);
     }
 
     @Bean
@@ -0,0 +1,43 @@
+package dnc.cuong.order.config;
+
+import dnc.cuong.common.tx.AfterCommit;
+import dnc.cuong.order.service.OrderResponseCache;
+import dnc.cuong.order.service.OrderStatusWaiters;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Phía đọc status order: OrderResponseCache (GET /api/orders/{orderId}) và OrderStatusWaiters
+ * (long-poll /await) — cả 2 nhận thay đổi status từ OrderService sau commit.
+ * Cache còn nhận status kết thúc của order thuộc instance khác qua OrderCacheBroadcastConsumer.
+ */
+@Configuration
+@Slf4j
+public class OrderCacheConfig {
+
+    @Bean
+    public OrderResponseCache orderResponseCache(
+            MeterRegistry meterRegistry,
+            @Value("${order.cache.enabled:true}") boolean enabled,
+            @Value("${order.cache.ttl-seconds:30}") long ttlSeconds,
+            @Value("${order.cache.max-memory-mb:32}") long maxMemoryMb) {
+
+        if (enabled) {
+            log.info("Order response cache enabled | ttlSeconds={} | maxMemoryMb={}", ttlSeconds, maxMemoryMb);
+        }
+        return new OrderResponseCache(enabled, Duration.ofSeconds(ttlSeconds), maxMemoryMb * 1024 * 1024,
+                AfterCommit::run, meterRegistry);
+    }
+
+    @Bean
+    public OrderStatusWaiters orderStatusWaiters(
+            MeterRegistry meterRegistry,
+            @Value("${order.await.max-waiters:10000}") int maxWaiters) {
+        return new OrderStatusWaiters(maxWaiters, AfterCommit::run, meterRegistry);
+    }
+}
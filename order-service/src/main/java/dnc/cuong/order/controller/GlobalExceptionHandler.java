@@ -4,6 +4,7 @@ import dnc.cuong.order.service.OrderNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.web.ErrorResponseException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -31,6 +32,18 @@ public class GlobalExceptionHandler {
         return problem;
     }
 
+    /**
+     * ResponseStatusException / ErrorResponseException đã mang sẵn status + ProblemDetail —
+     * không để handleGeneric biến chúng thành 500.
+     */
+    @ExceptionHandler(ErrorResponseException.class)
+    public ProblemDetail handleErrorResponse(ErrorResponseException ex) {
+        log.warn("Request rejected: {}", ex.getMessage());
+        ProblemDetail problem = ex.getBody();
+        problem.setProperty("timestamp", Instant.now());
+        return problem;
+    }
+
     @ExceptionHandler(Exception.class)
     public ProblemDetail handleGeneric(Exception ex) {
         log.error("Unexpected error: {}", ex.getMessage(), ex);
@@ -1,23 +1,50 @@
 package dnc.cuong.order.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dnc.cuong.common.dto.OrderCreateRequest;
+import dnc.cuong.common.event.OrderStatus;
 import dnc.cuong.order.domain.Order;
+import dnc.cuong.order.service.OrderCursor;
+import dnc.cuong.order.service.OrderGroupCommitter;
+import dnc.cuong.order.service.OrderHistoryService;
+import dnc.cuong.order.service.OrderQueryService;
+import dnc.cuong.order.service.OrderResponse;
+import dnc.cuong.order.service.OrderResponseCache;
 import dnc.cuong.order.service.OrderService;
+import dnc.cuong.order.service.OrderStatusWaiters;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
 public class OrderController {
 
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final long MAX_AWAIT_MS = 60_000;
+
     private final OrderService orderService;
+    private final OrderGroupCommitter orderGroupCommitter;
+    private final OrderHistoryService orderHistoryService;
+    private final OrderQueryService orderQueryService;
+    private final OrderResponseCache orderResponseCache;
+    private final OrderStatusWaiters orderStatusWaiters;
+    private final ObjectMapper objectMapper;
 
     /**
      * Tạo đơn hàng mới.
@@ -29,73 +56,161 @@ public class OrderController {
      * WHY trả về OrderResponse thay vì Order entity?
      * → Không expose JPA entity ra API — tránh leak internal fields,
      *   lazy loading issues, circular reference (order ↔ orderItem).
+     *
+     * WHY CompletableFuture?
+     * → order.group-commit.enabled=true: request chờ được gom vào transaction chung —
+     *   Servlet async trả Tomcat thread về pool trong lúc chờ. Tắt → future đã complete sẵn.
      */
     @PostMapping
-    public ResponseEntity<OrderResponse> createOrder(@Valid @RequestBody OrderCreateRequest request) {
-        Order order = orderService.createOrder(request);
+    public CompletableFuture<ResponseEntity<OrderResponse>> createOrder(@Valid @RequestBody OrderCreateRequest request) {
+        return orderGroupCommitter.submit(request)
+                .thenApply(order -> ResponseEntity
+                        .status(HttpStatus.CREATED)
+                        .body(OrderResponse.from(order)));
+    }
+
+    /**
+     * Tạo nhiều đơn hàng trong 1 transaction (JDBC batch insert + 1 lượt send Kafka).
+     *
+     * WHY all-or-nothing thay vì kết quả từng order?
+     * → Client gửi batch để giảm round-trip; lỗi 1 order rollback cả batch → client retry nguyên
+     *   batch, không phải đối chiếu order nào đã tạo.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<OrderResponse>> createOrders(@Valid @RequestBody List<OrderCreateRequest> requests) {
+        if (requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch size must be between 1 and " + MAX_BATCH_SIZE + ": " + requests.size());
+        }
+        List<OrderResponse> orders = orderGroupCommitter.createAll(requests).stream()
+                .map(OrderResponse::from)
+                .toList();
         return ResponseEntity
                 .status(HttpStatus.CREATED)
-                .body(OrderResponse.from(order));
+                .body(orders);
     }
 
+    /**
+     * WHY tra cache ở controller thay vì trong OrderService.getOrder?
+     * → Method @Transactional lấy connection ngay khi mở transaction — cache hit vẫn chiếm 1 slot Hikari.
+     *   Tra cache trước, chỉ miss mới vào service.
+     * → Miss đọc qua OrderQueryService — order_views khi order.projection.serve-reads=true.
+     */
     @GetMapping("/{orderId}")
     public ResponseEntity<OrderResponse> getOrder(@PathVariable UUID orderId) {
-        Order order = orderService.getOrder(orderId);
-        return ResponseEntity.ok(OrderResponse.from(order));
+        OrderResponse order = orderResponseCache.get(orderId, orderQueryService::getOrder);
+        return ResponseEntity.ok(order);
+    }
+
+    /**
+     * Long-poll: giữ request tới khi order kết thúc Saga (COMPLETED / FAILED / PAYMENT_FAILED)
+     * hoặc hết timeoutMs — thay cho vòng lặp poll GET /{orderId}.
+     *
+     * WHY DeferredResult thay vì SSE?
+     * → Client chỉ cần 1 sự kiện (status terminal) — 1 response JSON như GET, không cần giữ stream.
+     * → Không giữ thread: request nằm trong OrderStatusWaiters, Tomcat thread về pool.
+     *
+     * Đăng ký chờ TRƯỚC khi đọc status hiện tại — transition commit giữa 2 bước vẫn không bị lỡ.
+     * Transition ở instance khác complete waiter qua OrderCacheBroadcastConsumer (order.status).
+     * Timeout → đọc lại DB (broadcast tắt / lỡ), trả status hiện tại.
+     */
+    @GetMapping("/{orderId}/await")
+    public DeferredResult<ResponseEntity<OrderResponse>> awaitOrder(@PathVariable UUID orderId,
+                                                                    @RequestParam(defaultValue = "30000") long timeoutMs) {
+        if (timeoutMs < 1 || timeoutMs > MAX_AWAIT_MS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "timeoutMs must be between 1 and " + MAX_AWAIT_MS + ": " + timeoutMs);
+        }
+        DeferredResult<ResponseEntity<OrderResponse>> result = new DeferredResult<>(timeoutMs);
+        CompletableFuture<OrderResponse> terminal = orderStatusWaiters.register(orderId);
+
+        OrderResponse current;
+        try {
+            current = orderResponseCache.get(orderId, orderQueryService::getOrder);
+        } catch (RuntimeException e) {
+            if (terminal != null) {
+                terminal.cancel(false);
+            }
+            throw e;
+        }
+
+        // Đã kết thúc, hoặc registry đầy → trả ngay như GET
+        if (terminal == null || OrderStatus.valueOf(current.status()).isTerminal()) {
+            if (terminal != null) {
+                terminal.cancel(false);
+            }
+            result.setResult(ResponseEntity.ok(current));
+            return result;
+        }
+
+        terminal.thenAccept(response -> result.setResult(ResponseEntity.ok(response)));
+        result.onTimeout(() -> {
+            Order order = orderService.getOrder(orderId);
+            orderResponseCache.put(order);
+            result.setResult(ResponseEntity.ok(OrderResponse.from(order)));
+        });
+        result.onCompletion(() -> terminal.cancel(false));
+        return result;
     }
 
+    /**
+     * Toàn bộ order của customer trong 1 JSON array — giữ cho client cũ.
+     * Customer nhiều order → dùng ?limit= (phân trang) hoặc /stream.
+     */
     @GetMapping
     public ResponseEntity<List<OrderResponse>> getOrdersByCustomer(@RequestParam UUID customerId) {
-        List<OrderResponse> orders = orderService.getOrdersByCustomer(customerId)
-                .stream()
-                .map(OrderResponse::from)
-                .toList();
-        return ResponseEntity.ok(orders);
+        return ResponseEntity.ok(orderQueryService.getOrdersByCustomer(customerId));
     }
 
     /**
-     * Response DTO — tách biệt khỏi JPA entity.
-     *
-     * WHY dùng inner record?
-     * → Response chỉ dùng trong controller context.
-     * → Không cần tạo file riêng cho class nhỏ.
-     * → Nếu sau này phức tạp hơn, refactor ra file riêng.
+     * Phân trang keyset: GET /api/orders?customerId=...&limit=50[&cursor=...], mới nhất trước.
+     * nextCursor null → hết.
      */
-    public record OrderResponse(
-            UUID orderId,
-            UUID customerId,
-            java.math.BigDecimal totalAmount,
-            String status,
-            String failureReason,
-            java.time.Instant createdAt,
-            List<OrderItemResponse> items
-    ) {
-        public static OrderResponse from(Order order) {
-            List<OrderItemResponse> items = order.getOrderItems().stream()
-                    .map(item -> new OrderItemResponse(
-                            item.getProductId(),
-                            item.getProductName(),
-                            item.getQuantity(),
-                            item.getPrice()
-                    ))
-                    .toList();
-
-            return new OrderResponse(
-                    order.getId(),
-                    order.getCustomerId(),
-                    order.getTotalAmount(),
-                    order.getStatus().name(),
-                    order.getFailureReason(),
-                    order.getCreatedAt(),
-                    items
-            );
+    @GetMapping(params = "limit")
+    public ResponseEntity<OrderPageResponse> getOrdersPage(@RequestParam UUID customerId,
+                                                           @RequestParam int limit,
+                                                           @RequestParam(required = false) String cursor) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + MAX_PAGE_SIZE + ": " + limit);
+        }
+        OrderCursor after = null;
+        if (cursor != null) {
+            try {
+                after = OrderCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
         }
 
-        public record OrderItemResponse(
-                UUID productId,
-                String productName,
-                int quantity,
-                java.math.BigDecimal price
-        ) {}
+        OrderHistoryService.Page page = orderHistoryService.getPage(customerId, after, limit);
+        return ResponseEntity.ok(new OrderPageResponse(
+                page.orders().stream().map(OrderResponse::from).toList(),
+                page.nextCursor() != null ? page.nextCursor().encode() : null));
     }
+
+    /**
+     * Export NDJSON — mỗi dòng 1 OrderResponse, ghi ngay khi đọc từ cursor DB.
+     *
+     * WHY NDJSON thay vì JSON array?
+     * → Không cần dựng List trong memory; client xử lý từng dòng khi đang tải
+     *   (jq -c, split -l, ...). Memory server không phụ thuộc số order.
+     */
+    @GetMapping(value = "/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamOrdersByCustomer(@RequestParam UUID customerId) {
+        StreamingResponseBody body = out -> orderHistoryService.streamByCustomer(customerId, order -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(OrderResponse.from(order)));
+                out.write('\n');
+            } catch (IOException e) {
+                // Client ngắt kết nối → dừng cursor, rollback transaction read-only
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    public record OrderPageResponse(List<OrderResponse> orders, String nextCursor) {}
 }
@@ -22,6 +22,12 @@ import java.util.UUID;
  * → Không phụ thuộc vào DB sequence — có thể generate trước khi persist.
  * → Tránh information leak (attacker không đoán được tổng số order).
  *
+ * WHY UUIDv7 (@TimeOrderedUuid) thay vì UUID random?
+ * → Id tăng dần → INSERT dồn về cuối B-tree PK thay vì rải khắp index (page split, cache miss).
+ *
+ * Index customer_id / status (findByCustomerId, findByStatus) do Flyway quản lý —
+ * db/migration/V2__orders_query_indexes.sql.
+ *
  * WHY CascadeType.ALL cho orderItems?
  * → OrderItem là child entity, lifecycle gắn liền với Order.
  * → Khi save Order → tự save tất cả items. Khi delete Order → tự delete items.
@@ -37,7 +43,7 @@ import java.util.UUID;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(nullable = false)
@@ -1,14 +1,84 @@
 package dnc.cuong.order.domain;
 
 import dnc.cuong.common.event.OrderStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface OrderRepository extends JpaRepository<Order, UUID> {
 
+    @EntityGraph(attributePaths = "orderItems")
+    Optional<Order> findWithItemsById(UUID id);
+
+    /** Kèm orderItems (fetch join) — OrderResponse.from không kích hoạt lazy load từng order (N+1). */
+    @EntityGraph(attributePaths = "orderItems")
     List<Order> findByCustomerId(UUID customerId);
 
     List<Order> findByStatus(OrderStatus status);
+
+    // --- Keyset pagination trên (created_at, id), mới nhất trước ---
+    //
+    // WHY lấy id trước rồi mới fetch join?
+    // → LIMIT + JOIN FETCH collection: Hibernate không LIMIT được trong SQL (1 order = nhiều row)
+    //   → kéo hết rồi cắt trong memory. Trang id dùng LIMIT thật trên index (customer_id, created_at),
+    //   query thứ 2 lấy order + items của đúng trang đó trong 1 round-trip.
+    //
+    // WHY keyset thay vì OFFSET?
+    // → OFFSET 20000 vẫn phải đọc + bỏ 20000 row; keyset nhảy thẳng tới vị trí trên index.
+
+    @Query("""
+            SELECT o.id FROM Order o
+             WHERE o.customerId = :customerId
+             ORDER BY o.createdAt DESC, o.id DESC
+            """)
+    List<UUID> findFirstPageIds(@Param("customerId") UUID customerId, Limit limit);
+
+    @Query("""
+            SELECT o.id FROM Order o
+             WHERE o.customerId = :customerId
+               AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id))
+             ORDER BY o.createdAt DESC, o.id DESC
+            """)
+    List<UUID> findPageIdsAfter(@Param("customerId") UUID customerId,
+                                @Param("createdAt") Instant createdAt,
+                                @Param("id") UUID id,
+                                Limit limit);
+
+    @Query("""
+            SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.orderItems
+             WHERE o.id IN :ids
+             ORDER BY o.createdAt DESC, o.id DESC
+            """)
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Cursor JDBC qua toàn bộ order của customer (kèm items) — caller phải đóng Stream,
+     * chạy trong transaction.
+     *
+     * WHY fetch size?
+     * → PgJDBC mặc định đọc HẾT result set vào memory; fetch size (trong transaction, autocommit off)
+     *   → đọc từng 500 row. ORDER BY root giữ row của cùng 1 order liền nhau để Hibernate gom items.
+     */
+    @Query("""
+            SELECT o FROM Order o LEFT JOIN FETCH o.orderItems
+             WHERE o.customerId = :customerId
+             ORDER BY o.createdAt DESC, o.id DESC
+            """)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Order> streamByCustomerId(@Param("customerId") UUID customerId);
 }
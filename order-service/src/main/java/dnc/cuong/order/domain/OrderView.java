@@ -0,0 +1,73 @@
+package dnc.cuong.order.domain;
+
+import dnc.cuong.common.event.OrderStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Read model của order (CQRS) — dựng lại từ Kafka bởi OrderProjection, không phải từ bảng orders.
+ *
+ * WHY items inline (JSONB) thay vì bảng con?
+ * → Đọc 1 order = 1 row, đọc order của customer = 1 range scan — không join, không N+1.
+ * → Items không đổi sau khi đặt hàng → không có chi phí update JSON.
+ *
+ * WHY @Immutable?
+ * → Chỉ ghi qua OrderViewRepository.upsert (INSERT ... ON CONFLICT) — entity dùng để đọc,
+ *   Hibernate không dirty-check / flush nó.
+ *
+ * statusRank: thứ tự trong Saga — event tới trễ / replay không kéo status lùi lại.
+ */
+@Entity
+@Immutable
+@Table(name = "order_views")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderView {
+
+    @Id
+    private UUID orderId;
+
+    @Column(nullable = false)
+    private UUID customerId;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OrderStatus status;
+
+    @Column(nullable = false)
+    private int statusRank;
+
+    @Column(length = 1000)
+    private String failureReason;
+
+    /** JSON array [{productId, productName, quantity, price}] — cùng shape với OrderEvent.OrderItem. */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false)
+    private String items;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+}
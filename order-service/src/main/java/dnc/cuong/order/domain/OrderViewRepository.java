@@ -0,0 +1,56 @@
+package dnc.cuong.order.domain;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface OrderViewRepository extends JpaRepository<OrderView, UUID> {
+
+    /** Dùng idx_order_views_customer_id — mới nhất trước. */
+    List<OrderView> findByCustomerIdOrderByCreatedAtDescOrderIdDesc(UUID customerId);
+
+    /**
+     * Áp 1 event vào view trong 1 statement.
+     *
+     * WHY INSERT ... ON CONFLICT thay vì findById + save?
+     * → Event của cùng order nằm ở 5 topic khác nhau → có thể tới 2 consumer thread cùng lúc:
+     *   find-then-insert sẽ đụng duplicate key. ON CONFLICT atomic, 1 round-trip.
+     *
+     * WHY status chỉ đổi khi status_rank mới >= cũ?
+     * → Không có thứ tự giữa các topic: order.placed tới sau order.paid không được kéo view về PLACED.
+     *   Rank bằng nhau vẫn ghi đè → replay (rebuild) ghi lại đúng giá trị cũ, idempotent.
+     * → Vế SET đọc giá trị CŨ của order_views (Postgres) — CASE so với rank trước khi update.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO order_views (order_id, customer_id, total_amount, status, status_rank,
+                                     failure_reason, items, created_at, updated_at)
+            VALUES (:orderId, :customerId, :totalAmount, :status, :statusRank,
+                    :failureReason, CAST(:items AS jsonb), :eventAt, :eventAt)
+            ON CONFLICT (order_id) DO UPDATE SET
+                customer_id    = EXCLUDED.customer_id,
+                total_amount   = EXCLUDED.total_amount,
+                items          = EXCLUDED.items,
+                status         = CASE WHEN EXCLUDED.status_rank >= order_views.status_rank
+                                      THEN EXCLUDED.status ELSE order_views.status END,
+                failure_reason = CASE WHEN EXCLUDED.status_rank >= order_views.status_rank
+                                      THEN EXCLUDED.failure_reason ELSE order_views.failure_reason END,
+                status_rank    = GREATEST(order_views.status_rank, EXCLUDED.status_rank),
+                created_at     = LEAST(order_views.created_at, EXCLUDED.created_at),
+                updated_at     = GREATEST(order_views.updated_at, EXCLUDED.updated_at)
+            """, nativeQuery = true)
+    int upsert(@Param("orderId") UUID orderId,
+               @Param("customerId") UUID customerId,
+               @Param("totalAmount") BigDecimal totalAmount,
+               @Param("status") String status,
+               @Param("statusRank") int statusRank,
+               @Param("failureReason") String failureReason,
+               @Param("items") String items,
+               @Param("eventAt") Instant eventAt);
+}
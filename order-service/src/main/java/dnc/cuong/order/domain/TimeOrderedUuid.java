@@ -0,0 +1,63 @@
+package dnc.cuong.order.domain;
+
+import dnc.cuong.common.id.UuidV7;
+import org.hibernate.annotations.IdGeneratorType;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.lang.reflect.Member;
+import java.util.EnumSet;
+import java.util.UUID;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Primary key UUID sinh trong JVM, mặc định version 7 (tăng dần theo thời gian) — xem UuidV7.
+ *
+ * WHY generator riêng thay vì @GeneratedValue(strategy = UUID)?
+ * → Hibernate 6.5 chỉ có v4 (random) hoặc "TIME" kiểu v1 — không có v7.
+ * → Vẫn sinh id trước INSERT (như GenerationType.UUID) → save() là persist, INSERT gom được batch.
+ *
+ * Hibernate setting order.id.uuid-version = 7 (mặc định) | 4 — 4 quay về UUID.randomUUID()
+ * (so sánh benchmark / rollback). Đổi lúc nào cũng được: cột vẫn là uuid, id cũ giữ nguyên.
+ */
+@IdGeneratorType(TimeOrderedUuid.Generator.class)
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface TimeOrderedUuid {
+
+    String UUID_VERSION_SETTING = "order.id.uuid-version";
+
+    class Generator implements BeforeExecutionGenerator {
+
+        private final boolean timeOrdered;
+
+        public Generator(TimeOrderedUuid annotation, Member member, CustomIdGeneratorCreationContext context) {
+            int version = context.getServiceRegistry().requireService(ConfigurationService.class)
+                    .getSetting(UUID_VERSION_SETTING, StandardConverters.INTEGER, 7);
+            if (version != 4 && version != 7) {
+                throw new IllegalArgumentException(UUID_VERSION_SETTING + " must be 4 or 7: " + version);
+            }
+            this.timeOrdered = version == 7;
+        }
+
+        @Override
+        public UUID generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                             EventType eventType) {
+            return timeOrdered ? UuidV7.next() : UUID.randomUUID();
+        }
+
+        @Override
+        public EnumSet<EventType> getEventTypes() {
+            return EventTypeSets.INSERT_ONLY;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package dnc.cuong.order.kafka;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.concurrency.KeyOrderedExecutor;
+import dnc.cuong.common.concurrency.ListenerThreads;
+import io.micrometer.context.ContextSnapshotFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
+
+import java.util.function.Consumer;
+
+/**
+ * Xử lý record song song theo key bên trong 1 partition — cắm vào @KafkaListener hiện có:
+ * listener nhận (ConsumerRecord, Acknowledgment) và gọi dispatch(listenerId, record, ack, handler).
+ *
+ * Luồng (executor != null):
+ * consumer thread → lane = hash(key) → handler (giữ DB permit) → ack.
+ * Cùng orderId → cùng lane → đúng thứ tự offset. Commit tới offset thấp nhất đã xong
+ * do container lo (AckMode.MANUAL + asyncAcks — xem KafkaConsumerConfig).
+ *
+ * WHY retry/DLT ở đây thay vì DefaultErrorHandler?
+ * → Listener đã return khi handler chạy — error handler của container không còn thấy lỗi.
+ * → Cùng BackOff + DeadLetterPublishingRecoverer như container.
+ *   Retry chạy ngay trên lane → record sau cùng key phải đợi → thứ tự không bị đảo.
+ * → DLT publish fail → không ack, thử lại mỗi MAX_RECOVER_WAIT_MS: partition đứng lại
+ *   (giống container) thay vì bỏ qua record.
+ *
+ * Rebalance: lane vẫn chạy nốt record của partition đã bị thu hồi, ack bị bỏ qua →
+ * owner mới nhận lại, IdempotencyGuard/processed_events chặn xử lý 2 lần.
+ *
+ * Latency handler ghi vào listener.handler.latency theo listenerId (ListenerThreads.runHandler) —
+ * observation của listener chỉ đo lúc giao record cho lane, flow control đọc timer này thay thế.
+ *
+ * executor == null (key-ordered tắt) → handler chạy inline trên consumer thread rồi ack,
+ * exception ném ra cho DefaultErrorHandler như trước.
+ */
+@Slf4j
+public class KeyOrderedDispatcher implements AutoCloseable {
+
+    private static final long MAX_RECOVER_WAIT_MS = 10_000L;
+
+    private final KeyOrderedExecutor executor;
+    private final ListenerThreads listenerThreads;
+    private final ConsumerRecordRecoverer recoverer;
+    private final BackOff backOff;
+    private final ContextSnapshotFactory snapshotFactory = ContextSnapshotFactory.builder().build();
+
+    public KeyOrderedDispatcher(KeyOrderedExecutor executor, ListenerThreads listenerThreads,
+                                ConsumerRecordRecoverer recoverer, BackOff backOff) {
+        this.executor = executor;
+        this.listenerThreads = listenerThreads;
+        this.recoverer = recoverer;
+        this.backOff = backOff;
+    }
+
+    public boolean isKeyOrdered() {
+        return executor != null;
+    }
+
+    public void dispatch(String listenerId, ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack,
+                         Consumer<OrderEventAvro> handler) {
+        if (executor == null) {
+            listenerThreads.runHandler(listenerId, () -> handler.accept(record.value()));
+            ack.acknowledge();
+            return;
+        }
+        // Record không key → lane theo partition: vẫn giữ thứ tự partition cho record đó
+        Object key = record.key() != null ? record.key() : record.partition();
+        // traceId/spanId của observation listener đi theo sang lane (log + span con)
+        executor.execute(key, snapshotFactory.captureAll().wrap(() -> process(listenerId, record, ack, handler)));
+    }
+
+    void process(String listenerId, ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack,
+                 Consumer<OrderEventAvro> handler) {
+        BackOffExecution backOffExecution = backOff.start();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                listenerThreads.runHandler(listenerId, () -> handler.accept(record.value()));
+                ack.acknowledge();
+                return;
+            } catch (RuntimeException e) {
+                long delay = backOffExecution.nextBackOff();
+                if (delay == BackOffExecution.STOP) {
+                    recover(record, ack, e);
+                    return;
+                }
+                log.warn("Key-ordered handler FAILED, retrying | topic={} | key={} | offset={} | attempt={} | error={}",
+                        record.topic(), record.key(), record.offset(), attempt, e.getMessage());
+                if (!sleep(delay)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void recover(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack, Exception cause) {
+        while (true) {
+            try {
+                recoverer.accept(record, cause);
+                ack.acknowledge();
+                return;
+            } catch (RuntimeException e) {
+                log.error("DLT publish FAILED, partition blocked until it succeeds | topic={} | offset={} | error={}",
+                        record.topic(), record.offset(), e.getMessage());
+                if (!sleep(MAX_RECOVER_WAIT_MS)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** false nếu bị interrupt (shutdown) — record không ack, sẽ được redeliver. */
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+}
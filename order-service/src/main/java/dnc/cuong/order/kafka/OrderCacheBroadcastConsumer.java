@@ -0,0 +1,62 @@
+package dnc.cuong.order.kafka;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.order.service.OrderResponse;
+import dnc.cuong.order.service.OrderResponseCache;
+import dnc.cuong.order.service.OrderService;
+import dnc.cuong.order.service.OrderStatusWaiters;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cập nhật OrderResponseCache và complete long-poll /await (OrderStatusWaiters) của MỌI instance
+ * khi order kết thúc — không chờ ttl / timeout.
+ *
+ * WHY groupId chứa ${random.uuid}?
+ * → Mỗi instance 1 consumer group riêng → mỗi instance nhận TẤT CẢ partition (broadcast),
+ *   kể cả order có partition thuộc instance khác. Cùng group thì event chỉ tới 1 instance.
+ * → auto.offset.reset=latest: group mới lúc start chỉ cần event từ giờ — cache khởi động rỗng.
+ *   Group cũ sau restart hết hạn theo offsets.retention.minutes của broker.
+ *
+ * WHY chỉ nghe order.status, không nghe order.failed / payment.failed / order.paid?
+ * → Đó là input của order-service — tới instance khác TRƯỚC khi instance sở hữu commit (hoặc khi
+ *   nó rollback / retry) → cache thấy status mà DB chưa có.
+ * → order.status do OrderService publish sau commit của chính nó (afterCommit hoặc outbox),
+ *   status lấy từ field status của event — đúng status đã ghi DB.
+ *
+ * WHY waiter nhận response đọc DB thay vì dựng từ event?
+ * → createdAt của event là lúc publish, không phải lúc tạo order như GET trả về.
+ * → Đã commit → đọc DB thấy status mới; chỉ đọc khi instance này có request đang chờ order đó.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderCacheBroadcastConsumer {
+
+    private final OrderResponseCache orderResponseCache;
+    private final OrderStatusWaiters orderStatusWaiters;
+    private final OrderService orderService;
+
+    @KafkaListener(
+            id = "order-cache-broadcast",
+            topics = KafkaTopics.ORDER_STATUS,
+            groupId = "${spring.application.name}-cache-${random.uuid}",
+            containerFactory = "projectionKafkaListenerContainerFactory",
+            concurrency = "1",
+            properties = "auto.offset.reset=latest",
+            autoStartup = "${order.cache.broadcast.enabled:true}"
+    )
+    public void onFinalStatus(ConsumerRecord<String, OrderEventAvro> record) {
+        OrderEvent event = OrderEventMapper.fromAvro(record.value());
+        if (!event.status().isTerminal()) {
+            throw new IllegalArgumentException("Unexpected status on " + record.topic() + ": " + event.status());
+        }
+        orderResponseCache.applyFinalStatus(event.orderId(), event.status(), event.reason());
+        orderStatusWaiters.notifyTerminal(event.orderId(),
+                () -> OrderResponse.from(orderService.getOrder(event.orderId())));
+    }
+}
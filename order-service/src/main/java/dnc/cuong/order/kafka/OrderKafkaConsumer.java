@@ -7,7 +7,9 @@ import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.order.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
 /**
@@ -22,20 +24,36 @@ import org.springframework.stereotype.Component;
  * - order.paid → Payment thành công → COMPLETED + publish order.completed
  * - order.failed → Stock validation thất bại → FAILED
  * - payment.failed → Payment thất bại → PAYMENT_FAILED
+ *
+ * WHY listener nhận (ConsumerRecord, Acknowledgment) rồi giao cho KeyOrderedDispatcher?
+ * → kafka.listener.key-ordered.enabled=true: record của 1 partition chạy song song theo orderId,
+ *   ack khi handler xong. Tắt → handler chạy inline như trước.
+ * handleXxx public: RetryTierConsumer (common) gọi thẳng khi xử lý lại từ retry tier topic.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class OrderKafkaConsumer {
 
+    /** Id listener — tag latency handler (listener.handler.latency) của KeyOrderedDispatcher. */
+    static final String ORDER_PAID_LISTENER = "order-paid";
+    static final String ORDER_FAILED_LISTENER = "order-failed";
+    static final String PAYMENT_FAILED_LISTENER = "order-payment-failed";
+
     private final OrderService orderService;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
 
     @KafkaListener(
+            id = ORDER_PAID_LISTENER,
             topics = KafkaTopics.ORDER_PAID,
             groupId = "order-service-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "keyOrderedKafkaListenerContainerFactory"
     )
-    public void onOrderPaid(OrderEventAvro avroEvent) {
+    public void onOrderPaid(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack) {
+        keyOrderedDispatcher.dispatch(ORDER_PAID_LISTENER, record, ack, this::handleOrderPaid);
+    }
+
+    public void handleOrderPaid(OrderEventAvro avroEvent) {
         OrderEvent event = OrderEventMapper.fromAvro(avroEvent);
 
         log.info("Received event from [{}] | eventId={} | orderId={} | status={}",
@@ -47,11 +65,16 @@ public class OrderKafkaConsumer {
     }
 
     @KafkaListener(
+            id = ORDER_FAILED_LISTENER,
             topics = KafkaTopics.ORDER_FAILED,
             groupId = "order-service-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "keyOrderedKafkaListenerContainerFactory"
     )
-    public void onOrderFailed(OrderEventAvro avroEvent) {
+    public void onOrderFailed(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack) {
+        keyOrderedDispatcher.dispatch(ORDER_FAILED_LISTENER, record, ack, this::handleOrderFailed);
+    }
+
+    public void handleOrderFailed(OrderEventAvro avroEvent) {
         OrderEvent event = OrderEventMapper.fromAvro(avroEvent);
 
         log.info("Received event from [{}] | eventId={} | orderId={} | status={}",
@@ -63,11 +86,16 @@ public class OrderKafkaConsumer {
     }
 
     @KafkaListener(
+            id = PAYMENT_FAILED_LISTENER,
             topics = KafkaTopics.PAYMENT_FAILED,
             groupId = "order-service-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "keyOrderedKafkaListenerContainerFactory"
     )
-    public void onPaymentFailed(OrderEventAvro avroEvent) {
+    public void onPaymentFailed(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack) {
+        keyOrderedDispatcher.dispatch(PAYMENT_FAILED_LISTENER, record, ack, this::handlePaymentFailed);
+    }
+
+    public void handlePaymentFailed(OrderEventAvro avroEvent) {
         OrderEvent event = OrderEventMapper.fromAvro(avroEvent);
 
         log.info("Received event from [{}] | eventId={} | orderId={} | status={}",
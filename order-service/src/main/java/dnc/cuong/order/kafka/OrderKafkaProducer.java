@@ -4,6 +4,8 @@ import dnc.cuong.common.avro.OrderEventAvro;
 import dnc.cuong.common.avro.OrderEventMapper;
 import dnc.cuong.common.event.KafkaTopics;
 import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.outbox.OutboxWriter;
+import dnc.cuong.common.tx.AfterCommit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -24,6 +26,19 @@ import java.util.concurrent.CompletableFuture;
  * → Service layer không cần biết về Avro — giữ business logic clean.
  * → Kafka layer chịu trách nhiệm serialization format.
  * → Nếu sau này đổi format (Protobuf, etc.), chỉ sửa Producer/Consumer.
+ *
+ * WHY check outboxWriter.isEnabled()?
+ * → outbox.enabled=true: event ghi vào bảng outbox cùng transaction của service,
+ *   OutboxRelay publish sau commit → hết dual-write.
+ * → Khi đó future trả về đã complete (null result) — ack thật do relay theo dõi.
+ *
+ * WHY order.placed / order.status gửi Kafka sau commit khi không bật outbox?
+ * → Gửi trong transaction: INSERT flush lúc commit (JDBC batch) có thể fail SAU khi event đã lên
+ *   broker → consumer nhận order.placed của order không tồn tại.
+ * → afterCommit: rollback → không gửi gì. Còn lại đúng 1 khe hở dual-write: commit xong nhưng
+ *   send fail → order không có event (log ERROR) — muốn đóng hẳn thì bật outbox.
+ * → Send lỗi đồng bộ (serialize, max.block.ms) cũng chỉ complete future exceptionally: ném ra từ
+ *   afterCommit = HTTP 500 cho order đã commit → client retry tạo order trùng.
  */
 @Component
 @RequiredArgsConstructor
@@ -33,6 +48,7 @@ public class OrderKafkaProducer {
     private static final String SOURCE = "order-service";
 
     private final KafkaTemplate<String, OrderEventAvro> kafkaTemplate;
+    private final OutboxWriter outboxWriter;
 
     public CompletableFuture<SendResult<String, OrderEventAvro>> sendOrderPlaced(OrderEvent event) {
         String key = event.orderId().toString();
@@ -41,22 +57,12 @@ public class OrderKafkaProducer {
         log.info("Publishing event to [{}] | key={} | eventId={} | status={}",
                 KafkaTopics.ORDER_PLACED, key, event.eventId(), event.status());
 
-        CompletableFuture<SendResult<String, OrderEventAvro>> future =
-                kafkaTemplate.send(KafkaTopics.ORDER_PLACED, key, avroEvent);
-
-        future.whenComplete((result, ex) -> {
-            if (ex != null) {
-                log.error("FAILED to publish event to [{}] | key={} | eventId={} | error={}",
-                        KafkaTopics.ORDER_PLACED, key, event.eventId(), ex.getMessage(), ex);
-            } else {
-                var metadata = result.getRecordMetadata();
-                log.info("SUCCESS published to [{}] | partition={} | offset={} | key={} | eventId={}",
-                        metadata.topic(), metadata.partition(), metadata.offset(),
-                        key, event.eventId());
-            }
-        });
+        if (outboxWriter.isEnabled()) {
+            outboxWriter.append(KafkaTopics.ORDER_PLACED, key, avroEvent);
+            return CompletableFuture.completedFuture(null);
+        }
 
-        return future;
+        return sendAfterCommit(KafkaTopics.ORDER_PLACED, key, avroEvent, event);
     }
 
     public CompletableFuture<SendResult<String, OrderEventAvro>> sendOrderCompleted(OrderEvent event) {
@@ -64,6 +70,60 @@ public class OrderKafkaProducer {
         OrderEventAvro avroEvent = OrderEventMapper.toAvro(event, SOURCE);
 
         log.info("Publishing event to [{}] | key={} | eventId={}", KafkaTopics.ORDER_COMPLETED, key, event.eventId());
+
+        if (outboxWriter.isEnabled()) {
+            outboxWriter.append(KafkaTopics.ORDER_COMPLETED, key, avroEvent);
+            return CompletableFuture.completedFuture(null);
+        }
         return kafkaTemplate.send(KafkaTopics.ORDER_COMPLETED, key, avroEvent);
     }
+
+    /**
+     * Status terminal (COMPLETED / FAILED / PAYMENT_FAILED) lên order.status — chỉ sau khi transaction
+     * ghi status commit, để instance khác đọc DB khi nhận event là thấy status mới.
+     */
+    public CompletableFuture<SendResult<String, OrderEventAvro>> sendOrderStatus(OrderEvent event) {
+        String key = event.orderId().toString();
+        OrderEventAvro avroEvent = OrderEventMapper.toAvro(event, SOURCE);
+
+        log.info("Publishing event to [{}] | key={} | eventId={} | status={}",
+                KafkaTopics.ORDER_STATUS, key, event.eventId(), event.status());
+
+        if (outboxWriter.isEnabled()) {
+            outboxWriter.append(KafkaTopics.ORDER_STATUS, key, avroEvent);
+            return CompletableFuture.completedFuture(null);
+        }
+        return sendAfterCommit(KafkaTopics.ORDER_STATUS, key, avroEvent, event);
+    }
+
+    /** Complete khi send xong; transaction rollback → không bao giờ complete. */
+    private CompletableFuture<SendResult<String, OrderEventAvro>> sendAfterCommit(
+            String topic, String key, OrderEventAvro avroEvent, OrderEvent event) {
+        CompletableFuture<SendResult<String, OrderEventAvro>> future = new CompletableFuture<>();
+        AfterCommit.run(() -> {
+            try {
+                kafkaTemplate.send(topic, key, avroEvent).whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        failed(topic, event, future, ex);
+                    } else {
+                        var metadata = result.getRecordMetadata();
+                        log.info("SUCCESS published to [{}] | partition={} | offset={} | key={} | eventId={}",
+                                metadata.topic(), metadata.partition(), metadata.offset(),
+                                key, event.eventId());
+                        future.complete(result);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                // Lỗi đồng bộ (serialize, max.block.ms) — order đã commit, không để lan lên thành HTTP 500
+                failed(topic, event, future, ex);
+            }
+        });
+        return future;
+    }
+
+    private static void failed(String topic, OrderEvent event, CompletableFuture<?> future, Throwable ex) {
+        log.error("FAILED to publish event to [{}] | key={} | eventId={} | error={}",
+                topic, event.orderId(), event.eventId(), ex.getMessage(), ex);
+        future.completeExceptionally(ex);
+    }
 }
@@ -0,0 +1,78 @@
+package dnc.cuong.order.kafka;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.order.service.OrderProjection;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.AbstractConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consumer dựng read model order_views (CQRS) từ 5 topic của Saga.
+ *
+ * WHY consumer group riêng (order.projection.group-id) thay vì thêm vào order-service-group?
+ * → Offset độc lập với Saga: projection chậm / dừng / rebuild không ảnh hưởng completeOrder...
+ * → Rebuild toàn bộ = group id mới: auto-offset-reset=earliest đọc lại từ đầu mọi topic
+ *   (upsert idempotent → không cần xoá order_views trước). Topic phải giữ đủ lâu (retention).
+ *
+ * WHY order.projection.rebuild (seek về đầu) khi đã có cách đổi group id?
+ * → Rebuild tại chỗ, giữ group id (dashboard lag, ACL). Mỗi partition chỉ seek 1 lần / process —
+ *   rebalance sau đó không replay lại. Nhiều instance: bật trên 1 instance rồi tắt.
+ *
+ * Mặc định order.projection.enabled=false → container không start, không tốn consumer.
+ */
+@Component
+@Slf4j
+public class OrderProjectionConsumer extends AbstractConsumerSeekAware {
+
+    private final OrderProjection orderProjection;
+    private final boolean rebuild;
+    private final Set<TopicPartition> rewound = ConcurrentHashMap.newKeySet();
+
+    public OrderProjectionConsumer(OrderProjection orderProjection,
+                                   @Value("${order.projection.rebuild:false}") boolean rebuild) {
+        this.orderProjection = orderProjection;
+        this.rebuild = rebuild;
+    }
+
+    @KafkaListener(
+            id = "order-projection",
+            topics = {
+                    KafkaTopics.ORDER_PLACED,
+                    KafkaTopics.ORDER_PAID,
+                    KafkaTopics.ORDER_FAILED,
+                    KafkaTopics.PAYMENT_FAILED,
+                    KafkaTopics.ORDER_COMPLETED
+            },
+            groupId = "${order.projection.group-id:order-service-projection}",
+            containerFactory = "projectionKafkaListenerContainerFactory",
+            autoStartup = "${order.projection.enabled:false}"
+    )
+    public void onEvent(OrderEventAvro avroEvent) {
+        orderProjection.apply(OrderEventMapper.fromAvro(avroEvent));
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        super.onPartitionsAssigned(assignments, callback);
+        if (!rebuild) {
+            return;
+        }
+        List<TopicPartition> fresh = assignments.keySet().stream()
+                .filter(rewound::add)
+                .toList();
+        if (!fresh.isEmpty()) {
+            log.info("Rebuilding order_views from beginning | partitions={}", fresh);
+            callback.seekToBeginning(fresh);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package dnc.cuong.order.service;
+
+import dnc.cuong.common.dto.OrderCreateRequest;
+import dnc.cuong.order.domain.Order;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit cho POST /api/orders: gom các request đến trong window-ms thành 1 transaction.
+ *
+ * Flow (order.group-commit.enabled=true):
+ * 1. HTTP thread đưa request vào queue, nhận CompletableFuture — không giữ connection DB
+ * 2. 1 flusher thread lấy request đầu, đợi thêm tối đa window-ms (hoặc đủ max-batch)
+ * 3. OrderService.createOrders(batch): 1 transaction, JDBC batch INSERT, 1 lượt send Kafka
+ * 4. Commit xong → complete future từng request → response 201
+ *
+ * WHY window tính từ request ĐẦU TIÊN của batch?
+ * → Latency thêm vào bị chặn trên bởi window-ms, kể cả khi tải thấp (batch 1 order).
+ *
+ * WHY batch fail thì chạy lại từng order?
+ * → 1 request lỗi (vd. constraint) rollback cả batch — không được kéo các order hợp lệ fail theo.
+ *   Chạy lại từng order trong transaction riêng → chỉ request lỗi nhận exception.
+ * → Batch rollback không để lại event nào: order.placed chỉ gửi sau commit (hoặc nằm trong outbox
+ *   cùng transaction) → lần chạy lại là lần publish duy nhất của mỗi order, không có order ma.
+ *
+ * WHY queue đầy thì tạo order ngay trên HTTP thread?
+ * → Backpressure tự nhiên: request vượt capacity chạy đường cũ (1 transaction / order)
+ *   thay vì bị từ chối hoặc làm queue phình vô hạn.
+ *
+ * Metric orders.create.latency (tag mode=direct | group_commit | bulk) có histogram —
+ * so sánh p50/p99 giữa các mode để chọn window-ms. orders.group_commit.batch.size cho biết
+ * window có gom được gì không (toàn 1 → tăng window hoặc tắt).
+ */
+@Component
+@Slf4j
+public class OrderGroupCommitter {
+
+    private final OrderService orderService;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<PendingOrder> queue;
+
+    private Timer directLatency;
+    private Timer groupCommitLatency;
+    private Timer bulkLatency;
+    private Timer queueWait;
+    private DistributionSummary batchSize;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    private record PendingOrder(OrderCreateRequest request, long enqueuedAt, CompletableFuture<Order> result) {}
+
+    public OrderGroupCommitter(OrderService orderService,
+                               MeterRegistry meterRegistry,
+                               @Value("${order.group-commit.enabled:false}") boolean enabled,
+                               @Value("${order.group-commit.window-ms:5}") long windowMs,
+                               @Value("${order.group-commit.max-batch:50}") int maxBatch,
+                               @Value("${order.group-commit.queue-capacity:10000}") int queueCapacity) {
+        this.orderService = orderService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    void initMetrics() {
+        directLatency = latencyTimer("direct");
+        groupCommitLatency = latencyTimer("group_commit");
+        bulkLatency = latencyTimer("bulk");
+        queueWait = Timer.builder("orders.group_commit.queue.wait")
+                .description("Thời gian request nằm trong queue trước khi flusher lấy ra")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        batchSize = DistributionSummary.builder("orders.group_commit.batch.size")
+                .description("Số order mỗi transaction group-commit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        if (enabled) {
+            running = true;
+            flusher = Thread.ofPlatform().name("order-group-commit").daemon(true).start(this::flushLoop);
+            log.info("Order group-commit enabled | windowMs={} | maxBatch={} | queueCapacity={}",
+                    TimeUnit.NANOSECONDS.toMillis(windowNanos), maxBatch, queue.remainingCapacity());
+        }
+    }
+
+    private Timer latencyTimer(String mode) {
+        return Timer.builder("orders.create.latency")
+                .description("Latency tạo order từ lúc nhận request tới khi commit")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tạo 1 order. Tắt group-commit (hoặc queue đầy / đang shutdown) → chạy ngay trên thread gọi.
+     */
+    public CompletableFuture<Order> submit(OrderCreateRequest request) {
+        long start = System.nanoTime();
+        if (running) {
+            PendingOrder pending = new PendingOrder(request, start, new CompletableFuture<>());
+            if (queue.offer(pending)) {
+                return pending.result();
+            }
+        }
+        Order order = orderService.createOrder(request);
+        directLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return CompletableFuture.completedFuture(order);
+    }
+
+    /** POST /api/orders/batch — client đã gom sẵn, không cần qua queue. */
+    public List<Order> createAll(List<OrderCreateRequest> requests) {
+        long start = System.nanoTime();
+        List<Order> orders = orderService.createOrders(requests);
+        bulkLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return orders;
+    }
+
+    private void flushLoop() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch, first.enqueuedAt() + windowNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<PendingOrder> batch, long deadline) throws InterruptedException {
+        while (batch.size() < maxBatch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatch || remaining <= 0) {
+                return;
+            }
+            PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingOrder> batch) {
+        long flushStart = System.nanoTime();
+        batchSize.record(batch.size());
+        for (PendingOrder pending : batch) {
+            queueWait.record(flushStart - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            List<Order> orders = orderService.createOrders(batch.stream().map(PendingOrder::request).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), orders.get(i));
+            }
+        } catch (RuntimeException batchFailure) {
+            log.warn("Group-commit batch FAILED, falling back to per-order | size={} | error={}",
+                    batch.size(), batchFailure.getMessage());
+            for (PendingOrder pending : batch) {
+                try {
+                    complete(pending, orderService.createOrder(pending.request()));
+                } catch (RuntimeException e) {
+                    pending.result().completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void complete(PendingOrder pending, Order order) {
+        groupCommitLatency.record(System.nanoTime() - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+        pending.result().complete(order);
+    }
+
+    /**
+     * Shutdown: dừng flusher, flush nốt request đã nhận (đã hứa response cho client).
+     * Chạy trước khi DataSource/KafkaTemplate bị đóng — bean này phụ thuộc OrderService.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        // Không interrupt: flusher có thể đang giữa transaction / KafkaTemplate.send
+        // (producer ném InterruptException) — poll 100ms tự thấy running=false
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+
+        List<PendingOrder> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += maxBatch) {
+            flush(remaining.subList(from, Math.min(remaining.size(), from + maxBatch)));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package dnc.cuong.order.service;
+
+import dnc.cuong.order.domain.Order;
+import dnc.cuong.order.domain.OrderRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Lịch sử order của 1 customer — phân trang keyset hoặc stream toàn bộ, không dựng cả List.
+ *
+ * WHY tách khỏi OrderService?
+ * → OrderService là phía ghi (Saga, Kafka, idempotency); đây là đọc thuần, cần EntityManager
+ *   để detach entity khi stream — không kéo thêm dependency vào constructor của OrderService.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderHistoryService {
+
+    private final OrderRepository orderRepository;
+    private final EntityManager entityManager;
+
+    /** Orders của trang (mới nhất trước, kèm items) + cursor trang sau — null nếu đã hết. */
+    public record Page(List<Order> orders, OrderCursor nextCursor) {}
+
+    /**
+     * 2 query: LIMIT limit+1 id trên index → fetch join order + items của đúng trang.
+     * Lấy dư 1 id để biết còn trang sau mà không cần COUNT.
+     */
+    @Transactional(readOnly = true)
+    public Page getPage(UUID customerId, OrderCursor after, int limit) {
+        Limit fetch = Limit.of(limit + 1);
+        List<UUID> ids = after == null
+                ? orderRepository.findFirstPageIds(customerId, fetch)
+                : orderRepository.findPageIdsAfter(customerId, after.createdAt(), after.id(), fetch);
+
+        boolean hasMore = ids.size() > limit;
+        List<UUID> pageIds = hasMore ? ids.subList(0, limit) : ids;
+        if (pageIds.isEmpty()) {
+            return new Page(List.of(), null);
+        }
+
+        List<Order> orders = orderRepository.findWithItemsByIdIn(pageIds);
+        Order last = orders.get(orders.size() - 1);
+        return new Page(orders, hasMore ? new OrderCursor(last.getCreatedAt(), last.getId()) : null);
+    }
+
+    /**
+     * Đẩy từng order (kèm items) cho sink ngay khi đọc từ cursor JDBC.
+     *
+     * WHY detach sau mỗi order?
+     * → Persistence context giữ mọi entity đã load tới hết transaction — stream 50k order
+     *   vẫn phình heap. Detach → order đã ghi ra response được GC ngay.
+     *
+     * Transaction (và 1 connection) mở suốt lúc ghi response — client đọc chậm giữ connection lâu,
+     * nên chỉ dùng cho export, không cho màn hình phân trang.
+     *
+     * @return số order đã đẩy
+     */
+    @Transactional(readOnly = true)
+    public long streamByCustomer(UUID customerId, Consumer<Order> sink) {
+        long count = 0;
+        try (Stream<Order> orders = orderRepository.streamByCustomerId(customerId)) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                sink.accept(order);
+                entityManager.detach(order);
+                count++;
+            }
+        }
+        log.info("Order history streamed | customerId={} | count={}", customerId, count);
+        return count;
+    }
+}
@@ -0,0 +1,73 @@
+package dnc.cuong.order.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.OrderViewRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Ghi event Saga vào read model order_views — gọi từ OrderProjectionConsumer.
+ *
+ * WHY không cần processed_events / IdempotencyGuard như OrderService?
+ * → Upsert theo orderId + status_rank đơn điệu: áp lại cùng event (redelivery, rebuild từ offset 0)
+ *   cho ra đúng row cũ. Bỏ được 1 INSERT + 1 lookup mỗi event.
+ *
+ * Metric orders.projection.staleness: now − createdAt của event — view chậm hơn Saga bao lâu.
+ */
+@Service
+public class OrderProjection {
+
+    private final OrderViewRepository orderViewRepository;
+    private final ObjectMapper objectMapper;
+    private final Timer staleness;
+
+    public OrderProjection(OrderViewRepository orderViewRepository, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) {
+        this.orderViewRepository = orderViewRepository;
+        this.objectMapper = objectMapper;
+        this.staleness = Timer.builder("orders.projection.staleness")
+                .description("Delay between a saga event and its projection into order_views")
+                .register(meterRegistry);
+    }
+
+    @Transactional
+    public void apply(OrderEvent event) {
+        Instant eventAt = event.createdAt() != null ? event.createdAt() : Instant.now();
+        orderViewRepository.upsert(
+                event.orderId(),
+                event.customerId(),
+                event.totalAmount(),
+                event.status().name(),
+                rank(event.status()),
+                event.reason(),
+                itemsJson(event),
+                eventAt);
+        staleness.record(Duration.between(eventAt, Instant.now()));
+    }
+
+    /** PLACED < VALIDATED < PAID < kết thúc (COMPLETED / FAILED / PAYMENT_FAILED). */
+    static int rank(OrderStatus status) {
+        return switch (status) {
+            case PLACED -> 0;
+            case VALIDATED -> 1;
+            case PAID -> 2;
+            case COMPLETED, FAILED, PAYMENT_FAILED -> 3;
+        };
+    }
+
+    private String itemsJson(OrderEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event.items());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize items of order " + event.orderId(), e);
+        }
+    }
+}
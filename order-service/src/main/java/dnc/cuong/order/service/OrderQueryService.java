@@ -0,0 +1,85 @@
+package dnc.cuong.order.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dnc.cuong.order.domain.OrderView;
+import dnc.cuong.order.domain.OrderViewRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Đọc order cho API — từ bảng orders (mặc định) hoặc từ read model order_views.
+ *
+ * WHY order.projection.serve-reads tách khỏi order.projection.enabled?
+ * → Bật consumer trước, chờ lag về 0 (view đã bắt kịp) rồi mới chuyển đọc sang view.
+ *
+ * WHY miss ở view thì đọc lại bảng orders?
+ * → View đi sau Saga vài chục ms: GET ngay sau POST vẫn phải thấy order vừa tạo.
+ *   Chỉ order chưa kịp project mới chạm bảng ghi — phần lớn read load nằm ở order_views.
+ * → Danh sách theo customer không fallback: thiếu order vừa tạo trong vài ms là chấp nhận được,
+ *   đổi lại không phải query 2 nơi rồi merge.
+ */
+@Service
+public class OrderQueryService {
+
+    private static final TypeReference<List<OrderResponse.OrderItemResponse>> ITEMS =
+            new TypeReference<>() {};
+
+    private final OrderService orderService;
+    private final OrderViewRepository orderViewRepository;
+    private final ObjectMapper objectMapper;
+    private final boolean serveFromProjection;
+
+    public OrderQueryService(OrderService orderService,
+                             OrderViewRepository orderViewRepository,
+                             ObjectMapper objectMapper,
+                             @Value("${order.projection.serve-reads:false}") boolean serveFromProjection) {
+        this.orderService = orderService;
+        this.orderViewRepository = orderViewRepository;
+        this.objectMapper = objectMapper;
+        this.serveFromProjection = serveFromProjection;
+    }
+
+    public OrderResponse getOrder(UUID orderId) {
+        if (serveFromProjection) {
+            OrderView view = orderViewRepository.findById(orderId).orElse(null);
+            if (view != null) {
+                return toResponse(view);
+            }
+        }
+        return OrderResponse.from(orderService.getOrder(orderId));
+    }
+
+    public List<OrderResponse> getOrdersByCustomer(UUID customerId) {
+        if (serveFromProjection) {
+            return orderViewRepository.findByCustomerIdOrderByCreatedAtDescOrderIdDesc(customerId).stream()
+                    .map(this::toResponse)
+                    .toList();
+        }
+        return orderService.getOrdersByCustomer(customerId).stream()
+                .map(OrderResponse::from)
+                .toList();
+    }
+
+    private OrderResponse toResponse(OrderView view) {
+        List<OrderResponse.OrderItemResponse> items;
+        try {
+            items = objectMapper.readValue(view.getItems(), ITEMS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt items in order_views for order " + view.getOrderId(), e);
+        }
+        return new OrderResponse(
+                view.getOrderId(),
+                view.getCustomerId(),
+                view.getTotalAmount(),
+                view.getStatus().name(),
+                view.getFailureReason(),
+                view.getCreatedAt(),
+                List.copyOf(items)
+        );
+    }
+}
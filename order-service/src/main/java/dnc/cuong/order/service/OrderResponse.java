@@ -0,0 +1,59 @@
+package dnc.cuong.order.service;
+
+import dnc.cuong.order.domain.Order;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Response DTO — tách biệt khỏi JPA entity.
+ *
+ * WHY file riêng trong service thay vì inner record của OrderController?
+ * → OrderResponseCache giữ chính object này và OrderService cập nhật status của nó sau commit —
+ *   service không nên phụ thuộc ngược vào controller.
+ * → Immutable (record + List.copyOf) → chia sẻ an toàn giữa các request đọc từ cache.
+ */
+public record OrderResponse(
+        UUID orderId,
+        UUID customerId,
+        BigDecimal totalAmount,
+        String status,
+        String failureReason,
+        Instant createdAt,
+        List<OrderItemResponse> items
+) {
+    public static OrderResponse from(Order order) {
+        List<OrderItemResponse> items = order.getOrderItems().stream()
+                .map(item -> new OrderItemResponse(
+                        item.getProductId(),
+                        item.getProductName(),
+                        item.getQuantity(),
+                        item.getPrice()
+                ))
+                .toList();
+
+        return new OrderResponse(
+                order.getId(),
+                order.getCustomerId(),
+                order.getTotalAmount(),
+                order.getStatus().name(),
+                order.getFailureReason(),
+                order.getCreatedAt(),
+                items
+        );
+    }
+
+    /** Saga chỉ đổi status / failureReason — items, totalAmount giữ nguyên. */
+    public OrderResponse withStatus(String status, String failureReason) {
+        return new OrderResponse(orderId, customerId, totalAmount, status, failureReason, createdAt, items);
+    }
+
+    public record OrderItemResponse(
+            UUID productId,
+            String productName,
+            int quantity,
+            BigDecimal price
+    ) {}
+}
@@ -0,0 +1,132 @@
+package dnc.cuong.order.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.Order;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cache in-process OrderResponse theo orderId cho GET /api/orders/{orderId}.
+ *
+ * Client poll order trong lúc Saga chạy (PLACED → COMPLETED / FAILED / PAYMENT_FAILED):
+ * miss → load DB 1 lần; các lần poll sau đọc từ heap. Listener đổi status → cập nhật entry
+ * tại chỗ sau commit → poll tiếp theo thấy status mới mà không chạm DB.
+ *
+ * WHY cập nhật sau commit?
+ * → Cập nhật trước commit rồi transaction rollback → client thấy status chưa từng tồn tại.
+ *   afterCommit hook do config cung cấp (giống IdempotencyGuard).
+ *
+ * WHY chỉ computeIfPresent khi đổi status?
+ * → Order không ai poll thì không cần nằm trong cache; không phải load items (lazy) trong listener.
+ *
+ * WHY maximumWeight theo byte ước lượng thay vì maximumSize?
+ * → Order 1 item và order 200 item (B2B) chênh nhau 2 bậc — giới hạn số entry không chặn được heap.
+ *
+ * Nhiều instance: partition của order thuộc instance khác → OrderService ở đây không thấy status đổi.
+ * OrderCacheBroadcastConsumer (consumer group riêng mỗi instance) nghe order.status (publish sau commit)
+ * → applyFinalStatus() trên MỌI instance.
+ * TTL (expireAfterWrite) là lưới an toàn cho phần còn lại (broadcast tắt / consumer lag):
+ * entry cũ tối đa ttl — giữ ở mức giây.
+ */
+public class OrderResponseCache {
+
+    private static final int BASE_BYTES = 320;
+    private static final int ITEM_BYTES = 160;
+
+    private final Cache<UUID, OrderResponse> cache;
+    private final Consumer<Runnable> afterCommit;
+
+    /**
+     * @param enabled     false → get() luôn gọi loader (hành vi cũ)
+     * @param afterCommit chạy Runnable sau khi transaction hiện tại commit (hoặc ngay nếu không có)
+     */
+    public OrderResponseCache(boolean enabled, Duration ttl, long maxBytes,
+                              Consumer<Runnable> afterCommit, MeterRegistry meterRegistry) {
+        this.afterCommit = afterCommit;
+        this.cache = enabled
+                ? Caffeine.newBuilder()
+                        .expireAfterWrite(ttl)
+                        .maximumWeight(maxBytes)
+                        .weigher((UUID id, OrderResponse response) -> estimateBytes(response))
+                        .recordStats()
+                        .build()
+                : null;
+
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "orders.response");
+            Gauge.builder("orders.cache.hit_ratio", cache, c -> c.stats().hitRate())
+                    .description("Tỉ lệ GET /api/orders/{orderId} trả từ cache")
+                    .register(meterRegistry);
+            Gauge.builder("orders.cache.weight.bytes", cache,
+                            c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L))
+                    .description("Heap ước lượng đang dùng (giới hạn bởi max-memory-mb)")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    public OrderResponse get(UUID orderId, Function<UUID, OrderResponse> loader) {
+        return cache != null ? cache.get(orderId, loader) : loader.apply(orderId);
+    }
+
+    /** Order vừa tạo — items đang có trong memory, client thường poll ngay sau POST. */
+    public void put(Order order) {
+        if (cache == null) {
+            return;
+        }
+        OrderResponse response = OrderResponse.from(order);
+        afterCommit.accept(() -> cache.put(response.orderId(), response));
+    }
+
+    /** Saga đổi status — cập nhật entry đang có, không thêm mới. */
+    public void updateStatus(Order order) {
+        if (cache == null) {
+            return;
+        }
+        String status = order.getStatus().name();
+        String failureReason = order.getFailureReason();
+        afterCommit.accept(() -> cache.asMap().computeIfPresent(order.getId(),
+                (id, cached) -> cached.withStatus(status, failureReason)));
+    }
+
+    /**
+     * Status kết thúc nghe từ Kafka — không qua transaction của instance này, áp ngay.
+     *
+     * WHY chỉ áp khi entry chưa kết thúc (rank thấp hơn)?
+     * → Instance sở hữu partition đã cập nhật sau commit — broadcast tới sau không ghi đè.
+     * → Event tới trễ / lặp không kéo status lùi lại (cùng quy tắc status_rank của order_views).
+     */
+    public void applyFinalStatus(UUID orderId, OrderStatus status, String failureReason) {
+        if (cache == null) {
+            return;
+        }
+        int rank = OrderProjection.rank(status);
+        cache.asMap().computeIfPresent(orderId, (id, cached) ->
+                OrderProjection.rank(OrderStatus.valueOf(cached.status())) < rank
+                        ? cached.withStatus(status.name(), failureReason)
+                        : cached);
+    }
+
+    /** Chạy eviction đang chờ ngay trên thread gọi — test đọc weight chính xác. */
+    void cleanUp() {
+        if (cache != null) {
+            cache.cleanUp();
+        }
+    }
+
+    static int estimateBytes(OrderResponse response) {
+        int bytes = BASE_BYTES + (response.failureReason() != null ? 2 * response.failureReason().length() : 0);
+        for (OrderResponse.OrderItemResponse item : response.items()) {
+            bytes += ITEM_BYTES + 2 * item.productName().length();
+        }
+        return bytes;
+    }
+}
@@ -5,10 +5,9 @@ import dnc.cuong.common.event.KafkaTopics;
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.common.event.OrderEvent.OrderItem;
 import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.common.idempotency.IdempotencyGuard;
 import dnc.cuong.order.domain.Order;
 import dnc.cuong.order.domain.OrderRepository;
-import dnc.cuong.order.domain.ProcessedEvent;
-import dnc.cuong.order.domain.ProcessedEventRepository;
 import dnc.cuong.order.kafka.OrderKafkaProducer;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -19,6 +18,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,8 +30,8 @@ import java.util.UUID;
  * → Service quản lý transaction boundary — tất cả DB operations trong 1 method
  *   thành công hoặc thất bại cùng nhau.
  * → Nếu publish Kafka fail SAU khi save DB → order ở DB nhưng event không gửi.
- *   → Đây là vấn đề dual-write, sẽ giải quyết bằng Outbox Pattern ở Step 6.
- *   → Hiện tại chấp nhận risk này, focus học Producer fundamentals trước.
+ *   → Đây là vấn đề dual-write — bật outbox.enabled=true để OrderKafkaProducer ghi event
+ *     vào bảng outbox_events cùng transaction, OutboxRelay publish sau commit.
  */
 @Service
 @RequiredArgsConstructor
@@ -39,9 +39,11 @@ import java.util.UUID;
 public class OrderService {
 
     private final OrderRepository orderRepository;
-    private final ProcessedEventRepository processedEventRepository;
+    private final IdempotencyGuard idempotencyGuard;
     private final OrderKafkaProducer kafkaProducer;
     private final MeterRegistry meterRegistry;
+    private final OrderResponseCache orderResponseCache;
+    private final OrderStatusWaiters orderStatusWaiters;
 
     private Counter ordersCreatedCounter;
     private Counter ordersCompletedCounter;
@@ -73,12 +75,58 @@ public class OrderService {
      */
     @Transactional
     public Order createOrder(OrderCreateRequest request) {
-        // 1. Tính tổng tiền
+        // 1-2. Tính tổng tiền + tạo Order entity kèm items
+        Order order = newOrder(request);
+
+        // 3. Persist
+        Order savedOrder = orderRepository.save(order);
+        log.info("Order created | orderId={} | customerId={} | totalAmount={} | itemCount={}",
+                savedOrder.getId(), savedOrder.getCustomerId(),
+                savedOrder.getTotalAmount(), savedOrder.getOrderItems().size());
+
+        // 4-5. Build event + publish — async, không block response
+        publishOrderPlaced(savedOrder);
+        orderResponseCache.put(savedOrder);
+        ordersCreatedCounter.increment();
+
+        return savedOrder;
+    }
+
+    /**
+     * Tạo nhiều order trong 1 transaction — dùng cho POST /api/orders/batch và group-commit.
+     *
+     * WHY saveAll rồi mới publish?
+     * → UUID sinh phía Hibernate (không IDENTITY) → INSERT orders / order_items dồn tới flush lúc
+     *   commit, jdbc.batch_size + order_inserts gom thành vài batch statement thay vì 1 + N round-trip.
+     * → Send Kafka sau khi mọi order đã có id: 1 lượt send liên tiếp, producer gom theo linger.ms.
+     *   Send chỉ chạy sau commit (hoặc ghi outbox cùng transaction) — INSERT batch fail lúc flush
+     *   thì chưa event nào rời service.
+     *
+     * 1 order lỗi → rollback cả batch; caller (OrderGroupCommitter) tự tách ra chạy từng order.
+     */
+    @Transactional
+    public List<Order> createOrders(List<OrderCreateRequest> requests) {
+        List<Order> orders = new ArrayList<>(requests.size());
+        for (OrderCreateRequest request : requests) {
+            orders.add(newOrder(request));
+        }
+
+        List<Order> savedOrders = orderRepository.saveAll(orders);
+        for (Order savedOrder : savedOrders) {
+            publishOrderPlaced(savedOrder);
+            orderResponseCache.put(savedOrder);
+        }
+        ordersCreatedCounter.increment(savedOrders.size());
+        log.info("Orders created (batch) | count={}", savedOrders.size());
+
+        return savedOrders;
+    }
+
+    private static Order newOrder(OrderCreateRequest request) {
         BigDecimal totalAmount = request.items().stream()
                 .map(item -> item.price().multiply(BigDecimal.valueOf(item.quantity())))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-        // 2. Tạo Order entity
         Order order = Order.builder()
                 .customerId(request.customerId())
                 .totalAmount(totalAmount)
@@ -95,14 +143,10 @@ public class OrderService {
                     .build();
             order.addItem(orderItem);
         });
+        return order;
+    }
 
-        // 3. Persist
-        Order savedOrder = orderRepository.save(order);
-        log.info("Order created | orderId={} | customerId={} | totalAmount={} | itemCount={}",
-                savedOrder.getId(), savedOrder.getCustomerId(),
-                savedOrder.getTotalAmount(), savedOrder.getOrderItems().size());
-
-        // 4. Build event
+    private void publishOrderPlaced(Order savedOrder) {
         List<OrderItem> eventItems = savedOrder.getOrderItems().stream()
                 .map(item -> new OrderItem(
                         item.getProductId(),
@@ -119,17 +163,13 @@ public class OrderService {
                 savedOrder.getTotalAmount(),
                 OrderStatus.PLACED
         );
-
-        // 5. Publish — async, không block response
         kafkaProducer.sendOrderPlaced(event);
-        ordersCreatedCounter.increment();
-
-        return savedOrder;
     }
 
+    /** Kèm orderItems — controller map sang OrderResponse sau khi transaction đã đóng. */
     @Transactional(readOnly = true)
     public Order getOrder(UUID orderId) {
-        return orderRepository.findById(orderId)
+        return orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new OrderNotFoundException(orderId));
     }
 
@@ -144,11 +184,12 @@ public class OrderService {
      * WHY publish order.completed?
      * → Notification Service cần biết order hoàn thành để gửi email/push.
      * → Các service khác có thể subscribe để trigger post-order logic.
+     * Cùng event lên order.status (sau commit) cho OrderCacheBroadcastConsumer của mọi instance.
      */
     @Transactional
     public void completeOrder(OrderEvent event) {
-        // Idempotency check: prevent duplicate status update
-        if (processedEventRepository.existsById(event.eventId())) {
+        // Idempotency: claim eventId trước khi đổi status (prevent duplicate status update)
+        if (!idempotencyGuard.claim(event.eventId(), KafkaTopics.ORDER_PAID)) {
             log.warn("Duplicate event detected, skipping | eventId={} | orderId={} | topic={}",
                     event.eventId(), event.orderId(), KafkaTopics.ORDER_PAID);
             return;
@@ -158,7 +199,8 @@ public class OrderService {
                 .orElseThrow(() -> new OrderNotFoundException(event.orderId()));
 
         order.setStatus(OrderStatus.COMPLETED);
-        processedEventRepository.save(new ProcessedEvent(event.eventId(), KafkaTopics.ORDER_PAID));
+        orderResponseCache.updateStatus(order);
+        orderStatusWaiters.notifyTerminal(order);
         log.info("Order COMPLETED | orderId={}", event.orderId());
 
         // Build event với item list từ incoming event
@@ -168,6 +210,7 @@ public class OrderService {
                 OrderStatus.COMPLETED
         );
         kafkaProducer.sendOrderCompleted(completedEvent);
+        kafkaProducer.sendOrderStatus(completedEvent);
         ordersCompletedCounter.increment();
     }
 
@@ -176,8 +219,8 @@ public class OrderService {
      */
     @Transactional
     public void failOrder(OrderEvent event) {
-        // Idempotency check
-        if (processedEventRepository.existsById(event.eventId())) {
+        // Idempotency: claim eventId trước side effect
+        if (!idempotencyGuard.claim(event.eventId(), KafkaTopics.ORDER_FAILED)) {
             log.warn("Duplicate event detected, skipping | eventId={} | orderId={} | topic={}",
                     event.eventId(), event.orderId(), KafkaTopics.ORDER_FAILED);
             return;
@@ -188,8 +231,10 @@ public class OrderService {
 
         order.setStatus(OrderStatus.FAILED);
         order.setFailureReason(event.reason());
-        processedEventRepository.save(new ProcessedEvent(event.eventId(), KafkaTopics.ORDER_FAILED));
+        orderResponseCache.updateStatus(order);
+        orderStatusWaiters.notifyTerminal(order);
         log.warn("Order FAILED | orderId={} | reason={}", event.orderId(), event.reason());
+        publishStatus(event, OrderStatus.FAILED);
         ordersFailedCounter.increment();
     }
 
@@ -199,8 +244,8 @@ public class OrderService {
      */
     @Transactional
     public void handlePaymentFailure(OrderEvent event) {
-        // Idempotency check
-        if (processedEventRepository.existsById(event.eventId())) {
+        // Idempotency: claim eventId trước side effect
+        if (!idempotencyGuard.claim(event.eventId(), KafkaTopics.PAYMENT_FAILED)) {
             log.warn("Duplicate event detected, skipping | eventId={} | orderId={} | topic={}",
                     event.eventId(), event.orderId(), KafkaTopics.PAYMENT_FAILED);
             return;
@@ -211,8 +256,19 @@ public class OrderService {
 
         order.setStatus(OrderStatus.PAYMENT_FAILED);
         order.setFailureReason(event.reason());
-        processedEventRepository.save(new ProcessedEvent(event.eventId(), KafkaTopics.PAYMENT_FAILED));
+        orderResponseCache.updateStatus(order);
+        orderStatusWaiters.notifyTerminal(order);
         log.warn("Order PAYMENT_FAILED | orderId={} | reason={}", event.orderId(), event.reason());
+        publishStatus(event, OrderStatus.PAYMENT_FAILED);
         ordersPaymentFailedCounter.increment();
     }
+
+    /**
+     * order.failed / payment.failed là input của service khác — tới mọi instance TRƯỚC khi transaction này
+     * commit. order.status chỉ rời đi sau commit → instance khác cập nhật cache / waiter theo status đã ghi.
+     */
+    private void publishStatus(OrderEvent event, OrderStatus status) {
+        kafkaProducer.sendOrderStatus(OrderEvent.withReason(
+                event.orderId(), event.customerId(), event.items(), event.totalAmount(), status, event.reason()));
+    }
 }
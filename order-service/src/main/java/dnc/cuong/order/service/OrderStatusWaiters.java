@@ -0,0 +1,114 @@
+package dnc.cuong.order.service;
+
+import dnc.cuong.order.domain.Order;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Registry các request long-poll đang chờ order kết thúc Saga (COMPLETED / FAILED / PAYMENT_FAILED).
+ *
+ * Mỗi waiter chỉ là 1 CompletableFuture trong map orderId → futures — không giữ thread:
+ * controller trả DeferredResult (Servlet async), Tomcat thread về pool ngay.
+ * OrderService ghi status terminal → sau commit complete mọi future của order đó.
+ *
+ * WHY giới hạn maxWaiters?
+ * → Mỗi waiter giữ 1 async request + socket. Vượt giới hạn → register() trả null,
+ *   controller trả ngay trạng thái hiện tại (client quay về poll) thay vì tích lũy vô hạn.
+ *
+ * Transition xử lý ở instance khác (partition khác) tới qua OrderCacheBroadcastConsumer (order.status,
+ * publish sau commit) → notifyTerminal(orderId, loader). Broadcast tắt / lỡ → phát hiện khi request
+ * timeout và đọc lại DB.
+ */
+public class OrderStatusWaiters {
+
+    private final Map<UUID, Set<CompletableFuture<OrderResponse>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxWaiters;
+    private final Consumer<Runnable> afterCommit;
+
+    /**
+     * @param afterCommit chạy Runnable sau khi transaction hiện tại commit (hoặc ngay nếu không có)
+     */
+    public OrderStatusWaiters(int maxWaiters, Consumer<Runnable> afterCommit, MeterRegistry meterRegistry) {
+        this.maxWaiters = maxWaiters;
+        this.afterCommit = afterCommit;
+        Gauge.builder("orders.status.waiters", size, AtomicInteger::get)
+                .description("Request long-poll đang chờ order kết thúc Saga")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Đăng ký chờ — future complete với OrderResponse terminal. Caller cancel() khi timeout / đã có kết quả
+     * → tự gỡ khỏi registry. null nếu đã đủ maxWaiters.
+     */
+    public CompletableFuture<OrderResponse> register(UUID orderId) {
+        if (size.incrementAndGet() > maxWaiters) {
+            size.decrementAndGet();
+            return null;
+        }
+        CompletableFuture<OrderResponse> future = new CompletableFuture<>();
+        // add trong compute — không lọt vào Set vừa bị remove() gỡ khỏi map
+        waiters.compute(orderId, (id, futures) -> {
+            Set<CompletableFuture<OrderResponse>> set = futures != null ? futures : ConcurrentHashMap.newKeySet();
+            set.add(future);
+            return set;
+        });
+        future.whenComplete((response, error) -> remove(orderId, future));
+        return future;
+    }
+
+    /**
+     * OrderService gọi trong transaction khi order chuyển sang status terminal.
+     * Không ai chờ → không làm gì (không load items).
+     */
+    public void notifyTerminal(Order order) {
+        if (!waiters.containsKey(order.getId())) {
+            return;
+        }
+        // Map trong transaction — orderItems (lazy) còn load được
+        OrderResponse response = OrderResponse.from(order);
+        afterCommit.accept(() -> {
+            Set<CompletableFuture<OrderResponse>> futures = waiters.get(response.orderId());
+            if (futures != null) {
+                futures.forEach(future -> future.complete(response));
+            }
+        });
+    }
+
+    /**
+     * OrderCacheBroadcastConsumer gọi khi order.status tới — transaction ghi status (có thể ở instance khác)
+     * đã commit, complete ngay. Không ai chờ → không gọi loader (không đọc DB cho mỗi event broadcast).
+     */
+    public void notifyTerminal(UUID orderId, Supplier<OrderResponse> loader) {
+        if (!waiters.containsKey(orderId)) {
+            return;
+        }
+        OrderResponse response = loader.get();
+        Set<CompletableFuture<OrderResponse>> futures = waiters.get(orderId);
+        if (futures != null) {
+            futures.forEach(future -> future.complete(response));
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void remove(UUID orderId, CompletableFuture<OrderResponse> future) {
+        waiters.computeIfPresent(orderId, (id, futures) -> {
+            if (futures.remove(future)) {
+                size.decrementAndGet();
+            }
+            return futures.isEmpty() ? null : futures;
+        });
+    }
+}
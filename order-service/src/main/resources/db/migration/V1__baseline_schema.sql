@@ -0,0 +1,27 @@
+-- Schema order_db tại thời điểm chuyển từ ddl-auto: update sang Flyway.
+-- DB đã tạo bằng ddl-auto → baseline-on-migrate đánh dấu V1, không chạy lại file này.
+
+CREATE TABLE IF NOT EXISTS orders (
+    id             UUID           PRIMARY KEY,
+    customer_id    UUID           NOT NULL,
+    total_amount   NUMERIC(12, 2) NOT NULL,
+    status         VARCHAR(20)    NOT NULL,
+    failure_reason VARCHAR(255),
+    created_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at     TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE TABLE IF NOT EXISTS order_items (
+    id           UUID           PRIMARY KEY,
+    order_id     UUID           NOT NULL REFERENCES orders (id),
+    product_id   UUID           NOT NULL,
+    product_name VARCHAR(255)   NOT NULL,
+    quantity     INTEGER        NOT NULL,
+    price        NUMERIC(10, 2) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS processed_events (
+    event_id     UUID         PRIMARY KEY,
+    topic        VARCHAR(255) NOT NULL,
+    processed_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
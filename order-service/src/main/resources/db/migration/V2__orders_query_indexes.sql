@@ -0,0 +1,7 @@
+-- OrderRepository.findByCustomerId / findByStatus — trước đây seq scan toàn bảng orders.
+-- Thêm created_at để "order của customer, mới nhất trước" đọc thẳng từ index.
+CREATE INDEX IF NOT EXISTS idx_orders_customer_id ON orders (customer_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_orders_status ON orders (status);
+
+-- FK không tự có index ở Postgres — load orderItems (lazy) của 1 order cũng là seq scan.
+CREATE INDEX IF NOT EXISTS idx_order_items_order_id ON order_items (order_id);
@@ -0,0 +1,19 @@
+-- Read model (CQRS) — 1 row / order, items inline dạng JSONB. Ghi bởi OrderProjection (Kafka),
+-- không bao giờ bởi transaction của Saga → đọc ở đây không tranh lock / connection với orders.
+--
+-- fillfactor 90: status đổi 2-3 lần / order, cột status không có index → UPDATE thành HOT update
+-- (tuple mới nằm cùng page, không phải sửa index).
+CREATE TABLE IF NOT EXISTS order_views (
+    order_id       UUID           PRIMARY KEY,
+    customer_id    UUID           NOT NULL,
+    total_amount   NUMERIC(12, 2) NOT NULL,
+    status         VARCHAR(20)    NOT NULL,
+    status_rank    INTEGER        NOT NULL,
+    failure_reason VARCHAR(1000),
+    items          JSONB          NOT NULL,
+    created_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL
+) WITH (fillfactor = 90);
+
+-- "Order của customer, mới nhất trước" — index-only thứ tự, không sort.
+CREATE INDEX IF NOT EXISTS idx_order_views_customer_id ON order_views (customer_id, created_at DESC, order_id DESC);
@@ -0,0 +1,15 @@
+-- Transactional outbox (outbox.enabled=true) — OutboxWriter ghi cùng transaction, OutboxRelay drain lên Kafka.
+-- IF NOT EXISTS: DB dev đã có bảng này (tạo bằng ddl-auto khi bật outbox) vẫn migrate được.
+
+CREATE SEQUENCE IF NOT EXISTS outbox_events_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id           BIGINT       PRIMARY KEY,
+    topic        VARCHAR(255) NOT NULL,
+    message_key  VARCHAR(255) NOT NULL,
+    payload      BYTEA        NOT NULL,
+    created_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    published_at TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_events_unpublished ON outbox_events (published_at, id);
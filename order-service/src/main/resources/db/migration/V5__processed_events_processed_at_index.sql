@@ -0,0 +1,4 @@
+-- ProcessedEventPurger xoá processed_events quá Kafka retention (processed_at < cutoff), warm-up đọc processed_at >= since.
+-- Không có index → mỗi lượt purge / warm-up quét toàn bảng.
+
+CREATE INDEX IF NOT EXISTS idx_processed_events_processed_at ON processed_events (processed_at);
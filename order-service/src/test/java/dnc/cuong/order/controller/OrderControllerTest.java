@@ -5,21 +5,40 @@ import dnc.cuong.common.dto.OrderCreateRequest;
 import dnc.cuong.common.event.OrderStatus;
 import dnc.cuong.order.domain.Order;
 import dnc.cuong.order.domain.OrderItem;
+import dnc.cuong.order.domain.OrderViewRepository;
+import dnc.cuong.order.service.OrderCursor;
+import dnc.cuong.order.service.OrderGroupCommitter;
+import dnc.cuong.order.service.OrderHistoryService;
 import dnc.cuong.order.service.OrderNotFoundException;
+import dnc.cuong.order.service.OrderQueryService;
+import dnc.cuong.order.service.OrderResponse;
+import dnc.cuong.order.service.OrderResponseCache;
 import dnc.cuong.order.service.OrderService;
+import dnc.cuong.order.service.OrderStatusWaiters;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -31,8 +50,11 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * -> Chỉ load controller + Jackson config → test nhanh, không cần DB/Kafka.
  * -> Focus test: request mapping, request validation, response format, HTTP status codes.
  * -> @MockBean inject mock OrderService vào controller.
+ * -> OrderQueryService thật (serve-reads=false) → GET đi qua OrderService mock như trước;
+ *    đọc từ order_views có test riêng (OrderQueryServiceTest).
  */
 @WebMvcTest(OrderController.class)
+@Import(OrderQueryService.class)
 class OrderControllerTest {
 
     @Autowired
@@ -44,6 +66,30 @@ class OrderControllerTest {
     @MockBean
     private OrderService orderService;
 
+    @MockBean
+    private OrderGroupCommitter orderGroupCommitter;
+
+    @MockBean
+    private OrderHistoryService orderHistoryService;
+
+    @MockBean
+    private OrderResponseCache orderResponseCache;
+
+    @MockBean
+    private OrderStatusWaiters orderStatusWaiters;
+
+    @MockBean
+    private OrderViewRepository orderViewRepository;
+
+    @BeforeEach
+    void setUp() {
+        // Cache pass-through — hành vi cache có test riêng (OrderResponseCacheTest)
+        when(orderResponseCache.get(any(), any())).thenAnswer(invocation -> {
+            Function<UUID, OrderResponse> loader = invocation.getArgument(1);
+            return loader.apply(invocation.getArgument(0));
+        });
+    }
+
     // --- POST /api/orders ---
 
     @Test
@@ -60,7 +106,8 @@ class OrderControllerTest {
                 .quantity(1).price(new BigDecimal("2499.99")).build();
         order.addItem(item);
 
-        when(orderService.createOrder(any(OrderCreateRequest.class))).thenReturn(order);
+        when(orderGroupCommitter.submit(any(OrderCreateRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(order));
 
         String requestBody = """
                 {
@@ -76,10 +123,15 @@ class OrderControllerTest {
                 }
                 """.formatted(customerId, productId);
 
-        // When / Then
-        mockMvc.perform(post("/api/orders")
+        // When — controller trả CompletableFuture → async dispatch
+        MvcResult result = mockMvc.perform(post("/api/orders")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.orderId").value(orderId.toString()))
                 .andExpect(jsonPath("$.customerId").value(customerId.toString()))
@@ -90,6 +142,42 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.items[0].productName").value("MacBook Pro"));
     }
 
+    // --- POST /api/orders/batch ---
+
+    @Test
+    void createOrders_shouldReturn201WithAllOrders() throws Exception {
+        // Given
+        UUID customerId = UUID.randomUUID();
+        List<Order> orders = List.of(
+                buildOrder(UUID.randomUUID(), customerId, OrderStatus.PLACED, new BigDecimal("100.00"), null),
+                buildOrder(UUID.randomUUID(), customerId, OrderStatus.PLACED, new BigDecimal("200.00"), null)
+        );
+        when(orderGroupCommitter.createAll(anyList())).thenReturn(orders);
+
+        String item = """
+                {"customerId": "%s", "items": [{"productId": "%s", "productName": "Magic Mouse", "quantity": 1, "price": 99.99}]}
+                """.formatted(customerId, UUID.randomUUID());
+
+        // When / Then
+        mockMvc.perform(post("/api/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + item + "," + item + "]"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].orderId").value(orders.get(0).getId().toString()))
+                .andExpect(jsonPath("$[1].totalAmount").value(200.00));
+    }
+
+    @Test
+    void createOrders_shouldReturn400_whenBatchEmpty() throws Exception {
+        mockMvc.perform(post("/api/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(orderGroupCommitter);
+    }
+
     // --- GET /api/orders/{orderId} ---
 
     @Test
@@ -123,6 +211,65 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.detail").value("Order not found: " + orderId));
     }
 
+    // --- GET /api/orders/{orderId}/await ---
+
+    @Test
+    void awaitOrder_shouldRespondWhenOrderReachesTerminalStatus() throws Exception {
+        // Given — order đang PLACED, client long-poll
+        UUID orderId = UUID.randomUUID();
+        Order order = buildOrder(orderId, UUID.randomUUID(), OrderStatus.PLACED, new BigDecimal("100.00"), null);
+        CompletableFuture<OrderResponse> terminal = new CompletableFuture<>();
+        when(orderService.getOrder(orderId)).thenReturn(order);
+        when(orderStatusWaiters.register(orderId)).thenReturn(terminal);
+
+        MvcResult result = mockMvc.perform(get("/api/orders/{orderId}/await", orderId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // When — listener commit COMPLETED
+        order.setStatus(OrderStatus.COMPLETED);
+        terminal.complete(OrderResponse.from(order));
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    @Test
+    void awaitOrder_shouldRespondImmediately_whenAlreadyTerminal() throws Exception {
+        // Given
+        UUID orderId = UUID.randomUUID();
+        CompletableFuture<OrderResponse> terminal = new CompletableFuture<>();
+        when(orderService.getOrder(orderId)).thenReturn(
+                buildOrder(orderId, UUID.randomUUID(), OrderStatus.FAILED, new BigDecimal("100.00"), "Insufficient stock"));
+        when(orderStatusWaiters.register(orderId)).thenReturn(terminal);
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/orders/{orderId}/await", orderId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then — waiter đã được gỡ
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("FAILED"));
+        assertTrue(terminal.isCancelled());
+    }
+
+    @Test
+    void awaitOrder_shouldReturn404AndReleaseWaiter_whenOrderNotFound() throws Exception {
+        UUID orderId = UUID.randomUUID();
+        CompletableFuture<OrderResponse> terminal = new CompletableFuture<>();
+        when(orderStatusWaiters.register(orderId)).thenReturn(terminal);
+        when(orderService.getOrder(orderId)).thenThrow(new OrderNotFoundException(orderId));
+
+        mockMvc.perform(get("/api/orders/{orderId}/await", orderId))
+                .andExpect(status().isNotFound());
+
+        assertTrue(terminal.isCancelled());
+    }
+
     // --- GET /api/orders?customerId=... ---
 
     @Test
@@ -158,6 +305,94 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.length()").value(0));
     }
 
+    // --- GET /api/orders?customerId=...&limit=... ---
+
+    @Test
+    void getOrdersPage_shouldReturnOrdersAndNextCursor() throws Exception {
+        // Given
+        UUID customerId = UUID.randomUUID();
+        Order order = buildOrder(UUID.randomUUID(), customerId, OrderStatus.PLACED, new BigDecimal("100.00"), null);
+        OrderCursor next = new OrderCursor(order.getCreatedAt(), order.getId());
+        when(orderHistoryService.getPage(customerId, null, 1))
+                .thenReturn(new OrderHistoryService.Page(List.of(order), next));
+
+        // When / Then
+        mockMvc.perform(get("/api/orders")
+                        .param("customerId", customerId.toString())
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders.length()").value(1))
+                .andExpect(jsonPath("$.orders[0].orderId").value(order.getId().toString()))
+                .andExpect(jsonPath("$.nextCursor").value(next.encode()));
+    }
+
+    @Test
+    void getOrdersPage_shouldPassDecodedCursor() throws Exception {
+        // Given
+        UUID customerId = UUID.randomUUID();
+        OrderCursor cursor = new OrderCursor(Instant.parse("2026-01-01T10:15:30.123456Z"), UUID.randomUUID());
+        when(orderHistoryService.getPage(customerId, cursor, 50))
+                .thenReturn(new OrderHistoryService.Page(List.of(), null));
+
+        // When / Then
+        mockMvc.perform(get("/api/orders")
+                        .param("customerId", customerId.toString())
+                        .param("limit", "50")
+                        .param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders.length()").value(0))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void getOrdersPage_shouldReturn400_whenCursorOrLimitInvalid() throws Exception {
+        UUID customerId = UUID.randomUUID();
+
+        mockMvc.perform(get("/api/orders")
+                        .param("customerId", customerId.toString())
+                        .param("limit", "10")
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/orders")
+                        .param("customerId", customerId.toString())
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(orderHistoryService);
+    }
+
+    // --- GET /api/orders/stream?customerId=... ---
+
+    @Test
+    void streamOrdersByCustomer_shouldWriteOneJsonObjectPerLine() throws Exception {
+        // Given
+        UUID customerId = UUID.randomUUID();
+        Order first = buildOrder(UUID.randomUUID(), customerId, OrderStatus.PLACED, new BigDecimal("100.00"), null);
+        Order second = buildOrder(UUID.randomUUID(), customerId, OrderStatus.COMPLETED, new BigDecimal("200.00"), null);
+        when(orderHistoryService.streamByCustomer(eq(customerId), any())).thenAnswer(invocation -> {
+            Consumer<Order> sink = invocation.getArgument(1);
+            sink.accept(first);
+            sink.accept(second);
+            return 2L;
+        });
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/orders/stream")
+                        .param("customerId", customerId.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(first.getId().toString(), objectMapper.readTree(lines[0]).get("orderId").asText());
+        assertEquals("COMPLETED", objectMapper.readTree(lines[1]).get("status").asText());
+    }
+
     // --- Helper ---
 
     private Order buildOrder(UUID orderId, UUID customerId, OrderStatus status,
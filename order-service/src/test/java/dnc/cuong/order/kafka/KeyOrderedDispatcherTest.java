@@ -0,0 +1,161 @@
+package dnc.cuong.order.kafka;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.concurrency.KeyOrderedExecutor;
+import dnc.cuong.common.concurrency.ListenerThreads;
+import dnc.cuong.common.event.KafkaTopics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho KeyOrderedDispatcher — retry/DLT/ack trên lane, chế độ inline khi tắt.
+ *
+ * Handler nhận OrderEventAvro null: dispatcher không đọc value, chỉ chuyển tiếp.
+ */
+@ExtendWith(MockitoExtension.class)
+class KeyOrderedDispatcherTest {
+
+    private static final String LISTENER = "order-paid";
+
+    @Mock
+    private ConsumerRecordRecoverer recoverer;
+
+
+    @Mock
+    private Acknowledgment ack;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ListenerThreads listenerThreads =
+            new ListenerThreads("test", ListenerThreads.Mode.VIRTUAL, 2, meterRegistry);
+
+    @Test
+    void dispatch_shouldRunInlineAndAck_whenKeyOrderedDisabled() {
+        KeyOrderedDispatcher dispatcher = dispatcher(null, 0);
+        Thread caller = Thread.currentThread();
+        List<Thread> ranOn = new ArrayList<>();
+
+        dispatcher.dispatch(LISTENER, record("order-1", 0), ack, value -> ranOn.add(Thread.currentThread()));
+
+        assertEquals(List.of(caller), ranOn);
+        verify(ack).acknowledge();
+        assertEquals(1, meterRegistry.get(ListenerThreads.HANDLER_TIMER)
+                .tag(ListenerThreads.LISTENER_ID_TAG, LISTENER).timer().count());
+    }
+
+    @Test
+    void dispatch_shouldPropagateFailure_whenKeyOrderedDisabled() {
+        KeyOrderedDispatcher dispatcher = dispatcher(null, 0);
+
+        assertThrows(IllegalStateException.class, () -> dispatcher.dispatch(LISTENER, record("order-1", 0), ack, value -> {
+            throw new IllegalStateException("db down");
+        }));
+
+        verify(ack, never()).acknowledge();
+        assertEquals(2, listenerThreads.availableDbPermits());
+    }
+
+    @Test
+    void dispatch_shouldKeepOffsetOrder_perKey_andAckEveryRecord() {
+        List<Long> order1 = Collections.synchronizedList(new ArrayList<>());
+        Acknowledgment countingAck = mock(Acknowledgment.class);
+
+        try (KeyOrderedDispatcher dispatcher = dispatcher(executor(4), 0)) {
+            for (long offset = 0; offset < 200; offset++) {
+                String key = offset % 2 == 0 ? "order-1" : "order-x" + offset;
+                ConsumerRecord<String, OrderEventAvro> record = record(key, offset);
+                dispatcher.dispatch(LISTENER, record, countingAck, value -> {
+                    if ("order-1".equals(record.key())) {
+                        order1.add(record.offset());
+                    }
+                });
+            }
+        }
+
+        List<Long> sorted = new ArrayList<>(order1);
+        Collections.sort(sorted);
+        assertEquals(100, order1.size());
+        assertEquals(sorted, order1);
+        verify(countingAck, times(200)).acknowledge();
+        // Latency đo trên lane, không phải lúc listener return
+        assertEquals(200, meterRegistry.get(ListenerThreads.HANDLER_TIMER)
+                .tag(ListenerThreads.LISTENER_ID_TAG, LISTENER).timer().count());
+    }
+
+    @Test
+    void process_shouldRetryThenAck_whenHandlerRecovers() {
+        KeyOrderedDispatcher dispatcher = dispatcher(null, 3);
+        AtomicInteger attempts = new AtomicInteger();
+        ConsumerRecord<String, OrderEventAvro> record = record("order-1", 7);
+
+        dispatcher.process(LISTENER, record, ack, value -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("deadlock victim");
+            }
+        });
+
+        assertEquals(3, attempts.get());
+        verifyNoInteractions(recoverer);
+        verify(ack).acknowledge();
+        assertEquals(2, listenerThreads.availableDbPermits());
+    }
+
+    @Test
+    void process_shouldPublishToDltThenAck_whenRetriesExhausted() {
+        KeyOrderedDispatcher dispatcher = dispatcher(null, 2);
+        ConsumerRecord<String, OrderEventAvro> record = record("order-1", 7);
+        IllegalStateException failure = new IllegalStateException("poison");
+
+        dispatcher.process(LISTENER, record, ack, value -> {
+            throw failure;
+        });
+
+        verify(recoverer).accept(record, failure);
+        verify(ack).acknowledge();
+    }
+
+    @Test
+    void process_shouldNotAck_untilDltPublishSucceeds() {
+        KeyOrderedDispatcher dispatcher = dispatcher(null, 0);
+        ConsumerRecord<String, OrderEventAvro> record = record("order-1", 7);
+        doThrow(new IllegalStateException("broker down")).when(recoverer).accept(eq(record), any());
+
+        // Lane bị interrupt (shutdown) trong lúc đợi thử lại DLT → thoát, không ack
+        Thread.currentThread().interrupt();
+        dispatcher.process(LISTENER, record, ack, value -> {
+            throw new IllegalStateException("poison");
+        });
+        assertTrue(Thread.interrupted());
+
+        verify(ack, never()).acknowledge();
+    }
+
+    private KeyOrderedDispatcher dispatcher(KeyOrderedExecutor executor, long maxRetries) {
+        return new KeyOrderedDispatcher(executor, listenerThreads, recoverer, new FixedBackOff(0L, maxRetries));
+    }
+
+    private KeyOrderedExecutor executor(int lanes) {
+        return new KeyOrderedExecutor("test", lanes, Thread.ofVirtual().factory(), meterRegistry);
+    }
+
+    private static ConsumerRecord<String, OrderEventAvro> record(String key, long offset) {
+        return new ConsumerRecord<>(KafkaTopics.ORDER_PAID, 0, offset, key, null);
+    }
+}
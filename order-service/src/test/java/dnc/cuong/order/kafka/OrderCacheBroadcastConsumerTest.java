@@ -0,0 +1,86 @@
+package dnc.cuong.order.kafka;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.Order;
+import dnc.cuong.order.service.OrderResponse;
+import dnc.cuong.order.service.OrderResponseCache;
+import dnc.cuong.order.service.OrderService;
+import dnc.cuong.order.service.OrderStatusWaiters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OrderCacheBroadcastConsumer — status lấy từ event order.status, complete waiter local.
+ */
+class OrderCacheBroadcastConsumerTest {
+
+    private final OrderResponseCache cache = mock(OrderResponseCache.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final OrderStatusWaiters waiters = new OrderStatusWaiters(10, Runnable::run, new SimpleMeterRegistry());
+    private final OrderCacheBroadcastConsumer consumer = new OrderCacheBroadcastConsumer(cache, waiters, orderService);
+
+    @Test
+    void onFinalStatus_shouldApplyStatusAndReasonFromEvent() {
+        OrderEvent event = statusEvent(OrderStatus.PAYMENT_FAILED, "Payment declined");
+
+        consumer.onFinalStatus(record(event));
+
+        verify(cache).applyFinalStatus(event.orderId(), OrderStatus.PAYMENT_FAILED, "Payment declined");
+    }
+
+    @Test
+    void onFinalStatus_shouldCompleteLocalWaiters_withCommittedOrder() {
+        OrderEvent event = statusEvent(OrderStatus.COMPLETED, null);
+        Order order = Order.builder()
+                .id(event.orderId())
+                .customerId(event.customerId())
+                .status(OrderStatus.COMPLETED)
+                .totalAmount(event.totalAmount())
+                .build();
+        when(orderService.getOrder(event.orderId())).thenReturn(order);
+        CompletableFuture<OrderResponse> waiter = waiters.register(event.orderId());
+
+        consumer.onFinalStatus(record(event));
+
+        assertEquals("COMPLETED", waiter.getNow(null).status());
+        assertEquals(0, waiters.size());
+    }
+
+    @Test
+    void onFinalStatus_shouldNotReadOrder_whenNobodyWaits() {
+        consumer.onFinalStatus(record(statusEvent(OrderStatus.FAILED, "Insufficient stock")));
+
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void onFinalStatus_shouldReject_whenStatusNotTerminal() {
+        OrderEvent event = statusEvent(OrderStatus.PAID, null);
+
+        assertThrows(IllegalArgumentException.class, () -> consumer.onFinalStatus(record(event)));
+        verifyNoInteractions(cache);
+    }
+
+    static OrderEvent statusEvent(OrderStatus status, String reason) {
+        return OrderEvent.withReason(UUID.randomUUID(), UUID.randomUUID(), List.of(),
+                new BigDecimal("10.00"), status, reason);
+    }
+
+    static ConsumerRecord<String, OrderEventAvro> record(OrderEvent event) {
+        return new ConsumerRecord<>(KafkaTopics.ORDER_STATUS, 0, 0L, event.orderId().toString(),
+                OrderEventMapper.toAvro(event, "order-service"));
+    }
+}
@@ -0,0 +1,119 @@
+package dnc.cuong.order.kafka;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.common.outbox.OutboxEvent;
+import dnc.cuong.common.outbox.OutboxEventRepository;
+import dnc.cuong.common.outbox.OutboxWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OrderKafkaProducer — transaction giả lập bằng TransactionSynchronizationManager.
+ *
+ * WHY không cần Spring context?
+ * -> afterCommit chỉ là TransactionSynchronization đăng ký vào thread hiện tại —
+ *    test tự gọi afterCommit / afterCompletion(ROLLED_BACK) như transaction manager.
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderKafkaProducerTest {
+
+    @Mock
+    private KafkaTemplate<String, OrderEventAvro> kafkaTemplate;
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @BeforeEach
+    void setUp() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void sendOrderPlaced_shouldSendOnlyAfterCommit() {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        OrderEvent event = sampleEvent();
+
+        new OrderKafkaProducer(kafkaTemplate, new OutboxWriter(outboxEventRepository, false)).sendOrderPlaced(event);
+        verifyNoInteractions(kafkaTemplate);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(kafkaTemplate).send(eq("order.placed"), eq(event.orderId().toString()), any());
+    }
+
+    @Test
+    void sendOrderPlaced_shouldNotSend_whenTransactionRolledBack() {
+        new OrderKafkaProducer(kafkaTemplate, new OutboxWriter(outboxEventRepository, false)).sendOrderPlaced(sampleEvent());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void sendOrderPlaced_shouldCompleteExceptionally_whenSendFailsSynchronously() {
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenThrow(new KafkaException("Failed to update metadata after 60000 ms"));
+
+        CompletableFuture<?> future = new OrderKafkaProducer(kafkaTemplate,
+                new OutboxWriter(outboxEventRepository, false)).sendOrderPlaced(sampleEvent());
+
+        // Order đã commit → afterCommit không được ném lỗi lên caller
+        assertDoesNotThrow(() -> TransactionSynchronizationManager.getSynchronizations()
+                .forEach(TransactionSynchronization::afterCommit));
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    void sendOrderStatus_shouldSendOnlyAfterCommit() {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        OrderEvent event = OrderEvent.withReason(UUID.randomUUID(), UUID.randomUUID(), List.of(),
+                new BigDecimal("10.00"), OrderStatus.FAILED, "Insufficient stock");
+
+        new OrderKafkaProducer(kafkaTemplate, new OutboxWriter(outboxEventRepository, false)).sendOrderStatus(event);
+        verifyNoInteractions(kafkaTemplate);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(kafkaTemplate).send(eq("order.status"), eq(event.orderId().toString()), any());
+    }
+
+    @Test
+    void sendOrderPlaced_shouldAppendToOutboxInTransaction_whenOutboxEnabled() {
+        new OrderKafkaProducer(kafkaTemplate, new OutboxWriter(outboxEventRepository, true)).sendOrderPlaced(sampleEvent());
+
+        verify(outboxEventRepository).save(any(OutboxEvent.class));
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    private static OrderEvent sampleEvent() {
+        return OrderEvent.create(UUID.randomUUID(), UUID.randomUUID(),
+                List.of(new OrderEvent.OrderItem(UUID.randomUUID(), "Test Product", 1, new BigDecimal("10.00"))),
+                new BigDecimal("10.00"), OrderStatus.PLACED);
+    }
+}
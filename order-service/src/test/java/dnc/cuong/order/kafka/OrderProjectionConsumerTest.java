@@ -0,0 +1,45 @@
+package dnc.cuong.order.kafka;
+
+import dnc.cuong.order.service.OrderProjection;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OrderProjectionConsumer — rebuild seek về đầu mỗi partition đúng 1 lần.
+ */
+class OrderProjectionConsumerTest {
+
+    private final TopicPartition placed0 = new TopicPartition("order.placed", 0);
+    private final TopicPartition paid0 = new TopicPartition("order.paid", 0);
+
+    @Test
+    void onPartitionsAssigned_shouldSeekToBeginningOncePerPartition_whenRebuilding() {
+        OrderProjectionConsumer consumer = new OrderProjectionConsumer(mock(OrderProjection.class), true);
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+
+        consumer.onPartitionsAssigned(Map.of(placed0, 10L), callback);
+        // Rebalance: placed0 quay lại + partition mới → chỉ seek partition mới
+        consumer.onPartitionsAssigned(Map.of(placed0, 42L, paid0, 7L), callback);
+
+        verify(callback).seekToBeginning(List.of(placed0));
+        verify(callback).seekToBeginning(List.of(paid0));
+        verifyNoMoreInteractions(callback);
+    }
+
+    @Test
+    void onPartitionsAssigned_shouldKeepCommittedOffsets_whenNotRebuilding() {
+        OrderProjectionConsumer consumer = new OrderProjectionConsumer(mock(OrderProjection.class), false);
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+
+        consumer.onPartitionsAssigned(Map.of(placed0, 10L), callback);
+
+        verify(callback, never()).seekToBeginning(any(java.util.Collection.class));
+    }
+}
@@ -0,0 +1,121 @@
+package dnc.cuong.order.service;
+
+import dnc.cuong.common.dto.OrderCreateRequest;
+import dnc.cuong.order.domain.Order;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OrderGroupCommitter — gom request trong window, fallback từng order khi batch lỗi.
+ *
+ * Window đặt rộng (200ms) để 3 submit liên tiếp chắc chắn rơi vào cùng 1 batch.
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderGroupCommitterTest {
+
+    @Mock
+    private OrderService orderService;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OrderGroupCommitter committer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        committer.stop();
+    }
+
+    @Test
+    void submit_shouldCreateDirectly_whenGroupCommitDisabled() throws Exception {
+        committer = committer(false);
+        OrderCreateRequest request = request();
+        Order order = Order.builder().id(UUID.randomUUID()).build();
+        when(orderService.createOrder(request)).thenReturn(order);
+
+        CompletableFuture<Order> result = committer.submit(request);
+
+        assertTrue(result.isDone());
+        assertSame(order, result.get());
+        verify(orderService, never()).createOrders(anyList());
+        assertEquals(1, meterRegistry.get("orders.create.latency").tag("mode", "direct").timer().count());
+    }
+
+    @Test
+    void submit_shouldCoalesceRequestsWithinWindow_intoOneTransaction() throws Exception {
+        committer = committer(true);
+        when(orderService.createOrders(anyList())).thenAnswer(invocation -> {
+            List<OrderCreateRequest> requests = invocation.getArgument(0);
+            return requests.stream()
+                    .map(r -> Order.builder().id(UUID.randomUUID()).customerId(r.customerId()).build())
+                    .toList();
+        });
+
+        List<OrderCreateRequest> requests = List.of(request(), request(), request());
+        List<CompletableFuture<Order>> results = requests.stream().map(committer::submit).toList();
+
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).customerId(), results.get(i).get(5, TimeUnit.SECONDS).getCustomerId());
+        }
+        verify(orderService).createOrders(requests);
+        verify(orderService, never()).createOrder(any());
+        assertEquals(3.0, meterRegistry.get("orders.group_commit.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void submit_shouldFallBackToPerOrder_whenBatchFails() throws Exception {
+        committer = committer(true);
+        OrderCreateRequest good = request();
+        OrderCreateRequest bad = request();
+        Order created = Order.builder().id(UUID.randomUUID()).build();
+        when(orderService.createOrders(anyList())).thenThrow(new IllegalStateException("constraint violation"));
+        when(orderService.createOrder(good)).thenReturn(created);
+        when(orderService.createOrder(bad)).thenThrow(new IllegalStateException("constraint violation"));
+
+        CompletableFuture<Order> goodResult = committer.submit(good);
+        CompletableFuture<Order> badResult = committer.submit(bad);
+
+        // Chỉ request lỗi nhận exception — order hợp lệ vẫn được tạo
+        assertSame(created, goodResult.get(5, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> badResult.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+
+    @Test
+    void createAll_shouldDelegateToCreateOrders_andRecordBulkLatency() {
+        committer = committer(false);
+        List<OrderCreateRequest> requests = List.of(request(), request());
+        List<Order> orders = List.of(Order.builder().build(), Order.builder().build());
+        when(orderService.createOrders(requests)).thenReturn(orders);
+
+        assertSame(orders, committer.createAll(requests));
+        assertEquals(1, meterRegistry.get("orders.create.latency").tag("mode", "bulk").timer().count());
+    }
+
+    private OrderGroupCommitter committer(boolean enabled) {
+        OrderGroupCommitter groupCommitter = new OrderGroupCommitter(orderService, meterRegistry, enabled, 200, 50, 100);
+        groupCommitter.initMetrics();
+        return groupCommitter;
+    }
+
+    private static OrderCreateRequest request() {
+        return new OrderCreateRequest(UUID.randomUUID(), List.of(
+                new OrderCreateRequest.OrderItemRequest(UUID.randomUUID(), "Magic Mouse", 1, new BigDecimal("99.99"))));
+    }
+}
@@ -0,0 +1,139 @@
+package dnc.cuong.order.service;
+
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.Order;
+import dnc.cuong.order.domain.OrderRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OrderHistoryService — cursor trang sau, stream + detach từng order.
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderHistoryServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @InjectMocks
+    private OrderHistoryService orderHistoryService;
+
+    private final UUID customerId = UUID.randomUUID();
+
+    @Test
+    void getPage_shouldReturnNextCursor_whenMoreRowsThanLimit() {
+        // Given — repository trả limit+1 id → còn trang sau
+        List<Order> orders = List.of(order(3), order(2));
+        List<UUID> ids = List.of(orders.get(0).getId(), orders.get(1).getId(), UUID.randomUUID());
+        when(orderRepository.findFirstPageIds(customerId, Limit.of(3))).thenReturn(ids);
+        when(orderRepository.findWithItemsByIdIn(ids.subList(0, 2))).thenReturn(orders);
+
+        // When
+        OrderHistoryService.Page page = orderHistoryService.getPage(customerId, null, 2);
+
+        // Then — cursor = order cuối của trang
+        assertEquals(orders, page.orders());
+        assertEquals(new OrderCursor(orders.get(1).getCreatedAt(), orders.get(1).getId()), page.nextCursor());
+    }
+
+    @Test
+    void getPage_shouldSeekFromCursor_andReturnNoCursorOnLastPage() {
+        // Given
+        OrderCursor after = new OrderCursor(Instant.parse("2026-01-01T00:00:00Z"), UUID.randomUUID());
+        Order order = order(1);
+        when(orderRepository.findPageIdsAfter(customerId, after.createdAt(), after.id(), Limit.of(3)))
+                .thenReturn(List.of(order.getId()));
+        when(orderRepository.findWithItemsByIdIn(List.of(order.getId()))).thenReturn(List.of(order));
+
+        // When
+        OrderHistoryService.Page page = orderHistoryService.getPage(customerId, after, 2);
+
+        // Then
+        assertEquals(List.of(order), page.orders());
+        assertNull(page.nextCursor());
+        verify(orderRepository, never()).findFirstPageIds(any(), any());
+    }
+
+    @Test
+    void getPage_shouldSkipItemQuery_whenNoOrders() {
+        when(orderRepository.findFirstPageIds(customerId, Limit.of(11))).thenReturn(List.of());
+
+        OrderHistoryService.Page page = orderHistoryService.getPage(customerId, null, 10);
+
+        assertTrue(page.orders().isEmpty());
+        assertNull(page.nextCursor());
+        verify(orderRepository, never()).findWithItemsByIdIn(any());
+    }
+
+    @Test
+    void streamByCustomer_shouldPushEachOrderThenDetachIt() {
+        // Given
+        List<Order> orders = List.of(order(2), order(1));
+        when(orderRepository.streamByCustomerId(customerId)).thenReturn(orders.stream());
+        List<Order> seen = new ArrayList<>();
+
+        // When
+        long count = orderHistoryService.streamByCustomer(customerId, order -> {
+            // Order chưa bị detach lúc sink ghi ra response
+            verify(entityManager, never()).detach(order);
+            seen.add(order);
+        });
+
+        // Then
+        assertEquals(2, count);
+        assertEquals(orders, seen);
+        verify(entityManager).detach(orders.get(0));
+        verify(entityManager).detach(orders.get(1));
+    }
+
+    @Test
+    void streamByCustomer_shouldCloseCursor_whenSinkFails() {
+        // Given
+        boolean[] closed = {false};
+        Stream<Order> orders = Stream.of(order(1)).onClose(() -> closed[0] = true);
+        when(orderRepository.streamByCustomerId(customerId)).thenReturn(orders);
+
+        // When / Then — client ngắt kết nối giữa chừng
+        assertThrows(IllegalStateException.class, () -> orderHistoryService.streamByCustomer(customerId, order -> {
+            throw new IllegalStateException("broken pipe");
+        }));
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    void cursor_shouldRoundTripThroughEncode() {
+        OrderCursor cursor = new OrderCursor(Instant.parse("2026-03-01T08:00:00.123456Z"), UUID.randomUUID());
+
+        assertEquals(cursor, OrderCursor.decode(cursor.encode()));
+        assertThrows(IllegalArgumentException.class, () -> OrderCursor.decode("bm90LWEtY3Vyc29y"));
+    }
+
+    private Order order(int minutesAgo) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .customerId(customerId)
+                .status(OrderStatus.PLACED)
+                .totalAmount(new BigDecimal("10.00"))
+                .createdAt(Instant.parse("2026-01-01T00:00:00Z").minusSeconds(60L * minutesAgo))
+                .build();
+    }
+}
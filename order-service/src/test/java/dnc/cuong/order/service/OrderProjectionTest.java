@@ -0,0 +1,60 @@
+package dnc.cuong.order.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.OrderViewRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OrderProjection — upsert với rank đúng thứ tự Saga, items inline dạng JSON.
+ */
+class OrderProjectionTest {
+
+    private final OrderViewRepository orderViewRepository = mock(OrderViewRepository.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OrderProjection projection = new OrderProjection(orderViewRepository, objectMapper, meterRegistry);
+
+    @Test
+    void apply_shouldUpsertViewWithItemsJsonAndStatusRank() throws Exception {
+        OrderEvent.OrderItem item = new OrderEvent.OrderItem(
+                UUID.randomUUID(), "MacBook Pro", 1, new BigDecimal("2499.99"));
+        OrderEvent event = OrderEvent.withReason(UUID.randomUUID(), UUID.randomUUID(), List.of(item),
+                new BigDecimal("2499.99"), OrderStatus.PAYMENT_FAILED, "Payment declined");
+
+        projection.apply(event);
+
+        ArgumentCaptor<String> items = ArgumentCaptor.forClass(String.class);
+        verify(orderViewRepository).upsert(eq(event.orderId()), eq(event.customerId()), eq(event.totalAmount()),
+                eq("PAYMENT_FAILED"), eq(3), eq("Payment declined"), items.capture(), eq(event.createdAt()));
+        // Cùng shape với OrderResponse.OrderItemResponse — OrderQueryService đọc lại trực tiếp
+        List<OrderResponse.OrderItemResponse> parsed = List.of(objectMapper.readValue(
+                items.getValue(), OrderResponse.OrderItemResponse[].class));
+        assertEquals(List.of(new OrderResponse.OrderItemResponse(
+                item.productId(), "MacBook Pro", 1, new BigDecimal("2499.99"))), parsed);
+        assertEquals(1, meterRegistry.get("orders.projection.staleness").timer().count());
+    }
+
+    @Test
+    void rank_shouldFollowSagaOrder_withAllTerminalStatusesEqual() {
+        assertTrue(OrderProjection.rank(OrderStatus.PLACED) < OrderProjection.rank(OrderStatus.VALIDATED));
+        assertTrue(OrderProjection.rank(OrderStatus.VALIDATED) < OrderProjection.rank(OrderStatus.PAID));
+        assertTrue(OrderProjection.rank(OrderStatus.PAID) < OrderProjection.rank(OrderStatus.COMPLETED));
+        for (OrderStatus status : OrderStatus.values()) {
+            if (status.isTerminal()) {
+                assertEquals(OrderProjection.rank(OrderStatus.COMPLETED), OrderProjection.rank(status));
+            }
+        }
+    }
+}
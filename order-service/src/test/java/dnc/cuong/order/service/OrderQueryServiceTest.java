@@ -0,0 +1,103 @@
+package dnc.cuong.order.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.Order;
+import dnc.cuong.order.domain.OrderView;
+import dnc.cuong.order.domain.OrderViewRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OrderQueryService — đọc order_views khi serve-reads, fallback bảng orders khi view chưa có.
+ */
+class OrderQueryServiceTest {
+
+    private final OrderService orderService = mock(OrderService.class);
+    private final OrderViewRepository orderViewRepository = mock(OrderViewRepository.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final UUID orderId = UUID.randomUUID();
+    private final UUID customerId = UUID.randomUUID();
+    private final UUID productId = UUID.randomUUID();
+
+    @Test
+    void getOrder_shouldReadView_whenServingFromProjection() {
+        OrderQueryService queries = new OrderQueryService(orderService, orderViewRepository, objectMapper, true);
+        when(orderViewRepository.findById(orderId)).thenReturn(Optional.of(view()));
+
+        OrderResponse response = queries.getOrder(orderId);
+
+        assertEquals("COMPLETED", response.status());
+        assertEquals(List.of(new OrderResponse.OrderItemResponse(
+                productId, "MacBook Pro", 1, new BigDecimal("2499.99"))), response.items());
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void getOrder_shouldFallBackToOrdersTable_whenViewNotProjectedYet() {
+        OrderQueryService queries = new OrderQueryService(orderService, orderViewRepository, objectMapper, true);
+        when(orderViewRepository.findById(orderId)).thenReturn(Optional.empty());
+        when(orderService.getOrder(orderId)).thenReturn(order());
+
+        OrderResponse response = queries.getOrder(orderId);
+
+        assertEquals("PLACED", response.status());
+    }
+
+    @Test
+    void getOrdersByCustomer_shouldReadOrdersTable_whenProjectionNotServing() {
+        OrderQueryService queries = new OrderQueryService(orderService, orderViewRepository, objectMapper, false);
+        when(orderService.getOrdersByCustomer(customerId)).thenReturn(List.of(order()));
+
+        List<OrderResponse> responses = queries.getOrdersByCustomer(customerId);
+
+        assertEquals(1, responses.size());
+        verifyNoInteractions(orderViewRepository);
+    }
+
+    @Test
+    void getOrdersByCustomer_shouldReadView_whenServingFromProjection() {
+        OrderQueryService queries = new OrderQueryService(orderService, orderViewRepository, objectMapper, true);
+        when(orderViewRepository.findByCustomerIdOrderByCreatedAtDescOrderIdDesc(customerId))
+                .thenReturn(List.of(view()));
+
+        List<OrderResponse> responses = queries.getOrdersByCustomer(customerId);
+
+        assertEquals(orderId, responses.get(0).orderId());
+        verifyNoInteractions(orderService);
+    }
+
+    private OrderView view() {
+        return OrderView.builder()
+                .orderId(orderId)
+                .customerId(customerId)
+                .totalAmount(new BigDecimal("2499.99"))
+                .status(OrderStatus.COMPLETED)
+                .statusRank(3)
+                .items("""
+                        [{"productId":"%s","productName":"MacBook Pro","quantity":1,"price":2499.99}]
+                        """.formatted(productId))
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build();
+    }
+
+    private Order order() {
+        return Order.builder()
+                .id(orderId)
+                .customerId(customerId)
+                .status(OrderStatus.PLACED)
+                .totalAmount(new BigDecimal("2499.99"))
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package dnc.cuong.order.service;
+
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.Order;
+import dnc.cuong.order.domain.OrderItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho OrderResponseCache — read-through, cập nhật sau commit, giới hạn theo byte.
+ */
+class OrderResponseCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void get_shouldLoadOnce_andRecordHitRatio() {
+        OrderResponseCache cache = cache(true, 1024 * 1024, Runnable::run);
+        Order order = order(OrderStatus.PLACED, 1);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            cache.get(order.getId(), id -> {
+                loads.incrementAndGet();
+                return OrderResponse.from(order);
+            });
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(0.75, meterRegistry.get("orders.cache.hit_ratio").gauge().value());
+    }
+
+    @Test
+    void get_shouldAlwaysLoad_whenDisabled() {
+        OrderResponseCache cache = cache(false, 1024 * 1024, Runnable::run);
+        Order order = order(OrderStatus.PLACED, 1);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.put(order);
+        cache.get(order.getId(), id -> {
+            loads.incrementAndGet();
+            return OrderResponse.from(order);
+        });
+
+        assertEquals(1, loads.get());
+        assertTrue(meterRegistry.find("orders.cache.hit_ratio").gauges().isEmpty());
+    }
+
+    @Test
+    void updateStatus_shouldApplyOnlyAfterCommit() {
+        List<Runnable> pendingCommit = new ArrayList<>();
+        OrderResponseCache cache = cache(true, 1024 * 1024, pendingCommit::add);
+        Order order = order(OrderStatus.PLACED, 2);
+        cache.get(order.getId(), id -> OrderResponse.from(order));
+
+        order.setStatus(OrderStatus.COMPLETED);
+        cache.updateStatus(order);
+
+        // Chưa commit → client vẫn thấy status cũ
+        assertEquals("PLACED", cache.get(order.getId(), id -> fail("cached")).status());
+        pendingCommit.forEach(Runnable::run);
+        OrderResponse updated = cache.get(order.getId(), id -> fail("cached"));
+        assertEquals("COMPLETED", updated.status());
+        assertEquals(2, updated.items().size());
+    }
+
+    @Test
+    void applyFinalStatus_shouldUpdateEntryImmediately_whenStatusChangedOnAnotherInstance() {
+        OrderResponseCache cache = cache(true, 1024 * 1024, Runnable::run);
+        Order order = order(OrderStatus.PLACED, 1);
+        cache.get(order.getId(), id -> OrderResponse.from(order));
+
+        cache.applyFinalStatus(order.getId(), OrderStatus.FAILED, "Insufficient stock");
+
+        OrderResponse updated = cache.get(order.getId(), id -> fail("cached"));
+        assertEquals("FAILED", updated.status());
+        assertEquals("Insufficient stock", updated.failureReason());
+    }
+
+    @Test
+    void applyFinalStatus_shouldNotOverrideFinalStatus_norAddEntry() {
+        OrderResponseCache cache = cache(true, 1024 * 1024, Runnable::run);
+        Order order = order(OrderStatus.COMPLETED, 1);
+        cache.get(order.getId(), id -> OrderResponse.from(order));
+        UUID unknown = UUID.randomUUID();
+
+        cache.applyFinalStatus(order.getId(), OrderStatus.PAYMENT_FAILED, "late event");
+        cache.applyFinalStatus(unknown, OrderStatus.FAILED, "not polled");
+
+        assertEquals("COMPLETED", cache.get(order.getId(), id -> fail("cached")).status());
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(unknown, id -> {
+            loads.incrementAndGet();
+            return OrderResponse.from(order);
+        });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void put_shouldEvict_whenEstimatedBytesExceedBound() {
+        // ~10 order 50 item mỗi cái ≈ 10 × 8.5KB > 32KB
+        OrderResponseCache cache = cache(true, 32 * 1024, Runnable::run);
+        for (int i = 0; i < 10; i++) {
+            cache.put(order(OrderStatus.PLACED, 50));
+        }
+        cache.cleanUp();
+
+        double weight = meterRegistry.get("orders.cache.weight.bytes").gauge().value();
+        assertTrue(weight <= 32 * 1024, "weight=" + weight);
+        assertTrue(meterRegistry.get("cache.evictions").functionCounter().count() > 0);
+    }
+
+    @Test
+    void estimateBytes_shouldGrowWithItems() {
+        int small = OrderResponseCache.estimateBytes(OrderResponse.from(order(OrderStatus.PLACED, 1)));
+        int large = OrderResponseCache.estimateBytes(OrderResponse.from(order(OrderStatus.PLACED, 100)));
+
+        assertTrue(large > 20 * small, "small=" + small + " large=" + large);
+    }
+
+    private OrderResponseCache cache(boolean enabled, long maxBytes, Consumer<Runnable> afterCommit) {
+        return new OrderResponseCache(enabled, Duration.ofMinutes(5), maxBytes, afterCommit, meterRegistry);
+    }
+
+    private static Order order(OrderStatus status, int items) {
+        Order order = Order.builder()
+                .id(UUID.randomUUID())
+                .customerId(UUID.randomUUID())
+                .status(status)
+                .totalAmount(new BigDecimal("10.00"))
+                .build();
+        for (int i = 0; i < items; i++) {
+            order.addItem(OrderItem.builder()
+                    .productId(UUID.randomUUID()).productName("Product " + i)
+                    .quantity(1).price(new BigDecimal("10.00")).build());
+        }
+        return order;
+    }
+}
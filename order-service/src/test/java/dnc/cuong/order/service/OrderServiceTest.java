@@ -3,17 +3,16 @@ package dnc.cuong.order.service;
 import dnc.cuong.common.dto.OrderCreateRequest;
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.common.idempotency.IdempotencyGuard;
+import dnc.cuong.common.idempotency.ProcessedEventRepository;
 import dnc.cuong.order.domain.Order;
 import dnc.cuong.order.domain.OrderRepository;
-import dnc.cuong.order.domain.ProcessedEvent;
-import dnc.cuong.order.domain.ProcessedEventRepository;
 import dnc.cuong.order.kafka.OrderKafkaProducer;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -21,12 +20,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.junit.jupiter.api.BeforeEach;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 /**
@@ -52,11 +54,21 @@ class OrderServiceTest {
     @Spy
     private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
-    @InjectMocks
+    private OrderResponseCache orderResponseCache;
+
+    private OrderStatusWaiters orderStatusWaiters;
+
     private OrderService orderService;
 
     @BeforeEach
     void setUp() {
+        // Không có transaction trong unit test → afterCommit chạy ngay
+        orderResponseCache = new OrderResponseCache(true, Duration.ofMinutes(5), 1024 * 1024, Runnable::run, meterRegistry);
+        orderStatusWaiters = new OrderStatusWaiters(100, Runnable::run, meterRegistry);
+        // eventId chưa có trong processed_events → claim INSERT được
+        lenient().when(processedEventRepository.claim(any(), anyString())).thenReturn(1);
+        orderService = new OrderService(orderRepository, passThroughGuard(), kafkaProducer,
+                meterRegistry, orderResponseCache, orderStatusWaiters);
         orderService.initMetrics();
     }
 
@@ -122,6 +134,36 @@ class OrderServiceTest {
         assertNotNull(event.createdAt());
     }
 
+    // --- createOrders ---
+
+    @Test
+    void createOrders_shouldSaveAllOnceAndPublishEachOrder() {
+        // Given
+        List<OrderCreateRequest> requests = List.of(
+                new OrderCreateRequest(UUID.randomUUID(), List.of(
+                        new OrderCreateRequest.OrderItemRequest(UUID.randomUUID(), "iPhone 15", 1, new BigDecimal("1199.00")))),
+                new OrderCreateRequest(UUID.randomUUID(), List.of(
+                        new OrderCreateRequest.OrderItemRequest(UUID.randomUUID(), "Magic Mouse", 3, new BigDecimal("99.99"))))
+        );
+
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+            orders.forEach(order -> order.setId(UUID.randomUUID()));
+            return orders;
+        });
+
+        // When
+        List<Order> result = orderService.createOrders(requests);
+
+        // Then — 1 saveAll (JDBC batch), không save từng order
+        assertEquals(2, result.size());
+        assertEquals(new BigDecimal("299.97"), result.get(1).getTotalAmount());
+        verify(orderRepository).saveAll(anyList());
+        verify(orderRepository, never()).save(any(Order.class));
+        verify(kafkaProducer, times(2)).sendOrderPlaced(any(OrderEvent.class));
+        assertEquals(2.0, meterRegistry.get("orders.created.total").counter().count());
+    }
+
     // --- completeOrder ---
 
     @Test
@@ -131,7 +173,7 @@ class OrderServiceTest {
         Order order = Order.builder().id(orderId).status(OrderStatus.PAID).build();
         OrderEvent event = createEvent(orderId, OrderStatus.PAID, null);
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
 
         // When
@@ -139,15 +181,16 @@ class OrderServiceTest {
 
         // Then
         assertEquals(OrderStatus.COMPLETED, order.getStatus());
-        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
         verify(kafkaProducer).sendOrderCompleted(any(OrderEvent.class));
+        verify(kafkaProducer).sendOrderStatus(argThat(e -> e.status() == OrderStatus.COMPLETED));
     }
 
     @Test
     void completeOrder_shouldSkipDuplicateEvent() {
         // Given
         OrderEvent event = createEvent(UUID.randomUUID(), OrderStatus.PAID, null);
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(true);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(0);
 
         // When
         orderService.completeOrder(event);
@@ -162,7 +205,7 @@ class OrderServiceTest {
         // Given
         UUID orderId = UUID.randomUUID();
         OrderEvent event = createEvent(orderId, OrderStatus.PAID, null);
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(orderRepository.findById(orderId)).thenReturn(Optional.empty());
 
         // When / Then
@@ -178,7 +221,7 @@ class OrderServiceTest {
         Order order = Order.builder().id(orderId).status(OrderStatus.PLACED).build();
         OrderEvent event = createEvent(orderId, OrderStatus.FAILED, "Insufficient stock");
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
 
         // When
@@ -187,20 +230,23 @@ class OrderServiceTest {
         // Then
         assertEquals(OrderStatus.FAILED, order.getStatus());
         assertEquals("Insufficient stock", order.getFailureReason());
-        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
+        verify(kafkaProducer).sendOrderStatus(argThat(e -> e.status() == OrderStatus.FAILED
+                && "Insufficient stock".equals(e.reason()) && e.orderId().equals(orderId)));
     }
 
     @Test
     void failOrder_shouldSkipDuplicateEvent() {
         // Given
         OrderEvent event = createEvent(UUID.randomUUID(), OrderStatus.FAILED, "reason");
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(true);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(0);
 
         // When
         orderService.failOrder(event);
 
         // Then
         verify(orderRepository, never()).findById(any());
+        verify(kafkaProducer, never()).sendOrderStatus(any());
     }
 
     // --- handlePaymentFailure ---
@@ -213,7 +259,7 @@ class OrderServiceTest {
         String reason = "Payment declined: amount 15000 exceeds limit 10000";
         OrderEvent event = createEvent(orderId, OrderStatus.PAYMENT_FAILED, reason);
 
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(false);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(1);
         when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
 
         // When
@@ -222,14 +268,16 @@ class OrderServiceTest {
         // Then
         assertEquals(OrderStatus.PAYMENT_FAILED, order.getStatus());
         assertEquals(reason, order.getFailureReason());
-        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
+        verify(kafkaProducer).sendOrderStatus(argThat(e -> e.status() == OrderStatus.PAYMENT_FAILED
+                && reason.equals(e.reason())));
     }
 
     @Test
     void handlePaymentFailure_shouldSkipDuplicateEvent() {
         // Given
         OrderEvent event = createEvent(UUID.randomUUID(), OrderStatus.PAYMENT_FAILED, "reason");
-        when(processedEventRepository.existsById(event.eventId())).thenReturn(true);
+        when(processedEventRepository.claim(eq(event.eventId()), anyString())).thenReturn(0);
 
         // When
         orderService.handlePaymentFailure(event);
@@ -238,6 +286,79 @@ class OrderServiceTest {
         verify(orderRepository, never()).findById(any());
     }
 
+    // --- orderResponseCache ---
+
+    @Test
+    void createOrder_shouldPutResponseIntoCache() {
+        // Given
+        OrderCreateRequest request = new OrderCreateRequest(UUID.randomUUID(), List.of(
+                new OrderCreateRequest.OrderItemRequest(UUID.randomUUID(), "iPhone 15", 1, new BigDecimal("1199.00"))
+        ));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            order.setId(UUID.randomUUID());
+            return order;
+        });
+
+        // When
+        Order created = orderService.createOrder(request);
+
+        // Then — poll đầu tiên sau POST không chạm DB
+        OrderResponse cached = orderResponseCache.get(created.getId(), id -> fail("should be cached"));
+        assertEquals("PLACED", cached.status());
+        assertEquals(1, cached.items().size());
+    }
+
+    @Test
+    void handlePaymentFailure_shouldUpdateCachedStatusInPlace() {
+        // Given — order đang được client poll
+        UUID orderId = UUID.randomUUID();
+        Order order = Order.builder().id(orderId).status(OrderStatus.PLACED).build();
+        orderResponseCache.get(orderId, id -> OrderResponse.from(order));
+        OrderEvent event = createEvent(orderId, OrderStatus.PAYMENT_FAILED, "Card declined");
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+
+        // When
+        orderService.handlePaymentFailure(event);
+
+        // Then
+        OrderResponse cached = orderResponseCache.get(orderId, id -> fail("should be cached"));
+        assertEquals("PAYMENT_FAILED", cached.status());
+        assertEquals("Card declined", cached.failureReason());
+    }
+
+    @Test
+    void failOrder_shouldNotCacheOrder_thatNobodyPolled() {
+        // Given
+        UUID orderId = UUID.randomUUID();
+        Order order = Order.builder().id(orderId).status(OrderStatus.PLACED).build();
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+
+        // When
+        orderService.failOrder(createEvent(orderId, OrderStatus.FAILED, "Insufficient stock"));
+
+        // Then — lần GET sau mới load
+        OrderResponse loaded = orderResponseCache.get(orderId, id -> OrderResponse.from(order));
+        assertEquals("FAILED", loaded.status());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void completeOrder_shouldCompleteLongPollWaiters() throws Exception {
+        // Given — 1 client đang long-poll order này
+        UUID orderId = UUID.randomUUID();
+        Order order = Order.builder().id(orderId).status(OrderStatus.PAID).build();
+        CompletableFuture<OrderResponse> waiter = orderStatusWaiters.register(orderId);
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+
+        // When
+        orderService.completeOrder(createEvent(orderId, OrderStatus.PAID, null));
+
+        // Then
+        assertEquals("COMPLETED", waiter.getNow(null).status());
+        assertEquals(0, orderStatusWaiters.size());
+    }
+
     // --- getOrder ---
 
     @Test
@@ -245,7 +366,7 @@ class OrderServiceTest {
         // Given
         UUID orderId = UUID.randomUUID();
         Order order = Order.builder().id(orderId).status(OrderStatus.PLACED).build();
-        when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(Optional.of(order));
 
         // When
         Order result = orderService.getOrder(orderId);
@@ -258,7 +379,7 @@ class OrderServiceTest {
     void getOrder_shouldThrow_whenNotFound() {
         // Given
         UUID orderId = UUID.randomUUID();
-        when(orderRepository.findById(orderId)).thenReturn(Optional.empty());
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(Optional.empty());
 
         // When / Then
         assertThrows(OrderNotFoundException.class, () -> orderService.getOrder(orderId));
@@ -299,4 +420,16 @@ class OrderServiceTest {
         return new OrderEvent(eventId, orderId, customerId, items,
                 new BigDecimal("100.00"), status, null, java.time.Instant.now());
     }
+
+    /**
+     * Pass-through guard: mọi check đi thẳng processedEventRepository (mock) — stub claim()/existsById()
+     * quyết định event mới hay duplicate. Hành vi LRU được test ở common.
+     */
+    private IdempotencyGuard passThroughGuard() {
+        return new IdempotencyGuard("test", IdempotencyGuard.Settings.passThrough(),
+                processedEventRepository::existsById,
+                (eventId, topic) -> processedEventRepository.claim(eventId, topic) == 1,
+                processedEventRepository::claimAll,
+                Runnable::run, meterRegistry);
+    }
 }
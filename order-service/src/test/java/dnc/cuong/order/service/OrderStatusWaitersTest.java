@@ -0,0 +1,109 @@
+package dnc.cuong.order.service;
+
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.order.domain.Order;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho OrderStatusWaiters — complete sau commit / từ broadcast, tự gỡ khi cancel, giới hạn số waiter.
+ */
+class OrderStatusWaitersTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void notifyTerminal_shouldCompleteAllWaitersOfOrder_afterCommit() {
+        List<Runnable> pendingCommit = new ArrayList<>();
+        OrderStatusWaiters waiters = new OrderStatusWaiters(10, pendingCommit::add, meterRegistry);
+        Order order = order(OrderStatus.COMPLETED);
+        CompletableFuture<OrderResponse> first = waiters.register(order.getId());
+        CompletableFuture<OrderResponse> second = waiters.register(order.getId());
+        CompletableFuture<OrderResponse> other = waiters.register(UUID.randomUUID());
+
+        waiters.notifyTerminal(order);
+        assertFalse(first.isDone(), "chưa commit");
+        pendingCommit.forEach(Runnable::run);
+
+        assertEquals("COMPLETED", first.getNow(null).status());
+        assertEquals("COMPLETED", second.getNow(null).status());
+        assertFalse(other.isDone());
+        assertEquals(1, waiters.size());
+        assertEquals(1.0, meterRegistry.get("orders.status.waiters").gauge().value());
+    }
+
+    @Test
+    void cancel_shouldRemoveWaiter() {
+        OrderStatusWaiters waiters = new OrderStatusWaiters(10, Runnable::run, meterRegistry);
+        UUID orderId = UUID.randomUUID();
+
+        waiters.register(orderId).cancel(false);
+
+        assertEquals(0, waiters.size());
+    }
+
+    @Test
+    void register_shouldReturnNull_whenFull() {
+        OrderStatusWaiters waiters = new OrderStatusWaiters(2, Runnable::run, meterRegistry);
+        waiters.register(UUID.randomUUID());
+        CompletableFuture<OrderResponse> second = waiters.register(UUID.randomUUID());
+
+        assertNull(waiters.register(UUID.randomUUID()));
+
+        // Slot trả lại khi 1 waiter xong
+        second.cancel(false);
+        assertNotNull(waiters.register(UUID.randomUUID()));
+    }
+
+    @Test
+    void notifyTerminal_shouldNotMapOrder_whenNobodyWaits() {
+        OrderStatusWaiters waiters = new OrderStatusWaiters(10, Runnable::run, meterRegistry);
+        Order order = spy(order(OrderStatus.FAILED));
+
+        waiters.notifyTerminal(order);
+
+        // Không chạm orderItems (lazy) trong listener khi không ai chờ
+        verify(order, never()).getOrderItems();
+    }
+
+    @Test
+    void notifyTerminalFromBroadcast_shouldCompleteImmediately_andLoadOnlyWhenSomeoneWaits() {
+        OrderStatusWaiters waiters = new OrderStatusWaiters(10, pendingCommit -> fail("no transaction"), meterRegistry);
+        Order order = order(OrderStatus.PAYMENT_FAILED);
+        int[] loads = {0};
+        Supplier<OrderResponse> loader = () -> {
+            loads[0]++;
+            return OrderResponse.from(order);
+        };
+
+        waiters.notifyTerminal(UUID.randomUUID(), loader);
+        assertEquals(0, loads[0]);
+
+        CompletableFuture<OrderResponse> waiter = waiters.register(order.getId());
+        waiters.notifyTerminal(order.getId(), loader);
+
+        assertEquals("PAYMENT_FAILED", waiter.getNow(null).status());
+        assertEquals(1, loads[0]);
+        assertEquals(0, waiters.size());
+    }
+
+    private static Order order(OrderStatus status) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .customerId(UUID.randomUUID())
+                .status(status)
+                .totalAmount(new BigDecimal("10.00"))
+                .build();
+    }
+}
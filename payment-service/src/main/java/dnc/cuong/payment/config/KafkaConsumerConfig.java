@@ -1,21 +1,46 @@
 package dnc.cuong.payment.config;
 
 import dnc.cuong.common.avro.OrderEventAvro;
-import io.confluent.kafka.serializers.KafkaAvroDeserializer;
-import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig;
+import dnc.cuong.common.concurrency.ListenerFlowControlConfig;
+import dnc.cuong.common.concurrency.ListenerThreads;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.retry.RetryTierConsumer;
+import dnc.cuong.common.retry.RetryTiers;
+import dnc.cuong.common.serde.AvroSerdeConfig;
+import dnc.cuong.common.serde.OrderEventAvroDeserializer;
+import dnc.cuong.common.idempotency.IdempotencyConfig;
+import dnc.cuong.payment.kafka.AsyncChargeDispatcher;
+import dnc.cuong.payment.kafka.PaymentKafkaConsumer;
+import dnc.cuong.payment.service.PaymentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchInterceptor;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.util.backoff.BackOff;
 import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.time.Clock;
 import java.util.Map;
 
 /**
@@ -23,28 +48,61 @@ import java.util.Map;
  *
  * Payment Service consume topic order.validated từ Inventory Service.
  * Sử dụng DeadLetterPublishingRecoverer + ExponentialBackOff.
+ *
+ * WHY thêm batchKafkaListenerContainerFactory?
+ * → Batch listener nhận cả poll order.validated → PaymentService persist payments + processed_events
+ *   của cả poll trong 1 transaction (multi-row INSERT).
+ * → Bật bằng payment.batch-listener.enabled=true — mặc định vẫn là record listener.
+ *
+ * WHY asyncKafkaListenerContainerFactory?
+ * → Gateway thật mất 100ms-2s / charge. AsyncChargeDispatcher phát nhiều charge cùng lúc trên
+ *   1 partition, ack khi persist xong — bật bằng payment.gateway.async.enabled=true.
+ *
+ * WHY kafka.listener.threads (platform | virtual)?
+ * → virtual: consumer thread là virtual thread; record listener giữ 1 DB permit / record,
+ *   batch listener giữ 1 permit / poll (xem ListenerThreads).
+ *
+ * WHY kafka.retry-topics.enabled?
+ * → Gateway timeout / DB lỗi tạm thời trên 1 order.validated → ExponentialBackOff giữ partition
+ *   tới 30s, các order sau không được charge. Bật → record lỗi đi order.validated.retry-1s / -10s /
+ *   -60s rồi .DLT; partition chính (và lane của AsyncChargeDispatcher) không đợi.
+ * → An toàn khi xử lý lại lệch thứ tự: charge idempotent theo orderId (uk_payments_order_id).
+ *
+ * IdempotencyGuard (LRU + claim processed_events) đến từ common — @Import(IdempotencyConfig).
+ * ListenerFlowController (kafka.listener.flow-control.enabled) cũng vậy — @Import(ListenerFlowControlConfig).
  */
 @Configuration
+@Import({IdempotencyConfig.class, ListenerFlowControlConfig.class})
 public class KafkaConsumerConfig {
 
+    private static final String SERVICE_NAME = "payment-service";
+
     @Bean
     public ConsumerFactory<String, OrderEventAvro> consumerFactory(KafkaProperties kafkaProperties) {
         Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
 
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaAvroDeserializer.class);
-        props.put(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                props.getOrDefault(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG,
-                        "http://localhost:8085"));
-        props.put(KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG, true);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, OrderEventAvroDeserializer.class);
+        props.put(AvroSerdeConfig.SCHEMA_REGISTRY_URL,
+                props.getOrDefault(AvroSerdeConfig.SCHEMA_REGISTRY_URL, "http://localhost:8085"));
 
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
+    @Bean
+    public ListenerThreads listenerThreads(
+            @Value("${kafka.listener.threads:platform}") String mode,
+            @Value("${kafka.listener.db-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int dbPermits,
+            MeterRegistry meterRegistry) {
+        return new ListenerThreads(SERVICE_NAME, ListenerThreads.Mode.parse(mode), dbPermits, meterRegistry);
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> kafkaListenerContainerFactory(
             ConsumerFactory<String, OrderEventAvro> consumerFactory,
-            KafkaTemplate<String, OrderEventAvro> kafkaTemplate) {
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers) {
 
         ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
@@ -52,15 +110,246 @@ public class KafkaConsumerConfig {
         factory.setConsumerFactory(consumerFactory);
         factory.setConcurrency(3);
         factory.getContainerProperties().setObservationEnabled(true);
+        applyListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers.getIfAvailable()));
 
-        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate);
+        return factory;
+    }
+
+    /**
+     * Container factory cho batch listener (List<OrderEventAvro> mỗi poll).
+     *
+     * WHY dùng chung DefaultErrorHandler?
+     * → Listener throw BatchListenerFailedException(index) → error handler commit offset
+     *   các record TRƯỚC index, retry/DLT đúng record lỗi thay vì cả batch.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers) {
 
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(3);
+        factory.setBatchListener(true);
+        applyBatchListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers.getIfAvailable()));
+
+        return factory;
+    }
+
+    /**
+     * Container factory cho listener dispatch qua AsyncChargeDispatcher.
+     *
+     * WHY AckMode.MANUAL + asyncAcks?
+     * → Listener return ngay sau khi giao record cho dispatcher — charge chưa xong, offset chưa
+     *   được commit. Ack thứ tự bất kỳ; container chỉ commit tới offset thấp nhất chưa ack.
+     * → Không có DB permit ở interceptor: consumer thread không chạm DB, permit do dispatcher giữ.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> asyncKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers) {
+
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(3);
+        factory.getContainerProperties().setObservationEnabled(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        if (listenerThreads.isVirtual()) {
+            factory.getContainerProperties().setListenerTaskExecutor(
+                    new SimpleAsyncTaskExecutor(listenerThreads.threadFactory(SERVICE_NAME + "-async-listener-")));
+        }
+        // Chỉ còn bắt lỗi trước khi tới listener (deserialize...) — lỗi charge do dispatcher retry/DLT
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers.getIfAvailable()));
+
+        return factory;
+    }
+
+    /**
+     * Workers (dedup + persist sau charge) = virtual thread / task, hoặc pool platform cỡ Hikari pool
+     * — việc của worker là DB, nhiều thread hơn pool chỉ xếp hàng trong getConnection().
+     * Retry topic bật → dispatcher không retry trong lane, charge lỗi đi thẳng tier đầu.
+     */
+    @Bean
+    public AsyncChargeDispatcher asyncChargeDispatcher(
+            @Value("${payment.gateway.async.lanes:1024}") int lanes,
+            @Value("${payment.gateway.async.max-in-flight:256}") int maxInFlight,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            PaymentService paymentService,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            ObjectProvider<RetryTiers> retryTiers,
+            MeterRegistry meterRegistry) {
+        RetryTiers tiers = retryTiers.getIfAvailable();
+        return new AsyncChargeDispatcher(paymentService, listenerThreads,
+                listenerThreads.newRecordExecutor(poolSize),
+                recoverer(kafkaTemplate, tiers), backOff(tiers),
+                lanes, maxInFlight, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public RetryTiers retryTiers(@Value("${kafka.retry-topics.tiers:1s,10s,60s}") String tiers,
+                                 MeterRegistry meterRegistry) {
+        return RetryTiers.parse(SERVICE_NAME, tiers, Clock.systemUTC(), meterRegistry);
+    }
+
+    /**
+     * Container factory cho RetryTierConsumer — 1 container / (topic gốc, tier), record listener đồng bộ
+     * (tier topic ít record, không cần batch / async).
+     *
+     * WHY AckMode.MANUAL?
+     * → Record chưa tới due-at → nack(remaining): consumer pause rồi đọc lại đúng record đó
+     *   thay vì sleep consumer thread.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> retryTierKafkaListenerContainerFactory(
+            ConsumerFactory<String, OrderEventAvro> consumerFactory,
+            KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+            ListenerThreads listenerThreads,
+            RetryTiers retryTiers) {
+
+        ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setObservationEnabled(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        applyListenerThreads(factory, listenerThreads);
+        factory.setCommonErrorHandler(errorHandler(kafkaTemplate, retryTiers));
+
+        return factory;
+    }
+
+    /**
+     * Re-consumer cho retry tier topic (common RetryTierConsumer) — service chỉ cung cấp handler
+     * theo topic gốc: tới hạn thì record đi lại đúng handler của listener chính.
+     *
+     * Luôn dùng record path, kể cả khi batch / async listener đang bật: tier chỉ chứa vài record lỗi —
+     * gom batch hay fan-out không được gì, còn record path dedup theo orderId như 2 mode kia.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "kafka.retry-topics.enabled", havingValue = "true")
+    public RetryTierConsumer retryTierConsumer(
+            RetryTiers retryTiers,
+            @Qualifier("retryTierKafkaListenerContainerFactory")
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> containerFactory,
+            PaymentKafkaConsumer paymentKafkaConsumer) {
+        return new RetryTierConsumer(retryTiers, containerFactory,
+                Map.of(KafkaTopics.ORDER_VALIDATED, paymentKafkaConsumer::onOrderValidated));
+    }
+
+    private DefaultErrorHandler errorHandler(KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+                                             RetryTiers retryTiers) {
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer(kafkaTemplate, retryTiers),
+                backOff(retryTiers));
+        return errorHandler;
+    }
+
+    /** retryTiers null → <topic>.DLT; có → tier kế tiếp (RetryTiers.destination), hết tier mới .DLT. */
+    private static DeadLetterPublishingRecoverer recoverer(KafkaTemplate<String, OrderEventAvro> kafkaTemplate,
+                                                           RetryTiers retryTiers) {
+        if (retryTiers == null) {
+            return new DeadLetterPublishingRecoverer(kafkaTemplate);
+        }
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                retryTiers::destination);
+        recoverer.setHeadersFunction(retryTiers::headers);
+        return recoverer;
+    }
+
+    /**
+     * ExponentialBackOff: 1s → 2s → 4s → 8s → 10s (max), ~3 retries.
+     * Retry topic bật → không retry tại chỗ, recoverer publish sang tier ngay lần lỗi đầu.
+     */
+    private static BackOff backOff(RetryTiers retryTiers) {
+        if (retryTiers != null) {
+            return new FixedBackOff(0L, 0L);
+        }
         ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
         backOff.setMaxInterval(10000L);
         backOff.setMaxElapsedTime(30000L);
+        return backOff;
+    }
 
-        factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer, backOff));
+    /**
+     * virtual → consumer thread là virtual thread + record giữ DB permit từ intercept tới afterRecord.
+     * clearThreadState (consumer dừng) trả permit nếu record cuối chưa đi tới afterRecord.
+     */
+    private static void applyListenerThreads(
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory,
+            ListenerThreads listenerThreads) {
+        if (!listenerThreads.isVirtual()) {
+            return;
+        }
+        factory.getContainerProperties().setListenerTaskExecutor(
+                new SimpleAsyncTaskExecutor(listenerThreads.threadFactory(SERVICE_NAME + "-listener-")));
+        factory.setRecordInterceptor(new RecordInterceptor<>() {
+            @Override
+            public ConsumerRecord<String, OrderEventAvro> intercept(ConsumerRecord<String, OrderEventAvro> record,
+                                                                    Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.acquireDbPermit();
+                return record;
+            }
 
-        return factory;
+            @Override
+            public void afterRecord(ConsumerRecord<String, OrderEventAvro> record,
+                                    Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+
+            @Override
+            public void clearThreadState(Consumer<?, ?> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+        });
+    }
+
+    /** Batch: 1 permit cho cả poll — giữ từ intercept tới success/failure. */
+    private static void applyBatchListenerThreads(
+            ConcurrentKafkaListenerContainerFactory<String, OrderEventAvro> factory,
+            ListenerThreads listenerThreads) {
+        if (!listenerThreads.isVirtual()) {
+            return;
+        }
+        factory.getContainerProperties().setListenerTaskExecutor(
+                new SimpleAsyncTaskExecutor(listenerThreads.threadFactory(SERVICE_NAME + "-batch-listener-")));
+        factory.setBatchInterceptor(new BatchInterceptor<>() {
+            @Override
+            public ConsumerRecords<String, OrderEventAvro> intercept(ConsumerRecords<String, OrderEventAvro> records,
+                                                                     Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.acquireDbPermit();
+                return records;
+            }
+
+            @Override
+            public void success(ConsumerRecords<String, OrderEventAvro> records,
+                                Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+
+            @Override
+            public void failure(ConsumerRecords<String, OrderEventAvro> records, Exception exception,
+                                Consumer<String, OrderEventAvro> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+
+            @Override
+            public void clearThreadState(Consumer<?, ?> consumer) {
+                listenerThreads.releaseDbPermit();
+            }
+        });
     }
 }
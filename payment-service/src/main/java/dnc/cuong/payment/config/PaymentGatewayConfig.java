@@ -0,0 +1,44 @@
+package dnc.cuong.payment.config;
+
+import dnc.cuong.payment.gateway.PaymentGateway;
+import dnc.cuong.payment.gateway.SimulatedPaymentGateway;
+import dnc.cuong.payment.gateway.ThresholdPaymentGateway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Chọn PaymentGateway theo payment.gateway.type:
+ * - threshold (mặc định): rule hạn mức cũ, complete ngay.
+ * - simulated: latency + decline + lỗi tạm thời giả lập (SimulatedPaymentGateway).
+ *
+ * Gateway thật (Stripe, VNPay) thêm 1 @Bean với giá trị type riêng — PaymentService chỉ thấy SPI.
+ */
+@Configuration
+public class PaymentGatewayConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "payment.gateway.type", havingValue = "threshold", matchIfMissing = true)
+    public PaymentGateway thresholdPaymentGateway(
+            @Value("${payment.gateway.max-amount:10000}") BigDecimal maxAmount) {
+        return new ThresholdPaymentGateway(maxAmount);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "payment.gateway.type", havingValue = "simulated")
+    public SimulatedPaymentGateway simulatedPaymentGateway(
+            @Value("${payment.gateway.max-amount:10000}") BigDecimal maxAmount,
+            @Value("${payment.gateway.simulator.latency-median-ms:300}") long latencyMedianMs,
+            @Value("${payment.gateway.simulator.latency-p99-ms:2000}") long latencyP99Ms,
+            @Value("${payment.gateway.simulator.timeout-ms:3000}") long timeoutMs,
+            @Value("${payment.gateway.simulator.decline-rate:0.02}") double declineRate,
+            @Value("${payment.gateway.simulator.error-rate:0.01}") double errorRate) {
+        return new SimulatedPaymentGateway(new ThresholdPaymentGateway(maxAmount),
+                new SimulatedPaymentGateway.Settings(latencyMedianMs, latencyP99Ms, timeoutMs, declineRate, errorRate),
+                new Random());
+    }
+}
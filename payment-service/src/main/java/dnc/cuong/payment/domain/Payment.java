@@ -18,9 +18,15 @@ import java.util.UUID;
  * → Audit trail: biết order nào đã thanh toán, khi nào, bao nhiêu.
  * → Idempotency: check trùng orderId trước khi xử lý lại (Step 6).
  * → Reconciliation: đối soát với payment gateway nếu có.
+ *
+ * WHY unique index trên order_id?
+ * → Dedup theo eventId không chặn được order.validated phát lại với eventId MỚI (inventory replay).
+ *   Mỗi order tối đa 1 Payment (SUCCESS hoặc FAILED) — DB đảm bảo, kể cả giữa nhiều instance.
+ * → Cũng là index cho lookup theo orderId (trước đây full scan).
  */
 @Entity
-@Table(name = "payments")
+@Table(name = "payments",
+        indexes = @Index(name = "uk_payments_order_id", columnList = "order_id", unique = true))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,18 @@
+package dnc.cuong.payment.domain;
+
+/**
+ * INSERT Payment bỏ qua khi order đã có Payment — JDBC, ngoài persistence context.
+ *
+ * WHY không existsByOrderId() rồi save()?
+ * → 2 round-trip / order, và 2 instance cùng thấy "chưa có" rồi cùng INSERT.
+ *   ON CONFLICT DO NOTHING: 1 round-trip, uk_payments_order_id quyết định ai thắng.
+ */
+public interface PaymentInsertOperations {
+
+    /**
+     * Gán id + createdAt cho payment rồi INSERT ... ON CONFLICT DO NOTHING.
+     *
+     * @return false nếu order đã có Payment — không có gì được ghi
+     */
+    boolean insertIfAbsent(Payment payment);
+}
@@ -0,0 +1,44 @@
+package dnc.cuong.payment.domain;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * JDBC implementation của PaymentInsertOperations — Spring Data ghép vào PaymentRepository theo hậu tố Impl.
+ *
+ * JdbcTemplate dùng chung connection của JpaTransactionManager → INSERT chạy trong transaction của caller,
+ * commit / rollback cùng processed_events.
+ *
+ * WHY ON CONFLICT (order_id) thay vì ON CONFLICT DO NOTHING trơn?
+ * → Không chỉ định cột thì thiếu uk_payments_order_id (ddl-auto update không tạo được vì dữ liệu
+ *   cũ trùng order) vẫn chạy êm — mỗi lần phát lại ghi thêm 1 Payment, không ai biết.
+ * → Có conflict target: Postgres báo lỗi ngay khi không có unique index trên order_id.
+ *   Index được đảm bảo lúc startup bởi PaymentOrderIdIndexMigration.
+ */
+public class PaymentInsertOperationsImpl implements PaymentInsertOperations {
+
+    static final String INSERT_IF_ABSENT_SQL = """
+            INSERT INTO payments (id, order_id, customer_id, amount, status, failure_reason, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (order_id) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PaymentInsertOperationsImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean insertIfAbsent(Payment payment) {
+        payment.setId(UUID.randomUUID());
+        payment.setCreatedAt(Instant.now());
+        return jdbcTemplate.update(INSERT_IF_ABSENT_SQL,
+                payment.getId(), payment.getOrderId(), payment.getCustomerId(), payment.getAmount(),
+                payment.getStatus().name(), payment.getFailureReason(),
+                Timestamp.from(payment.getCreatedAt())) == 1;
+    }
+}
@@ -0,0 +1,60 @@
+package dnc.cuong.payment.domain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đảm bảo uk_payments_order_id tồn tại lúc startup — có order trùng Payment thì dừng startup.
+ *
+ * WHY không để ddl-auto update tạo index?
+ * → payment-service không dùng Flyway: Hibernate tạo index cho DB mới, nhưng DB cũ đã có
+ *   order trùng Payment (trước khi có dedup theo orderId) → CREATE UNIQUE INDEX fail,
+ *   Hibernate chỉ log warning rồi chạy tiếp không index → INSERT ... ON CONFLICT (order_id) lỗi.
+ *
+ * Thứ tự:
+ * 1. CREATE UNIQUE INDEX IF NOT EXISTS — DB mới / đã có index: xong, không quét bảng
+ * 2. Fail → liệt kê order_id có nhiều Payment, log từng order → startup fail
+ *
+ * WHY không tự xoá Payment trùng?
+ * → Order trùng Payment = khách bị trừ tiền 2 lần — chính các row đó là bằng chứng để hoàn tiền.
+ *   Đối soát (refund, giữ Payment nào) là việc của người vận hành; sau đó restart là tạo được index.
+ *
+ * DependsOn entityManagerFactory: chạy sau khi ddl-auto tạo / cập nhật bảng payments.
+ * Listener container start sau khi mọi singleton khởi tạo xong → chưa consume gì trước khi có index.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class PaymentOrderIdIndexMigration {
+
+    static final String CREATE_INDEX_SQL =
+            "CREATE UNIQUE INDEX IF NOT EXISTS uk_payments_order_id ON payments (order_id)";
+
+    static final String FIND_DUPLICATES_SQL = """
+            SELECT order_id, COUNT(*) AS payments FROM payments
+            GROUP BY order_id HAVING COUNT(*) > 1
+            ORDER BY order_id
+            """;
+
+    public PaymentOrderIdIndexMigration(JdbcTemplate jdbcTemplate) {
+        try {
+            jdbcTemplate.execute(CREATE_INDEX_SQL);
+        } catch (DataAccessException e) {
+            List<Map<String, Object>> duplicates = jdbcTemplate.queryForList(FIND_DUPLICATES_SQL);
+            if (duplicates.isEmpty()) {
+                throw e;
+            }
+            duplicates.forEach(row -> log.error("Duplicate payments for order | orderId={} | payments={}",
+                    row.get("order_id"), row.get("payments")));
+            throw new IllegalStateException("Cannot create uk_payments_order_id: " + duplicates.size()
+                    + " orders have more than one payment — reconcile (refund) them and remove the extra rows"
+                    + " before restarting", e);
+        }
+    }
+}
@@ -1,8 +1,21 @@
 package dnc.cuong.payment.domain;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
-public interface PaymentRepository extends JpaRepository<Payment, UUID> {
+public interface PaymentRepository extends JpaRepository<Payment, UUID>, PaymentInsertOperations {
+
+    /** orderId trong danh sách đã có Payment — dedup theo order cho cả batch (1 query, dùng uk_payments_order_id). */
+    @Query("SELECT p.orderId FROM Payment p WHERE p.orderId IN :orderIds")
+    List<UUID> findChargedOrderIds(@Param("orderIds") Collection<UUID> orderIds);
+
+    /** orderId có Payment gần đây — warm-up ChargedOrders lúc startup. */
+    @Query("SELECT p.orderId FROM Payment p WHERE p.createdAt >= :since")
+    List<UUID> findOrderIdsChargedSince(@Param("since") Instant since);
 }
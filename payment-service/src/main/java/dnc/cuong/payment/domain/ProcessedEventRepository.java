@@ -1,8 +0,0 @@
-package dnc.cuong.payment.domain;
-
-import org.springframework.data.jpa.repository.JpaRepository;
-
-import java.util.UUID;
-
-public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, UUID> {
-}
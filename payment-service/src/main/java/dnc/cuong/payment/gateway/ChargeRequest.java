@@ -0,0 +1,21 @@
+package dnc.cuong.payment.gateway;
+
+import dnc.cuong.common.event.OrderEvent;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * 1 lần charge gửi sang gateway.
+ *
+ * WHY idempotencyKey = orderId (không phải eventId)?
+ * → Retry, redeliver, hay order.validated phát lại với eventId mới → vẫn cùng key → gateway trả lại
+ *   kết quả lần trước thay vì trừ tiền lần 2 (Idempotency-Key của Stripe, vnp_TxnRef của VNPay).
+ * → Cùng đơn vị với uk_payments_order_id: 1 order = tối đa 1 lần trừ tiền.
+ */
+public record ChargeRequest(UUID idempotencyKey, UUID orderId, UUID customerId, BigDecimal amount) {
+
+    public static ChargeRequest from(OrderEvent event) {
+        return new ChargeRequest(event.orderId(), event.orderId(), event.customerId(), event.totalAmount());
+    }
+}
@@ -0,0 +1,18 @@
+package dnc.cuong.payment.gateway;
+
+/**
+ * Kết quả charge đã có quyết định từ gateway: approved, hoặc declined kèm lý do.
+ * Lỗi tạm thời không phải ChargeResult — future complete exceptionally (xem PaymentGateway).
+ */
+public record ChargeResult(boolean approved, String declineReason) {
+
+    private static final ChargeResult APPROVED = new ChargeResult(true, null);
+
+    public static ChargeResult approve() {
+        return APPROVED;
+    }
+
+    public static ChargeResult decline(String reason) {
+        return new ChargeResult(false, reason);
+    }
+}
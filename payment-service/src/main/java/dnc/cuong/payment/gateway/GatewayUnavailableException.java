@@ -0,0 +1,12 @@
+package dnc.cuong.payment.gateway;
+
+/**
+ * Gateway không trả lời được (timeout, 5xx, mất kết nối) — chưa biết tiền đã bị trừ hay chưa.
+ * Retry an toàn nhờ idempotencyKey; hết retry → DLT như lỗi xử lý khác.
+ */
+public class GatewayUnavailableException extends RuntimeException {
+
+    public GatewayUnavailableException(String message) {
+        super(message);
+    }
+}
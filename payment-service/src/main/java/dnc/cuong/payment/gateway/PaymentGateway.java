@@ -0,0 +1,23 @@
+package dnc.cuong.payment.gateway;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * SPI cổng thanh toán — adapter cho Stripe / VNPay / simulator cắm vào đây.
+ *
+ * WHY CompletableFuture thay vì trả ChargeResult trực tiếp?
+ * → Gateway thật mất 100ms-2s / charge. Gọi blocking trên consumer thread → 1 partition chỉ
+ *   charge được vài order/s và poll loop dễ vượt max.poll.interval.ms.
+ * → Future cho phép AsyncChargeDispatcher phát nhiều charge cùng lúc trên 1 partition.
+ *
+ * Contract cho adapter:
+ * - Không block thread gọi charge(); kết quả complete trên thread của adapter (I/O, scheduler).
+ * - Future LUÔN complete — adapter tự áp timeout (read timeout của HTTP client...).
+ * - Từ chối nghiệp vụ (thẻ hết tiền, vượt hạn mức) → ChargeResult.decline(reason).
+ * - Lỗi tạm thời (timeout, 5xx) → complete exceptionally với GatewayUnavailableException → retry.
+ * - Charge lại cùng idempotencyKey không được trừ tiền 2 lần (retry sau timeout là bình thường).
+ */
+public interface PaymentGateway {
+
+    CompletableFuture<ChargeResult> charge(ChargeRequest request);
+}
@@ -0,0 +1,98 @@
+package dnc.cuong.payment.gateway;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gateway giả lập chạy local (payment.gateway.type=simulated) — có latency và lỗi như gateway thật,
+ * để thử AsyncChargeDispatcher / backpressure mà không cần sandbox Stripe.
+ *
+ * Mỗi charge:
+ * 1. Latency ~ log-normal theo median + p99 (latency gateway thật lệch phải: đa số nhanh, đuôi dài).
+ * 2. Latency > timeout → fail GatewayUnavailableException đúng lúc timeout (như read timeout HTTP).
+ * 3. errorRate → GatewayUnavailableException (5xx) — lỗi tạm thời, được retry.
+ * 4. declineRate → declined ngẫu nhiên (issuer từ chối).
+ * 5. Còn lại → rule hạn mức của ThresholdPaymentGateway.
+ *
+ * WHY ScheduledExecutor thay vì Thread.sleep?
+ * → 1 thread giữ hàng nghìn charge đang "chờ" — giống I/O non-blocking của HTTP client async.
+ *   Sleep trên thread gọi sẽ block chính consumer thread mà SPI muốn tránh.
+ */
+public class SimulatedPaymentGateway implements PaymentGateway, AutoCloseable {
+
+    /** z-score của p99 phân phối chuẩn. */
+    private static final double Z_99 = 2.3263;
+
+    private final ThresholdPaymentGateway rule;
+    private final double medianMs;
+    private final double sigma;
+    private final long timeoutMs;
+    private final double declineRate;
+    private final double errorRate;
+    private final Random random;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("payment-gateway-sim").daemon(true).factory());
+
+    public SimulatedPaymentGateway(ThresholdPaymentGateway rule, Settings settings, Random random) {
+        if (settings.latencyMedianMs() < 0 || settings.latencyP99Ms() < settings.latencyMedianMs()) {
+            throw new IllegalArgumentException("Require 0 <= latency median <= p99: " + settings);
+        }
+        this.rule = rule;
+        this.medianMs = settings.latencyMedianMs();
+        this.sigma = settings.latencyMedianMs() == 0
+                ? 0
+                : Math.log((double) settings.latencyP99Ms() / settings.latencyMedianMs()) / Z_99;
+        this.timeoutMs = settings.timeoutMs();
+        this.declineRate = settings.declineRate();
+        this.errorRate = settings.errorRate();
+        this.random = random;
+    }
+
+    @Override
+    public CompletableFuture<ChargeResult> charge(ChargeRequest request) {
+        CompletableFuture<ChargeResult> future = new CompletableFuture<>();
+        long latencyMs = sampleLatencyMs();
+
+        if (latencyMs > timeoutMs) {
+            scheduler.schedule(() -> future.completeExceptionally(new GatewayUnavailableException(
+                    "Gateway timed out after " + timeoutMs + "ms | orderId=" + request.orderId())),
+                    timeoutMs, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+        double roll = random.nextDouble();
+        scheduler.schedule(() -> {
+            if (roll < errorRate) {
+                future.completeExceptionally(new GatewayUnavailableException(
+                        "Simulated gateway error | orderId=" + request.orderId()));
+            } else if (roll < errorRate + declineRate) {
+                future.complete(ChargeResult.decline("Payment declined by issuer (simulated)"));
+            } else {
+                future.complete(rule.decide(request));
+            }
+        }, latencyMs, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    long sampleLatencyMs() {
+        return Math.round(medianMs * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @param latencyMedianMs p50 latency; 0 → complete ngay (vẫn qua scheduler thread)
+     * @param latencyP99Ms    p99 latency, >= median — độ dài đuôi
+     * @param timeoutMs       charge chậm hơn → GatewayUnavailableException
+     * @param declineRate     xác suất declined ngẫu nhiên
+     * @param errorRate       xác suất lỗi tạm thời
+     */
+    public record Settings(long latencyMedianMs, long latencyP99Ms, long timeoutMs,
+                           double declineRate, double errorRate) {}
+}
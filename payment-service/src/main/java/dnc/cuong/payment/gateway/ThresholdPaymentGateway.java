@@ -0,0 +1,36 @@
+package dnc.cuong.payment.gateway;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Gateway mặc định (payment.gateway.type=threshold) — rule cũ của PaymentService:
+ * - amount <= maxAmount → approved
+ * - amount > maxAmount  → declined
+ *
+ * WHY giữ làm mặc định?
+ * → Deterministic: test và demo biết trước order nào fail, kết quả như trước khi có SPI.
+ * → Complete ngay (không I/O) → record / batch listener không đổi latency.
+ */
+public class ThresholdPaymentGateway implements PaymentGateway {
+
+    private final BigDecimal maxAmount;
+
+    public ThresholdPaymentGateway(BigDecimal maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+
+    @Override
+    public CompletableFuture<ChargeResult> charge(ChargeRequest request) {
+        return CompletableFuture.completedFuture(decide(request));
+    }
+
+    /** Rule hạn mức — SimulatedPaymentGateway dùng lại sau khi qua latency / lỗi giả lập. */
+    ChargeResult decide(ChargeRequest request) {
+        if (request.amount().compareTo(maxAmount) <= 0) {
+            return ChargeResult.approve();
+        }
+        return ChargeResult.decline(String.format("Payment declined: amount %s exceeds limit %s",
+                request.amount(), maxAmount));
+    }
+}
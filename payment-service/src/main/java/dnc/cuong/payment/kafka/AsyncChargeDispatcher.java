@@ -0,0 +1,197 @@
+package dnc.cuong.payment.kafka;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.concurrency.ListenerThreads;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.payment.service.PaymentService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Charge order.validated bất đồng bộ — nhiều charge cùng lúc trên 1 partition
+ * (payment.gateway.async.enabled=true).
+ *
+ * Luồng 1 record:
+ * consumer thread: đợi slot in-flight → nối vào lane theo hash(orderId) → return (poll tiếp).
+ * lane tới lượt: dedup → gateway.charge() (không giữ thread nào trong lúc gateway xử lý)
+ * → charge xong: completeCharge (giữ DB permit) → ack → lane mở cho record kế tiếp.
+ *
+ * WHY lane là chuỗi CompletableFuture thay vì KeyOrderedExecutor?
+ * → Lane của KeyOrderedExecutor là 1 thread: charge 1s giữ thread 1s → song song = số lane.
+ *   Lane ở đây chỉ là "future cuối" — không tốn thread, nên lanes có thể là hàng nghìn;
+ *   song song thật bị chặn bởi max-in-flight.
+ * → Vẫn là số lane cố định (không map theo key) — cùng lý do như KeyOrderedExecutor.
+ *
+ * Thứ tự và offset:
+ * - Cùng orderId → cùng lane → record sau chỉ bắt đầu khi record trước đã persist + ack (kể cả retry).
+ * - Ack thứ tự bất kỳ; container (AckMode.MANUAL + asyncAcks) chỉ commit tới offset thấp nhất
+ *   chưa xong → crash giữa chừng chỉ gây redeliver, không mất record.
+ *
+ * WHY Semaphore max-in-flight trên consumer thread?
+ * → Backpressure: gateway chậm → slot cạn → consumer thread đợi thay vì dồn charge vô hạn
+ *   vào memory / gateway. asyncAcks cũng pause partition tới khi poll trước ack hết.
+ *
+ * Latency cho flow control: listener return ngay sau dispatch (observation ~0ms) → phần persist
+ * sau charge (giữ DB permit) ghi vào listener.handler.latency với id LISTENER_ID. Thời gian gateway
+ * không tính — flow control bảo vệ DB pool, không phải gateway (đã có max-in-flight).
+ *
+ * Retry/DLT như KeyOrderedDispatcher của order-service (listener đã return, error handler
+ * không còn thấy lỗi) — nhưng đợi backoff bằng delayedExecutor, không sleep thread.
+ */
+@Slf4j
+public class AsyncChargeDispatcher implements AutoCloseable {
+
+    /** Id của @KafkaListener dùng dispatcher — tag latency handler. */
+    public static final String LISTENER_ID = "payment-order-validated-async";
+
+    private static final long MAX_RECOVER_WAIT_MS = 10_000L;
+
+    private final PaymentService paymentService;
+    private final ListenerThreads listenerThreads;
+    private final ExecutorService workers;
+    private final ConsumerRecordRecoverer recoverer;
+    private final BackOff backOff;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final AtomicReferenceArray<CompletableFuture<Void>> laneTails;
+
+    /**
+     * @param workers chạy dedup + persist sau khi charge xong — không chạy trên thread của gateway
+     */
+    public AsyncChargeDispatcher(PaymentService paymentService, ListenerThreads listenerThreads,
+                                 ExecutorService workers, ConsumerRecordRecoverer recoverer, BackOff backOff,
+                                 int lanes, int maxInFlight, MeterRegistry meterRegistry) {
+        if (lanes < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("lanes and maxInFlight must be >= 1: " + lanes + ", " + maxInFlight);
+        }
+        this.paymentService = paymentService;
+        this.listenerThreads = listenerThreads;
+        this.workers = workers;
+        this.recoverer = recoverer;
+        this.backOff = backOff;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.laneTails = new AtomicReferenceArray<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            laneTails.set(i, CompletableFuture.completedFuture(null));
+        }
+        Gauge.builder("payments.gateway.in_flight", inFlight, s -> maxInFlight - s.availablePermits())
+                .description("order.validated record đã dispatch, chưa charge + persist xong")
+                .register(meterRegistry);
+    }
+
+    public void dispatch(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack) {
+        inFlight.acquireUninterruptibly();
+
+        // Record không key → lane theo partition: vẫn giữ thứ tự partition cho record đó
+        Object key = record.key() != null ? record.key() : record.partition();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = laneTails.getAndSet(laneOf(key), done);
+
+        previous.thenComposeAsync(ignored -> process(record, ack), workers)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        // Chỉ khi shutdown (workers từ chối task) — không ack, owner sau nhận lại
+                        log.warn("Async charge abandoned, record will be redelivered | topic={} | offset={} | error={}",
+                                record.topic(), record.offset(), error.getMessage());
+                    }
+                    inFlight.release();
+                    done.complete(null);
+                });
+    }
+
+    int laneOf(Object key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), laneTails.length());
+    }
+
+    int inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    CompletableFuture<Void> process(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack) {
+        return attempt(record, ack, backOff.start(), 1);
+    }
+
+    private CompletableFuture<Void> attempt(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack,
+                                            BackOffExecution backOffExecution, int attempt) {
+        CompletableFuture<Void> step;
+        try {
+            OrderEvent event = OrderEventMapper.fromAvro(record.value());
+            step = paymentService.isDuplicate(event)
+                    ? CompletableFuture.completedFuture(null)
+                    : paymentService.charge(event).thenAcceptAsync(result -> listenerThreads.runHandler(LISTENER_ID,
+                            () -> paymentService.completeCharge(event, result)), workers);
+        } catch (RuntimeException e) {
+            step = CompletableFuture.failedFuture(e);
+        }
+
+        return step.handle((ignored, error) -> error).thenComposeAsync(error -> {
+            if (error == null) {
+                ack.acknowledge();
+                return CompletableFuture.completedFuture(null);
+            }
+            Exception cause = unwrap(error);
+            long delay = backOffExecution.nextBackOff();
+            if (delay == BackOffExecution.STOP) {
+                return recover(record, ack, cause);
+            }
+            log.warn("Async charge FAILED, retrying | topic={} | key={} | offset={} | attempt={} | error={}",
+                    record.topic(), record.key(), record.offset(), attempt, cause.getMessage());
+            return CompletableFuture.runAsync(() -> { }, after(delay))
+                    .thenCompose(ignored -> attempt(record, ack, backOffExecution, attempt + 1));
+        }, workers);
+    }
+
+    /** DLT publish fail → không ack, thử lại mỗi MAX_RECOVER_WAIT_MS: lane (và partition) đứng lại. */
+    private CompletableFuture<Void> recover(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack,
+                                            Exception cause) {
+        try {
+            recoverer.accept(record, cause);
+            ack.acknowledge();
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            log.error("DLT publish FAILED, lane blocked until it succeeds | topic={} | offset={} | error={}",
+                    record.topic(), record.offset(), e.getMessage());
+            return CompletableFuture.runAsync(() -> { }, after(MAX_RECOVER_WAIT_MS))
+                    .thenCompose(ignored -> recover(record, ack, cause));
+        }
+    }
+
+    private Executor after(long delayMs) {
+        return CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, workers);
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception e ? e : new IllegalStateException(cause);
+    }
+
+    /** Đợi charge in-flight xong (tối đa 30s) rồi dừng workers — record chưa xong sẽ được redeliver. */
+    @Override
+    public void close() {
+        try {
+            if (inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) {
+                inFlight.release(maxInFlight);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+    }
+}
@@ -2,32 +2,51 @@ package dnc.cuong.payment.kafka;
 
 import dnc.cuong.common.avro.OrderEventAvro;
 import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.concurrency.ListenerThreads;
 import dnc.cuong.common.event.KafkaTopics;
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.payment.service.PaymentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Kafka Consumer — listen topic order.validated (Avro format).
  *
  * WHY Payment Service consume order.validated (không phải order.placed)?
  * → Choreography Saga: payment chỉ xử lý SAU KHI stock đã validate thành công.
  * → Nếu stock thiếu → không có order.validated → payment không chạy.
+ *
+ * order.validated có 3 mode:
+ * - mặc định: onOrderValidated — 1 record / 1 transaction (charge ngoài transaction).
+ * - payment.batch-listener.enabled=true: onOrderValidatedBatch — cả poll / 1 transaction (charge ngoài transaction).
+ * - payment.gateway.async.enabled=true: onOrderValidatedAsync — charge song song qua
+ *   AsyncChargeDispatcher (ưu tiên hơn batch nếu bật cả 2).
+ * Cả 3 listener cùng groupId; chỉ listener được start mới join group.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentKafkaConsumer {
 
+    static final String BATCH_LISTENER_ID = "payment-order-validated-batch";
+
     private final PaymentService paymentService;
+    private final ListenerThreads listenerThreads;
+    private final AsyncChargeDispatcher asyncChargeDispatcher;
 
     @KafkaListener(
             topics = KafkaTopics.ORDER_VALIDATED,
             groupId = "payment-service-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "kafkaListenerContainerFactory",
+            autoStartup = "#{!${payment.batch-listener.enabled:false} && !${payment.gateway.async.enabled:false}}"
     )
     public void onOrderValidated(OrderEventAvro avroEvent) {
         OrderEvent event = OrderEventMapper.fromAvro(avroEvent);
@@ -39,4 +58,77 @@ public class PaymentKafkaConsumer {
 
         log.info("Finished processing [{}] | orderId={}", KafkaTopics.ORDER_VALIDATED, event.orderId());
     }
+
+    /**
+     * Batch mode: nhận cả poll order.validated (tối đa max.poll.records).
+     *
+     * WHY fallback từng record khi batch fail?
+     * → Charge lỗi → chưa ghi gì; transaction batch rollback → chưa order nào được ghi.
+     * → Chạy lại từng order, mỗi order 1 transaction (idempotent nhờ processed_events).
+     * → Order lỗi tại index i → BatchListenerFailedException(i): offset trước i được commit,
+     *   error handler retry/DLT đúng record i.
+     */
+    @KafkaListener(
+            id = BATCH_LISTENER_ID,
+            topics = KafkaTopics.ORDER_VALIDATED,
+            groupId = "payment-service-group",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{${payment.batch-listener.enabled:false} && !${payment.gateway.async.enabled:false}}"
+    )
+    public void onOrderValidatedBatch(List<OrderEventAvro> avroEvents) {
+        // Batch listener không có observation spring.kafka.listener — flow control đọc timer này
+        long start = System.nanoTime();
+        try {
+            log.info("Received batch from [{}] | size={}", KafkaTopics.ORDER_VALIDATED, avroEvents.size());
+
+            List<OrderEvent> events = new ArrayList<>(avroEvents.size());
+            for (int i = 0; i < avroEvents.size(); i++) {
+                try {
+                    events.add(OrderEventMapper.fromAvro(avroEvents.get(i)));
+                } catch (RuntimeException e) {
+                    // Xử lý phần trước record lỗi, rồi báo index cho error handler
+                    processBatch(events);
+                    throw new BatchListenerFailedException("Cannot map order.validated record", e, i);
+                }
+            }
+
+            processBatch(events);
+
+            log.info("Finished processing batch [{}] | size={}", KafkaTopics.ORDER_VALIDATED, events.size());
+        } finally {
+            listenerThreads.recordBatch(BATCH_LISTENER_ID, System.nanoTime() - start, avroEvents.size());
+        }
+    }
+
+    /**
+     * Async mode: giao record cho AsyncChargeDispatcher rồi return ngay — consumer thread không đợi
+     * gateway. Dispatcher ack khi charge + persist xong (hoặc record đã vào DLT).
+     */
+    @KafkaListener(
+            id = AsyncChargeDispatcher.LISTENER_ID,
+            topics = KafkaTopics.ORDER_VALIDATED,
+            groupId = "payment-service-group",
+            containerFactory = "asyncKafkaListenerContainerFactory",
+            autoStartup = "${payment.gateway.async.enabled:false}"
+    )
+    public void onOrderValidatedAsync(ConsumerRecord<String, OrderEventAvro> record, Acknowledgment ack) {
+        asyncChargeDispatcher.dispatch(record, ack);
+    }
+
+    private void processBatch(List<OrderEvent> events) {
+        try {
+            paymentService.processOrderValidatedBatch(events);
+        } catch (RuntimeException batchFailure) {
+            log.warn("Batch processing FAILED, falling back to per-record | size={} | error={}",
+                    events.size(), batchFailure.getMessage());
+
+            for (int i = 0; i < events.size(); i++) {
+                try {
+                    paymentService.processOrderValidated(events.get(i));
+                } catch (RuntimeException e) {
+                    throw new BatchListenerFailedException("Failed to process order.validated record", e, i);
+                }
+            }
+        }
+    }
 }
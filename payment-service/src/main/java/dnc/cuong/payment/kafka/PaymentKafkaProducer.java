@@ -4,6 +4,7 @@ import dnc.cuong.common.avro.OrderEventAvro;
 import dnc.cuong.common.avro.OrderEventMapper;
 import dnc.cuong.common.event.KafkaTopics;
 import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.outbox.OutboxWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -18,6 +19,10 @@ import java.util.concurrent.CompletableFuture;
  * Publish 2 loại event:
  * - order.paid: payment thành công → Order Service cập nhật COMPLETED
  * - payment.failed: payment thất bại → trigger compensation (Inventory release stock)
+ *
+ * WHY check outboxWriter.isEnabled()?
+ * → outbox.enabled=true: event ghi vào bảng outbox cùng transaction của service,
+ *   OutboxRelay publish sau commit → hết dual-write.
  */
 @Component
 @RequiredArgsConstructor
@@ -27,6 +32,7 @@ public class PaymentKafkaProducer {
     private static final String SOURCE = "payment-service";
 
     private final KafkaTemplate<String, OrderEventAvro> kafkaTemplate;
+    private final OutboxWriter outboxWriter;
 
     public CompletableFuture<SendResult<String, OrderEventAvro>> sendOrderPaid(OrderEvent event) {
         String key = event.orderId().toString();
@@ -35,6 +41,11 @@ public class PaymentKafkaProducer {
         log.info("Publishing event to [{}] | key={} | eventId={} | status={}",
                 KafkaTopics.ORDER_PAID, key, event.eventId(), event.status());
 
+        if (outboxWriter.isEnabled()) {
+            outboxWriter.append(KafkaTopics.ORDER_PAID, key, avroEvent);
+            return CompletableFuture.completedFuture(null);
+        }
+
         CompletableFuture<SendResult<String, OrderEventAvro>> future =
                 kafkaTemplate.send(KafkaTopics.ORDER_PAID, key, avroEvent);
 
@@ -59,6 +70,11 @@ public class PaymentKafkaProducer {
         log.info("Publishing event to [{}] | key={} | eventId={} | status={}",
                 KafkaTopics.PAYMENT_FAILED, key, event.eventId(), event.status());
 
+        if (outboxWriter.isEnabled()) {
+            outboxWriter.append(KafkaTopics.PAYMENT_FAILED, key, avroEvent);
+            return CompletableFuture.completedFuture(null);
+        }
+
         CompletableFuture<SendResult<String, OrderEventAvro>> future =
                 kafkaTemplate.send(KafkaTopics.PAYMENT_FAILED, key, avroEvent);
 
@@ -0,0 +1,87 @@
+package dnc.cuong.payment.service;
+
+import dnc.cuong.common.idempotency.RecentIdCache;
+import dnc.cuong.common.tx.AfterCommit;
+import dnc.cuong.payment.domain.PaymentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * orderId vừa có Payment (SUCCESS hoặc FAILED) — check nhanh trước khi gọi gateway.
+ *
+ * WHY LRU trước unique index?
+ * → order.validated phát lại (inventory replay) thường tới ngay sau bản gốc → LRU hit:
+ *   không charge, không chạm DB.
+ * → LRU miss KHÔNG có nghĩa là chưa charge (instance khác, LRU bị evict): record path không
+ *   SELECT mà để INSERT ... ON CONFLICT DO NOTHING (uk_payments_order_id) quyết định.
+ *
+ * Giống RecentIdCache trong IdempotencyGuard: chỉ chứa orderId đã commit — markCharged defer tới afterCommit.
+ */
+@Component
+@Slf4j
+public class ChargedOrders {
+
+    private final RecentIdCache recent;
+    private final PaymentRepository paymentRepository;
+
+    public ChargedOrders(PaymentRepository paymentRepository,
+                         @Value("${idempotency.orders.recent-capacity:100000}") int capacity,
+                         @Value("${idempotency.guard.warm-up-hours:24}") long warmUpHours,
+                         MeterRegistry meterRegistry) {
+        this.paymentRepository = paymentRepository;
+        this.recent = new RecentIdCache(capacity);
+        Gauge.builder("payments.charged_orders.recent.size", recent, RecentIdCache::size)
+                .description("orderId có Payment trong LRU").register(meterRegistry);
+
+        List<UUID> orderIds = paymentRepository.findOrderIdsChargedSince(
+                Instant.now().minus(warmUpHours, ChronoUnit.HOURS));
+        orderIds.forEach(recent::add);
+        log.info("ChargedOrders warmed up | orderIds={} | windowHours={}", orderIds.size(), warmUpHours);
+    }
+
+    /** Chỉ LRU — false nghĩa là "chưa biết", không phải "chưa charge". */
+    public boolean isRecentlyCharged(UUID orderId) {
+        return recent.contains(orderId);
+    }
+
+    /**
+     * Batch: LRU trước, orderId còn lại hỏi DB trong 1 query — batch persist bằng saveAll nên
+     * không có ON CONFLICT làm lưới; unique index vẫn chặn race (batch rollback → fallback từng record).
+     */
+    public Set<UUID> charged(Collection<UUID> orderIds) {
+        Set<UUID> charged = new HashSet<>();
+        List<UUID> unknown = new ArrayList<>();
+        for (UUID orderId : orderIds) {
+            if (recent.contains(orderId)) {
+                charged.add(orderId);
+            } else {
+                unknown.add(orderId);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            charged.addAll(paymentRepository.findChargedOrderIds(unknown));
+        }
+        return charged;
+    }
+
+    public void markCharged(UUID orderId) {
+        AfterCommit.run(() -> recent.add(orderId));
+    }
+
+    public void markCharged(Collection<UUID> orderIds) {
+        List<UUID> ids = List.copyOf(orderIds);
+        AfterCommit.run(() -> ids.forEach(recent::add));
+    }
+}
@@ -3,48 +3,74 @@ package dnc.cuong.payment.service;
 import dnc.cuong.common.event.KafkaTopics;
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.common.idempotency.IdempotencyGuard;
 import dnc.cuong.payment.domain.Payment;
 import dnc.cuong.payment.domain.PaymentRepository;
 import dnc.cuong.payment.domain.PaymentStatus;
-import dnc.cuong.payment.domain.ProcessedEvent;
-import dnc.cuong.payment.domain.ProcessedEventRepository;
+import dnc.cuong.payment.gateway.ChargeRequest;
+import dnc.cuong.payment.gateway.ChargeResult;
+import dnc.cuong.payment.gateway.PaymentGateway;
 import dnc.cuong.payment.kafka.PaymentKafkaProducer;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * Business logic cho Payment — simulate thanh toán.
+ * Business logic cho Payment — charge qua PaymentGateway, lưu Payment, publish kết quả.
  *
- * Rule đơn giản để test cả happy path và failure path:
- * - totalAmount <= 10,000 → payment SUCCESS → publish order.paid
- * - totalAmount > 10,000  → payment FAILED  → publish payment.failed
+ * - approved → payment SUCCESS → publish order.paid
+ * - declined → payment FAILED  → publish payment.failed
  *
- * WHY dùng amount threshold thay vì random?
- * → Deterministic: test lặp lại được kết quả.
- * → Dễ demo: biết trước order nào sẽ fail.
- * → Trong production: thay bằng real payment gateway (Stripe, VNPay, etc).
+ * Quyết định approve/decline thuộc gateway (payment.gateway.type). Mặc định ThresholdPaymentGateway:
+ * totalAmount <= 10,000 → approved — deterministic, test lặp lại được kết quả.
+ *
+ * 3 đường gọi, cùng charge() + outcome():
+ * - processOrderValidated: đợi charge ngay trong listener (gateway complete ngay thì không tốn gì).
+ * - processOrderValidatedBatch: phát charge cả batch cùng lúc rồi mới đợi.
+ * - completeCharge: AsyncChargeDispatcher đã có ChargeResult, chỉ còn persist + publish.
+ *
+ * WHY charge nằm NGOÀI transaction ở cả 3 đường?
+ * → Transaction giữ 1 connection Hikari suốt thời gian mở. Đợi gateway (hàng trăm ms) trong đó
+ *   → pool cạn theo số charge đang chờ, không theo số query thật sự chạy.
+ * → Dedup chỉ đọc + charge trước, sau đó 1 transaction ngắn: claim eventId + INSERT Payment + publish.
+ *   Record bị xử lý 2 lần giữa 2 bước (rebalance) → claim thất bại, gateway dedup theo orderId.
+ *
+ * Idempotency 2 tầng:
+ * - eventId (IdempotencyGuard + processed_events) — redelivery của cùng message.
+ * - orderId (ChargedOrders + uk_payments_order_id) — order.validated phát lại với eventId mới.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentService {
 
-    private static final BigDecimal MAX_AMOUNT = new BigDecimal("10000");
-
     private final PaymentRepository paymentRepository;
-    private final ProcessedEventRepository processedEventRepository;
+    private final IdempotencyGuard idempotencyGuard;
+    private final ChargedOrders chargedOrders;
     private final PaymentKafkaProducer kafkaProducer;
+    private final PaymentGateway paymentGateway;
+    private final TransactionTemplate transactionTemplate;
     private final MeterRegistry meterRegistry;
 
     private Counter paymentsSuccessCounter;
     private Counter paymentsFailedCounter;
+    private DistributionSummary batchSizeSummary;
+    private Counter duplicateOrderCounter;
 
     @PostConstruct
     void initMetrics() {
@@ -52,81 +78,244 @@ public class PaymentService {
                 .description("Total successful payments").register(meterRegistry);
         paymentsFailedCounter = Counter.builder("payments.failed.total")
                 .description("Total failed payments").register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("payments.batch.size")
+                .description("Orders per order.validated batch (batch listener mode)").register(meterRegistry);
+        duplicateOrderCounter = Counter.builder("payments.duplicate_order.total")
+                .description("order.validated bỏ qua vì order đã có Payment (eventId khác)").register(meterRegistry);
     }
 
     /**
-     * Xử lý event order.validated: simulate payment.
+     * Xử lý event order.validated.
      *
      * Flow:
-     * 1. Check amount threshold
-     * 2. Save Payment record vào DB
-     * 3. Publish kết quả lên Kafka
+     * 1. Charge qua gateway (đợi kết quả) — chưa mở transaction
+     * 2. Save Payment record vào DB  ┐ 1 transaction ngắn
+     * 3. Publish kết quả lên Kafka   ┘
      */
-    @Transactional
     public void processOrderValidated(OrderEvent event) {
         // Idempotency check: prevent double charge!
-        if (processedEventRepository.existsById(event.eventId())) {
+        if (isDuplicate(event)) {
+            return;
+        }
+        Outcome outcome = outcome(event, await(charge(event)));
+        transactionTemplate.executeWithoutResult(status -> persist(event, outcome));
+    }
+
+    /**
+     * Gửi charge sang gateway — không block. Timer payments.gateway.latency theo outcome
+     * (approved | declined | error).
+     */
+    public CompletableFuture<ChargeResult> charge(OrderEvent event) {
+        log.info("Processing payment | orderId={} | amount={}", event.orderId(), event.totalAmount());
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return paymentGateway.charge(ChargeRequest.from(event)).whenComplete((result, error) ->
+                sample.stop(meterRegistry.timer("payments.gateway.latency", "outcome",
+                        error != null ? "error" : result.approved() ? "approved" : "declined")));
+    }
+
+    /**
+     * Event đã xử lý rồi (redeliver), hoặc order vừa có Payment (LRU) → true. Gọi TRƯỚC charge
+     * để không gửi lại charge — chỉ đọc; persist() vẫn claim eventId + INSERT ON CONFLICT.
+     */
+    public boolean isDuplicate(OrderEvent event) {
+        if (idempotencyGuard.isDuplicate(event.eventId())) {
+            log.warn("Duplicate event detected, skipping | eventId={} | orderId={} | topic={}",
+                    event.eventId(), event.orderId(), KafkaTopics.ORDER_VALIDATED);
+            return true;
+        }
+        if (chargedOrders.isRecentlyCharged(event.orderId())) {
+            duplicateOrder(event);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ghi kết quả charge đã có (async path): Payment + processed_events + publish, 1 transaction.
+     *
+     * Giữa lúc check trước charge và lúc persist, record có thể đã được owner mới xử lý
+     * (rebalance) → persist() claim eventId thất bại → không ghi Payment lần 2.
+     * Gateway đã dedup theo idempotencyKey (orderId) → không trừ tiền 2 lần.
+     */
+    @Transactional
+    public void completeCharge(OrderEvent event, ChargeResult result) {
+        persist(event, outcome(event, result));
+    }
+
+    /**
+     * Batch version của processOrderValidated — charge cả poll, rồi persist trong 1 transaction ngắn.
+     *
+     * Round-trips cho N orders (thay vì ~3N ở record mode):
+     * 1. Ngoài transaction: 1 SELECT payments WHERE order_id IN (...) — dedup cả batch, rồi charge
+     * 2. Trong transaction: tối đa 1 INSERT processed_events ... ON CONFLICT DO NOTHING RETURNING (claim)
+     *    + INSERT payments gom JDBC batch lúc commit
+     *    (hibernate.jdbc.batch_size + reWriteBatchedInserts → multi-row INSERT)
+     * 3. Publish liên tiếp không chờ ack — producer gom theo linger.ms
+     *
+     * WHY dedup trước charge chỉ theo orderId?
+     * → Mọi event đã xử lý đều để lại 1 Payment → eventId redeliver cũng bị lọc ở bước này.
+     * → Claim eventId nằm trong transaction: event mà instance khác vừa ghi giữa dedup và claim
+     *   → không claim được → bỏ qua (charge vừa gửi trùng idempotencyKey, gateway không trừ lần 2).
+     *
+     * WHY kết quả giống hệt record mode?
+     * → Cùng charge() + outcome() cho từng order; payment không phụ thuộc order khác trong batch.
+     * → 1 charge lỗi → chưa ghi gì, listener chạy lại từng record: charge lặp lại cùng
+     *   idempotencyKey → gateway không trừ tiền 2 lần. Instance khác ghi Payment cùng order giữa
+     *   SELECT và commit → uk_payments_order_id fail → rollback, lượt từng record dùng ON CONFLICT.
+     */
+    public void processOrderValidatedBatch(List<OrderEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        batchSizeSummary.record(events.size());
+
+        // 1. Order đã có Payment (LRU + tối đa 1 query) + orderId trùng ngay trong batch → không charge
+        Set<UUID> seenOrderIds = new HashSet<>(chargedOrders.charged(
+                events.stream().map(OrderEvent::orderId).toList()));
+        List<OrderEvent> chargeable = new ArrayList<>(events.size());
+        for (OrderEvent event : events) {
+            if (seenOrderIds.add(event.orderId())) {
+                chargeable.add(event);
+            } else {
+                duplicateOrder(event);
+            }
+        }
+
+        // 2. Phát charge cả batch cùng lúc, đợi theo thứ tự — chưa giữ connection
+        List<CompletableFuture<ChargeResult>> charges = chargeable.stream().map(this::charge).toList();
+        List<Outcome> outcomes = new ArrayList<>(chargeable.size());
+        for (int i = 0; i < chargeable.size(); i++) {
+            outcomes.add(outcome(chargeable.get(i), await(charges.get(i))));
+        }
+
+        List<Outcome> persisted = transactionTemplate.execute(status -> persistBatch(outcomes));
+
+        log.info("Batch processed | size={} | duplicates={} | paid={} | failed={}",
+                events.size(), events.size() - persisted.size(),
+                persisted.stream().filter(o -> o.result().status() == OrderStatus.PAID).count(),
+                persisted.stream().filter(o -> o.result().status() == OrderStatus.PAYMENT_FAILED).count());
+    }
+
+    /**
+     * Claim eventId cả batch (tối đa 1 statement) → lưu Payment của event claim được → publish
+     * theo đúng thứ tự offset.
+     *
+     * @return các outcome đã ghi
+     */
+    private List<Outcome> persistBatch(List<Outcome> outcomes) {
+        Set<UUID> claimed = idempotencyGuard.claim(
+                outcomes.stream().map(o -> o.event().eventId()).toList(), KafkaTopics.ORDER_VALIDATED);
+
+        List<Outcome> fresh = new ArrayList<>(outcomes.size());
+        for (Outcome outcome : outcomes) {
+            OrderEvent event = outcome.event();
+            if (claimed.contains(event.eventId())) {
+                fresh.add(outcome);
+            } else {
+                log.warn("Duplicate event detected, skipping | eventId={} | orderId={} | topic={}",
+                        event.eventId(), event.orderId(), KafkaTopics.ORDER_VALIDATED);
+            }
+        }
+
+        paymentRepository.saveAll(fresh.stream().map(Outcome::payment).toList());
+        chargedOrders.markCharged(fresh.stream().map(o -> o.event().orderId()).toList());
+        fresh.forEach(this::publish);
+        return fresh;
+    }
+
+    /**
+     * Claim eventId rồi INSERT Payment ... ON CONFLICT DO NOTHING — không SELECT trước.
+     * eventId đã có → redelivery đã được ghi, bỏ qua. Order đã có Payment
+     * → không publish lần 2 (kết quả đã publish lúc Payment đầu tiên được ghi).
+     */
+    private void persist(OrderEvent event, Outcome outcome) {
+        // Claim processed_events — trong cùng transaction với Payment (cả success lẫn failure)
+        if (!idempotencyGuard.claim(event.eventId(), KafkaTopics.ORDER_VALIDATED)) {
             log.warn("Duplicate event detected, skipping | eventId={} | orderId={} | topic={}",
                     event.eventId(), event.orderId(), KafkaTopics.ORDER_VALIDATED);
             return;
         }
+        boolean inserted = paymentRepository.insertIfAbsent(outcome.payment());
+        chargedOrders.markCharged(event.orderId());
 
-        log.info("Processing payment | orderId={} | amount={}",
-                event.orderId(), event.totalAmount());
+        if (!inserted) {
+            duplicateOrder(event);
+            return;
+        }
+        publish(outcome);
+    }
 
-        boolean paymentSuccess = event.totalAmount().compareTo(MAX_AMOUNT) <= 0;
+    private void duplicateOrder(OrderEvent event) {
+        duplicateOrderCounter.increment();
+        log.warn("Order already charged, skipping | eventId={} | orderId={} | topic={}",
+                event.eventId(), event.orderId(), KafkaTopics.ORDER_VALIDATED);
+    }
 
-        if (paymentSuccess) {
-            // Save payment record
+    /**
+     * Kết quả charge của 1 order → Payment cần lưu + event kết quả. Không chạm DB / Kafka.
+     */
+    private Outcome outcome(OrderEvent event, ChargeResult result) {
+        if (result.approved()) {
             Payment payment = Payment.builder()
                     .orderId(event.orderId())
                     .customerId(event.customerId())
                     .amount(event.totalAmount())
                     .status(PaymentStatus.SUCCESS)
                     .build();
-            paymentRepository.save(payment);
 
             log.info("Payment SUCCESS | orderId={} | amount={}", event.orderId(), event.totalAmount());
 
-            // Publish order.paid
             OrderEvent paidEvent = OrderEvent.create(
                     event.orderId(), event.customerId(),
                     event.items(), event.totalAmount(),
                     OrderStatus.PAID
             );
-            // Save ProcessedEvent — trong cùng transaction với save Payment
-            processedEventRepository.save(new ProcessedEvent(event.eventId(), KafkaTopics.ORDER_VALIDATED));
+            return new Outcome(event, payment, paidEvent);
+        }
 
-            kafkaProducer.sendOrderPaid(paidEvent);
-            paymentsSuccessCounter.increment();
+        String reason = result.declineReason();
 
-        } else {
-            String reason = String.format("Payment declined: amount %s exceeds limit %s",
-                    event.totalAmount(), MAX_AMOUNT);
-
-            // Save failed payment record
-            Payment payment = Payment.builder()
-                    .orderId(event.orderId())
-                    .customerId(event.customerId())
-                    .amount(event.totalAmount())
-                    .status(PaymentStatus.FAILED)
-                    .failureReason(reason)
-                    .build();
-            paymentRepository.save(payment);
+        Payment payment = Payment.builder()
+                .orderId(event.orderId())
+                .customerId(event.customerId())
+                .amount(event.totalAmount())
+                .status(PaymentStatus.FAILED)
+                .failureReason(reason)
+                .build();
 
-            log.warn("Payment FAILED | orderId={} | reason={}", event.orderId(), reason);
+        log.warn("Payment FAILED | orderId={} | reason={}", event.orderId(), reason);
 
-            // Save ProcessedEvent even for failure path
-            processedEventRepository.save(new ProcessedEvent(event.eventId(), KafkaTopics.ORDER_VALIDATED));
+        // payment.failed → trigger compensation
+        OrderEvent failedEvent = OrderEvent.withReason(
+                event.orderId(), event.customerId(),
+                event.items(), event.totalAmount(),
+                OrderStatus.PAYMENT_FAILED, reason
+        );
+        return new Outcome(event, payment, failedEvent);
+    }
 
-            // Publish payment.failed → trigger compensation
-            OrderEvent failedEvent = OrderEvent.withReason(
-                    event.orderId(), event.customerId(),
-                    event.items(), event.totalAmount(),
-                    OrderStatus.PAYMENT_FAILED, reason
-            );
-            kafkaProducer.sendPaymentFailed(failedEvent);
+    private void publish(Outcome outcome) {
+        if (outcome.result().status() == OrderStatus.PAID) {
+            kafkaProducer.sendOrderPaid(outcome.result());
+            paymentsSuccessCounter.increment();
+        } else {
+            kafkaProducer.sendPaymentFailed(outcome.result());
             paymentsFailedCounter.increment();
         }
     }
+
+    /** Đợi charge; lỗi gateway ném ra nguyên dạng (không bọc CompletionException) cho error handler. */
+    private static ChargeResult await(CompletableFuture<ChargeResult> charge) {
+        try {
+            return charge.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Outcome(OrderEvent event, Payment payment, OrderEvent result) {}
 }
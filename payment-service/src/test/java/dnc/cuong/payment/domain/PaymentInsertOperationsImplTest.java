@@ -0,0 +1,134 @@
+package dnc.cuong.payment.domain;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test INSERT ... ON CONFLICT DO NOTHING trên H2 in-memory (MODE=PostgreSQL) với unique index
+ * giống uk_payments_order_id — 1 order tối đa 1 Payment dù nhiều thread cùng ghi.
+ *
+ * WHY JdbcTemplate bỏ conflict target trước khi chạy?
+ * -> H2 chỉ hiểu ON CONFLICT DO NOTHING trơn. Bảng test chỉ có 1 unique ngoài PK (order_id)
+ *    nên 2 dạng cùng nghĩa; dạng có (order_id) được check riêng bằng assert trên SQL.
+ */
+class PaymentInsertOperationsImplTest {
+
+    private static final int THREADS = 8;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private PaymentInsertOperationsImpl operations;
+
+    @BeforeEach
+    void setUp() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:payments_" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(THREADS);
+        dataSource = new HikariDataSource(config);
+
+        jdbcTemplate = new JdbcTemplate(dataSource) {
+            @Override
+            public int update(String sql, Object... args) {
+                return super.update(sql.replace("ON CONFLICT (order_id)", "ON CONFLICT"), args);
+            }
+        };
+        jdbcTemplate.execute("""
+                CREATE TABLE payments (
+                    id UUID PRIMARY KEY,
+                    order_id UUID NOT NULL,
+                    customer_id UUID NOT NULL,
+                    amount NUMERIC(12, 2) NOT NULL,
+                    status VARCHAR(20) NOT NULL,
+                    failure_reason VARCHAR(255),
+                    created_at TIMESTAMP WITH TIME ZONE NOT NULL)
+                """);
+        jdbcTemplate.execute("CREATE UNIQUE INDEX uk_payments_order_id ON payments (order_id)");
+        operations = new PaymentInsertOperationsImpl(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void insertSql_shouldTargetOrderIdConflict() {
+        // Thiếu uk_payments_order_id → Postgres báo lỗi thay vì lặng lẽ ghi Payment thứ 2
+        assertTrue(PaymentInsertOperationsImpl.INSERT_IF_ABSENT_SQL.contains("ON CONFLICT (order_id) DO NOTHING"));
+    }
+
+    @Test
+    void insertIfAbsent_shouldWriteRow_andAssignIdAndCreatedAt() {
+        Payment payment = payment(UUID.randomUUID(), PaymentStatus.SUCCESS, null);
+
+        assertTrue(operations.insertIfAbsent(payment));
+
+        assertNotNull(payment.getId());
+        assertNotNull(payment.getCreatedAt());
+        assertEquals("SUCCESS", jdbcTemplate.queryForObject(
+                "SELECT status FROM payments WHERE id = ?", String.class, payment.getId()));
+    }
+
+    @Test
+    void insertIfAbsent_shouldKeepFirstPayment_whenOrderAlreadyCharged() {
+        UUID orderId = UUID.randomUUID();
+        operations.insertIfAbsent(payment(orderId, PaymentStatus.FAILED, "Card expired"));
+
+        assertFalse(operations.insertIfAbsent(payment(orderId, PaymentStatus.SUCCESS, null)));
+
+        assertEquals(1, countPayments(orderId));
+        assertEquals("FAILED", jdbcTemplate.queryForObject(
+                "SELECT status FROM payments WHERE order_id = ?", String.class, orderId));
+    }
+
+    @Test
+    void insertIfAbsent_shouldLetExactlyOneWriterWin_underConcurrency() throws Exception {
+        UUID orderId = UUID.randomUUID();
+        List<Callable<Boolean>> writers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            writers.add(() -> operations.insertIfAbsent(payment(orderId, PaymentStatus.SUCCESS, null)));
+        }
+
+        int winners = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (Future<Boolean> result : executor.invokeAll(writers)) {
+                if (result.get()) {
+                    winners++;
+                }
+            }
+        }
+
+        assertEquals(1, winners);
+        assertEquals(1, countPayments(orderId));
+    }
+
+    private int countPayments(UUID orderId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payments WHERE order_id = ?", Integer.class, orderId);
+    }
+
+    private static Payment payment(UUID orderId, PaymentStatus status, String failureReason) {
+        return Payment.builder()
+                .orderId(orderId)
+                .customerId(UUID.randomUUID())
+                .amount(new BigDecimal("100.00"))
+                .status(status)
+                .failureReason(failureReason)
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package dnc.cuong.payment.domain;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test PaymentOrderIdIndexMigration trên H2 in-memory (MODE=PostgreSQL) — bảng payments như
+ * ddl-auto để lại khi không tạo được uk_payments_order_id.
+ */
+class PaymentOrderIdIndexMigrationTest {
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:payments_" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        dataSource = new HikariDataSource(config);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE payments (
+                    id UUID PRIMARY KEY,
+                    order_id UUID NOT NULL,
+                    customer_id UUID NOT NULL,
+                    amount NUMERIC(12, 2) NOT NULL,
+                    status VARCHAR(20) NOT NULL,
+                    failure_reason VARCHAR(255),
+                    created_at TIMESTAMP WITH TIME ZONE NOT NULL)
+                """);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void migration_shouldFailStartupAndKeepDuplicatePayments_whenOrderHasSeveralPayments() {
+        UUID duplicated = UUID.randomUUID();
+        UUID single = UUID.randomUUID();
+        Instant now = Instant.now();
+        insert(duplicated, "SUCCESS", now);
+        insert(duplicated, "SUCCESS", now.plusSeconds(5));
+        insert(single, "FAILED", now);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> new PaymentOrderIdIndexMigration(jdbcTemplate));
+
+        assertTrue(error.getMessage().contains("1 orders"));
+        // Payment trùng (bằng chứng trừ tiền 2 lần) còn nguyên, chưa có index
+        assertEquals(2, countPayments(duplicated));
+        assertEquals(1, countPayments(single));
+        insert(single, "SUCCESS", now);
+        assertEquals(2, countPayments(single));
+    }
+
+    @Test
+    void migration_shouldLeaveRowsUntouched_whenNoDuplicates() {
+        UUID orderId = UUID.randomUUID();
+        insert(orderId, "SUCCESS", Instant.now());
+
+        new PaymentOrderIdIndexMigration(jdbcTemplate);
+        // Chạy lại (restart) — index đã có, không lỗi
+        new PaymentOrderIdIndexMigration(jdbcTemplate);
+
+        assertEquals(1, countPayments(orderId));
+        assertThrows(DataIntegrityViolationException.class, () -> insert(orderId, "FAILED", Instant.now()));
+    }
+
+    private void insert(UUID orderId, String status, Instant createdAt) {
+        jdbcTemplate.update("""
+                INSERT INTO payments (id, order_id, customer_id, amount, status, created_at)
+                VALUES (?, ?, ?, 100.00, ?, ?)
+                """, UUID.randomUUID(), orderId, UUID.randomUUID(), status, Timestamp.from(createdAt));
+    }
+
+    private int countPayments(UUID orderId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payments WHERE order_id = ?", Integer.class, orderId);
+    }
+}
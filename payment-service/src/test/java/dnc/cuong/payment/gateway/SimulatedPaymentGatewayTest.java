@@ -0,0 +1,102 @@
+package dnc.cuong.payment.gateway;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test cho SimulatedPaymentGateway — phân phối latency, timeout, tỉ lệ decline/lỗi.
+ * Random có seed cố định → tỉ lệ đo được ổn định giữa các lần chạy.
+ */
+class SimulatedPaymentGatewayTest {
+
+    private static final ThresholdPaymentGateway RULE = new ThresholdPaymentGateway(new BigDecimal("10000"));
+
+    private SimulatedPaymentGateway gateway;
+
+    @AfterEach
+    void tearDown() {
+        gateway.close();
+    }
+
+    @Test
+    void sampleLatency_shouldMatchConfiguredMedianAndP99() {
+        gateway = new SimulatedPaymentGateway(RULE, settings(100, 1000, 10_000, 0, 0), new Random(42));
+
+        long[] samples = new long[20_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = gateway.sampleLatencyMs();
+        }
+        Arrays.sort(samples);
+
+        long p50 = samples[samples.length / 2];
+        long p99 = samples[(int) (samples.length * 0.99)];
+        assertTrue(p50 >= 90 && p50 <= 110, "p50=" + p50);
+        assertTrue(p99 >= 850 && p99 <= 1150, "p99=" + p99);
+    }
+
+    @Test
+    void charge_shouldNotBlockCaller_andApplyThresholdRule() {
+        gateway = new SimulatedPaymentGateway(RULE, settings(50, 50, 1000, 0, 0), new Random(1));
+
+        long start = System.nanoTime();
+        CompletableFuture<ChargeResult> approved = gateway.charge(request("500.00"));
+        CompletableFuture<ChargeResult> declined = gateway.charge(request("20000.00"));
+        long callMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(callMs < 50, "charge() blocked for " + callMs + "ms");
+        assertFalse(approved.isDone());
+        assertTrue(approved.join().approved());
+        assertTrue(declined.join().declineReason().contains("exceeds limit"));
+    }
+
+    @Test
+    void charge_shouldFailWithGatewayUnavailable_whenLatencyExceedsTimeout() {
+        gateway = new SimulatedPaymentGateway(RULE, settings(500, 500, 20, 0, 0), new Random(1));
+
+        CompletionException e = assertThrows(CompletionException.class, () -> gateway.charge(request("10.00")).join());
+
+        assertInstanceOf(GatewayUnavailableException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("timed out after 20ms"));
+    }
+
+    @Test
+    void charge_shouldProduceConfiguredDeclineAndErrorRates() {
+        gateway = new SimulatedPaymentGateway(RULE, settings(0, 0, 1000, 0.2, 0.1), new Random(7));
+
+        int declined = 0;
+        int errors = 0;
+        int total = 5_000;
+        for (int i = 0; i < total; i++) {
+            try {
+                if (!gateway.charge(request("10.00")).join().approved()) {
+                    declined++;
+                }
+            } catch (CompletionException e) {
+                assertInstanceOf(GatewayUnavailableException.class, e.getCause());
+                errors++;
+            }
+        }
+
+        assertEquals(0.2, (double) declined / total, 0.02);
+        assertEquals(0.1, (double) errors / total, 0.02);
+    }
+
+    private static SimulatedPaymentGateway.Settings settings(long median, long p99, long timeout,
+                                                             double declineRate, double errorRate) {
+        return new SimulatedPaymentGateway.Settings(median, p99, timeout, declineRate, errorRate);
+    }
+
+    private static ChargeRequest request(String amount) {
+        return new ChargeRequest(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,169 @@
+package dnc.cuong.payment.kafka;
+
+import dnc.cuong.common.avro.OrderEventAvro;
+import dnc.cuong.common.avro.OrderEventMapper;
+import dnc.cuong.common.concurrency.ListenerThreads;
+import dnc.cuong.common.event.KafkaTopics;
+import dnc.cuong.common.event.OrderEvent;
+import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.payment.gateway.ChargeResult;
+import dnc.cuong.payment.gateway.GatewayUnavailableException;
+import dnc.cuong.payment.service.PaymentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test cho AsyncChargeDispatcher — charge song song giữa các order, tuần tự trong 1 order,
+ * retry/DLT/ack khi gateway lỗi.
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncChargeDispatcherTest {
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private ConsumerRecordRecoverer recoverer;
+
+
+    @Mock
+    private Acknowledgment ack;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ListenerThreads listenerThreads =
+            new ListenerThreads("test", ListenerThreads.Mode.VIRTUAL, 2, meterRegistry);
+
+    @Test
+    void dispatch_shouldChargeOrdersConcurrently_butKeepOffsetOrderPerOrder() {
+        AtomicInteger charging = new AtomicInteger();
+        AtomicInteger maxCharging = new AtomicInteger();
+        when(paymentService.charge(any())).thenAnswer(invocation -> {
+            maxCharging.accumulateAndGet(charging.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                charging.decrementAndGet();
+                return ChargeResult.approve();
+            }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+        });
+        Map<UUID, List<Long>> persisted = new ConcurrentHashMap<>();
+        Map<UUID, Long> offsetsByEvent = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            OrderEvent event = invocation.getArgument(0);
+            persisted.computeIfAbsent(event.orderId(), id -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(offsetsByEvent.get(event.eventId()));
+            return null;
+        }).when(paymentService).completeCharge(any(), any());
+
+        List<UUID> orderIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        try (AsyncChargeDispatcher dispatcher = dispatcher(0, 64)) {
+            for (long offset = 0; offset < 40; offset++) {
+                OrderEvent event = event(orderIds.get((int) (offset % orderIds.size())));
+                offsetsByEvent.put(event.eventId(), offset);
+                dispatcher.dispatch(record(event, offset), ack);
+            }
+        }
+
+        // close() đợi in-flight xong
+        verify(ack, times(40)).acknowledge();
+        assertTrue(maxCharging.get() > 1, "charges never overlapped");
+        for (UUID orderId : orderIds) {
+            List<Long> offsets = persisted.get(orderId);
+            List<Long> sorted = new ArrayList<>(offsets);
+            Collections.sort(sorted);
+            assertEquals(10, offsets.size());
+            assertEquals(sorted, offsets);
+        }
+        assertEquals(2, listenerThreads.availableDbPermits());
+        // Flow control thấy latency persist, không phải lúc listener return
+        assertEquals(40, meterRegistry.get(ListenerThreads.HANDLER_TIMER)
+                .tag(ListenerThreads.LISTENER_ID_TAG, AsyncChargeDispatcher.LISTENER_ID).timer().count());
+    }
+
+    @Test
+    void dispatch_shouldRetryGatewayError_thenPersistAndAck() {
+        OrderEvent event = event(UUID.randomUUID());
+        ConsumerRecord<String, OrderEventAvro> record = record(event, 3);
+        when(paymentService.charge(any()))
+                .thenReturn(CompletableFuture.failedFuture(new GatewayUnavailableException("503")))
+                .thenReturn(CompletableFuture.completedFuture(ChargeResult.approve()));
+
+        try (AsyncChargeDispatcher dispatcher = dispatcher(3, 8)) {
+            dispatcher.dispatch(record, ack);
+        }
+
+        verify(paymentService, times(2)).charge(any());
+        verify(paymentService).completeCharge(any(), eq(ChargeResult.approve()));
+        verifyNoInteractions(recoverer);
+        verify(ack).acknowledge();
+    }
+
+    @Test
+    void dispatch_shouldPublishToDltThenAck_whenRetriesExhausted() {
+        OrderEvent event = event(UUID.randomUUID());
+        ConsumerRecord<String, OrderEventAvro> record = record(event, 3);
+        when(paymentService.charge(any()))
+                .thenReturn(CompletableFuture.failedFuture(new GatewayUnavailableException("timeout")));
+
+        try (AsyncChargeDispatcher dispatcher = dispatcher(2, 8)) {
+            dispatcher.dispatch(record, ack);
+        }
+
+        verify(paymentService, times(3)).charge(any());
+        verify(recoverer).accept(eq(record), any(GatewayUnavailableException.class));
+        verify(paymentService, never()).completeCharge(any(), any());
+        verify(ack).acknowledge();
+    }
+
+    @Test
+    void dispatch_shouldSkipCharge_whenEventAlreadyProcessed() {
+        when(paymentService.isDuplicate(any())).thenReturn(true);
+
+        try (AsyncChargeDispatcher dispatcher = dispatcher(0, 8)) {
+            dispatcher.dispatch(record(event(UUID.randomUUID()), 0), ack);
+        }
+
+        verify(paymentService, never()).charge(any());
+        verify(ack).acknowledge();
+    }
+
+    private AsyncChargeDispatcher dispatcher(long maxRetries, int maxInFlight) {
+        return new AsyncChargeDispatcher(paymentService, listenerThreads, Executors.newVirtualThreadPerTaskExecutor(),
+                recoverer, new FixedBackOff(0L, maxRetries), 16, maxInFlight, meterRegistry);
+    }
+
+    private static OrderEvent event(UUID orderId) {
+        return new OrderEvent(UUID.randomUUID(), orderId, UUID.randomUUID(),
+                List.of(new OrderEvent.OrderItem(UUID.randomUUID(), "Test Product", 1, new BigDecimal("10.00"))),
+                new BigDecimal("10.00"), OrderStatus.VALIDATED, null, Instant.now());
+    }
+
+    private static ConsumerRecord<String, OrderEventAvro> record(OrderEvent event, long offset) {
+        return new ConsumerRecord<>(KafkaTopics.ORDER_VALIDATED, 0, offset, event.orderId().toString(),
+                OrderEventMapper.toAvro(event, "test"));
+    }
+}
@@ -2,35 +2,45 @@ package dnc.cuong.payment.service;
 
 import dnc.cuong.common.event.OrderEvent;
 import dnc.cuong.common.event.OrderStatus;
+import dnc.cuong.common.idempotency.IdempotencyGuard;
+import dnc.cuong.common.idempotency.ProcessedEventRepository;
 import dnc.cuong.payment.domain.Payment;
 import dnc.cuong.payment.domain.PaymentRepository;
 import dnc.cuong.payment.domain.PaymentStatus;
-import dnc.cuong.payment.domain.ProcessedEvent;
-import dnc.cuong.payment.domain.ProcessedEventRepository;
+import dnc.cuong.payment.gateway.ChargeResult;
+import dnc.cuong.payment.gateway.GatewayUnavailableException;
+import dnc.cuong.payment.gateway.PaymentGateway;
+import dnc.cuong.payment.gateway.ThresholdPaymentGateway;
 import dnc.cuong.payment.kafka.PaymentKafkaProducer;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import org.junit.jupiter.api.BeforeEach;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 /**
- * Unit test cho PaymentService — test payment threshold logic.
+ * Unit test cho PaymentService — test payment threshold logic (ThresholdPaymentGateway mặc định).
  *
  * Business rule:
  * - totalAmount <= 10,000 → SUCCESS → publish order.paid
@@ -55,12 +65,28 @@ class PaymentServiceTest {
     @Spy
     private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
-    @InjectMocks
     private PaymentService paymentService;
 
+    /** Transaction đang mở? — transaction manager giả lập bật/tắt quanh mỗi lần execute. */
+    private boolean inTransaction;
+
     @BeforeEach
     void setUp() {
-        paymentService.initMetrics();
+        // Record path: order chưa có Payment → INSERT ... ON CONFLICT ghi được 1 row
+        lenient().when(paymentRepository.insertIfAbsent(any())).thenReturn(true);
+        // eventId chưa có trong processed_events → claim INSERT được
+        lenient().when(processedEventRepository.claim(any(), anyString())).thenReturn(1);
+        lenient().when(processedEventRepository.claimAll(any(), anyString()))
+                .thenAnswer(invocation -> List.copyOf(invocation.<Collection<UUID>>getArgument(0)));
+        paymentService = newService(new ThresholdPaymentGateway(new BigDecimal("10000")));
+    }
+
+    private PaymentService newService(PaymentGateway gateway) {
+        PaymentService service = new PaymentService(paymentRepository,
+                passThroughGuard(), new ChargedOrders(paymentRepository, 1000, 24, meterRegistry),
+                kafkaProducer, gateway, transactionTemplate(), meterRegistry);
+        service.initMetrics();
+        return service;
     }
 
     // --- Happy path: amount <= 10,000 ---
@@ -76,7 +102,7 @@ class PaymentServiceTest {
 
         // Then — Payment SUCCESS saved
         ArgumentCaptor<Payment> paymentCaptor = ArgumentCaptor.forClass(Payment.class);
-        verify(paymentRepository).save(paymentCaptor.capture());
+        verify(paymentRepository).insertIfAbsent(paymentCaptor.capture());
 
         Payment savedPayment = paymentCaptor.getValue();
         assertEquals(event.orderId(), savedPayment.getOrderId());
@@ -91,7 +117,7 @@ class PaymentServiceTest {
         assertEquals(OrderStatus.PAID, eventCaptor.getValue().status());
 
         // Idempotency saved
-        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
     }
 
     @Test
@@ -105,7 +131,7 @@ class PaymentServiceTest {
 
         // Then
         ArgumentCaptor<Payment> paymentCaptor = ArgumentCaptor.forClass(Payment.class);
-        verify(paymentRepository).save(paymentCaptor.capture());
+        verify(paymentRepository).insertIfAbsent(paymentCaptor.capture());
         assertEquals(PaymentStatus.SUCCESS, paymentCaptor.getValue().getStatus());
 
         verify(kafkaProducer).sendOrderPaid(any(OrderEvent.class));
@@ -125,7 +151,7 @@ class PaymentServiceTest {
 
         // Then — Payment FAILED saved
         ArgumentCaptor<Payment> paymentCaptor = ArgumentCaptor.forClass(Payment.class);
-        verify(paymentRepository).save(paymentCaptor.capture());
+        verify(paymentRepository).insertIfAbsent(paymentCaptor.capture());
 
         Payment savedPayment = paymentCaptor.getValue();
         assertEquals(PaymentStatus.FAILED, savedPayment.getStatus());
@@ -154,7 +180,7 @@ class PaymentServiceTest {
 
         // Then
         ArgumentCaptor<Payment> paymentCaptor = ArgumentCaptor.forClass(Payment.class);
-        verify(paymentRepository).save(paymentCaptor.capture());
+        verify(paymentRepository).insertIfAbsent(paymentCaptor.capture());
         assertEquals(PaymentStatus.FAILED, paymentCaptor.getValue().getStatus());
 
         verify(kafkaProducer).sendPaymentFailed(any(OrderEvent.class));
@@ -173,7 +199,7 @@ class PaymentServiceTest {
         paymentService.processOrderValidated(event);
 
         // Then — nothing happens
-        verify(paymentRepository, never()).save(any());
+        verify(paymentRepository, never()).insertIfAbsent(any());
         verify(kafkaProducer, never()).sendOrderPaid(any());
         verify(kafkaProducer, never()).sendPaymentFailed(any());
     }
@@ -220,6 +246,156 @@ class PaymentServiceTest {
         assertEquals(new BigDecimal("2000.00"), paidEvent.totalAmount());
     }
 
+    // --- processOrderValidatedBatch ---
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processOrderValidatedBatch_shouldMatchRecordPathOutcomes() {
+        List<OrderEvent> events = List.of(
+                createValidatedEvent(new BigDecimal("500.00")),
+                createValidatedEvent(new BigDecimal("15000.00")),
+                createValidatedEvent(new BigDecimal("10000")));
+
+        paymentService.processOrderValidatedBatch(events);
+
+        // 1 lượt persist cho cả batch
+        ArgumentCaptor<List<Payment>> paymentsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(paymentRepository).saveAll(paymentsCaptor.capture());
+        verify(paymentRepository, never()).insertIfAbsent(any());
+        verify(processedEventRepository).claimAll(argThat(ids -> ids.size() == 3), eq("order.validated"));
+
+        List<Payment> payments = paymentsCaptor.getValue();
+        assertEquals(List.of(PaymentStatus.SUCCESS, PaymentStatus.FAILED, PaymentStatus.SUCCESS),
+                payments.stream().map(Payment::getStatus).toList());
+        assertEquals(events.get(1).orderId(), payments.get(1).getOrderId());
+
+        // Giống record path: cùng reason, publish theo thứ tự offset
+        ArgumentCaptor<OrderEvent> paidCaptor = ArgumentCaptor.forClass(OrderEvent.class);
+        ArgumentCaptor<OrderEvent> failedCaptor = ArgumentCaptor.forClass(OrderEvent.class);
+        verify(kafkaProducer, times(2)).sendOrderPaid(paidCaptor.capture());
+        verify(kafkaProducer).sendPaymentFailed(failedCaptor.capture());
+        assertEquals(List.of(events.get(0).orderId(), events.get(2).orderId()),
+                paidCaptor.getAllValues().stream().map(OrderEvent::orderId).toList());
+        assertEquals("Payment declined: amount 15000.00 exceeds limit 10000", failedCaptor.getValue().reason());
+        assertEquals(payments.get(1).getFailureReason(), failedCaptor.getValue().reason());
+    }
+
+    @Test
+    void processOrderValidatedBatch_shouldSkipProcessedAndInBatchDuplicates() {
+        OrderEvent processed = createValidatedEvent(new BigDecimal("100.00"));
+        OrderEvent fresh = createValidatedEvent(new BigDecimal("200.00"));
+        // eventId lặp trong batch chỉ được claim 1 lần; processed đụng conflict
+        when(processedEventRepository.claimAll(List.of(processed.eventId(), fresh.eventId()), "order.validated"))
+                .thenReturn(List.of(fresh.eventId()));
+
+        paymentService.processOrderValidatedBatch(List.of(processed, fresh, fresh));
+
+        verify(paymentRepository).saveAll(argThat(list -> ((List<?>) list).size() == 1));
+        verify(kafkaProducer, times(1)).sendOrderPaid(argThat(e -> e.orderId().equals(fresh.orderId())));
+        verify(kafkaProducer, never()).sendPaymentFailed(any());
+    }
+
+    // --- Idempotency theo orderId ---
+
+    @Test
+    void processOrderValidated_shouldNotPublish_whenOrderAlreadyHasPayment() {
+        // order.validated phát lại với eventId mới — INSERT ON CONFLICT không ghi row nào
+        OrderEvent event = createValidatedEvent(new BigDecimal("100.00"));
+        when(paymentRepository.insertIfAbsent(any())).thenReturn(false);
+
+        paymentService.processOrderValidated(event);
+
+        verify(processedEventRepository).claim(eq(event.eventId()), anyString());
+        verify(kafkaProducer, never()).sendOrderPaid(any());
+        verify(kafkaProducer, never()).sendPaymentFailed(any());
+        assertEquals(1, meterRegistry.counter("payments.duplicate_order.total").count());
+    }
+
+    @Test
+    void processOrderValidated_shouldSkipCharge_whenOrderRecentlyCharged() {
+        PaymentGateway gateway = mock(PaymentGateway.class);
+        when(gateway.charge(any())).thenReturn(CompletableFuture.completedFuture(ChargeResult.approve()));
+        PaymentService service = newService(gateway);
+        OrderEvent first = createValidatedEvent(new BigDecimal("100.00"));
+        OrderEvent replayed = new OrderEvent(UUID.randomUUID(), first.orderId(), first.customerId(),
+                first.items(), first.totalAmount(), OrderStatus.VALIDATED, null, Instant.now());
+
+        service.processOrderValidated(first);
+        service.processOrderValidated(replayed);
+
+        // Lần 2: LRU orderId hit → không gọi gateway, không chạm DB
+        verify(gateway, times(1)).charge(any());
+        verify(paymentRepository, times(1)).insertIfAbsent(any());
+        verify(kafkaProducer, times(1)).sendOrderPaid(any());
+    }
+
+    @Test
+    void processOrderValidatedBatch_shouldSkipOrdersThatAlreadyHavePayment() {
+        OrderEvent charged = createValidatedEvent(new BigDecimal("100.00"));
+        OrderEvent fresh = createValidatedEvent(new BigDecimal("200.00"));
+        OrderEvent replayedFresh = new OrderEvent(UUID.randomUUID(), fresh.orderId(), fresh.customerId(),
+                fresh.items(), fresh.totalAmount(), OrderStatus.VALIDATED, null, Instant.now());
+        when(paymentRepository.findChargedOrderIds(any())).thenReturn(List.of(charged.orderId()));
+
+        paymentService.processOrderValidatedBatch(List.of(charged, fresh, replayedFresh));
+
+        verify(paymentRepository).saveAll(argThat(list -> ((List<?>) list).size() == 1));
+        verify(kafkaProducer, times(1)).sendOrderPaid(argThat(e -> e.orderId().equals(fresh.orderId())));
+        assertEquals(2, meterRegistry.counter("payments.duplicate_order.total").count());
+    }
+
+    // --- Gateway ---
+
+    @Test
+    void processOrderValidated_shouldPersistGatewayDeclineReason() {
+        PaymentService service = newService(request ->
+                CompletableFuture.completedFuture(ChargeResult.decline("Card expired")));
+        OrderEvent event = createValidatedEvent(new BigDecimal("50.00"));
+
+        service.processOrderValidated(event);
+
+        ArgumentCaptor<Payment> paymentCaptor = ArgumentCaptor.forClass(Payment.class);
+        verify(paymentRepository).insertIfAbsent(paymentCaptor.capture());
+        assertEquals(PaymentStatus.FAILED, paymentCaptor.getValue().getStatus());
+        assertEquals("Card expired", paymentCaptor.getValue().getFailureReason());
+        verify(kafkaProducer).sendPaymentFailed(argThat(e -> "Card expired".equals(e.reason())));
+        assertEquals(1, meterRegistry.timer("payments.gateway.latency", "outcome", "declined").count());
+    }
+
+    @Test
+    void processOrderValidated_shouldRethrowGatewayError_withoutPersisting() {
+        PaymentService service = newService(request ->
+                CompletableFuture.failedFuture(new GatewayUnavailableException("503")));
+        OrderEvent event = createValidatedEvent(new BigDecimal("50.00"));
+
+        // Ném nguyên GatewayUnavailableException → DefaultErrorHandler retry, processed_events chưa ghi
+        assertThrows(GatewayUnavailableException.class, () -> service.processOrderValidated(event));
+
+        verify(paymentRepository, never()).insertIfAbsent(any());
+        verify(processedEventRepository, never()).claim(any(), anyString());
+        verify(kafkaProducer, never()).sendOrderPaid(any());
+        assertEquals(1, meterRegistry.timer("payments.gateway.latency", "outcome", "error").count());
+    }
+
+    // --- Transaction boundary ---
+
+    @Test
+    void processOrderValidated_shouldChargeOutsideTransaction() {
+        List<Boolean> chargedInTransaction = new ArrayList<>();
+        PaymentService service = newService(request -> {
+            chargedInTransaction.add(inTransaction);
+            return CompletableFuture.completedFuture(ChargeResult.approve());
+        });
+
+        service.processOrderValidated(createValidatedEvent(new BigDecimal("100.00")));
+        service.processOrderValidatedBatch(List.of(
+                createValidatedEvent(new BigDecimal("200.00")), createValidatedEvent(new BigDecimal("300.00"))));
+
+        assertEquals(List.of(false, false, false), chargedInTransaction);
+        verify(paymentRepository).insertIfAbsent(any());
+        verify(paymentRepository).saveAll(argThat(list -> ((List<?>) list).size() == 2));
+    }
+
     // --- Helper ---
 
     private OrderEvent createValidatedEvent(BigDecimal amount) {
@@ -229,4 +405,27 @@ class PaymentServiceTest {
                 amount, OrderStatus.VALIDATED, null, Instant.now()
         );
     }
+
+    private TransactionTemplate transactionTemplate() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            inTransaction = true;
+            return new SimpleTransactionStatus();
+        });
+        lenient().doAnswer(invocation -> inTransaction = false).when(transactionManager).commit(any());
+        lenient().doAnswer(invocation -> inTransaction = false).when(transactionManager).rollback(any());
+        return new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Pass-through guard: mọi check đi thẳng processedEventRepository (mock) — stub claim()/existsById()
+     * quyết định event mới hay duplicate. Hành vi LRU được test ở common.
+     */
+    private IdempotencyGuard passThroughGuard() {
+        return new IdempotencyGuard("test", IdempotencyGuard.Settings.passThrough(),
+                processedEventRepository::existsById,
+                (eventId, topic) -> processedEventRepository.claim(eventId, topic) == 1,
+                processedEventRepository::claimAll,
+                Runnable::run, meterRegistry);
+    }
 }